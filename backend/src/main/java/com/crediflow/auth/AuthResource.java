@@ -1,5 +1,6 @@
 package com.crediflow.auth;
 
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 
@@ -19,6 +20,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 @Path("/auth")
+@RunOnVirtualThread
 public class AuthResource {
 
     @Inject
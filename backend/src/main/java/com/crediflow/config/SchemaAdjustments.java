@@ -0,0 +1,58 @@
+package com.crediflow.config;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Ajustes que o {@code database.generation=update} não faz sozinho: ele cria
+ * tabelas e colunas novas, mas não relaxa restrições de colunas existentes.
+ */
+@ApplicationScoped
+public class SchemaAdjustments {
+
+    private static final Logger LOG = Logger.getLogger(SchemaAdjustments.class);
+
+    @Inject
+    EntityManager em;
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        if (!"mysql".equalsIgnoreCase(dbKind)) {
+            return;
+        }
+
+        // keycloakId da empresa passou a ser preenchido depois, pela outbox do Keycloak
+        if (isNotNull("companies", "keycloakId")) {
+            em.createNativeQuery("alter table companies modify keycloakId varchar(255) null").executeUpdate();
+            LOG.info("Coluna companies.keycloakId agora aceita nulo");
+        }
+
+        // contas da transação eram obrigatórias no mapeamento, mas depósitos não têm
+        // origem e pagamentos não têm destino
+        for (String column : new String[] {"from_account_id", "to_account_id"}) {
+            if (isNotNull("transactions", column)) {
+                em.createNativeQuery("alter table transactions modify " + column + " bigint null").executeUpdate();
+                LOG.infof("Coluna transactions.%s agora aceita nulo", column);
+            }
+        }
+    }
+
+    private boolean isNotNull(String table, String column) {
+        Number count = (Number) em.createNativeQuery(
+                "select count(*) from information_schema.columns where table_schema = database() "
+                        + "and table_name = ?1 and column_name = ?2 and is_nullable = 'NO'")
+                .setParameter(1, table)
+                .setParameter(2, column)
+                .getSingleResult();
+        return count.intValue() > 0;
+    }
+}
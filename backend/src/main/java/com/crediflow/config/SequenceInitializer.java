@@ -0,0 +1,57 @@
+package com.crediflow.config;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+
+/**
+ * No MySQL as sequências do Hibernate são emuladas por tabelas que começam em 1.
+ * Tabelas que antes usavam IDENTITY já têm ids, então na subida a sequência é
+ * adiantada para depois do maior id existente (mais um bloco do otimizador pooled).
+ */
+@ApplicationScoped
+public class SequenceInitializer {
+
+    private static final Logger LOG = Logger.getLogger(SequenceInitializer.class);
+
+    // tabela da sequência -> tabela da entidade
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "transactions_seq", "transactions",
+            "loan_installments_seq", "loan_installments");
+
+    // deve ser o mesmo allocationSize dos @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Inject
+    EntityManager em;
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        if (!"mysql".equalsIgnoreCase(dbKind)) {
+            return;
+        }
+
+        SEQUENCES.forEach((sequence, table) -> {
+            if (advance(sequence, table)) {
+                LOG.infof("Sequência %s ajustada para depois do maior id de %s", sequence, table);
+            }
+        });
+    }
+
+    // só avança: uma sequência já à frente dos ids fica como está
+    boolean advance(String sequence, String table) {
+        String floor = "(select coalesce(max(id), 0) + " + (ALLOCATION_SIZE + 1) + " from " + table + ")";
+        return em.createNativeQuery("update " + sequence + " set next_val = " + floor + " where next_val < " + floor)
+                .executeUpdate() > 0;
+    }
+}
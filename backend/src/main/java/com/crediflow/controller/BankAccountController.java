@@ -1,23 +1,40 @@
 package com.crediflow.controller;
 
 import com.crediflow.dto.AccountRecipientInfoDTO;
+import com.crediflow.dto.BalanceAsOfDTO;
 import com.crediflow.dto.BankAccountRequestDTO;
 import com.crediflow.dto.BankAccountResponseDTO;
 import com.crediflow.entity.BankAccount;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.service.BalanceSnapshotService;
 import com.crediflow.service.BankAccountService;
+import com.crediflow.service.HotAccountLedger;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
 @Path("/bank-accounts")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
+@RunOnVirtualThread
 public class BankAccountController {
 
     @Inject
     BankAccountService service;
 
+    @Inject
+    HotAccountLedger hotAccountLedger;
+
+    @Inject
+    BalanceSnapshotService balanceSnapshotService;
+
     @POST
     public Response create(BankAccountRequestDTO dto) {
         BankAccount account = service.createAccountForCustomer(dto.customerId);
@@ -69,12 +86,42 @@ public class BankAccountController {
         return Response.ok(toDTO(updated)).build();
     }
 
+    /**
+     * Saldo da conta em um instante ({@code at}) ou no fechamento de um dia ({@code date}).
+     */
+    @GET
+    @Path("/{id}/balance")
+    public Response getBalanceAsOf(@PathParam("id") Long id,
+            @QueryParam("at") LocalDateTime at,
+            @QueryParam("date") LocalDate date) {
+        if (at == null && date == null) {
+            throw new BadRequestException("Informe at ou date");
+        }
+        LocalDateTime instant = at != null ? at : date.plusDays(1).atStartOfDay();
+        BigDecimal balance = balanceSnapshotService.balanceAsOf(id, instant);
+        return Response.ok(new BalanceAsOfDTO(id, instant, balance)).build();
+    }
+
+    @POST
+    @Path("/{id}/balance-snapshots/backfill")
+    public Response backfillSnapshots(@PathParam("id") Long id) {
+        int days = balanceSnapshotService.backfill(id);
+        return Response.ok(Map.of("accountId", id, "days", days)).build();
+    }
+
+    @POST
+    @Path("/balance-snapshots/backfill")
+    public Response backfillAllSnapshots() {
+        balanceSnapshotService.startBackfillAll();
+        return Response.accepted().build();
+    }
+
     private BankAccountResponseDTO toDTO(BankAccount entity) {
         BankAccountResponseDTO dto = new BankAccountResponseDTO();
         dto.id = entity.getId();
         dto.accountNumber = entity.getAccountNumber();
         dto.agencyNumber = entity.getAgencyNumber();
-        dto.balance = entity.getBalance();
+        dto.balance = hotAccountLedger.balanceOf(entity);
         dto.customerId = entity.getCustomer().getId();
         dto.createdAt = entity.getCreatedAt();
         return dto;
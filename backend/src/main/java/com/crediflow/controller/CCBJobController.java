@@ -0,0 +1,52 @@
+package com.crediflow.controller;
+
+import com.crediflow.dto.CCBJobDTO;
+import com.crediflow.dto.CCBJobRequestDTO;
+import com.crediflow.service.CCBJobService;
+
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+@Path("/ccb-jobs")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@Tag(name = "CCB Jobs", description = "Geração em lote de CCBs")
+@RunOnVirtualThread
+public class CCBJobController {
+
+    @Inject
+    CCBJobService ccbJobService;
+
+    @POST
+    @RolesAllowed({ "admin", "company" })
+    @Operation(summary = "Iniciar a geração em lote das CCBs das propostas do filtro")
+    public Response start(CCBJobRequestDTO filter) {
+        CCBJobDTO job = ccbJobService.start(filter);
+        return Response.accepted(job).build();
+    }
+
+    @GET
+    @Path("/{id}")
+    @RolesAllowed({ "admin", "company" })
+    @Operation(summary = "Consultar o progresso de um job de CCBs")
+    public CCBJobDTO get(@PathParam("id") String id) {
+        return ccbJobService.get(id);
+    }
+
+    @GET
+    @Path("/{id}/download")
+    @Produces("application/zip")
+    @RolesAllowed({ "admin", "company" })
+    @Operation(summary = "Baixar o ZIP com as CCBs de um job concluído")
+    public Response download(@PathParam("id") String id) {
+        return Response.ok(ccbJobService.download(id))
+                .header("Content-Disposition", "attachment; filename=ccbs_" + id + ".zip")
+                .build();
+    }
+}
@@ -7,6 +7,7 @@ import com.crediflow.dto.PagedResult;
 import com.crediflow.entity.Company;
 import com.crediflow.service.CompanyService;
 
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -28,6 +29,7 @@ import java.util.stream.Collectors;
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 @Tag(name = "Companies", description = "Gerenciamento de empresas conveniadas")
+@RunOnVirtualThread
 public class CompanyController {
 
     @Inject
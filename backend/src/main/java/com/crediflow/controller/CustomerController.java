@@ -7,6 +7,7 @@ import com.crediflow.entity.Customer;
 import com.crediflow.service.CustomerService;
 import com.crediflow.service.KeycloakAdminService;
 
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -21,7 +22,6 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Path("/customers")
 // admin e company podem acessar
@@ -30,6 +30,7 @@ import java.util.stream.Collectors;
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 @Tag(name = "Customers", description = "Gerenciamento de clientes conveniados")
+@RunOnVirtualThread
 public class CustomerController {
 
     @Inject
@@ -51,10 +52,7 @@ public class CustomerController {
     @GET
     @Operation(summary = "Listar todos os clientes")
     public List<CustomerResponseDTO> findAll() {
-        return customerService.findAll()
-                .stream()
-                .map(customerService::toDTO)
-                .collect(Collectors.toList());
+        return customerService.toDTOs(customerService.findAll());
     }
 
     @GET
@@ -0,0 +1,48 @@
+package com.crediflow.controller;
+
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.service.IdempotencyContext;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Lê o cabeçalho Idempotency-Key dos endpoints {@link Idempotent} e marca as
+ * respostas repetidas com Idempotent-Replayed. Sem o cabeçalho a requisição
+ * segue como antes.
+ */
+@Provider
+@Idempotent
+public class IdempotencyFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Inject
+    IdempotencyContext context;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        String key = request.getHeaderString(HEADER);
+        if (key == null) {
+            return;
+        }
+        key = key.strip();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " deve ter entre 1 e " + MAX_KEY_LENGTH + " caracteres");
+        }
+        context.setKey(key);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (context.isReplayed()) {
+            response.getHeaders().putSingle(REPLAYED_HEADER, "true");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.crediflow.controller;
+
+import jakarta.ws.rs.NameBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Endpoint que aceita o cabeçalho Idempotency-Key; o método deve executar a
+ * operação por {@link com.crediflow.service.IdempotencyService#execute}.
+ */
+@NameBinding
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+}
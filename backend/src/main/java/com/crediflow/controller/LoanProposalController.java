@@ -5,20 +5,31 @@ import com.crediflow.dto.LoanSimulationResultDTO;
 import com.crediflow.dto.LoanProposalResponseDTO;
 import com.crediflow.dto.PagedResult;
 import com.crediflow.dto.PayInstallmentRequestDTO;
+import com.crediflow.dto.SimulationGridRequestDTO;
+import com.crediflow.dto.SimulationGridResultDTO;
 import com.crediflow.entity.LoanProposal;
 import com.crediflow.repository.LoanProposalRepository;
 import com.crediflow.service.CCBService;
+import com.crediflow.service.GroupCommitService;
+import com.crediflow.service.IdempotencyService;
 import com.crediflow.service.LoanProposalService;
+import com.crediflow.service.LoanSimulationGridService;
 import com.crediflow.service.TransactionService;
 import com.crediflow.util.LoanSimulationUtil;
 
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
@@ -30,8 +41,20 @@ import java.util.Map;
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 @Tag(name = "Loan Proposals", description = "Gerenciamento de propostas de crédito consignado")
+@RunOnVirtualThread
 public class LoanProposalController {
 
+    // o navegador pode guardar o PDF, mas confirma pelo ETag antes de reutilizá-lo
+    private static final CacheControl REVALIDATE = revalidate();
+
+    private static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        cacheControl.setNoTransform(false);
+        return cacheControl;
+    }
+
     @Inject
     LoanProposalService proposalService;
 
@@ -44,11 +67,21 @@ public class LoanProposalController {
     @Inject
     TransactionService transactionService;
 
+    @Inject
+    LoanSimulationGridService simulationGridService;
+
+    @Inject
+    IdempotencyService idempotencyService;
+
+    @Inject
+    GroupCommitService groupCommitService;
+
     @GET
     @Operation(summary = "Listar todas as propostas")
     @RolesAllowed("admin")
-    public List<LoanProposalResponseDTO> listAll() {
-        return proposalService.listAll();
+    public List<LoanProposalResponseDTO> listAll(
+            @QueryParam("includeInstallments") @DefaultValue("false") boolean includeInstallments) {
+        return proposalService.listAll(includeInstallments);
     }
 
     @GET
@@ -58,8 +91,9 @@ public class LoanProposalController {
     public PagedResult<LoanProposalResponseDTO> listPaged(
             @QueryParam("search") @DefaultValue("") String search,
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("10") int size) {
-        return proposalService.findAllPaged(search, page, size);
+            @QueryParam("size") @DefaultValue("10") int size,
+            @QueryParam("includeInstallments") @DefaultValue("false") boolean includeInstallments) {
+        return proposalService.findAllPaged(search, page, size, includeInstallments);
     }
 
     @GET
@@ -68,8 +102,17 @@ public class LoanProposalController {
     @Operation(summary = "Listar propostas do cliente logado com paginação")
     public PagedResult<LoanProposalResponseDTO> getProposalsForLoggedCustomer(
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("10") int size) {
-        return proposalService.findAllByLoggedCustomer(page, size);
+            @QueryParam("size") @DefaultValue("10") int size,
+            @QueryParam("includeInstallments") @DefaultValue("false") boolean includeInstallments) {
+        return proposalService.findAllByLoggedCustomer(page, size, includeInstallments);
+    }
+
+    @GET
+    @Path("/{id}")
+    @RolesAllowed({ "admin", "company", "client" })
+    @Operation(summary = "Detalhar uma proposta com o cronograma de parcelas")
+    public LoanProposalResponseDTO getById(@PathParam("id") Long id) {
+        return proposalService.getDetails(id);
     }
 
     @POST
@@ -77,8 +120,17 @@ public class LoanProposalController {
     @Transactional
     @RolesAllowed({ "admin", "client" })
     @Operation(summary = "Simular uma nova proposta de crédito (sem persistir)")
-    public LoanSimulationResultDTO simulate(@Valid LoanProposalRequestDTO dto) {
-        return proposalService.simulateDetailed(dto);
+    public LoanSimulationResultDTO simulate(@Valid LoanProposalRequestDTO dto,
+            @QueryParam("summary") @DefaultValue("false") boolean summary) {
+        return proposalService.simulateDetailed(dto, !summary);
+    }
+
+    @POST
+    @Path("/simulate/grid")
+    @RolesAllowed({ "admin", "client" })
+    @Operation(summary = "Simular uma grade de taxas × prazos × valores em paralelo (sem persistir)")
+    public SimulationGridResultDTO simulateGrid(SimulationGridRequestDTO dto) {
+        return simulationGridService.simulate(dto);
     }
 
     @POST
@@ -140,9 +192,13 @@ public class LoanProposalController {
     @Path("/installments/pay")
     @RolesAllowed({ "client", "admin" })
     @Operation(summary = "Pagar uma parcela específica de uma proposta")
+    @Idempotent
     public Response payInstallment(PayInstallmentRequestDTO dto) {
-        proposalService.payInstallment(dto.proposalId, dto.installmentNumber, dto.bankAccountId);
-        return Response.ok().entity("Parcela paga com sucesso").build();
+        String message = idempotencyService.execute("installment-pay", dto, String.class, () -> {
+            proposalService.payInstallment(dto.proposalId, dto.installmentNumber, dto.bankAccountId);
+            return "Parcela paga com sucesso";
+        });
+        return Response.ok().entity(message).build();
     }
 
     // Método para pagar uma parcela e retornar o comprovante em PDF
@@ -153,7 +209,8 @@ public class LoanProposalController {
     @Operation(summary = "Pagar parcela e retornar comprovante em PDF")
     public Response payWithReceipt(@PathParam("installmentId") Long installmentId,
             @PathParam("accountId") Long bankAccountId) {
-        byte[] pdf = transactionService.payInstallmentAndReturnReceipt(installmentId, bankAccountId);
+        StreamingOutput pdf = groupCommitService.call(
+                () -> transactionService.payInstallmentAndReturnReceipt(installmentId, bankAccountId));
         return Response.ok(pdf)
                 .header("Content-Disposition", "attachment; filename=comprovante.pdf")
                 .build();
@@ -169,9 +226,7 @@ public class LoanProposalController {
         LoanProposal proposal = loanProposalRepository.findByIdOptional(id)
                 .orElseThrow(() -> new NotFoundException("Proposta não encontrada"));
 
-        proposal.getInstallments().size(); // força carregar as parcelas
-
-        byte[] pdf = ccbService.gerarPdfCCB(proposal);
+        StreamingOutput pdf = ccbService.gerarPdfCCB(proposal);
 
         return Response.ok(pdf)
                 .header("Content-Disposition", "inline; filename=ccb_proposta_" + id + ".pdf")
@@ -183,16 +238,28 @@ public class LoanProposalController {
     @Produces("application/pdf")
     @RolesAllowed({ "admin", "company", "client" })
     @Operation(summary = "Obter detalhes da CCB (Contrato de Cessão de Crédito)")
-    public Response getCCBDetails(@PathParam("id") Long id) {
+    public Response getCCBDetails(@PathParam("id") Long id, @Context Request request) {
         LoanProposal proposal = loanProposalRepository.findByIdOptional(id)
                 .orElseThrow(() -> new NotFoundException("Proposta não encontrada"));
-        proposal.getInstallments().size(); // força carregar as parcelas
-
-        byte[] pdf = ccbService.getCCBDetails(proposal);
 
-        return Response.ok(pdf)
-                .header("Content-Disposition", "inline; filename=ccb_proposta_" + id + ".pdf")
-                .build();
+        // CCB assinada ou paga não muda mais: o cliente pode revalidar pelo ETag
+        String cacheKey = ccbService.detailsCacheKey(proposal);
+        EntityTag etag = cacheKey != null ? new EntityTag(cacheKey) : null;
+        if (etag != null) {
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.cacheControl(REVALIDATE).build();
+            }
+        }
+
+        StreamingOutput pdf = ccbService.getCCBDetails(proposal);
+
+        Response.ResponseBuilder response = Response.ok(pdf)
+                .header("Content-Disposition", "inline; filename=ccb_proposta_" + id + ".pdf");
+        if (etag != null) {
+            response.tag(etag).cacheControl(REVALIDATE);
+        }
+        return response.build();
     }
 
     @GET
@@ -204,9 +271,7 @@ public class LoanProposalController {
     public Response signCCB(@PathParam("id") Long id) {
         LoanProposal proposal = loanProposalRepository.findByIdOptional(id)
                 .orElseThrow(() -> new NotFoundException("Proposta não encontrada"));
-        proposal.getInstallments().size(); // força carregar as parcelas
-
-        byte[] pdf = ccbService.signCCB(proposal);
+        StreamingOutput pdf = ccbService.signCCB(proposal);
 
         return Response.ok(pdf)
                 .header("Content-Disposition", "inline; filename=ccb_proposta_" + id + ".pdf")
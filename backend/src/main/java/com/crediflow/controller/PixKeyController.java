@@ -5,6 +5,7 @@ import com.crediflow.dto.PixKeyResponseDTO;
 import com.crediflow.entity.PixKey;
 import com.crediflow.enums.PixKeyType;
 import com.crediflow.service.PixKeyService;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
@@ -16,6 +17,7 @@ import java.util.stream.Collectors;
 @Path("/pix-keys")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
+@RunOnVirtualThread
 public class PixKeyController {
 
     @Inject
@@ -1,19 +1,33 @@
 package com.crediflow.controller;
 
+import com.crediflow.dto.BatchTransferRequestDTO;
+import com.crediflow.dto.BatchTransferResultDTO;
+import com.crediflow.dto.CursorPagedResult;
 import com.crediflow.dto.PagedResult;
 import com.crediflow.dto.TransactionRequestDTO;
 import com.crediflow.dto.TransactionResponseDTO;
 import com.crediflow.entity.BankAccount;
 import com.crediflow.entity.Transaction;
+import com.crediflow.enums.StatementFormat;
 import com.crediflow.enums.TransactionStatus;
 import com.crediflow.enums.TransactionType;
 import com.crediflow.repository.TransactionRepository;
+import com.crediflow.service.IdempotencyService;
+import com.crediflow.service.SingleWriterTransferService;
+import com.crediflow.service.StatementService;
 import com.crediflow.service.TransactionPDFService;
 import com.crediflow.service.TransactionService;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -22,8 +36,20 @@ import java.util.stream.Collectors;
 @Path("/transactions")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
+@RunOnVirtualThread
 public class TransactionController {
 
+    // o navegador pode guardar o PDF, mas confirma pelo ETag antes de reutilizá-lo
+    private static final CacheControl REVALIDATE = revalidate();
+
+    private static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        cacheControl.setNoTransform(false);
+        return cacheControl;
+    }
+
     @Inject
     TransactionService transactionService;
 
@@ -33,6 +59,15 @@ public class TransactionController {
     @Inject
     TransactionRepository transactionRepository;
 
+    @Inject
+    StatementService statementService;
+
+    @Inject
+    IdempotencyService idempotencyService;
+
+    @Inject
+    SingleWriterTransferService singleWriterTransferService;
+
     @GET
     public Response listAll() {
         List<TransactionResponseDTO> transactions = transactionService.listAll().stream()
@@ -54,55 +89,110 @@ public class TransactionController {
             @QueryParam("type") TransactionType type,
             @QueryParam("status") TransactionStatus status,
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("10") int size) {
+            @QueryParam("size") @DefaultValue("10") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("includeTotal") @DefaultValue("false") boolean includeTotal,
+            @Context UriInfo uriInfo) {
+        // Com o parâmetro cursor (mesmo vazio, para a primeira página) a paginação é por keyset;
+        // o @QueryParam chega nulo para "cursor=", então a presença é vista na URI
+        if (uriInfo.getQueryParameters().containsKey("cursor")) {
+            CursorPagedResult<TransactionResponseDTO> result = transactionService.searchTransactionsByCursor(
+                    accountId, type, status, cursor, size, includeTotal);
+            return Response.ok(result).build();
+        }
+
         PagedResult<TransactionResponseDTO> result = transactionService.searchTransactions(accountId, type, status,
                 page, size);
         return Response.ok(result).build();
     }
 
+    @GET
+    @Path("/by-account/{accountId}/statement")
+    @Produces({ "application/x-ndjson", "text/csv" })
+    public Response getStatement(
+            @PathParam("accountId") Long accountId,
+            @QueryParam("format") @DefaultValue("jsonl") String format) {
+        StatementFormat statementFormat = StatementFormat.from(format);
+        StreamingOutput body = statementService.export(accountId, statementFormat);
+        return Response.ok(body, statementFormat.getMediaType())
+                .header("Content-Disposition",
+                        "attachment; filename=extrato-" + accountId + "." + statementFormat.getExtension())
+                .build();
+    }
+
     @POST
     @Path("/transfer")
+    @Idempotent
     public Response transfer(TransactionRequestDTO dto) {
-        Transaction tx = transactionService.transfer(
-                dto.fromAccountId,
-                dto.toAccountId,
-                new BigDecimal(dto.amount),
-                TransactionType.valueOf(dto.type),
-                dto.description);
-        return Response.ok(TransactionResponseDTO.fromEntity(tx)).build();
+        // com Idempotency-Key a operação precisa da transação da chave, então fica no caminho com bloqueio
+        if (!idempotencyService.hasKey()
+                && singleWriterTransferService.accepts(dto.fromAccountId, dto.toAccountId)) {
+            return Response.ok(singleWriterTransferService.transfer(
+                    dto.fromAccountId,
+                    dto.toAccountId,
+                    new BigDecimal(dto.amount),
+                    TransactionType.valueOf(dto.type),
+                    dto.description)).build();
+        }
+        TransactionResponseDTO response = idempotencyService.execute("transfer", dto, TransactionResponseDTO.class,
+                () -> TransactionResponseDTO.fromEntity(transactionService.transfer(
+                        dto.fromAccountId,
+                        dto.toAccountId,
+                        new BigDecimal(dto.amount),
+                        TransactionType.valueOf(dto.type),
+                        dto.description)));
+        return Response.ok(response).build();
+    }
+
+    @POST
+    @Path("/batch")
+    public Response transferBatch(BatchTransferRequestDTO dto) {
+        BatchTransferResultDTO result = transactionService.transferBatch(dto.legs);
+        return Response.ok(result).build();
     }
 
     @POST
     @Path("/deposit")
+    @Idempotent
     public Response deposit(TransactionRequestDTO dto) {
-        Transaction tx = transactionService.deposit(
-                dto.toAccountId,
-                new BigDecimal(dto.amount),
-                dto.description);
-        return Response.ok(TransactionResponseDTO.fromEntity(tx)).build();
+        TransactionResponseDTO response = idempotencyService.execute("deposit", dto, TransactionResponseDTO.class,
+                () -> TransactionResponseDTO.fromEntity(transactionService.deposit(
+                        dto.toAccountId,
+                        new BigDecimal(dto.amount),
+                        dto.description)));
+        return Response.ok(response).build();
     }
 
     @POST
     @Path("/payment")
+    @Idempotent
     public Response pay(TransactionRequestDTO dto) {
-        Transaction tx = transactionService.pay(
-                dto.fromAccountId,
-                new BigDecimal(dto.amount),
-                dto.description,
-                TransactionType.valueOf(dto.type));
-        return Response.ok(TransactionResponseDTO.fromEntity(tx)).build();
+        TransactionResponseDTO response = idempotencyService.execute("payment", dto, TransactionResponseDTO.class,
+                () -> TransactionResponseDTO.fromEntity(transactionService.pay(
+                        dto.fromAccountId,
+                        new BigDecimal(dto.amount),
+                        dto.description,
+                        TransactionType.valueOf(dto.type))));
+        return Response.ok(response).build();
     }
 
     @GET
     @Path("/receipt/{id}")
     @Produces("application/pdf")
-    public Response getReceipt(@PathParam("id") Long id) {
+    public Response getReceipt(@PathParam("id") Long id, @Context Request request) {
         Transaction tx = transactionService.getById(id);
         if (tx == null) {
             throw new NotFoundException("Transação não encontrada heheh");
         }
-        byte[] pdf = transactionPDFService.generateReceipt(tx);
+        EntityTag etag = new EntityTag(transactionPDFService.cacheKey(tx));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+        StreamingOutput pdf = transactionPDFService.generateReceipt(tx);
         return Response.ok(pdf)
+                .tag(etag)
+                .cacheControl(REVALIDATE)
                 .header("Content-Disposition", "attachment; filename=comprovante.pdf")
                 .build();
 
@@ -110,30 +200,38 @@ public class TransactionController {
 
     @POST
     @Path("/transfer/agency")
+    @Idempotent
     public Response transferByAgency(TransactionRequestDTO dto) {
-        Transaction tx = transactionService.transferByAgencyAccount(
-                dto.fromAccountId,
-                dto.agencyNumber,
-                dto.accountNumber,
-                new BigDecimal(dto.amount),
-                dto.description);
-        return Response.ok(TransactionResponseDTO.fromEntity(tx)).build();
+        TransactionResponseDTO response = idempotencyService.execute("transfer-agency", dto,
+                TransactionResponseDTO.class,
+                () -> TransactionResponseDTO.fromEntity(transactionService.transferByAgencyAccount(
+                        dto.fromAccountId,
+                        dto.agencyNumber,
+                        dto.accountNumber,
+                        new BigDecimal(dto.amount),
+                        dto.description)));
+        return Response.ok(response).build();
     }
 
     @POST
     @Path("/deposit/agency")
+    @Idempotent
     public Response depositByAgency(TransactionRequestDTO dto) {
-        Transaction tx = transactionService.depositByAgencyAccount(
-                dto.agencyNumber, dto.accountNumber, new BigDecimal(dto.amount), dto.description);
-        return Response.ok(TransactionResponseDTO.fromEntity(tx)).build();
+        TransactionResponseDTO response = idempotencyService.execute("deposit-agency", dto,
+                TransactionResponseDTO.class,
+                () -> TransactionResponseDTO.fromEntity(transactionService.depositByAgencyAccount(
+                        dto.agencyNumber, dto.accountNumber, new BigDecimal(dto.amount), dto.description)));
+        return Response.ok(response).build();
     }
 
     @POST
     @Path("/pix")
+    @Idempotent
     public Response pixTransfer(TransactionRequestDTO dto) {
-        Transaction tx = transactionService.pixTransfer(
-                dto.fromAccountId, dto.pixKey, new BigDecimal(dto.amount), dto.description);
-        return Response.ok(TransactionResponseDTO.fromEntity(tx)).build();
+        TransactionResponseDTO response = idempotencyService.execute("pix", dto, TransactionResponseDTO.class,
+                () -> TransactionResponseDTO.fromEntity(transactionService.pixTransfer(
+                        dto.fromAccountId, dto.pixKey, new BigDecimal(dto.amount), dto.description)));
+        return Response.ok(response).build();
     }
 
    
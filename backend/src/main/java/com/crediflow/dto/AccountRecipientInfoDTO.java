@@ -1,5 +1,7 @@
 package com.crediflow.dto;
 
+import com.crediflow.enums.PixKeyType;
+
 public class AccountRecipientInfoDTO {
     public String name;
     public String agencyNumber;
@@ -14,4 +16,8 @@ public class AccountRecipientInfoDTO {
         this.pixKey = pixKey;
         this.pixKeyType = pixKeyType;
     }
+
+    public AccountRecipientInfoDTO(String name, String agencyNumber, String accountNumber, String pixKey, PixKeyType pixKeyType) {
+        this(name, agencyNumber, accountNumber, pixKey, pixKeyType != null ? pixKeyType.name() : null);
+    }
 }
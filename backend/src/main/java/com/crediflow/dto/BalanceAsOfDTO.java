@@ -0,0 +1,18 @@
+package com.crediflow.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class BalanceAsOfDTO {
+
+    public Long accountId;
+    // saldo considerando as transações anteriores a este instante
+    public LocalDateTime at;
+    public BigDecimal balance;
+
+    public BalanceAsOfDTO(Long accountId, LocalDateTime at, BigDecimal balance) {
+        this.accountId = accountId;
+        this.at = at;
+        this.balance = balance;
+    }
+}
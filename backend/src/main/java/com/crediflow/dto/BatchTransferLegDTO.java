@@ -0,0 +1,8 @@
+package com.crediflow.dto;
+
+public class BatchTransferLegDTO {
+    public Long fromAccountId;
+    public Long toAccountId;
+    public String amount;
+    public String description;
+}
@@ -0,0 +1,24 @@
+package com.crediflow.dto;
+
+public class BatchTransferLegResultDTO {
+    public int index;                // Posição da transferência na requisição
+    public String status;            // COMPLETED ou REJECTED
+    public Long transactionId;       // Preenchido quando concluída
+    public String error;             // Motivo da rejeição
+
+    public static BatchTransferLegResultDTO completed(int index, Long transactionId) {
+        BatchTransferLegResultDTO dto = new BatchTransferLegResultDTO();
+        dto.index = index;
+        dto.status = "COMPLETED";
+        dto.transactionId = transactionId;
+        return dto;
+    }
+
+    public static BatchTransferLegResultDTO rejected(int index, String error) {
+        BatchTransferLegResultDTO dto = new BatchTransferLegResultDTO();
+        dto.index = index;
+        dto.status = "REJECTED";
+        dto.error = error;
+        return dto;
+    }
+}
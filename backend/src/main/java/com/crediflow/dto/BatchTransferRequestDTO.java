@@ -0,0 +1,7 @@
+package com.crediflow.dto;
+
+import java.util.List;
+
+public class BatchTransferRequestDTO {
+    public List<BatchTransferLegDTO> legs;
+}
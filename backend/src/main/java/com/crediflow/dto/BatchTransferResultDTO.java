@@ -0,0 +1,12 @@
+package com.crediflow.dto;
+
+import java.util.List;
+
+public class BatchTransferResultDTO {
+    public int total;
+    public int completed;
+    public int rejected;
+    public long elapsedMillis;
+    public double rowsPerSecond;
+    public List<BatchTransferLegResultDTO> legs;
+}
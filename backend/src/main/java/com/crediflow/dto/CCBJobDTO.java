@@ -0,0 +1,20 @@
+package com.crediflow.dto;
+
+import com.crediflow.enums.CCBJobStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class CCBJobDTO {
+    public String id;
+    public CCBJobStatus status;
+    public int total;
+    public int completed;
+    public int failed;
+    public long zipBytes;
+    public LocalDateTime startedAt;
+    public LocalDateTime finishedAt;
+    public long elapsedMillis;
+    public double documentsPerSecond;
+    public List<String> errors;
+}
@@ -0,0 +1,16 @@
+package com.crediflow.dto;
+
+import com.crediflow.enums.LoanProposalStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Filtro das propostas cujas CCBs entram no ZIP; campos nulos não filtram.
+ * O período ({@code from} e {@code to}, inclusivos) é sobre a data de criação.
+ */
+public class CCBJobRequestDTO {
+    public Long companyId;
+    public LoanProposalStatus status;
+    public LocalDate from;
+    public LocalDate to;
+}
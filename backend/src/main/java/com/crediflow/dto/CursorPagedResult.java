@@ -0,0 +1,35 @@
+package com.crediflow.dto;
+
+import java.util.List;
+
+public class CursorPagedResult<T> {
+    private List<T> items;
+    private String nextCursor;
+    private Long total;
+    private int size;
+
+    public CursorPagedResult(List<T> items, String nextCursor, Long total, int size) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.total = total;
+        this.size = size;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    // null quando não há próxima página
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    // preenchido apenas quando solicitado (includeTotal=true)
+    public Long getTotal() {
+        return total;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,12 @@
+package com.crediflow.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Célula da grade (taxa, prazo, valor) para a qual o cronograma completo deve ser devolvido.
+ */
+public class SimulationGridCellDTO {
+    public BigDecimal rate;
+    public Integer term;
+    public BigDecimal amount;
+}
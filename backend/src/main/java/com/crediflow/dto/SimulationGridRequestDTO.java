@@ -0,0 +1,15 @@
+package com.crediflow.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public class SimulationGridRequestDTO {
+    public List<BigDecimal> rates;          // Taxas mensais
+    public List<Integer> terms;             // Prazos em meses
+    public List<BigDecimal> amounts;        // Valores (financiado ou parcela, conforme o modo)
+    public String modoSimulacao;            // VALOR_FINANCIADO ou VALOR_PARCELA
+    public String amortizationType;         // PRICE (padrão) ou SAC
+    public LocalDate firstInstallmentDate;
+    public List<SimulationGridCellDTO> scheduleFor; // Células que devem trazer as parcelas
+}
@@ -0,0 +1,9 @@
+package com.crediflow.dto;
+
+import java.util.List;
+
+public class SimulationGridResultDTO {
+    public int cells;
+    public long elapsedMillis;
+    public List<SimulationGridRowDTO> rows;
+}
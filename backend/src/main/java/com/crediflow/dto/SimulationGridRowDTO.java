@@ -0,0 +1,17 @@
+package com.crediflow.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class SimulationGridRowDTO {
+    public BigDecimal rate;
+    public Integer term;
+    public BigDecimal amount;
+    public BigDecimal financedAmount;
+    public BigDecimal installmentValue;
+    public BigDecimal totalPayment;
+    public BigDecimal totalInterest;
+    public BigDecimal effectiveMonthlyRate;
+    public BigDecimal effectiveAnnualRate;
+    public List<LoanInstallmentDTO> installments; // Só nas células pedidas em scheduleFor
+}
@@ -0,0 +1,21 @@
+package com.crediflow.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Linha do extrato exportado: valor com sinal do ponto de vista da conta e
+ * saldo acumulado após a transação.
+ */
+public class StatementLineDTO {
+
+    public Long id;
+    public LocalDateTime createdAt;
+    public String type;
+    public String status;
+    public String description;
+    public Long fromAccountId;
+    public Long toAccountId;
+    public BigDecimal amount;
+    public BigDecimal balance;
+}
@@ -0,0 +1,49 @@
+package com.crediflow.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Saldo de fechamento de uma conta em um dia. Só existem linhas para os dias
+ * em que o saldo mudou.
+ */
+@Entity
+@Table(name = "account_balance_snapshots", uniqueConstraints = @UniqueConstraint(
+        name = "uk_balance_snapshot_account_date", columnNames = { "account_id", "snapshotDate" }))
+public class AccountBalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id")
+    private BankAccount account;
+
+    @Column(nullable = false)
+    private LocalDate snapshotDate;
+
+    @Column(nullable = false)
+    private BigDecimal closingBalance;
+
+    private LocalDateTime updatedAt;
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public BankAccount getAccount() { return account; }
+    public void setAccount(BankAccount account) { this.account = account; }
+
+    public LocalDate getSnapshotDate() { return snapshotDate; }
+    public void setSnapshotDate(LocalDate snapshotDate) { this.snapshotDate = snapshotDate; }
+
+    public BigDecimal getClosingBalance() { return closingBalance; }
+    public void setClosingBalance(BigDecimal closingBalance) { this.closingBalance = closingBalance; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
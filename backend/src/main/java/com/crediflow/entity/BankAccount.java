@@ -6,7 +6,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "bank_accounts")
+// Índice (agência, conta) atende a consulta do destinatário digitada no formulário de transferência
+@Table(name = "bank_accounts", indexes = {
+        @Index(name = "idx_bank_accounts_agency_account", columnList = "agencyNumber, accountNumber")
+})
 public class BankAccount {
 
     @Id
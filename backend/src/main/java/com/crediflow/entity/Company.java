@@ -14,9 +14,9 @@ public class Company {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @NotBlank
-    @Column(nullable = false, unique = true)
-    private String keycloakId; // ID do usuário no Keycloak
+    // ID do usuário no Keycloak; fica nulo até a outbox criar o usuário
+    @Column(unique = true)
+    private String keycloakId;
 
     @NotBlank
     @Size(min = 2, max = 100)
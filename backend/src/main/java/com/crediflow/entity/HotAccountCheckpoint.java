@@ -0,0 +1,42 @@
+package com.crediflow.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Ponto de partida da recuperação de uma conta quente: {@code balance} é o
+ * saldo com todas as transações concluídas de {@code createdAt} anterior a
+ * {@code through}. Na subida o saldo é esse mais as transações a partir de
+ * {@code through}.
+ */
+@Entity
+@Table(name = "hot_account_checkpoints")
+public class HotAccountCheckpoint {
+
+    // mesmo id da conta em bank_accounts
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    @Column(nullable = false)
+    private LocalDateTime through;
+
+    private LocalDateTime updatedAt;
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public BigDecimal getBalance() { return balance; }
+    public void setBalance(BigDecimal balance) { this.balance = balance; }
+
+    public LocalDateTime getThrough() { return through; }
+    public void setThrough(LocalDateTime through) { this.through = through; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,73 @@
+package com.crediflow.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resposta de uma operação financeira registrada sob o cabeçalho
+ * Idempotency-Key, gravada na mesma transação da operação. O índice único
+ * (principal, idempotencyKey) faz uma repetição concorrente esperar a original
+ * e depois devolver a mesma resposta.
+ */
+@Entity
+@Table(name = "idempotency_keys", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_idempotency_principal_key", columnNames = { "principal", "idempotencyKey" })
+}, indexes = {
+        @Index(name = "idx_idempotency_expires", columnList = "expiresAt")
+})
+public class IdempotencyKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // usuário autenticado (vazio se anônimo): chaves de clientes diferentes não colidem
+    @Column(nullable = false, length = 100)
+    private String principal;
+
+    @Column(nullable = false, length = 255)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 60)
+    private String endpoint;
+
+    // SHA-256 do endpoint e do corpo: a mesma chave com outra requisição é recusada
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    // resposta em JSON, preenchida ao fim da operação
+    @Column(length = 4000)
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getPrincipal() { return principal; }
+    public void setPrincipal(String principal) { this.principal = principal; }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public String getEndpoint() { return endpoint; }
+    public void setEndpoint(String endpoint) { this.endpoint = endpoint; }
+
+    public String getRequestHash() { return requestHash; }
+    public void setRequestHash(String requestHash) { this.requestHash = requestHash; }
+
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
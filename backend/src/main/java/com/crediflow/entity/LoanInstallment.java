@@ -6,11 +6,15 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "loan_installments")
+@Table(name = "loan_installments", indexes = {
+        @Index(name = "idx_installments_proposal_paid_number", columnList = "proposal_id, paid, number")
+})
 public class LoanInstallment {
 
+    // Sequência com otimizador pooled (em vez de IDENTITY) para as parcelas de uma proposta irem em lote via JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_installments_seq")
+    @SequenceGenerator(name = "loan_installments_seq", sequenceName = "loan_installments_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "loan_proposals")
+@Table(name = "loan_proposals", indexes = {
+        @Index(name = "idx_proposals_customer_status", columnList = "customer_id, status")
+})
 public class LoanProposal {
 
     @Id
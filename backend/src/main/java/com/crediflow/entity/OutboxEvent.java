@@ -0,0 +1,98 @@
+package com.crediflow.entity;
+
+import com.crediflow.enums.OutboxAggregateType;
+import com.crediflow.enums.OutboxOperation;
+import com.crediflow.enums.OutboxStatus;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Alteração pendente no Keycloak, gravada na mesma transação da alteração do
+ * cliente/empresa e aplicada depois pelo KeycloakOutboxDispatcher.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_status_next", columnList = "status, nextAttemptAt"),
+        @Index(name = "idx_outbox_aggregate", columnList = "aggregateType, aggregateId, status")
+})
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxAggregateType aggregateType;
+
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxOperation operation;
+
+    // mesma chave = mesma alteração; impede que ela seja enfileirada duas vezes
+    @Column(nullable = false, unique = true, length = 120)
+    private String idempotencyKey;
+
+    // dados do usuário em JSON
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime processedAt;
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public OutboxAggregateType getAggregateType() { return aggregateType; }
+    public void setAggregateType(OutboxAggregateType aggregateType) { this.aggregateType = aggregateType; }
+
+    public Long getAggregateId() { return aggregateId; }
+    public void setAggregateId(Long aggregateId) { this.aggregateId = aggregateId; }
+
+    public OutboxOperation getOperation() { return operation; }
+    public void setOperation(OutboxOperation operation) { this.operation = operation; }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+
+    public OutboxStatus getStatus() { return status; }
+    public void setStatus(OutboxStatus status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getProcessedAt() { return processedAt; }
+    public void setProcessedAt(LocalDateTime processedAt) { this.processedAt = processedAt; }
+}
@@ -8,18 +8,26 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+// Índices (conta, createdAt, id) atendem a paginação por keyset do extrato em cada lado da transação
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_from_created", columnList = "from_account_id, createdAt, id"),
+        @Index(name = "idx_transactions_to_created", columnList = "to_account_id, createdAt, id")
+})
 public class Transaction {
 
+    // Sequência com otimizador pooled (em vez de IDENTITY) para permitir INSERTs em lote via JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne(optional = false)
+    // depósito e liberação de empréstimo não têm conta de origem
+    @ManyToOne
     @JoinColumn(name = "from_account_id", nullable = true)
     private BankAccount fromAccount;
 
-    @ManyToOne(optional = false)
+    // pagamento e pagamento de parcela não têm conta de destino
+    @ManyToOne
     @JoinColumn(name = "to_account_id", nullable = true)
     private BankAccount toAccount;
 
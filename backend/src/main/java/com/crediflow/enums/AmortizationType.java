@@ -0,0 +1,23 @@
+package com.crediflow.enums;
+
+import com.crediflow.exception.BadRequestException;
+
+public enum AmortizationType {
+    PRICE, // Parcelas fixas (Tabela Price)
+    SAC;   // Amortização constante, parcelas decrescentes
+
+    /**
+     * Tipo informado na requisição; vazio mantém o padrão PRICE.
+     */
+    public static AmortizationType from(String value) {
+        if (value == null || value.isBlank()) {
+            return PRICE;
+        }
+        for (AmortizationType type : values()) {
+            if (type.name().equalsIgnoreCase(value.trim())) {
+                return type;
+            }
+        }
+        throw new BadRequestException("Tipo de amortização inválido. Use 'PRICE' ou 'SAC'.");
+    }
+}
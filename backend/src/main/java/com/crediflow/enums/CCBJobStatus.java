@@ -0,0 +1,7 @@
+package com.crediflow.enums;
+
+public enum CCBJobStatus {
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,11 @@
+package com.crediflow.enums;
+
+/**
+ * Versões do PDF da CCB. Todas usam o mesmo layout; a assinada acrescenta a
+ * linha de assinatura digital.
+ */
+public enum CCBVariant {
+    DRAFT,
+    SIGNED,
+    DETAILS
+}
@@ -0,0 +1,9 @@
+package com.crediflow.enums;
+
+/**
+ * Entidade local dona do usuário do Keycloak.
+ */
+public enum OutboxAggregateType {
+    CUSTOMER,
+    COMPANY
+}
@@ -0,0 +1,10 @@
+package com.crediflow.enums;
+
+/**
+ * Alterações no Keycloak que são aplicadas de forma assíncrona pela outbox.
+ */
+public enum OutboxOperation {
+    CREATE_USER,
+    UPDATE_USER,
+    DELETE_USER
+}
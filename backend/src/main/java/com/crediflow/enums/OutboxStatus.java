@@ -0,0 +1,7 @@
+package com.crediflow.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    DONE,
+    FAILED
+}
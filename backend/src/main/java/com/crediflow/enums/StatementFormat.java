@@ -0,0 +1,33 @@
+package com.crediflow.enums;
+
+import com.crediflow.exception.BadRequestException;
+
+public enum StatementFormat {
+    JSONL("application/x-ndjson", "jsonl"), // Um objeto JSON por linha
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String extension;
+
+    StatementFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static StatementFormat from(String value) {
+        for (StatementFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new BadRequestException("Formato de extrato inválido: " + value);
+    }
+}
@@ -0,0 +1,57 @@
+package com.crediflow.repository;
+
+import com.crediflow.entity.AccountBalanceSnapshot;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@ApplicationScoped
+public class AccountBalanceSnapshotRepository implements PanacheRepository<AccountBalanceSnapshot> {
+
+    /**
+     * Soma {@code delta} ao fechamento do dia; se o dia ainda não tem linha, ela
+     * nasce com {@code seed} (o saldo já com o delta aplicado).
+     */
+    public void addToDay(Long accountId, LocalDate day, BigDecimal delta, BigDecimal seed, LocalDateTime now) {
+        getEntityManager().createNativeQuery(
+                "insert into account_balance_snapshots (account_id, snapshotDate, closingBalance, updatedAt) "
+                        + "values (?1, ?2, ?3, ?4) "
+                        + "on duplicate key update closingBalance = closingBalance + ?5, updatedAt = ?4")
+                .setParameter(1, accountId)
+                .setParameter(2, day)
+                .setParameter(3, seed)
+                .setParameter(4, now)
+                .setParameter(5, delta)
+                .executeUpdate();
+    }
+
+    public void setClosing(Long accountId, LocalDate day, BigDecimal closing, LocalDateTime now) {
+        getEntityManager().createNativeQuery(
+                "insert into account_balance_snapshots (account_id, snapshotDate, closingBalance, updatedAt) "
+                        + "values (?1, ?2, ?3, ?4) "
+                        + "on duplicate key update closingBalance = ?3, updatedAt = ?4")
+                .setParameter(1, accountId)
+                .setParameter(2, day)
+                .setParameter(3, closing)
+                .setParameter(4, now)
+                .executeUpdate();
+    }
+
+    public AccountBalanceSnapshot findLatestBefore(Long accountId, LocalDate day) {
+        return find("account.id = ?1 and snapshotDate < ?2", Sort.by("snapshotDate").descending(), accountId, day)
+                .firstResult();
+    }
+
+    public AccountBalanceSnapshot findEarliestOnOrAfter(Long accountId, LocalDate day) {
+        return find("account.id = ?1 and snapshotDate >= ?2", Sort.by("snapshotDate"), accountId, day)
+                .firstResult();
+    }
+
+    public long deleteByAccount(Long accountId) {
+        return delete("account.id", accountId);
+    }
+}
@@ -1,9 +1,19 @@
 package com.crediflow.repository;
 
+import com.crediflow.dto.AccountRecipientInfoDTO;
 import com.crediflow.entity.BankAccount;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @ApplicationScoped
 public class BankAccountRepository implements PanacheRepository<BankAccount> {
     public BankAccount findByCustomerId(Long customerId) {
@@ -18,13 +28,66 @@ public class BankAccountRepository implements PanacheRepository<BankAccount> {
         return find("agencyNumber = ?1 and accountNumber = ?2", agency, account).firstResult();
     }
 
-    public BankAccount findByPixKey(String key) {
+    /**
+     * Destinatário de uma transferência por agência e conta numa única consulta,
+     * com a primeira chave Pix cadastrada na conta (se houver).
+     */
+    public AccountRecipientInfoDTO findRecipientByAgencyAndAccount(String agency, String account) {
         return getEntityManager()
-                .createQuery("SELECT p.bankAccount FROM PixKey p WHERE p.pixKey = :key", BankAccount.class)
-                .setParameter("key", key)
+                .createQuery("""
+                        SELECT new com.crediflow.dto.AccountRecipientInfoDTO(
+                            c.name, a.agencyNumber, a.accountNumber, p.pixKey, p.keyType)
+                        FROM BankAccount a
+                        LEFT JOIN a.customer c
+                        LEFT JOIN PixKey p ON p.bankAccount = a
+                            AND p.id = (SELECT min(p2.id) FROM PixKey p2 WHERE p2.bankAccount = a)
+                        WHERE a.agencyNumber = :agency AND a.accountNumber = :account
+                        """, AccountRecipientInfoDTO.class)
+                .setParameter("agency", agency)
+                .setParameter("account", account)
                 .getResultStream()
                 .findFirst()
                 .orElse(null);
     }
 
+    /**
+     * Saldo atual das contas informadas; contas inexistentes ficam fora do mapa.
+     */
+    public Map<Long, BigDecimal> findBalances(Collection<Long> ids) {
+        List<Object[]> rows = getEntityManager()
+                .createQuery("select a.id, a.balance from BankAccount a where a.id in :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList();
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (Object[] row : rows) {
+            balances.put((Long) row[0], (BigDecimal) row[1]);
+        }
+        return balances;
+    }
+
+    /**
+     * Ids, entre os informados, de contas que existem.
+     */
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        return new HashSet<>(getEntityManager()
+                .createQuery("select a.id from BankAccount a where a.id in :ids", Long.class)
+                .setParameter("ids", ids)
+                .getResultList());
+    }
+
+    /**
+     * Debita só se o saldo cobrir o valor, num único UPDATE.
+     *
+     * @return false se a conta não existe ou não tem saldo
+     */
+    public boolean debitIfCovered(Long id, BigDecimal amount, LocalDateTime now) {
+        return update("balance = balance - ?1, updatedAt = ?2 where id = ?3 and balance >= ?1", amount, now, id) == 1;
+    }
+
+    /**
+     * @return false se a conta não existe
+     */
+    public boolean credit(Long id, BigDecimal amount, LocalDateTime now) {
+        return update("balance = balance + ?1, updatedAt = ?2 where id = ?3", amount, now, id) == 1;
+    }
 }
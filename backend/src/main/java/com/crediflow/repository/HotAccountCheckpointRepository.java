@@ -0,0 +1,9 @@
+package com.crediflow.repository;
+
+import com.crediflow.entity.HotAccountCheckpoint;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+
+@ApplicationScoped
+public class HotAccountCheckpointRepository implements PanacheRepository<HotAccountCheckpoint> {
+}
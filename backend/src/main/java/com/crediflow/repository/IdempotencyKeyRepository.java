@@ -0,0 +1,32 @@
+package com.crediflow.repository;
+
+import com.crediflow.entity.IdempotencyKey;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+
+import java.time.LocalDateTime;
+
+@ApplicationScoped
+public class IdempotencyKeyRepository implements PanacheRepository<IdempotencyKey> {
+
+    public IdempotencyKey findByKey(String principal, String key) {
+        return find("principal = ?1 and idempotencyKey = ?2", principal, key).firstResult();
+    }
+
+    /**
+     * Como {@link #findByKey}, mas bloqueando o registro sem esperar (FOR UPDATE
+     * NOWAIT): falha se outra transação estiver com a chave.
+     */
+    public IdempotencyKey lockByKeyNoWait(String principal, String key) {
+        return find("principal = ?1 and idempotencyKey = ?2", principal, key)
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .withHint("jakarta.persistence.lock.timeout", 0)
+                .singleResultOptional()
+                .orElse(null);
+    }
+
+    public long deleteExpired(LocalDateTime now) {
+        return delete("expiresAt < ?1", now);
+    }
+}
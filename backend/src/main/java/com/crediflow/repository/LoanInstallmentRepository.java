@@ -1,9 +1,32 @@
 package com.crediflow.repository;
 
+import java.math.BigDecimal;
+
 import com.crediflow.entity.LoanInstallment;
+import com.crediflow.enums.LoanProposalStatus;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
 
 @ApplicationScoped
 public class LoanInstallmentRepository implements PanacheRepository<LoanInstallment> {
+
+    /**
+     * Soma, entre as propostas não canceladas do cliente, o valor da próxima
+     * parcela em aberto (a de menor número) de cada uma. Resolvido no banco pelos
+     * índices (customer_id, status) das propostas e (proposal_id, paid, number)
+     * das parcelas, sem trazer o histórico de parcelas.
+     */
+    public BigDecimal sumNextDueByCustomer(Long customerId) {
+        return getEntityManager().createQuery("""
+                select coalesce(sum(i.value), 0) from LoanInstallment i
+                where i.proposal.customer.id = :customerId
+                  and i.proposal.status <> :canceled
+                  and i.paid = false
+                  and i.number = (select min(n.number) from LoanInstallment n
+                                  where n.proposal = i.proposal and n.paid = false)
+                """, BigDecimal.class)
+                .setParameter("customerId", customerId)
+                .setParameter("canceled", LoanProposalStatus.CANCELED)
+                .getSingleResult();
+    }
 }
@@ -1,8 +1,11 @@
 package com.crediflow.repository;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import com.crediflow.entity.LoanProposal;
+import com.crediflow.enums.LoanProposalStatus;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -18,4 +21,112 @@ public class LoanProposalRepository implements PanacheRepositoryBase<LoanProposa
         LoanProposal proposal = em.find(LoanProposal.class, id);
         return Optional.ofNullable(proposal);
     }
+
+    // tudo que a listagem lê de cada proposta; as associações de Customer são EAGER
+    // e, sem o fetch, cada cliente custaria mais duas consultas
+    private static final String LIST_FETCH = """
+            select p from LoanProposal p
+            join fetch p.customer c
+            join fetch c.company
+            left join fetch c.virtualAccount
+            join fetch p.company
+            """;
+
+    private static final String SEARCH = "(lower(c.name) like :like or c.cpf like :exact or c.email like :exact)";
+
+    public List<LoanProposal> listAllForList() {
+        return em.createQuery(LIST_FETCH + " order by p.id", LoanProposal.class).getResultList();
+    }
+
+    /**
+     * Página da busca por nome (parcial, sem diferenciar maiúsculas), CPF ou e-mail.
+     */
+    public List<LoanProposal> searchForList(String search, int page, int size) {
+        return em.createQuery(LIST_FETCH + " where " + SEARCH + " order by c.id desc", LoanProposal.class)
+                .setParameter("like", "%" + search.toLowerCase() + "%")
+                .setParameter("exact", search)
+                .setFirstResult(page * size)
+                .setMaxResults(size)
+                .getResultList();
+    }
+
+    public long countSearch(String search) {
+        return em.createQuery("select count(p) from LoanProposal p join p.customer c where " + SEARCH, Long.class)
+                .setParameter("like", "%" + search.toLowerCase() + "%")
+                .setParameter("exact", search)
+                .getSingleResult();
+    }
+
+    public List<LoanProposal> findByCustomerForList(Long customerId, int page, int size) {
+        return em.createQuery(LIST_FETCH + " where c.id = :customerId order by p.createdAt desc", LoanProposal.class)
+                .setParameter("customerId", customerId)
+                .setFirstResult(page * size)
+                .setMaxResults(size)
+                .getResultList();
+    }
+
+    /**
+     * Inicializa as parcelas das propostas numa única consulta, em ordem de número.
+     */
+    public void fetchInstallments(List<LoanProposal> proposals) {
+        if (proposals.isEmpty()) {
+            return;
+        }
+        em.createQuery("""
+                select p from LoanProposal p
+                left join fetch p.installments i
+                where p in :proposals
+                order by i.number
+                """, LoanProposal.class)
+                .setParameter("proposals", proposals)
+                .getResultList();
+    }
+
+    /**
+     * Ids das propostas do filtro em ordem de id; parâmetros nulos não filtram.
+     * {@code to} é inclusivo.
+     */
+    public List<Long> findIdsForExport(Long companyId, LoanProposalStatus status, LocalDate from, LocalDate to,
+            int limit) {
+        StringBuilder jpql = new StringBuilder("select p.id from LoanProposal p where 1 = 1");
+        if (companyId != null) {
+            jpql.append(" and p.company.id = :companyId");
+        }
+        if (status != null) {
+            jpql.append(" and p.status = :status");
+        }
+        if (from != null) {
+            jpql.append(" and p.createdAt >= :from");
+        }
+        if (to != null) {
+            jpql.append(" and p.createdAt < :to");
+        }
+        var query = em.createQuery(jpql.append(" order by p.id").toString(), Long.class).setMaxResults(limit);
+        if (companyId != null) {
+            query.setParameter("companyId", companyId);
+        }
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (from != null) {
+            query.setParameter("from", from.atStartOfDay());
+        }
+        if (to != null) {
+            query.setParameter("to", to.plusDays(1).atStartOfDay());
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Carrega a proposta com as parcelas e as chaves Pix do cliente, tudo que a CCB usa.
+     */
+    public Optional<LoanProposal> findForCcb(Long id) {
+        Optional<LoanProposal> proposal = em.createQuery(
+                "select p from LoanProposal p left join fetch p.installments where p.id = :id", LoanProposal.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+        proposal.ifPresent(p -> p.getCustomer().getVirtualAccount().getPixKeys().size());
+        return proposal;
+    }
 }
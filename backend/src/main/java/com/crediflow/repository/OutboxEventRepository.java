@@ -0,0 +1,40 @@
+package com.crediflow.repository;
+
+import com.crediflow.entity.OutboxEvent;
+import com.crediflow.enums.OutboxStatus;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@ApplicationScoped
+public class OutboxEventRepository implements PanacheRepository<OutboxEvent> {
+
+    /**
+     * Eventos vencidos que podem ser aplicados agora: só o mais antigo ainda
+     * pendente de cada cliente/empresa, para que criação, edição e exclusão do
+     * mesmo usuário sejam aplicadas na ordem em que aconteceram.
+     */
+    public List<OutboxEvent> findDispatchable(LocalDateTime now, int limit) {
+        return getEntityManager().createQuery(
+                "select e from OutboxEvent e where e.status = :pending and e.nextAttemptAt <= :now "
+                        + "and not exists (select 1 from OutboxEvent p where p.status = :pending "
+                        + "and p.aggregateType = e.aggregateType and p.aggregateId = e.aggregateId and p.id < e.id) "
+                        + "order by e.id", OutboxEvent.class)
+                .setParameter("pending", OutboxStatus.PENDING)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Reserva o evento até {@code leaseUntil} contando mais uma tentativa. Só
+     * funciona se ninguém o reservou depois da leitura (mesmo número de
+     * tentativas), o que permite mais de uma instância rodando o dispatcher.
+     */
+    public boolean claim(Long id, int seenAttempts, LocalDateTime leaseUntil) {
+        return update("attempts = attempts + 1, nextAttemptAt = ?1 where id = ?2 and attempts = ?3 and status = ?4",
+                leaseUntil, id, seenAttempts, OutboxStatus.PENDING) == 1;
+    }
+}
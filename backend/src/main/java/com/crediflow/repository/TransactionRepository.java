@@ -1,16 +1,22 @@
 package com.crediflow.repository;
 
 import com.crediflow.dto.PagedResult;
-import com.crediflow.entity.BankAccount;
 import com.crediflow.entity.Transaction;
 import com.crediflow.enums.TransactionStatus;
 import com.crediflow.enums.TransactionType;
+import com.crediflow.util.TransactionCursor;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.TypedQuery;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,24 +33,142 @@ public class TransactionRepository implements PanacheRepository<Transaction> {
         StringBuilder query = new StringBuilder("(fromAccount.id = :id or toAccount.id = :id)");
         Map<String, Object> params = new HashMap<>();
         params.put("id", accountId);
+        String filters = appendFilters(params, type, status);
+        query.append(filters);
 
-        if (type != null) {
-            query.append(" and type = :type");
-            params.put("type", type);
+        long total = countByAccount(accountId, type, status);
+
+        List<Transaction> items = find(query.toString(), Sort.by("createdAt").descending(), params)
+                .page(page, size)
+                .list();
+
+        return new PagedResult<>(items, total, page, size);
+    }
+
+    /**
+     * Página por keyset, ordenada por (createdAt, id) decrescente. O OR entre
+     * origem e destino é quebrado em duas consultas, cada uma percorrendo o
+     * índice (conta, createdAt, id) a partir do cursor; o resultado é a união
+     * das duas, como num UNION ALL limitado.
+     *
+     * Retorna até {@code size + 1} itens para que o chamador saiba se há próxima página.
+     */
+    public List<Transaction> searchAfter(Long accountId, TransactionType type, TransactionStatus status,
+            TransactionCursor after, int size) {
+        List<Transaction> sent = seek("fromAccount.id", accountId, type, status, after, size + 1);
+        List<Transaction> received = seek("toAccount.id", accountId, type, status, after, size + 1);
+
+        Map<Long, Transaction> merged = new LinkedHashMap<>();
+        int i = 0;
+        int j = 0;
+        while (merged.size() <= size && (i < sent.size() || j < received.size())) {
+            Transaction next;
+            if (j >= received.size() || (i < sent.size() && KEYSET_ORDER.compare(sent.get(i), received.get(j)) <= 0)) {
+                next = sent.get(i++);
+            } else {
+                next = received.get(j++);
+            }
+            merged.putIfAbsent(next.getId(), next);
         }
+        return new ArrayList<>(merged.values());
+    }
 
-        if (status != null) {
-            query.append(" and status = :status");
-            params.put("status", status);
+    /**
+     * Conta as transações da conta somando as duas faixas de índice em vez de
+     * varrer o histórico com OR; transferências da conta para ela mesma são descontadas.
+     */
+    public long countByAccount(Long accountId, TransactionType type, TransactionStatus status) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", accountId);
+        String filters = appendFilters(params, type, status);
+
+        return count("fromAccount.id = :id" + filters, params)
+                + count("toAccount.id = :id" + filters, params)
+                - count("fromAccount.id = :id and toAccount.id = :id" + filters, params);
+    }
+
+    /**
+     * Créditos menos débitos concluídos da conta com createdAt em [from, to);
+     * limites nulos deixam o intervalo aberto daquele lado.
+     */
+    public BigDecimal netAmountBetween(Long accountId, LocalDateTime from, LocalDateTime to) {
+        StringBuilder query = new StringBuilder(
+                "select coalesce(sum(case when t.toAccount.id = :id then t.amount else 0 end), 0) "
+                        + "- coalesce(sum(case when t.fromAccount.id = :id then t.amount else 0 end), 0) "
+                        + "from Transaction t where (t.fromAccount.id = :id or t.toAccount.id = :id) "
+                        + "and t.status = :status");
+        if (from != null) {
+            query.append(" and t.createdAt >= :from");
+        }
+        if (to != null) {
+            query.append(" and t.createdAt < :to");
+        }
+
+        TypedQuery<BigDecimal> q = getEntityManager().createQuery(query.toString(), BigDecimal.class)
+                .setParameter("id", accountId)
+                .setParameter("status", TransactionStatus.COMPLETED);
+        if (from != null) {
+            q.setParameter("from", from);
+        }
+        if (to != null) {
+            q.setParameter("to", to);
         }
+        BigDecimal net = q.getSingleResult();
+        return net != null ? net : BigDecimal.ZERO;
+    }
 
-        long total = count(query.toString(), params);
+    /**
+     * Movimento líquido concluído da conta agrupado por dia, em ordem cronológica.
+     * Cada linha traz {@code [LocalDate dia, BigDecimal líquido]}.
+     */
+    public List<Object[]> dailyNetAmounts(Long accountId) {
+        return getEntityManager().createQuery(
+                "select cast(t.createdAt as LocalDate), "
+                        + "coalesce(sum(case when t.toAccount.id = :id then t.amount else 0 end), 0) "
+                        + "- coalesce(sum(case when t.fromAccount.id = :id then t.amount else 0 end), 0) "
+                        + "from Transaction t where (t.fromAccount.id = :id or t.toAccount.id = :id) "
+                        + "and t.status = :status "
+                        + "group by cast(t.createdAt as LocalDate) order by cast(t.createdAt as LocalDate)",
+                Object[].class)
+                .setParameter("id", accountId)
+                .setParameter("status", TransactionStatus.COMPLETED)
+                .getResultList();
+    }
 
-        List<Transaction> items = find(query.toString(), Sort.by("createdAt").descending(), params)
-                .page(page, size)
+    private List<Transaction> seek(String accountPath, Long accountId, TransactionType type,
+            TransactionStatus status, TransactionCursor after, int limit) {
+        StringBuilder query = new StringBuilder(accountPath + " = :id");
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", accountId);
+        query.append(appendFilters(params, type, status));
+
+        if (after != null) {
+            query.append(" and (createdAt < :createdAt or (createdAt = :createdAt and id < :lastId))");
+            params.put("createdAt", after.createdAt());
+            params.put("lastId", after.id());
+        }
+
+        return find(query.toString(), Sort.by("createdAt").descending().and("id").descending(), params)
+                .range(0, limit - 1)
                 .list();
+    }
 
-        return new PagedResult<>(items, total, page, size);
+    private String appendFilters(Map<String, Object> params, TransactionType type, TransactionStatus status) {
+        StringBuilder filters = new StringBuilder();
+        if (type != null) {
+            filters.append(" and type = :type");
+            params.put("type", type);
+        }
+
+        if (status != null) {
+            filters.append(" and status = :status");
+            params.put("status", status);
+        }
+        return filters.toString();
     }
 
+    private static final Comparator<Transaction> KEYSET_ORDER = Comparator
+            .comparing(Transaction::getCreatedAt, Comparator.reverseOrder())
+            .thenComparing(Transaction::getId, Comparator.reverseOrder());
+
 }
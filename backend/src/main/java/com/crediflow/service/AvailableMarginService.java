@@ -0,0 +1,108 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.Customer;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.repository.CustomerRepository;
+import com.crediflow.repository.LoanInstallmentRepository;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Margem consignável disponível do cliente: 40% do salário menos a próxima
+ * parcela em aberto de cada proposta não cancelada.
+ *
+ * O comprometido sai de uma única consulta agregada
+ * ({@link LoanInstallmentRepository#sumNextDueByCustomer}) e o resultado fica no
+ * cache {@value #CACHE_NAME} (TTL e tamanho em application.properties). Quem
+ * altera o que entra na conta — parcelas geradas ou pagas, proposta cancelada,
+ * salário — chama {@link #invalidateAfterCommit}, então o TTL só limita o que
+ * mudar por fora da aplicação.
+ */
+@ApplicationScoped
+public class AvailableMarginService {
+
+    public static final String CACHE_NAME = "available-margin";
+
+    private static final BigDecimal MARGIN_RATE = new BigDecimal("0.40");
+
+    @Inject
+    CustomerRepository customerRepository;
+
+    @Inject
+    LoanInstallmentRepository installmentRepository;
+
+    @Inject
+    @CacheName(CACHE_NAME)
+    Cache cache;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    public BigDecimal get(Long customerId) {
+        return cache.get(customerId, this::compute).await().indefinitely();
+    }
+
+    /**
+     * Calcula sem passar pelo cache, para validar uma nova parcela.
+     */
+    public BigDecimal compute(Long customerId) {
+        Customer customer = customerRepository.findByIdOptional(customerId)
+                .orElseThrow(() -> new BadRequestException("Cliente não encontrado"));
+
+        BigDecimal salary = customer.getSalary() != null ? customer.getSalary() : BigDecimal.ZERO;
+        BigDecimal committedMonthly = installmentRepository.sumNextDueByCustomer(customerId);
+        return salary.multiply(MARGIN_RATE).subtract(committedMonthly).max(BigDecimal.ZERO);
+    }
+
+    /**
+     * Descarta a margem dos clientes quando a transação corrente terminar (ou já,
+     * se não houver uma). Invalidar antes do commit deixaria outra requisição
+     * guardar de novo o valor antigo.
+     */
+    public void invalidateAfterCommit(Long... customerIds) {
+        if (synchronizationRegistry.getTransactionKey() == null) {
+            for (Long id : customerIds) {
+                invalidate(id);
+            }
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Long> pending = (Set<Long>) synchronizationRegistry.getResource(AvailableMarginService.class);
+        if (pending == null) {
+            Set<Long> created = new HashSet<>();
+            synchronizationRegistry.putResource(AvailableMarginService.class, created);
+            synchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    // também no rollback: uma leitura dentro da transação pode ter guardado dados não confirmados
+                    created.forEach(AvailableMarginService.this::invalidate);
+                }
+            });
+            pending = created;
+        }
+        for (Long id : customerIds) {
+            if (id != null) {
+                pending.add(id);
+            }
+        }
+    }
+
+    private void invalidate(Long customerId) {
+        if (customerId != null) {
+            cache.invalidate(customerId).await().indefinitely();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.BankAccount;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.exception.ConflictException;
+import com.crediflow.repository.BankAccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.PessimisticLockException;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Ponto único de alteração de saldo das contas.
+ *
+ * Toda operação que movimenta dinheiro bloqueia as contas envolvidas com
+ * SELECT ... FOR UPDATE sempre em ordem crescente de id, de modo que duas
+ * operações concorrentes nunca esperam uma pela outra em ordem inversa
+ * (sem deadlock) e nenhuma atualização de saldo se perde. Contas quentes
+ * não são bloqueadas no banco: o saldo delas é mantido pelo
+ * {@link HotAccountLedger}. Uma conta é bloqueada uma vez por transação; com
+ * o {@link GroupCommitService} várias operações dividem a transação e as
+ * seguintes reaproveitam a instância já bloqueada, com os saldos alterados
+ * pelas anteriores. Como o grupo mantém todos os bloqueios até o commit, nele
+ * uma conta só é bloqueada se tiver id maior que todas as já bloqueadas e sem
+ * esperar por outra transação; do contrário a operação sai do grupo
+ * ({@link GroupLockUnavailable}).
+ */
+@ApplicationScoped
+public class BalanceMutationService {
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    HotAccountLedger hotAccountLedger;
+
+    @Inject
+    BalanceSnapshotService balanceSnapshotService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    @ConfigProperty(name = "crediflow.balance.lock-timeout-ms", defaultValue = "2000")
+    int lockTimeoutMs;
+
+    @ConfigProperty(name = "crediflow.balance.lock-retries", defaultValue = "3")
+    int lockRetries;
+
+    Counter locksAcquired;
+    Counter lockRetriesCounter;
+    Counter lockFailures;
+
+    @PostConstruct
+    void initMetrics() {
+        locksAcquired = registry.counter("crediflow.balance.locks.acquired");
+        lockRetriesCounter = registry.counter("crediflow.balance.locks.retries");
+        lockFailures = registry.counter("crediflow.balance.locks.failures");
+    }
+
+    /**
+     * Bloqueia as contas informadas em ordem crescente de id e devolve as
+     * entidades já recarregadas do banco. Ids nulos ou repetidos são ignorados;
+     * contas inexistentes não aparecem no mapa retornado.
+     */
+    public Map<Long, BankAccount> lockAll(Long... ids) {
+        Long[] ordered = Arrays.stream(ids)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .toArray(Long[]::new);
+
+        EntityManager em = bankAccountRepository.getEntityManager();
+        LockedAccounts lockedBefore = lockedInTransaction();
+        Map<Long, BankAccount> locked = new LinkedHashMap<>();
+        for (Long id : ordered) {
+            BankAccount account;
+            if (hotAccountLedger.isHot(id)) {
+                account = em.getReference(BankAccount.class, id);
+            } else if (lockedBefore.ids.contains(id)) {
+                // um novo refresh descartaria o que a transação já alterou e ainda não gravou
+                account = em.find(BankAccount.class, id);
+            } else {
+                if (lockedBefore.group && lockedBefore.highest != null && id < lockedBefore.highest) {
+                    throw new GroupLockUnavailable(id, true);
+                }
+                account = lockedBefore.group ? lockInGroup(id) : lockWithRetry(id);
+                // mesmo sem linha o SELECT ... FOR UPDATE pode bloquear o intervalo do índice
+                lockedBefore.highest = id;
+                if (account != null) {
+                    lockedBefore.ids.add(id);
+                }
+            }
+            if (account != null) {
+                locked.put(id, account);
+            }
+        }
+        return locked;
+    }
+
+    public BankAccount lock(Long id) {
+        return id == null ? null : lockAll(id).get(id);
+    }
+
+    public void debit(BankAccount account, BigDecimal amount) {
+        if (hotAccountLedger.isHot(account.getId())) {
+            hotAccountLedger.debit(account.getId(), amount);
+            return;
+        }
+        if (account.getBalance().compareTo(amount) < 0) {
+            throw new BadRequestException("Saldo insuficiente");
+        }
+        account.setBalance(account.getBalance().subtract(amount));
+        account.setUpdatedAt(LocalDateTime.now());
+        balanceSnapshotService.record(account, amount.negate());
+    }
+
+    public void credit(BankAccount account, BigDecimal amount) {
+        if (hotAccountLedger.isHot(account.getId())) {
+            hotAccountLedger.credit(account.getId(), amount);
+            return;
+        }
+        account.setBalance(account.getBalance().add(amount));
+        account.setUpdatedAt(LocalDateTime.now());
+        balanceSnapshotService.record(account, amount);
+    }
+
+    /**
+     * A conta não pode ser bloqueada na transação de grupo: tem id menor que uma
+     * já bloqueada ({@code outOfOrder}) ou está bloqueada por outra transação.
+     * Também usada pelo {@link IdempotencyService} quando a Idempotency-Key já
+     * existe ou está em uso. O {@link GroupCommitService} tira a operação do grupo.
+     */
+    public static final class GroupLockUnavailable extends RuntimeException {
+        private final boolean outOfOrder;
+
+        GroupLockUnavailable(Long accountId, boolean outOfOrder) {
+            this("Conta " + accountId + (outOfOrder ? " fora da ordem de bloqueio do grupo" : " em uso"), outOfOrder);
+        }
+
+        GroupLockUnavailable(String message) {
+            this(message, false);
+        }
+
+        private GroupLockUnavailable(String message, boolean outOfOrder) {
+            super(message, null, false, false);
+            this.outOfOrder = outOfOrder;
+        }
+
+        public boolean isOutOfOrder() {
+            return outOfOrder;
+        }
+    }
+
+    /**
+     * Marca a transação corrente como transação de grupo.
+     */
+    void startGroupTransaction() {
+        lockedInTransaction().group = true;
+    }
+
+    /**
+     * Se a transação corrente é uma transação de grupo.
+     */
+    boolean inGroupTransaction() {
+        return synchronizationRegistry.getTransactionKey() != null && lockedInTransaction().group;
+    }
+
+    private static final class LockedAccounts {
+        final Set<Long> ids = new HashSet<>();
+        boolean group;
+        // maior id já bloqueado (ou tentado) na transação
+        Long highest;
+    }
+
+    private LockedAccounts lockedInTransaction() {
+        if (synchronizationRegistry.getTransactionKey() == null) {
+            return new LockedAccounts();
+        }
+        LockedAccounts locked = (LockedAccounts) synchronizationRegistry.getResource(LockedAccounts.class);
+        if (locked == null) {
+            locked = new LockedAccounts();
+            synchronizationRegistry.putResource(LockedAccounts.class, locked);
+        }
+        return locked;
+    }
+
+    private BankAccount lockWithRetry(Long id) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                BankAccount account = lockOne(id, lockTimeoutMs);
+                locksAcquired.increment();
+                return account;
+            } catch (EntityNotFoundException e) {
+                return null;
+            } catch (LockTimeoutException | PessimisticLockException e) {
+                // No MySQL o timeout de lock desfaz apenas o comando, então dá para tentar de novo
+                if (attempt >= lockRetries || e instanceof PessimisticLockException) {
+                    lockFailures.increment();
+                    throw new ConflictException("Conta em uso por outra operação, tente novamente");
+                }
+                lockRetriesCounter.increment();
+            }
+        }
+    }
+
+    // a thread do grupo não espera (FOR UPDATE NOWAIT): uma conta disputada seguraria todas as movimentações
+    private BankAccount lockInGroup(Long id) {
+        try {
+            BankAccount account = lockOne(id, 0);
+            locksAcquired.increment();
+            return account;
+        } catch (EntityNotFoundException e) {
+            return null;
+        } catch (LockTimeoutException | PessimisticLockException e) {
+            throw new GroupLockUnavailable(id, false);
+        }
+    }
+
+    private BankAccount lockOne(Long id, int timeoutMs) {
+        EntityManager em = bankAccountRepository.getEntityManager();
+        // refresh garante que a instância (mesmo se já carregada na sessão) reflita o saldo bloqueado
+        BankAccount account = em.getReference(BankAccount.class, id);
+        em.refresh(account, LockModeType.PESSIMISTIC_WRITE,
+                Map.of("jakarta.persistence.lock.timeout", timeoutMs));
+        return account;
+    }
+}
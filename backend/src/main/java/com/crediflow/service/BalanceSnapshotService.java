@@ -0,0 +1,187 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.AccountBalanceSnapshot;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.exception.ConflictException;
+import com.crediflow.exception.NotFoundException;
+import com.crediflow.repository.AccountBalanceSnapshotRepository;
+import com.crediflow.repository.BankAccountRepository;
+import com.crediflow.repository.TransactionRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fechamento diário de saldo por conta ({@code account_balance_snapshots}).
+ *
+ * Cada alteração de saldo feita pelo {@link BalanceMutationService} é somada
+ * ao fechamento do dia na mesma transação, logo antes do commit e com a conta
+ * ainda bloqueada; contas quentes têm o fechamento gravado pelo flush do
+ * {@link HotAccountLedger}. O saldo em uma data parte do fechamento mais
+ * próximo e soma só as transações entre ele e a data pedida.
+ */
+@ApplicationScoped
+public class BalanceSnapshotService {
+
+    private static final Logger LOG = Logger.getLogger(BalanceSnapshotService.class);
+
+    @Inject
+    AccountBalanceSnapshotRepository snapshotRepository;
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    TransactionRepository transactionRepository;
+
+    @Inject
+    BalanceMutationService balanceMutationService;
+
+    @Inject
+    HotAccountLedger hotAccountLedger;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "balance-snapshot-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+
+    /**
+     * Registra a variação de saldo da conta na transação corrente. As variações
+     * são acumuladas por conta e gravadas uma única vez, antes do commit, com um
+     * upsert por conta.
+     */
+    void record(BankAccount account, BigDecimal delta) {
+        PendingDeltas pending = (PendingDeltas) synchronizationRegistry.getResource(PendingDeltas.class);
+        if (pending == null) {
+            PendingDeltas created = new PendingDeltas();
+            synchronizationRegistry.putResource(PendingDeltas.class, created);
+            snapshotRepository.getEntityManager().unwrap(SessionImplementor.class)
+                    .getActionQueue()
+                    .registerProcess(session -> write(created));
+            pending = created;
+        }
+        pending.add(account, delta);
+    }
+
+    private void write(PendingDeltas pending) {
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+        pending.deltas.forEach((account, delta) -> snapshotRepository.addToDay(account.getId(), today, delta,
+                account.getBalance(), now));
+    }
+
+    /**
+     * Saldo da conta considerando as transações com createdAt anterior a {@code at}.
+     */
+    public BigDecimal balanceAsOf(Long accountId, LocalDateTime at) {
+        BankAccount account = bankAccountRepository.findById(accountId);
+        if (account == null) {
+            throw new NotFoundException("Conta não encontrada");
+        }
+
+        LocalDate day = at.toLocalDate();
+        AccountBalanceSnapshot before = snapshotRepository.findLatestBefore(accountId, day);
+        if (before != null) {
+            LocalDateTime closedAt = before.getSnapshotDate().plusDays(1).atStartOfDay();
+            return before.getClosingBalance().add(transactionRepository.netAmountBetween(accountId, closedAt, at));
+        }
+
+        // sem fechamento anterior: volta a partir do primeiro fechamento posterior ou do saldo atual
+        AccountBalanceSnapshot after = snapshotRepository.findEarliestOnOrAfter(accountId, day);
+        if (after != null) {
+            LocalDateTime closedAt = after.getSnapshotDate().plusDays(1).atStartOfDay();
+            return after.getClosingBalance().subtract(transactionRepository.netAmountBetween(accountId, at, closedAt));
+        }
+        return hotAccountLedger.balanceOf(account).subtract(transactionRepository.netAmountBetween(accountId, at, null));
+    }
+
+    /**
+     * Reconstrói os fechamentos de uma conta a partir de {@code transactions},
+     * com a conta bloqueada. O saldo de abertura é o saldo atual menos o
+     * movimento líquido de todo o histórico.
+     *
+     * @return quantidade de dias gravados
+     */
+    @Transactional
+    public int backfill(Long accountId) {
+        BankAccount account = balanceMutationService.lock(accountId);
+        if (account == null) {
+            throw new NotFoundException("Conta não encontrada");
+        }
+
+        List<Object[]> days = transactionRepository.dailyNetAmounts(accountId);
+        BigDecimal balance = hotAccountLedger.balanceOf(account);
+        for (Object[] row : days) {
+            balance = balance.subtract((BigDecimal) row[1]);
+        }
+
+        snapshotRepository.deleteByAccount(accountId);
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : days) {
+            balance = balance.add((BigDecimal) row[1]);
+            snapshotRepository.setClosing(accountId, (LocalDate) row[0], balance, now);
+        }
+        return days.size();
+    }
+
+    /**
+     * Dispara em segundo plano o backfill de todas as contas, uma transação por conta.
+     */
+    public void startBackfillAll() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            throw new ConflictException("Backfill de saldos já está em execução");
+        }
+        backfillExecutor.submit(() -> {
+            try {
+                List<Long> ids = QuarkusTransaction.requiringNew().call(() -> bankAccountRepository.getEntityManager()
+                        .createQuery("select a.id from BankAccount a order by a.id", Long.class)
+                        .getResultList());
+                int snapshots = 0;
+                for (Long id : ids) {
+                    try {
+                        snapshots += QuarkusTransaction.requiringNew().call(() -> backfill(id));
+                    } catch (RuntimeException e) {
+                        LOG.errorf(e, "Falha no backfill de saldos da conta %d", id);
+                    }
+                }
+                LOG.infof("Backfill de saldos concluído: %d contas, %d fechamentos", ids.size(), snapshots);
+            } finally {
+                backfillRunning.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    private static final class PendingDeltas {
+        // a instância gerenciada da conta dá o saldo final da transação para criar a linha do dia
+        final Map<BankAccount, BigDecimal> deltas = new LinkedHashMap<>();
+
+        void add(BankAccount account, BigDecimal delta) {
+            deltas.merge(account, delta, BigDecimal::add);
+        }
+    }
+}
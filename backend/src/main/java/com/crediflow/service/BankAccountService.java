@@ -4,29 +4,49 @@ import com.crediflow.dto.AccountRecipientInfoDTO;
 import com.crediflow.dto.BankAccountResponseDTO;
 import com.crediflow.entity.BankAccount;
 import com.crediflow.entity.Customer;
-import com.crediflow.entity.PixKey;
 import com.crediflow.exception.BadRequestException;
 import com.crediflow.exception.ConflictException;
 import com.crediflow.repository.BankAccountRepository;
 import com.crediflow.repository.CustomerRepository;
 
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.Random;
 
 @ApplicationScoped
 public class BankAccountService {
 
+    // destinatário por agência/conta, consultado a cada tecla no formulário de transferência
+    public static final String RECIPIENT_CACHE = "account-recipient";
+
     @Inject
     BankAccountRepository bankAccountRepository;
 
     @Inject
     CustomerRepository customerRepository;
 
+    @Inject
+    BalanceMutationService balanceMutationService;
+
+    @Inject
+    PixDirectory pixDirectory;
+
+    @Inject
+    @CacheName(RECIPIENT_CACHE)
+    Cache recipientCache;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
     @Transactional
     public BankAccount createAccountForCustomer(Long customerId) {
         Customer customer = customerRepository.findById(customerId);
@@ -46,6 +66,8 @@ public class BankAccountService {
         account.setCreatedAt(LocalDateTime.now());
 
         bankAccountRepository.persist(account);
+        // a busca pode ter guardado "não encontrada" para esse número
+        invalidateRecipientAfterCommit(account);
 
         return account;
     }
@@ -70,6 +92,8 @@ public class BankAccountService {
         }
 
         bankAccountRepository.delete(account);
+        pixDirectory.evictAccountAfterCommit(accountId);
+        invalidateRecipientAfterCommit(account);
     }
 
     public BankAccount getAccountById(Long accountId) {
@@ -77,13 +101,13 @@ public class BankAccountService {
     }
 
     // Método utilitário (privado) usado apenas internamente
+    @Transactional
     public void changeBalance(BankAccount account, BigDecimal delta) {
         if (account == null) {
             throw new BadRequestException("Conta bancária não encontrada");
         }
-        account.setBalance(account.getBalance().add(delta));
-        account.setUpdatedAt(LocalDateTime.now());
-        bankAccountRepository.persist(account);
+        BankAccount locked = balanceMutationService.lock(account.getId());
+        balanceMutationService.credit(locked, delta);
     }
 
     public BankAccount updateAccount(BankAccount account) {
@@ -92,51 +116,74 @@ public class BankAccountService {
             throw new BadRequestException("Conta bancária não encontrada");
         }
 
+        invalidateRecipientAfterCommit(existingAccount);
         existingAccount.setAccountNumber(account.getAccountNumber());
         existingAccount.setAgencyNumber(account.getAgencyNumber());
         existingAccount.setUpdatedAt(LocalDateTime.now());
         bankAccountRepository.persist(existingAccount);
+        pixDirectory.evictAccountAfterCommit(existingAccount.getId());
+        invalidateRecipientAfterCommit(existingAccount);
 
         return existingAccount;
     }
 
 
+    /**
+     * Uma consulta com projeção (conta, titular e primeira chave Pix), guardada no
+     * cache {@value #RECIPIENT_CACHE} — inclusive quando a conta não existe, o caso
+     * comum enquanto o número ainda está sendo digitado.
+     */
     public AccountRecipientInfoDTO findRecipientByAgencyAndAccount(String agency, String account) {
-        BankAccount accountFound = bankAccountRepository.findByAgencyAndAccount(agency, account);
-        if (accountFound == null) {
-            throw new BadRequestException("Conta bancária não encontrada");
-        }
+        Optional<AccountRecipientInfoDTO> recipient = recipientCache
+            .get(recipientKey(agency, account),
+                key -> Optional.ofNullable(bankAccountRepository.findRecipientByAgencyAndAccount(agency, account)))
+            .await().indefinitely();
+        return recipient.orElseThrow(() -> new BadRequestException("Conta bancária não encontrada"));
+    }
 
-        PixKey pix = accountFound.getPixKeys() != null && !accountFound.getPixKeys().isEmpty()
-            ? accountFound.getPixKeys().get(0)
-            : null;
+    /**
+     * Descarta o destinatário da conta, com a agência e o número que ela tem agora,
+     * quando a transação corrente terminar (ou já, se não houver uma). Chamado por
+     * quem altera conta, titular ou chaves Pix.
+     */
+    public void invalidateRecipientAfterCommit(BankAccount account) {
+        if (account == null) {
+            return;
+        }
+        String key = recipientKey(account.getAgencyNumber(), account.getAccountNumber());
+        if (synchronizationRegistry.getTransactionKey() == null) {
+            recipientCache.invalidate(key).await().indefinitely();
+            return;
+        }
+        synchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                // também no rollback: uma busca dentro da transação pode ter guardado dados não confirmados
+                recipientCache.invalidate(key).await().indefinitely();
+            }
+        });
+    }
 
-        return new AccountRecipientInfoDTO(
-            accountFound.getCustomer().getName(),
-            accountFound.getAgencyNumber(),
-            accountFound.getAccountNumber(),
-            pix != null ? pix.getKey() : null,
-            pix != null ? pix.getKeyType().name() : null
-        );
+    private static String recipientKey(String agency, String account) {
+        return agency + "/" + account;
     }
 
     public AccountRecipientInfoDTO findRecipientByPixKey(String pixKey) {
-        BankAccount account = bankAccountRepository.findByPixKey(pixKey);
-        if (account == null) {
+        PixDirectory.Entry entry = pixDirectory.find(pixKey);
+        if (entry == null) {
             throw new BadRequestException("Conta bancária não encontrada");
         }
 
-        PixKey pix = account.getPixKeys().stream()
-            .filter(p -> p.getKey().equals(pixKey))
-            .findFirst()
-            .orElse(null);
-
         return new AccountRecipientInfoDTO(
-            account.getCustomer().getName(),
-            account.getAgencyNumber(),
-            account.getAccountNumber(),
-            pix != null ? pix.getKey() : null,
-            pix != null ? pix.getKeyType().name() : null
+            entry.holderName(),
+            entry.agencyNumber(),
+            entry.accountNumber(),
+            pixKey,
+            entry.keyType().name()
         );
     }
 
@@ -0,0 +1,336 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.CCBJobDTO;
+import com.crediflow.dto.CCBJobRequestDTO;
+import com.crediflow.entity.Company;
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.enums.CCBJobStatus;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.exception.ConflictException;
+import com.crediflow.exception.NotFoundException;
+import com.crediflow.repository.LoanProposalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import io.quarkus.security.identity.SecurityIdentity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Geração em lote das CCBs de um conjunto de propostas num único ZIP.
+ *
+ * O job só guarda os ids das propostas do filtro; cada CCB é carregada e
+ * renderizada por uma das {@code crediflow.ccb-jobs.parallelism} threads do
+ * pool (compartilhado entre os jobs, já que renderizar é CPU) e gravada como
+ * entrada do ZIP em disco assim que fica pronta, então a memória usada não
+ * depende do tamanho do lote. Uma proposta que falha é registrada no job e não
+ * interrompe as demais. Os jobs vivem em memória e, com os arquivos, são
+ * descartados depois de {@code crediflow.ccb-jobs.retention}.
+ *
+ * Uma empresa só exporta as próprias propostas, qualquer que seja o filtro, e
+ * cada job só é visto e baixado por quem o iniciou.
+ */
+@ApplicationScoped
+public class CCBJobService {
+
+    private static final Logger LOG = Logger.getLogger(CCBJobService.class);
+
+    private static final int MAX_ERRORS = 50;
+
+    @Inject
+    LoanProposalRepository loanProposalRepository;
+
+    @Inject
+    CCBService ccbService;
+
+    @Inject
+    CompanyService companyService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    SecurityIdentity securityIdentity;
+
+    @Inject
+    JsonWebToken jwt;
+
+    @ConfigProperty(name = "crediflow.ccb-jobs.dir")
+    Path dir;
+
+    @ConfigProperty(name = "crediflow.ccb-jobs.parallelism", defaultValue = "0")
+    int parallelism;
+
+    @ConfigProperty(name = "crediflow.ccb-jobs.max-proposals", defaultValue = "10000")
+    int maxProposals;
+
+    @ConfigProperty(name = "crediflow.ccb-jobs.retention", defaultValue = "24h")
+    Duration retention;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private ExecutorService renderers;
+    private ExecutorService coordinators;
+
+    Counter documents;
+    Counter failures;
+    Timer renderTimer;
+
+    @PostConstruct
+    void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        renderers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ccb-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        coordinators = Executors.newVirtualThreadPerTaskExecutor();
+
+        documents = registry.counter("crediflow.ccb.jobs.documents", "outcome", "success");
+        failures = registry.counter("crediflow.ccb.jobs.documents", "outcome", "failure");
+        renderTimer = registry.timer("crediflow.ccb.jobs.render");
+        registry.gauge("crediflow.ccb.jobs.running", Tags.empty(), jobs,
+                all -> all.values().stream().filter(job -> job.status == CCBJobStatus.RUNNING).count());
+
+        try {
+            Files.createDirectories(dir);
+            // os jobs não sobrevivem a um restart, então os arquivos que sobraram não têm dono
+            try (Stream<Path> leftovers = Files.list(dir)) {
+                for (Path file : leftovers.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível preparar o diretório dos jobs de CCB " + dir, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        coordinators.shutdownNow();
+        renderers.shutdownNow();
+    }
+
+    public CCBJobDTO start(CCBJobRequestDTO filter) {
+        if (filter == null) {
+            filter = new CCBJobRequestDTO();
+        }
+        if (filter.from != null && filter.to != null && filter.from.isAfter(filter.to)) {
+            throw new BadRequestException("Data inicial posterior à data final");
+        }
+        if (securityIdentity.hasRole("company") && !securityIdentity.hasRole("admin")) {
+            Company company = companyService.findByKeycloakId(jwt.getSubject())
+                    .orElseThrow(() -> new BadRequestException("Empresa não encontrada"));
+            filter.companyId = company.getId();
+        }
+
+        List<Long> ids = loanProposalRepository.findIdsForExport(filter.companyId, filter.status, filter.from,
+                filter.to, maxProposals + 1);
+        if (ids.size() > maxProposals) {
+            throw new BadRequestException("O filtro seleciona mais de " + maxProposals + " propostas");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), jwt.getSubject(), ids);
+        jobs.put(job.id, job);
+        coordinators.execute(() -> run(job));
+        LOG.infof("Job de CCB %s iniciado com %d propostas", job.id, ids.size());
+        return job.toDTO();
+    }
+
+    public CCBJobDTO get(String id) {
+        return find(id).toDTO();
+    }
+
+    /**
+     * ZIP de um job concluído, lido do disco conforme é enviado.
+     */
+    public StreamingOutput download(String id) {
+        Job job = find(id);
+        if (job.status != CCBJobStatus.DONE) {
+            throw new ConflictException("Job ainda não concluído (" + job.status + ")");
+        }
+        Path zip = zipPath(job);
+        return output -> Files.copy(zip, output);
+    }
+
+    private Job find(String id) {
+        Job job = jobs.get(id);
+        // o job de outro usuário responde como inexistente
+        if (job == null || !job.owner.equals(jwt.getSubject())) {
+            throw new NotFoundException("Job não encontrado");
+        }
+        return job;
+    }
+
+    private void run(Job job) {
+        Path part = dir.resolve(job.id + ".zip.part");
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(part),
+                64 * 1024))) {
+            // o conteúdo dos PDFs já é comprimido; compressão mais forte só gastaria CPU
+            zip.setLevel(Deflater.BEST_SPEED);
+
+            CountDownLatch pending = new CountDownLatch(job.ids.size());
+            for (Long proposalId : job.ids) {
+                renderers.execute(() -> {
+                    try {
+                        renderInto(job, proposalId, zip);
+                    } finally {
+                        pending.countDown();
+                    }
+                });
+            }
+            pending.await();
+            zip.finish();
+            zip.flush();
+            job.zipBytes.set(Files.size(part));
+            Files.move(part, zipPath(job), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            job.finish(CCBJobStatus.DONE);
+            LOG.infof("Job de CCB %s concluído: %d CCBs, %d falhas", job.id, job.completed.get(), job.failed.get());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            LOG.errorf(e, "Job de CCB %s falhou", job.id);
+            job.error("job: " + e.getMessage());
+            job.finish(CCBJobStatus.FAILED);
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+                // removido na próxima limpeza ou no próximo restart
+            }
+        }
+    }
+
+    private void renderInto(Job job, Long proposalId, ZipOutputStream zip) {
+        try {
+            // a transação só cobre a leitura; a proposta sai com tudo que a CCB usa já carregado
+            LoanProposal proposal = QuarkusTransaction.requiringNew()
+                    .call(() -> loanProposalRepository.findForCcb(proposalId).orElse(null));
+            if (proposal == null) {
+                throw new NotFoundException("Proposta não encontrada");
+            }
+
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream(32 * 1024);
+            renderTimer.record(() -> ccbService.renderForExport(proposal, pdf));
+
+            synchronized (zip) {
+                zip.putNextEntry(new ZipEntry("ccb_proposta_" + proposalId + ".pdf"));
+                pdf.writeTo(zip);
+                zip.closeEntry();
+            }
+            job.completed.incrementAndGet();
+            documents.increment();
+        } catch (Exception e) {
+            LOG.warnf("Job de CCB %s: falha na proposta %d: %s", job.id, proposalId, e.getMessage());
+            job.failed.incrementAndGet();
+            job.error("proposta " + proposalId + ": " + e.getMessage());
+            failures.increment();
+        }
+    }
+
+    private Path zipPath(Job job) {
+        return dir.resolve(job.id + ".zip");
+    }
+
+    @Scheduled(every = "1h", delayed = "1h")
+    void purgeExpired() {
+        LocalDateTime limit = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(limit)) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(zipPath(job));
+            } catch (IOException e) {
+                LOG.warnf("Não foi possível remover o ZIP do job %s: %s", job.id, e.getMessage());
+            }
+            return true;
+        });
+    }
+
+    private static final class Job {
+        final String id;
+        final String owner;
+        final List<Long> ids;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final long startNanos = System.nanoTime();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong zipBytes = new AtomicLong();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        volatile CCBJobStatus status = CCBJobStatus.RUNNING;
+        volatile LocalDateTime finishedAt;
+        volatile long elapsedNanos;
+
+        Job(String id, String owner, List<Long> ids) {
+            this.id = id;
+            this.owner = owner;
+            this.ids = ids;
+        }
+
+        void error(String message) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(message);
+            }
+        }
+
+        void finish(CCBJobStatus finalStatus) {
+            elapsedNanos = System.nanoTime() - startNanos;
+            finishedAt = LocalDateTime.now();
+            status = finalStatus;
+        }
+
+        CCBJobDTO toDTO() {
+            CCBJobDTO dto = new CCBJobDTO();
+            dto.id = id;
+            dto.status = status;
+            dto.total = ids.size();
+            dto.completed = completed.get();
+            dto.failed = failed.get();
+            dto.zipBytes = zipBytes.get();
+            dto.startedAt = startedAt;
+            dto.finishedAt = finishedAt;
+            long elapsed = status == CCBJobStatus.RUNNING ? System.nanoTime() - startNanos : elapsedNanos;
+            dto.elapsedMillis = elapsed / 1_000_000;
+            dto.documentsPerSecond = elapsed > 0 ? dto.completed / (elapsed / 1e9) : 0;
+            synchronized (errors) {
+                dto.errors = List.copyOf(errors);
+            }
+            return dto;
+        }
+    }
+}
@@ -1,594 +1,453 @@
 package com.crediflow.service;
 
+import com.crediflow.entity.Customer;
 import com.crediflow.entity.LoanInstallment;
 import com.crediflow.entity.LoanProposal;
+import com.crediflow.entity.PixKey;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
 import com.lowagie.text.pdf.draw.LineSeparator;
+import com.crediflow.enums.CCBVariant;
 import com.crediflow.enums.LoanProposalStatus;
 import com.crediflow.exception.BadRequestException;
 
 import jakarta.enterprise.context.ApplicationScoped;
-
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import java.awt.Color;
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.format.DateTimeFormatter;
-import java.util.stream.Stream;
-
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Geração da CCB em PDF. Rascunho, CCB assinada e detalhes passam pelo mesmo
+ * {@link #render}: as partes fixas (fontes, cores, textos legais e a lista de
+ * campos de cada quadro) são montadas uma vez, na carga da classe, e por
+ * documento só são preenchidos os valores da proposta e o cronograma.
+ */
 @ApplicationScoped
 public class CCBService {
 
-    private Paragraph lineSpacing(float antes, float depois) {
-        LineSeparator line = new LineSeparator();
-        Chunk chunk = new Chunk(line);
-        Paragraph paragraph = new Paragraph(chunk);
-        paragraph.setSpacingBefore(antes);
-        paragraph.setSpacingAfter(depois);
-        return paragraph;
-    }
-
-    private String gerarCodigoAleatorio() {
-        StringBuilder codigo = new StringBuilder();
-        for (int i = 0; i < 10; i++) {
-            int digito = (int) (Math.random() * 10);
-            codigo.append(digito);
-        }
-        return codigo.toString();
+    private static final Color SECTION_COLOR = new Color(0, 70, 130);
+    private static final Color LABEL_BACKGROUND = new Color(240, 240, 240);
+    private static final Color HEADER_BACKGROUND = new Color(230, 230, 250);
+
+    private static final Font TITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, Color.BLACK);
+    private static final Font SECTION_TITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, SECTION_COLOR);
+    private static final Font NORMAL_FONT = FontFactory.getFont(FontFactory.HELVETICA, 12, Color.DARK_GRAY);
+    private static final Font BOLD_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    private static final BaseFont NORMAL_BASE_FONT = NORMAL_FONT.getCalculatedBaseFont(false);
+    private static final BaseFont BOLD_BASE_FONT = BOLD_FONT.getCalculatedBaseFont(false);
+
+    // entra na chave do cache de PDFs: incremente ao mudar o layout da CCB
+    private static final int LAYOUT_VERSION = 2;
+
+    private static final float MARGIN = 50;
+    private static final int[] INFO_WIDTHS = { 1, 3 };
+
+    // Cronograma desenhado direto no conteúdo da página, com as mesmas medidas
+    // que a PdfPTable usava (linha de 16pt, padding de 2pt, colunas 1:3:3:3)
+    private static final float TABLE_WIDTH = PageSize.A4.getWidth() - 2 * MARGIN;
+    private static final float ROW_HEIGHT = 16;
+    private static final float CELL_PADDING = 2;
+    private static final float FONT_SIZE = 12;
+    private static final float[] COLUMN_X = columnOffsets(new int[] { 1, 3, 3, 3 }, TABLE_WIDTH);
+    private static final String[] INSTALLMENT_HEADERS = { "Nº", "Vencimento", "Valor", "Saldo" };
+
+    private static final String SIGNATURE_LINE = "Assinatura Digital: e4eb8c9f-4d3a-4b2e-8c1f-5d3e7f8b9c0d (Simulação)";
+
+    private static final List<String> INTRO = List.of(
+            "Pela presente CÉDULA DE CRÉDITO BANCÁRIO, doravante designada simplesmente como CÉDULA, o EMITENTE se compromete, de forma irrevogável e irretratável, a pagar ao CREDOR, ou à sua ordem, o valor líquido, certo e exigível correspondente ao Valor do Crédito acordado entre as partes, acrescido dos juros remuneratórios convencionados, capitalizados conforme a periodicidade definida, bem como dos encargos moratórios e despesas previstas nesta CÉDULA.\n\n",
+            "O pagamento será efetuado por meio da liquidação das prestações nos prazos e condições estabelecidos no quadro resumo e demais cláusulas contratuais.");
+
+    private static final List<String> CLAUSES = List.of(
+            "1. Antecipação de Pagamento\nO EMITENTE poderá, a qualquer tempo, realizar o pagamento antecipado do saldo devedor, total ou parcial, com redução proporcional dos juros e encargos, conforme previsto na legislação vigente.",
+            "2. Inadimplemento e Vencimento Antecipado\nO não pagamento de qualquer parcela no prazo estipulado, bem como o descumprimento de quaisquer obrigações pactuadas, ensejará o vencimento antecipado da dívida, autorizando o CREDOR a exigir o saldo devedor integral, acrescido de encargos, multa contratual e demais cominações legais.",
+            "3. Título Executivo Extrajudicial\nEsta CÉDULA constitui título executivo extrajudicial, nos termos do artigo 784, inciso III, do Código de Processo Civil, podendo ser utilizada para fins de cobrança judicial em caso de inadimplemento.",
+            "4. Tratamento de Dados Pessoais (LGPD)\nO EMITENTE declara estar ciente de que seus dados pessoais serão tratados pelo CREDOR nos termos da Lei nº 13.709/2018 (Lei Geral de Proteção de Dados - LGPD), exclusivamente para fins relacionados à presente operação de crédito.",
+            "5. Foro\nFica eleito o foro da comarca da sede do CREDOR como competente para dirimir quaisquer controvérsias decorrentes desta CÉDULA, com renúncia expressa a qualquer outro, por mais privilegiado que seja.");
+
+    private static final List<String> FINAL_PROVISIONS = List.of(
+            "O EMITENTE declara e reconhece, para todos os fins de direito, que a formalização desta CÉDULA DE CRÉDITO BANCÁRIO por meio eletrônico possui validade jurídica plena, equiparando sua assinatura digital ou eletrônica à assinatura física.",
+            "O EMITENTE está ciente de que tem o direito de desistir da operação no prazo de até 7 (sete) dias corridos a contar do recebimento dos valores, devendo, nesse caso, solicitar o cancelamento diretamente à instituição credora, responsabilizando-se pela devolução integral dos valores recebidos e pelos encargos eventualmente incidentes.",
+            "Esta CÉDULA é regida pelas disposições aplicáveis da legislação brasileira, em especial a Lei nº 10.931/2004, sendo considerada título executivo extrajudicial, certo, líquido e exigível. O valor contratado, os juros, os encargos e as condições de pagamento encontram-se detalhados no corpo deste documento e no respectivo cronograma de parcelas.",
+            "O EMITENTE declara ter ciência prévia sobre o Custo Efetivo Total (CET), taxas aplicadas, bem como das implicações em caso de inadimplemento. Em caso de atraso no pagamento, o CREDOR poderá considerar a dívida vencida antecipadamente, com incidência de encargos legais e possibilidade de cobrança judicial ou extrajudicial.");
+
+    private static final List<Field> CUSTOMER_FIELDS = List.of(
+            new Field("Nome:", p -> p.getCustomer().getName() + " (\"EMITENTE\")"),
+            new Field("CPF:", p -> p.getCustomer().getCpf()),
+            new Field("Endereço:", p -> p.getCustomer().getStreet() + ", " + p.getCustomer().getStreetNumber() + " - "
+                    + p.getCustomer().getNeighborhood()),
+            new Field("Cidade:", p -> p.getCustomer().getCity()),
+            new Field("UF:", p -> p.getCustomer().getState()),
+            new Field("CEP:", p -> p.getCustomer().getZipCode()),
+            new Field("Nacionalidade:", p -> "Brasileiro"),
+            new Field("Data de Nascimento:", p -> p.getCustomer().getBirthDate().format(DATE_FORMAT)));
+
+    private static final List<Field> BANK_FIELDS = List.of(
+            new Field("Banco:", p -> "CrediFlow Bank"),
+            new Field("Agência:", p -> p.getCustomer().getVirtualAccount().getAgencyNumber()),
+            new Field("Conta:", p -> p.getCustomer().getVirtualAccount().getAccountNumber()),
+            new Field("CPF:", p -> p.getCustomer().getCpf()),
+            new Field("Tipo de Conta:", p -> "Conta Corrente"),
+            new Field("Chave Pix:", p -> firstPixKey(p.getCustomer()) == null ? "Não Informada"
+                    : firstPixKey(p.getCustomer()).getKey()),
+            new Field("Chave Pix Tipo:", p -> firstPixKey(p.getCustomer()) == null ? "Não Informado"
+                    : firstPixKey(p.getCustomer()).getKeyType().name()));
+
+    private static final List<Field> PROPOSAL_FIELDS = List.of(
+            new Field("Cod. da Proposta:", p -> p.getId().toString()),
+            new Field("Data da Proposta:", p -> p.getCreatedAt().format(DATE_FORMAT)),
+            new Field("Valor Solicitado:", p -> "R$ " + p.getRequestedAmount()),
+            new Field("Valor da Parcela:", p -> "R$ " + p.getInstallmentValue()),
+            new Field("Prazo:", p -> p.getTermInMonths() + " meses"),
+            new Field("Taxa de Juros:", p -> p.getMonthlyRate().multiply(HUNDRED) + "%"),
+            new Field("Data da 1ª Parcela:", p -> p.getFirstInstallmentDate().format(DATE_FORMAT)),
+            new Field("IOF Total:", p -> "R$ " + p.getIofTotal()),
+            new Field("Taxa de Juros Efetiva Mensal:", p -> p.getEffectiveMonthlyRate().multiply(HUNDRED) + "%"),
+            new Field("Taxa de Juros Efetiva Anual:", p -> p.getEffectiveAnnualRate().multiply(HUNDRED) + "%"),
+            new Field("Taxa de Juros Contratada Anual:", p -> p.getContractedAnnualRate().multiply(HUNDRED) + "%"),
+            new Field("Tipo de Produto:", LoanProposal::getProductType),
+            new Field("Fundo:", LoanProposal::getFund),
+            new Field("Tipo de Parcela:", LoanProposal::getInstallmentType),
+            new Field("Valor Total do Empréstimo:", p -> "R$ " + p.getTotalPayment()),
+            new Field("Data de Liberação:", p -> p.getDisbursementDate().format(DATE_FORMAT)));
+
+    private record Field(String label, Function<LoanProposal, String> value) {
     }
 
-    private void addInfoBlock(PdfPTable table, String label, String value, Font boldFont, Font normalFont) {
-        PdfPCell labelCell = new PdfPCell(new Phrase(label, boldFont));
-        PdfPCell valueCell = new PdfPCell(new Phrase(value, normalFont));
-        labelCell.setBackgroundColor(new Color(240, 240, 240));
-        labelCell.setBorderColor(Color.LIGHT_GRAY);
-        valueCell.setBorderColor(Color.LIGHT_GRAY);
-        table.addCell(labelCell);
-        table.addCell(valueCell);
-    }
+    @Inject
+    PdfStreamingService pdfStreamingService;
 
-    private void adicionarTextoInicial(Document doc, Font normalFont, Font sectionTitleFont) throws DocumentException {
-        Paragraph p = new Paragraph();
-        p.setFont(normalFont);
-        p.setSpacingAfter(12);
-        p.add("Pela presente CÉDULA DE CRÉDITO BANCÁRIO, doravante designada simplesmente como CÉDULA, o EMITENTE se compromete, de forma irrevogável e irretratável, a pagar ao CREDOR, ou à sua ordem, o valor líquido, certo e exigível correspondente ao Valor do Crédito acordado entre as partes, acrescido dos juros remuneratórios convencionados, capitalizados conforme a periodicidade definida, bem como dos encargos moratórios e despesas previstas nesta CÉDULA.\n\n");
-        p.add("O pagamento será efetuado por meio da liquidação das prestações nos prazos e condições estabelecidos no quadro resumo e demais cláusulas contratuais.");
-        doc.add(p);
+    @Inject
+    PdfCacheService pdfCacheService;
 
-        doc.add(new Paragraph("Cláusulas Complementares", sectionTitleFont));
-        doc.add(lineSpacing(5, 10));
-        doc.add(new Paragraph(
-                "1. Antecipação de Pagamento\nO EMITENTE poderá, a qualquer tempo, realizar o pagamento antecipado do saldo devedor, total ou parcial, com redução proporcional dos juros e encargos, conforme previsto na legislação vigente.",
-                normalFont));
-        doc.add(new Paragraph(
-                "2. Inadimplemento e Vencimento Antecipado\nO não pagamento de qualquer parcela no prazo estipulado, bem como o descumprimento de quaisquer obrigações pactuadas, ensejará o vencimento antecipado da dívida, autorizando o CREDOR a exigir o saldo devedor integral, acrescido de encargos, multa contratual e demais cominações legais.",
-                normalFont));
-        doc.add(new Paragraph(
-                "3. Título Executivo Extrajudicial\nEsta CÉDULA constitui título executivo extrajudicial, nos termos do artigo 784, inciso III, do Código de Processo Civil, podendo ser utilizada para fins de cobrança judicial em caso de inadimplemento.",
-                normalFont));
-        doc.add(new Paragraph(
-                "4. Tratamento de Dados Pessoais (LGPD)\nO EMITENTE declara estar ciente de que seus dados pessoais serão tratados pelo CREDOR nos termos da Lei nº 13.709/2018 (Lei Geral de Proteção de Dados - LGPD), exclusivamente para fins relacionados à presente operação de crédito.",
-                normalFont));
-        doc.add(new Paragraph(
-                "5. Foro\nFica eleito o foro da comarca da sede do CREDOR como competente para dirimir quaisquer controvérsias decorrentes desta CÉDULA, com renúncia expressa a qualquer outro, por mais privilegiado que seja.",
-                normalFont));
-        doc.add(Chunk.NEWLINE);
-        doc.add(Chunk.NEWLINE);
-        doc.add(Chunk.NEWLINE);
-        doc.add(Chunk.NEWLINE);
+    /**
+     * Número da CCB com 10 dígitos derivado da proposta: gerar a CCB de novo
+     * mantém o mesmo número, e portanto o mesmo documento.
+     */
+    static String codigoCCB(LoanProposal proposal) {
+        String hash = PdfCacheService.key("ccb", proposal.getId(), proposal.getCreatedAt());
+        long value = Long.parseUnsignedLong(hash.substring(0, 15), 16);
+        return String.format("%010d", value % 10_000_000_000L);
     }
 
-    private void adicionarDisposicoesFinais(Document doc, Font normalFont, Font sectionTitleFont, LoanProposal proposal)
-            throws DocumentException {
-        doc.add(new Paragraph("Disposições Finais", sectionTitleFont));
-        doc.add(lineSpacing(-12, 5));
-        doc.add(new Paragraph(
-                "O EMITENTE declara e reconhece, para todos os fins de direito, que a formalização desta CÉDULA DE CRÉDITO BANCÁRIO por meio eletrônico possui validade jurídica plena, equiparando sua assinatura digital ou eletrônica à assinatura física.",
-                normalFont));
-        doc.add(new Paragraph(
-                "O EMITENTE está ciente de que tem o direito de desistir da operação no prazo de até 7 (sete) dias corridos a contar do recebimento dos valores, devendo, nesse caso, solicitar o cancelamento diretamente à instituição credora, responsabilizando-se pela devolução integral dos valores recebidos e pelos encargos eventualmente incidentes.",
-                normalFont));
-        doc.add(new Paragraph(
-                "Esta CÉDULA é regida pelas disposições aplicáveis da legislação brasileira, em especial a Lei nº 10.931/2004, sendo considerada título executivo extrajudicial, certo, líquido e exigível. O valor contratado, os juros, os encargos e as condições de pagamento encontram-se detalhados no corpo deste documento e no respectivo cronograma de parcelas.",
-                normalFont));
-        doc.add(new Paragraph(
-                "O EMITENTE declara ter ciência prévia sobre o Custo Efetivo Total (CET), taxas aplicadas, bem como das implicações em caso de inadimplemento. Em caso de atraso no pagamento, o CREDOR poderá considerar a dívida vencida antecipadamente, com incidência de encargos legais e possibilidade de cobrança judicial ou extrajudicial.",
-                normalFont));
-        doc.add(Chunk.NEWLINE);
-
-        // Declaração
-        doc.add(new Paragraph("Declaração", sectionTitleFont));
-        doc.add(lineSpacing(-12, 5));
-        doc.add(new Paragraph("Eu, " + proposal.getCustomer().getName() + ", CPF: " + proposal.getCustomer().getCpf()
-                + ", declaro ter ciência e concordância com os termos desta CCB.", normalFont));
-        doc.add(Chunk.NEWLINE);
-        doc.add(Chunk.NEWLINE);
-        doc.add(new Paragraph("Assinatura do Cliente: ___________________________________   Data: ___/___/______",
-                normalFont));
-        doc.add(Chunk.NEWLINE);
-        doc.add(new Paragraph("Código CCB: " + proposal.getCcb(), normalFont));
+    @Transactional
+    public StreamingOutput gerarPdfCCB(LoanProposal proposal) {
+        if (proposal == null || proposal.getCustomer() == null || proposal.getCompany() == null) {
+            throw new BadRequestException("Proposta ou dados incompletos");
+        }
+        proposal.setCcb(codigoCCB(proposal));
+        proposal.setStatus(LoanProposalStatus.PENDING_SIGNATURE);
+        return stream(proposal, CCBVariant.DRAFT);
     }
 
+    // Método para assinar a CCB que vai ser a mesma ccb gerada no PDF com um codigo
+    // aleatório simulando uma assinarura digital
     @Transactional
-    public byte[] gerarPdfCCB(LoanProposal proposal) {
-        try {
-            if (proposal == null || proposal.getCustomer() == null || proposal.getCompany() == null) {
-                throw new BadRequestException("Proposta ou dados incompletos");
-            }
-            String codigoCCB = gerarCodigoAleatorio();
-            proposal.setCcb(codigoCCB);
-            proposal.setStatus(LoanProposalStatus.PENDING_SIGNATURE);
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Document doc = new Document(PageSize.A4, 50, 50, 50, 50);
-            PdfWriter.getInstance(doc, baos);
-            doc.open();
-
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, Color.BLACK);
-            Font sectionTitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, new Color(0, 70, 130));
-            Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, Color.DARK_GRAY);
-            Font boldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-
-            Paragraph title = new Paragraph("CÉDULA DE CRÉDITO BANCÁRIO (CCB) - Nº " + codigoCCB, titleFont);
-            title.setAlignment(Paragraph.ALIGN_CENTER);
-            title.setSpacingAfter(20);
-            doc.add(title);
+    public StreamingOutput signCCB(LoanProposal proposal) {
+        requireCcb(proposal);
+        if (proposal.getStatus() == LoanProposalStatus.PENDING_SIGNATURE) {
+            proposal.setStatus(LoanProposalStatus.SIGNED);
+        }
+        return stream(proposal, CCBVariant.SIGNED);
+    }
 
-            // Adiciona o texto inicial
-            adicionarTextoInicial(doc, normalFont, sectionTitleFont);
-
-            // Bloco: Dados do Emitente
-            Paragraph emitenteTitle = new Paragraph("Dados do Emitente (Cliente)", sectionTitleFont);
-            emitenteTitle.setSpacingAfter(5);
-            doc.add(emitenteTitle);
-            PdfPTable clienteTable = new PdfPTable(2);
-            clienteTable.setWidthPercentage(100);
-            clienteTable.setSpacingBefore(5);
-            clienteTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(clienteTable, "Nome:", proposal.getCustomer().getName() + " (\"EMITENTE\")", boldFont,
-                    normalFont);
-            addInfoBlock(clienteTable, "CPF:", proposal.getCustomer().getCpf(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "Endereço:", proposal.getCustomer().getStreet() + ", "
-                    + proposal.getCustomer().getStreetNumber() + " - " + proposal.getCustomer().getNeighborhood(),
-                    boldFont, normalFont);
-            addInfoBlock(clienteTable, "Cidade:", proposal.getCustomer().getCity(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "UF:", proposal.getCustomer().getState(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "CEP:", proposal.getCustomer().getZipCode(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "Nacionalidade:", "Brasileiro", boldFont, normalFont);
-            addInfoBlock(clienteTable, "Data de Nascimento:",
-                    proposal.getCustomer().getBirthDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            doc.add(clienteTable);
-            doc.add(new Paragraph("Doravante denominado apenas EMITENTE.", normalFont));
-            doc.add(Chunk.NEWLINE);
+    public StreamingOutput getCCBDetails(LoanProposal proposal) {
+        requireCcb(proposal);
+        String key = detailsCacheKey(proposal);
+        if (key == null) {
+            return stream(proposal, CCBVariant.DETAILS);
+        }
+        loadForRendering(proposal);
+        return pdfCacheService.serve(documentName(CCBVariant.DETAILS), key,
+                out -> render(proposal, CCBVariant.DETAILS, out));
+    }
 
-            // Bloco: Informações Bancárias
-            Paragraph bancoTitle = new Paragraph("Informações Bancárias", sectionTitleFont);
-            bancoTitle.setSpacingAfter(5);
-            doc.add(bancoTitle);
-            PdfPTable bancoTable = new PdfPTable(2);
-            bancoTable.setWidthPercentage(100);
-            bancoTable.setSpacingBefore(5);
-            bancoTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(bancoTable, "Banco:", "CrediFlow Bank", boldFont, normalFont);
-            addInfoBlock(bancoTable, "Agência:", proposal.getCustomer().getVirtualAccount().getAgencyNumber(), boldFont,
-                    normalFont);
-            addInfoBlock(bancoTable, "Conta:", proposal.getCustomer().getVirtualAccount().getAccountNumber(), boldFont,
-                    normalFont);
-            addInfoBlock(bancoTable, "CPF:", proposal.getCustomer().getCpf(), boldFont, normalFont);
-            addInfoBlock(bancoTable, "Tipo de Conta:", "Conta Corrente", boldFont, normalFont);
-            addInfoBlock(bancoTable, "Chave Pix:",
-                    proposal.getCustomer().getVirtualAccount().getPixKeys().isEmpty() ? "Não Informada"
-                            : proposal.getCustomer().getVirtualAccount().getPixKeys().get(0).getKey(),
-                    boldFont, normalFont);
-            addInfoBlock(bancoTable, "Chave Pix Tipo:",
-                    proposal.getCustomer().getVirtualAccount().getPixKeys().isEmpty() ? "Não Informado"
-                            : proposal.getCustomer().getVirtualAccount().getPixKeys().get(0).getKeyType().name(),
-                    boldFont, normalFont);
-            doc.add(bancoTable);
-            doc.add(Chunk.NEWLINE);
+    /**
+     * Chave de cache (e ETag) da CCB de uma proposta assinada ou paga, que não
+     * muda mais; {@code null} nos demais status. Inclui o que o documento mostra
+     * e pode ser alterado depois: a proposta, o cadastro e a chave Pix do cliente.
+     */
+    public String detailsCacheKey(LoanProposal proposal) {
+        if (proposal == null || proposal.getCcb() == null || (proposal.getStatus() != LoanProposalStatus.SIGNED
+                && proposal.getStatus() != LoanProposalStatus.PAID)) {
+            return null;
+        }
+        PixKey pixKey = firstPixKey(proposal.getCustomer());
+        return PdfCacheService.key(documentName(CCBVariant.DETAILS), LAYOUT_VERSION, proposal.getId(),
+                proposal.getStatus(), proposal.getUpdatedAt(), proposal.getCcb(), proposal.getCustomer().getUpdatedAt(),
+                pixKey != null ? pixKey.getKeyType() + ":" + pixKey.getKey() : null);
+    }
 
-            // Bloco: Informações da Proposta
-            Paragraph propostaTitle = new Paragraph("Informações da Proposta", sectionTitleFont);
-            propostaTitle.setSpacingAfter(5);
-            doc.add(propostaTitle);
-            PdfPTable propostaTable = new PdfPTable(2);
-            propostaTable.setWidthPercentage(100);
-            propostaTable.setSpacingBefore(5);
-            propostaTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(propostaTable, "Cod. da Proposta:", proposal.getId().toString(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Data da Proposta:",
-                    proposal.getCreatedAt().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Valor Solicitado:", "R$ " + proposal.getRequestedAmount(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Valor da Parcela:", "R$ " + proposal.getInstallmentValue(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Prazo:", proposal.getTermInMonths() + " meses", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros:",
-                    proposal.getMonthlyRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Data da 1ª Parcela:",
-                    proposal.getFirstInstallmentDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "IOF Total:", "R$ " + proposal.getIofTotal(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Efetiva Mensal:",
-                    proposal.getEffectiveMonthlyRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Efetiva Anual:",
-                    proposal.getEffectiveAnnualRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Contratada Anual:",
-                    proposal.getContractedAnnualRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Tipo de Produto:", proposal.getProductType(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Fundo:", proposal.getFund(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Tipo de Parcela:", proposal.getInstallmentType(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Valor Total do Empréstimo:", "R$ " + proposal.getTotalPayment(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Data de Liberação:",
-                    proposal.getDisbursementDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            doc.add(propostaTable);
-            doc.add(Chunk.NEWLINE);
+    private void requireCcb(LoanProposal proposal) {
+        if (proposal == null || proposal.getCcb() == null || proposal.getCcb().isEmpty()) {
+            throw new BadRequestException("Proposta ou CCB inválida");
+        }
+        if (proposal.getCcb().equals("N/A")) {
+            throw new BadRequestException("CCB não gerada ou inválida");
+        }
+    }
 
-            // Tabela de parcelas
-            doc.add(new Paragraph("Cronograma de Parcelas", sectionTitleFont));
-            doc.add(lineSpacing(-12, 5));
-
-            PdfPTable table = new PdfPTable(4);
-            table.setWidthPercentage(100);
-            table.setWidths(new int[] { 1, 3, 3, 3 });
-
-            Stream.of("Nº", "Vencimento", "Valor", "Saldo").forEach(header -> {
-                PdfPCell cell = new PdfPCell(new Phrase(header, boldFont));
-                cell.setBackgroundColor(new Color(230, 230, 250));
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                table.addCell(cell);
-            });
-
-            for (LoanInstallment i : proposal.getInstallments()) {
-                table.addCell(new PdfPCell(new Phrase(String.valueOf(i.getNumber()), normalFont)));
-                table.addCell(new PdfPCell(
-                        new Phrase(i.getDueDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont)));
-                table.addCell(new PdfPCell(new Phrase("R$ " + i.getValue(), normalFont)));
-                table.addCell(new PdfPCell(new Phrase("R$ " + i.getBalance(), normalFont)));
-            }
+    private StreamingOutput stream(LoanProposal proposal, CCBVariant variant) {
+        loadForRendering(proposal);
+        return pdfStreamingService.stream(documentName(variant), out -> render(proposal, variant, out));
+    }
 
-            doc.add(table);
-            doc.add(Chunk.NEWLINE);
+    // o PDF é escrito depois do fim da transação: as coleções lazy precisam estar carregadas
+    private void loadForRendering(LoanProposal proposal) {
+        proposal.getInstallments().size();
+        proposal.getCustomer().getVirtualAccount().getPixKeys().size();
+    }
 
-            // Adiciona as disposições finais
-            adicionarDisposicoesFinais(doc, normalFont, sectionTitleFont, proposal);
+    private static String documentName(CCBVariant variant) {
+        return "ccb-" + variant.name().toLowerCase(Locale.ROOT);
+    }
 
-            doc.close();
-            return baos.toByteArray();
+    /**
+     * CCB da proposta para exportação em lote, sem alterar a proposta: assinada
+     * a partir da assinatura, rascunho antes disso. Propostas ainda sem número
+     * saem com o número que {@link #gerarPdfCCB} atribuiria.
+     */
+    public void renderForExport(LoanProposal proposal, OutputStream out) {
+        String ccb = proposal.getCcb() != null && !proposal.getCcb().isEmpty() && !proposal.getCcb().equals("N/A")
+                ? proposal.getCcb()
+                : codigoCCB(proposal);
+        CCBVariant variant = switch (proposal.getStatus()) {
+            case SIGNED, UNDER_REVIEW, APPROVED, PAID -> CCBVariant.SIGNED;
+            default -> CCBVariant.DRAFT;
+        };
+        render(proposal, variant, ccb, out);
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Erro ao gerar CCB", e);
-        }
+    /**
+     * Escreve a CCB da proposta em {@code out}. Não altera a proposta.
+     */
+    public void render(LoanProposal proposal, CCBVariant variant, OutputStream out) {
+        render(proposal, variant, proposal.getCcb(), out);
     }
 
-    // Método para assinar a CCB que vai ser a mesma ccb gerada no PDF com um codigo
-    // aleatório simulando uma assinarura digital
-    @Transactional
-    public byte[] signCCB(LoanProposal proposal) {
+    private void render(LoanProposal proposal, CCBVariant variant, String ccb, OutputStream out) {
         try {
-            // Verifica se a proposta e a CCB são válidas
-
-            if (proposal == null || proposal.getCcb() == null || proposal.getCcb().isEmpty()) {
-                throw new BadRequestException("Proposta ou CCB inválida");
-            }
-            if (proposal.getCcb() == null || proposal.getCcb().isEmpty() || proposal.getCcb().equals("N/A")) {
-                throw new BadRequestException("CCB não gerada ou inválida");
-            }
-
-         
-            String codigoCCB = proposal.getCcb();
-            if (proposal.getStatus() == LoanProposalStatus.PENDING_SIGNATURE) {
-                proposal.setStatus(LoanProposalStatus.SIGNED);
-            }
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Document doc = new Document(PageSize.A4, 50, 50, 50, 50);
-            PdfWriter.getInstance(doc, baos);
+            Document doc = new Document(PageSize.A4, MARGIN, MARGIN, MARGIN, MARGIN);
+            PdfWriter writer = PdfWriter.getInstance(doc, out);
+            // quem abriu o stream (a resposta HTTP) é quem fecha
+            writer.setCloseStream(false);
             doc.open();
 
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, Color.BLACK);
-            Font sectionTitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, new Color(0, 70, 130));
-            Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, Color.DARK_GRAY);
-            Font boldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-
-            Paragraph title = new Paragraph("CÉDULA DE CRÉDITO BANCÁRIO (CCB) - Nº " + codigoCCB, titleFont);
+            Paragraph title = new Paragraph("CÉDULA DE CRÉDITO BANCÁRIO (CCB) - Nº " + ccb, TITLE_FONT);
             title.setAlignment(Paragraph.ALIGN_CENTER);
             title.setSpacingAfter(20);
             doc.add(title);
 
-            // Adiciona o texto inicial
-            adicionarTextoInicial(doc, normalFont, sectionTitleFont);
-
-            // Bloco: Dados do Emitente
-            Paragraph emitenteTitle = new Paragraph("Dados do Emitente (Cliente)", sectionTitleFont);
-            emitenteTitle.setSpacingAfter(5);
-            doc.add(emitenteTitle);
-            PdfPTable clienteTable = new PdfPTable(2);
-            clienteTable.setWidthPercentage(100);
-            clienteTable.setSpacingBefore(5);
-            clienteTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(clienteTable, "Nome:", proposal.getCustomer().getName() + " (\"EMITENTE\")", boldFont,
-                    normalFont);
-            addInfoBlock(clienteTable, "CPF:", proposal.getCustomer().getCpf(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "Endereço:", proposal.getCustomer().getStreet() + ", "
-                    + proposal.getCustomer().getStreetNumber() + " - " + proposal.getCustomer().getNeighborhood(),
-                    boldFont, normalFont);
-            addInfoBlock(clienteTable, "Cidade:", proposal.getCustomer().getCity(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "UF:", proposal.getCustomer().getState(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "CEP:", proposal.getCustomer().getZipCode(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "Nacionalidade:", "Brasileiro", boldFont, normalFont);
-            addInfoBlock(clienteTable, "Data de Nascimento:",
-                    proposal.getCustomer().getBirthDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            doc.add(clienteTable);
-            doc.add(new Paragraph("Doravante denominado apenas EMITENTE.", normalFont));
-            doc.add(Chunk.NEWLINE);
+            adicionarTextoInicial(doc);
 
-            // Bloco: Informações Bancárias
-            Paragraph bancoTitle = new Paragraph("Informações Bancárias", sectionTitleFont);
-            bancoTitle.setSpacingAfter(5);
-            doc.add(bancoTitle);
-            PdfPTable bancoTable = new PdfPTable(2);
-            bancoTable.setWidthPercentage(100);
-            bancoTable.setSpacingBefore(5);
-            bancoTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(bancoTable, "Banco:", "CrediFlow Bank", boldFont, normalFont);
-            addInfoBlock(bancoTable, "Agência:", proposal.getCustomer().getVirtualAccount().getAgencyNumber(), boldFont,
-                    normalFont);
-            addInfoBlock(bancoTable, "Conta:", proposal.getCustomer().getVirtualAccount().getAccountNumber(), boldFont,
-                    normalFont);
-            addInfoBlock(bancoTable, "CPF:", proposal.getCustomer().getCpf(), boldFont, normalFont);
-            addInfoBlock(bancoTable, "Tipo de Conta:", "Conta Corrente", boldFont, normalFont);
-            addInfoBlock(bancoTable, "Chave Pix:",
-                    proposal.getCustomer().getVirtualAccount().getPixKeys().isEmpty() ? "Não Informada"
-                            : proposal.getCustomer().getVirtualAccount().getPixKeys().get(0).getKey(),
-                    boldFont, normalFont);
-            addInfoBlock(bancoTable, "Chave Pix Tipo:",
-                    proposal.getCustomer().getVirtualAccount().getPixKeys().isEmpty() ? "Não Informado"
-                            : proposal.getCustomer().getVirtualAccount().getPixKeys().get(0).getKeyType().name(),
-                    boldFont, normalFont);
-            doc.add(bancoTable);
+            addInfoSection(doc, "Dados do Emitente (Cliente)", CUSTOMER_FIELDS, proposal);
+            doc.add(new Paragraph("Doravante denominado apenas EMITENTE.", NORMAL_FONT));
             doc.add(Chunk.NEWLINE);
 
-            // Bloco: Informações da Proposta
-            Paragraph propostaTitle = new Paragraph("Informações da Proposta", sectionTitleFont);
-            propostaTitle.setSpacingAfter(5);
-            doc.add(propostaTitle);
-            PdfPTable propostaTable = new PdfPTable(2);
-            propostaTable.setWidthPercentage(100);
-            propostaTable.setSpacingBefore(5);
-            propostaTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(propostaTable, "Cod. da Proposta:", proposal.getId().toString(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Data da Proposta:",
-                    proposal.getCreatedAt().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Valor Solicitado:", "R$ " + proposal.getRequestedAmount(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Valor da Parcela:", "R$ " + proposal.getInstallmentValue(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Prazo:", proposal.getTermInMonths() + " meses", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros:",
-                    proposal.getMonthlyRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Data da 1ª Parcela:",
-                    proposal.getFirstInstallmentDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "IOF Total:", "R$ " + proposal.getIofTotal(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Efetiva Mensal:",
-                    proposal.getEffectiveMonthlyRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Efetiva Anual:",
-                    proposal.getEffectiveAnnualRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Contratada Anual:",
-                    proposal.getContractedAnnualRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Tipo de Produto:", proposal.getProductType(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Fundo:", proposal.getFund(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Tipo de Parcela:", proposal.getInstallmentType(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Valor Total do Empréstimo:", "R$ " + proposal.getTotalPayment(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Data de Liberação:",
-                    proposal.getDisbursementDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            doc.add(propostaTable);
+            addInfoSection(doc, "Informações Bancárias", BANK_FIELDS, proposal);
             doc.add(Chunk.NEWLINE);
 
-            // Tabela de parcelas
-            doc.add(new Paragraph("Cronograma de Parcelas", sectionTitleFont));
-            doc.add(lineSpacing(-12, 5));
-
-            PdfPTable table = new PdfPTable(4);
-            table.setWidthPercentage(100);
-            table.setWidths(new int[] { 1, 3, 3, 3 });
-
-            Stream.of("Nº", "Vencimento", "Valor", "Saldo").forEach(header -> {
-                PdfPCell cell = new PdfPCell(new Phrase(header, boldFont));
-                cell.setBackgroundColor(new Color(230, 230, 250));
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                table.addCell(cell);
-            });
-
-            for (LoanInstallment i : proposal.getInstallments()) {
-                table.addCell(new PdfPCell(new Phrase(String.valueOf(i.getNumber()), normalFont)));
-                table.addCell(new PdfPCell(
-                        new Phrase(i.getDueDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont)));
-                table.addCell(new PdfPCell(new Phrase("R$ " + i.getValue(), normalFont)));
-                table.addCell(new PdfPCell(new Phrase("R$ " + i.getBalance(), normalFont)));
-            }
+            addInfoSection(doc, "Informações da Proposta", PROPOSAL_FIELDS, proposal);
+            doc.add(Chunk.NEWLINE);
 
-            doc.add(table);
+            adicionarCronograma(doc, writer, proposal.getInstallments());
             doc.add(Chunk.NEWLINE);
 
-            // Adiciona as disposições finais
-            adicionarDisposicoesFinais(doc, normalFont, sectionTitleFont, proposal);
-            // simulação de assinatura digital
-            doc.add(new Paragraph("Assinatura Digital: e4eb8c9f-4d3a-4b2e-8c1f-5d3e7f8b9c0d (Simulação)", normalFont));
-            doc.close();
-            return baos.toByteArray();
+            adicionarDisposicoesFinais(doc, proposal, ccb);
+            if (variant == CCBVariant.SIGNED) {
+                // simulação de assinatura digital
+                doc.add(new Paragraph(SIGNATURE_LINE, NORMAL_FONT));
+            }
 
-        } catch (Exception e) {
+            doc.close();
+        } catch (DocumentException e) {
             throw new RuntimeException("Erro ao gerar CCB", e);
         }
     }
 
-    public byte[] getCCBDetails(LoanProposal proposal) {
-        try {
-            // Verifica se a proposta e a CCB são válidas
+    private Paragraph lineSpacing(float antes, float depois) {
+        Paragraph paragraph = new Paragraph(new Chunk(new LineSeparator()));
+        paragraph.setSpacingBefore(antes);
+        paragraph.setSpacingAfter(depois);
+        return paragraph;
+    }
 
-            if (proposal == null || proposal.getCcb() == null || proposal.getCcb().isEmpty()) {
-                throw new BadRequestException("Proposta ou CCB inválida");
-            }
-            if (proposal.getCcb() == null || proposal.getCcb().isEmpty() || proposal.getCcb().equals("N/A")) {
-                throw new BadRequestException("CCB não gerada ou inválida");
-            }
+    private void adicionarTextoInicial(Document doc) throws DocumentException {
+        Paragraph p = new Paragraph();
+        p.setFont(NORMAL_FONT);
+        p.setSpacingAfter(12);
+        INTRO.forEach(p::add);
+        doc.add(p);
 
-          
-            String codigoCCB = proposal.getCcb();
+        doc.add(new Paragraph("Cláusulas Complementares", SECTION_TITLE_FONT));
+        doc.add(lineSpacing(5, 10));
+        for (String clause : CLAUSES) {
+            doc.add(new Paragraph(clause, NORMAL_FONT));
+        }
+        doc.add(Chunk.NEWLINE);
+        doc.add(Chunk.NEWLINE);
+        doc.add(Chunk.NEWLINE);
+        doc.add(Chunk.NEWLINE);
+    }
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Document doc = new Document(PageSize.A4, 50, 50, 50, 50);
-            PdfWriter.getInstance(doc, baos);
-            doc.open();
+    private void addInfoSection(Document doc, String title, List<Field> fields, LoanProposal proposal)
+            throws DocumentException {
+        Paragraph sectionTitle = new Paragraph(title, SECTION_TITLE_FONT);
+        sectionTitle.setSpacingAfter(5);
+        doc.add(sectionTitle);
+
+        PdfPTable table = new PdfPTable(2);
+        table.setWidthPercentage(100);
+        table.setSpacingBefore(5);
+        table.setWidths(INFO_WIDTHS);
+        for (Field field : fields) {
+            PdfPCell labelCell = new PdfPCell(new Phrase(field.label(), BOLD_FONT));
+            PdfPCell valueCell = new PdfPCell(new Phrase(field.value().apply(proposal), NORMAL_FONT));
+            labelCell.setBackgroundColor(LABEL_BACKGROUND);
+            labelCell.setBorderColor(Color.LIGHT_GRAY);
+            valueCell.setBorderColor(Color.LIGHT_GRAY);
+            table.addCell(labelCell);
+            table.addCell(valueCell);
+        }
+        doc.add(table);
+    }
 
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, Color.BLACK);
-            Font sectionTitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, new Color(0, 70, 130));
-            Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 12, Color.DARK_GRAY);
-            Font boldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
+    /**
+     * O cronograma é a maior parte do documento (quatro células por parcela), e
+     * montá-lo célula a célula faz o OpenPDF diagramar cada uma duas vezes. Aqui
+     * as linhas são desenhadas direto num PdfTemplate por página, e cada bloco
+     * vira uma linha sem borda de uma tabela de uma coluna, que o documento
+     * pagina e posiciona como fazia com a tabela antiga.
+     */
+    private void adicionarCronograma(Document doc, PdfWriter writer, List<LoanInstallment> installments)
+            throws DocumentException {
+        doc.add(new Paragraph("Cronograma de Parcelas", SECTION_TITLE_FONT));
+        doc.add(lineSpacing(-12, 5));
 
-            Paragraph title = new Paragraph("CÉDULA DE CRÉDITO BANCÁRIO (CCB) - Nº " + codigoCCB, titleFont);
-            title.setAlignment(Paragraph.ALIGN_CENTER);
-            title.setSpacingAfter(20);
-            doc.add(title);
+        int pageRows = (int) ((doc.top() - doc.bottom()) / ROW_HEIGHT);
+        int rows = (int) ((writer.getVerticalPosition(true) - doc.bottom()) / ROW_HEIGHT);
+        if (rows < 1) {
+            // nem o cabeçalho cabe: a tabela começa na próxima página
+            rows = pageRows;
+        }
 
-            // Adiciona o texto inicial
-            adicionarTextoInicial(doc, normalFont, sectionTitleFont);
-
-            // Bloco: Dados do Emitente
-            Paragraph emitenteTitle = new Paragraph("Dados do Emitente (Cliente)", sectionTitleFont);
-            emitenteTitle.setSpacingAfter(5);
-            doc.add(emitenteTitle);
-            PdfPTable clienteTable = new PdfPTable(2);
-            clienteTable.setWidthPercentage(100);
-            clienteTable.setSpacingBefore(5);
-            clienteTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(clienteTable, "Nome:", proposal.getCustomer().getName() + " (\"EMITENTE\")", boldFont,
-                    normalFont);
-            addInfoBlock(clienteTable, "CPF:", proposal.getCustomer().getCpf(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "Endereço:", proposal.getCustomer().getStreet() + ", "
-                    + proposal.getCustomer().getStreetNumber() + " - " + proposal.getCustomer().getNeighborhood(),
-                    boldFont, normalFont);
-            addInfoBlock(clienteTable, "Cidade:", proposal.getCustomer().getCity(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "UF:", proposal.getCustomer().getState(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "CEP:", proposal.getCustomer().getZipCode(), boldFont, normalFont);
-            addInfoBlock(clienteTable, "Nacionalidade:", "Brasileiro", boldFont, normalFont);
-            addInfoBlock(clienteTable, "Data de Nascimento:",
-                    proposal.getCustomer().getBirthDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            doc.add(clienteTable);
-            doc.add(new Paragraph("Doravante denominado apenas EMITENTE.", normalFont));
-            doc.add(Chunk.NEWLINE);
+        PdfPTable table = new PdfPTable(1);
+        table.setWidthPercentage(100);
+        // -1 é a linha de cabeçalho
+        int next = -1;
+        while (next < installments.size()) {
+            rows = Math.min(rows, installments.size() - next);
+            PdfTemplate block = writer.getDirectContent().createTemplate(TABLE_WIDTH, rows * ROW_HEIGHT);
+            for (int r = 0; r < rows; r++, next++) {
+                float bottom = (rows - 1 - r) * ROW_HEIGHT;
+                if (next < 0) {
+                    drawHeaderRow(block, bottom);
+                } else {
+                    LoanInstallment i = installments.get(next);
+                    drawRow(block, bottom, String.valueOf(i.getNumber()), i.getDueDate().format(DATE_FORMAT),
+                            "R$ " + i.getValue(), "R$ " + i.getBalance());
+                }
+            }
+            PdfPCell cell = new PdfPCell(Image.getInstance(block), true);
+            cell.setBorder(Rectangle.NO_BORDER);
+            cell.setPadding(0);
+            table.addCell(cell);
+            rows = pageRows;
+        }
+        doc.add(table);
+    }
 
-            // Bloco: Informações Bancárias
-            Paragraph bancoTitle = new Paragraph("Informações Bancárias", sectionTitleFont);
-            bancoTitle.setSpacingAfter(5);
-            doc.add(bancoTitle);
-            PdfPTable bancoTable = new PdfPTable(2);
-            bancoTable.setWidthPercentage(100);
-            bancoTable.setSpacingBefore(5);
-            bancoTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(bancoTable, "Banco:", "CrediFlow Bank", boldFont, normalFont);
-            addInfoBlock(bancoTable, "Agência:", proposal.getCustomer().getVirtualAccount().getAgencyNumber(), boldFont,
-                    normalFont);
-            addInfoBlock(bancoTable, "Conta:", proposal.getCustomer().getVirtualAccount().getAccountNumber(), boldFont,
-                    normalFont);
-            addInfoBlock(bancoTable, "CPF:", proposal.getCustomer().getCpf(), boldFont, normalFont);
-            addInfoBlock(bancoTable, "Tipo de Conta:", "Conta Corrente", boldFont, normalFont);
-            addInfoBlock(bancoTable, "Chave Pix Tipo:",
-                    proposal.getCustomer().getVirtualAccount().getPixKeys().isEmpty() ? "Não Informado"
-                            : proposal.getCustomer().getVirtualAccount().getPixKeys().get(0).getKeyType().name(),
-                    boldFont, normalFont);
-            addInfoBlock(bancoTable, "Chave Pix Tipo:",
-                    proposal.getCustomer().getVirtualAccount().getPixKeys().isEmpty() ? "Não Informado"
-                            : proposal.getCustomer().getVirtualAccount().getPixKeys().get(0).getKeyType().name(),
-                    boldFont, normalFont);
-            doc.add(bancoTable);
-            doc.add(Chunk.NEWLINE);
+    private void drawHeaderRow(PdfContentByte cb, float bottom) {
+        cb.setColorFill(HEADER_BACKGROUND);
+        for (int c = 0; c < INSTALLMENT_HEADERS.length; c++) {
+            cb.rectangle(COLUMN_X[c], bottom, COLUMN_X[c + 1] - COLUMN_X[c], ROW_HEIGHT);
+        }
+        cb.fill();
+        drawBorders(cb, bottom);
+
+        cb.beginText();
+        cb.setFontAndSize(BOLD_BASE_FONT, FONT_SIZE);
+        cb.setColorFill(Color.BLACK);
+        for (int c = 0; c < INSTALLMENT_HEADERS.length; c++) {
+            String header = INSTALLMENT_HEADERS[c];
+            float inner = COLUMN_X[c + 1] - COLUMN_X[c] - 2 * CELL_PADDING;
+            float x = COLUMN_X[c] + CELL_PADDING + (inner - BOLD_BASE_FONT.getWidthPoint(header, FONT_SIZE)) / 2;
+            cb.setTextMatrix(x, bottom + CELL_PADDING);
+            cb.showText(header);
+        }
+        cb.endText();
+    }
 
-            // Bloco: Informações da Proposta
-            Paragraph propostaTitle = new Paragraph("Informações da Proposta", sectionTitleFont);
-            propostaTitle.setSpacingAfter(5);
-            doc.add(propostaTitle);
-            PdfPTable propostaTable = new PdfPTable(2);
-            propostaTable.setWidthPercentage(100);
-            propostaTable.setSpacingBefore(5);
-            propostaTable.setWidths(new int[] { 1, 3 });
-            addInfoBlock(propostaTable, "Cod. da Proposta:", proposal.getId().toString(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Data da Proposta:",
-                    proposal.getCreatedAt().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Valor Solicitado:", "R$ " + proposal.getRequestedAmount(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Valor da Parcela:", "R$ " + proposal.getInstallmentValue(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Prazo:", proposal.getTermInMonths() + " meses", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros:",
-                    proposal.getMonthlyRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Data da 1ª Parcela:",
-                    proposal.getFirstInstallmentDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "IOF Total:", "R$ " + proposal.getIofTotal(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Efetiva Mensal:",
-                    proposal.getEffectiveMonthlyRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Efetiva Anual:",
-                    proposal.getEffectiveAnnualRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Taxa de Juros Contratada Anual:",
-                    proposal.getContractedAnnualRate().multiply(new BigDecimal("100")) + "%", boldFont, normalFont);
-            addInfoBlock(propostaTable, "Tipo de Produto:", proposal.getProductType(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Fundo:", proposal.getFund(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Tipo de Parcela:", proposal.getInstallmentType(), boldFont, normalFont);
-            addInfoBlock(propostaTable, "Valor Total do Empréstimo:", "R$ " + proposal.getTotalPayment(), boldFont,
-                    normalFont);
-            addInfoBlock(propostaTable, "Data de Liberação:",
-                    proposal.getDisbursementDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont,
-                    normalFont);
-            doc.add(propostaTable);
-            doc.add(Chunk.NEWLINE);
+    private void drawRow(PdfContentByte cb, float bottom, String... values) {
+        drawBorders(cb, bottom);
 
-            // Tabela de parcelas
-            doc.add(new Paragraph("Cronograma de Parcelas", sectionTitleFont));
-            doc.add(lineSpacing(-12, 5));
-
-            PdfPTable table = new PdfPTable(4);
-            table.setWidthPercentage(100);
-            table.setWidths(new int[] { 1, 3, 3, 3 });
-
-            Stream.of("Nº", "Vencimento", "Valor", "Saldo").forEach(header -> {
-                PdfPCell cell = new PdfPCell(new Phrase(header, boldFont));
-                cell.setBackgroundColor(new Color(230, 230, 250));
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                table.addCell(cell);
-            });
-
-            for (LoanInstallment i : proposal.getInstallments()) {
-                table.addCell(new PdfPCell(new Phrase(String.valueOf(i.getNumber()), normalFont)));
-                table.addCell(new PdfPCell(
-                        new Phrase(i.getDueDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont)));
-                table.addCell(new PdfPCell(new Phrase("R$ " + i.getValue(), normalFont)));
-                table.addCell(new PdfPCell(new Phrase("R$ " + i.getBalance(), normalFont)));
-            }
+        cb.beginText();
+        cb.setFontAndSize(NORMAL_BASE_FONT, FONT_SIZE);
+        cb.setColorFill(Color.DARK_GRAY);
+        for (int c = 0; c < values.length; c++) {
+            cb.setTextMatrix(COLUMN_X[c] + CELL_PADDING, bottom + CELL_PADDING);
+            cb.showText(values[c]);
+        }
+        cb.endText();
+    }
 
-            doc.add(table);
-            doc.add(Chunk.NEWLINE);
+    private void drawBorders(PdfContentByte cb, float bottom) {
+        cb.setLineWidth(0.5f);
+        cb.setLineCap(PdfContentByte.LINE_CAP_PROJECTING_SQUARE);
+        cb.setColorStroke(Color.BLACK);
+        for (int c = 0; c + 1 < COLUMN_X.length; c++) {
+            cb.rectangle(COLUMN_X[c], bottom, COLUMN_X[c + 1] - COLUMN_X[c], ROW_HEIGHT);
+        }
+        cb.stroke();
+    }
 
-            // Adiciona as disposições finais
-            adicionarDisposicoesFinais(doc, normalFont, sectionTitleFont, proposal);
+    private void adicionarDisposicoesFinais(Document doc, LoanProposal proposal, String ccb)
+            throws DocumentException {
+        doc.add(new Paragraph("Disposições Finais", SECTION_TITLE_FONT));
+        doc.add(lineSpacing(-12, 5));
+        for (String provision : FINAL_PROVISIONS) {
+            doc.add(new Paragraph(provision, NORMAL_FONT));
+        }
+        doc.add(Chunk.NEWLINE);
 
-            doc.close();
-            return baos.toByteArray();
+        // Declaração
+        doc.add(new Paragraph("Declaração", SECTION_TITLE_FONT));
+        doc.add(lineSpacing(-12, 5));
+        doc.add(new Paragraph("Eu, " + proposal.getCustomer().getName() + ", CPF: " + proposal.getCustomer().getCpf()
+                + ", declaro ter ciência e concordância com os termos desta CCB.", NORMAL_FONT));
+        doc.add(Chunk.NEWLINE);
+        doc.add(Chunk.NEWLINE);
+        doc.add(new Paragraph("Assinatura do Cliente: ___________________________________   Data: ___/___/______",
+                NORMAL_FONT));
+        doc.add(Chunk.NEWLINE);
+        doc.add(new Paragraph("Código CCB: " + ccb, NORMAL_FONT));
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Erro ao gerar CCB", e);
+    private static float[] columnOffsets(int[] weights, float width) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
         }
+        float[] offsets = new float[weights.length + 1];
+        for (int c = 0; c < weights.length; c++) {
+            offsets[c + 1] = offsets[c] + width * weights[c] / total;
+        }
+        return offsets;
     }
 
+    private static PixKey firstPixKey(Customer customer) {
+        List<PixKey> keys = customer.getVirtualAccount().getPixKeys();
+        return keys.isEmpty() ? null : keys.get(0);
+    }
 }
@@ -7,7 +7,7 @@ import com.crediflow.dto.CustomerResponseDTO;
 import com.crediflow.dto.PagedResult;
 import com.crediflow.entity.Company;
 import com.crediflow.entity.Customer;
-import com.crediflow.exception.BadRequestException;
+import com.crediflow.enums.OutboxAggregateType;
 import com.crediflow.exception.ConflictException;
 import com.crediflow.repository.CompanyRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -28,7 +28,7 @@ public class CompanyService {
     CompanyRepository companyRepository;
 
     @Inject
-    KeycloakAdminService keycloakService;
+    KeycloakOutboxService keycloakOutbox;
 
     @Inject
     ObjectMapper mapper;
@@ -46,30 +46,16 @@ public class CompanyService {
             throw new ConflictException("Já existe uma empresa com este CNPJ.");
         }
 
+        company.setCreatedBy(getCurrentUsername());
+        companyRepository.persist(company);
+
+        // Cria ou vincula o usuário no Keycloak depois do commit (keycloakId é preenchido quando aplicado)
         Map<String, Object> userData = new HashMap<>();
         userData.put("username", company.getEmail());
         userData.put("email", company.getEmail());
         userData.put("firstName", company.getName());
         userData.put("lastName", company.getResponsibleName());
-        userData.put("password", "123456");
-
-        try {
-            Optional<Map<String, Object>> existingUser = keycloakService.getUserByUsername(company.getEmail());
-
-            String keycloakId;
-            if (existingUser.isPresent()) {
-                keycloakId = (String) existingUser.get().get("id");
-            } else {
-                keycloakId = keycloakService.createUserAndReturnId(userData, "company");
-            }
-
-            company.setKeycloakId(keycloakId);
-        } catch (Exception e) {
-            throw new BadRequestException("Erro ao criar/verificar usuário no Keycloak: " + e.getMessage());
-        }
-
-        company.setCreatedBy(getCurrentUsername());
-        companyRepository.persist(company);
+        keycloakOutbox.createUser(OutboxAggregateType.COMPANY, company.getId(), userData, "company");
         return company;
     }
 
@@ -123,14 +109,9 @@ public boolean delete(Long id) {
 
     Company company = optional.get();
 
-    // 1. Tenta deletar do Keycloak
-    try {
-        if (company.getKeycloakId() != null) {
-            keycloakService.deleteUser(company.getKeycloakId());
-        }
-    } catch (Exception e) {
-        throw new BadRequestException("Erro ao deletar usuário no Keycloak: " + e.getMessage());
-    }
+    // 1. Remove o usuário do Keycloak (aplicado depois do commit)
+    keycloakOutbox.deleteUser(OutboxAggregateType.COMPANY, company.getId(), company.getKeycloakId(),
+            company.getEmail());
 
     // 2. Deleta do banco
     return companyRepository.deleteById(id);
@@ -146,17 +127,12 @@ public boolean delete(Long id) {
         company.setConvenioType(dto.type);
         company.setPhone(dto.phone);
         company.setUpdatedBy(getCurrentUsername());
-        try {
-            Map<String, Object> userData = new HashMap<>();
-            userData.put("username", dto.email);
-            userData.put("firstName", dto.name);
-            userData.put("lastName", dto.responsible);
-            userData.put("email", dto.email);
-
-            keycloakService.updateUser(company.getKeycloakId(), userData);
-        } catch (Exception e) {
-            throw new BadRequestException("Erro ao atualizar usuário no Keycloak: " + e.getMessage());
-        }
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("username", dto.email);
+        userData.put("firstName", dto.name);
+        userData.put("lastName", dto.responsible);
+        userData.put("email", dto.email);
+        keycloakOutbox.updateUser(OutboxAggregateType.COMPANY, company.getId(), userData);
     }
 
     public Company fromDTO(CompanyRequestDTO dto) {
@@ -6,6 +6,7 @@ import com.crediflow.dto.CustomerResponseDTO;
 import com.crediflow.dto.PagedResult;
 import com.crediflow.entity.Company;
 import com.crediflow.entity.Customer;
+import com.crediflow.enums.OutboxAggregateType;
 import com.crediflow.exception.BadRequestException;
 import com.crediflow.exception.ConflictException;
 import com.crediflow.repository.CompanyRepository;
@@ -32,7 +33,7 @@ public class CustomerService {
     CompanyRepository companyRepository;
 
     @Inject
-    KeycloakAdminService keycloakService;
+    KeycloakOutboxService keycloakOutbox;
 
     @Inject
     ObjectMapper mapper;
@@ -43,6 +44,21 @@ public class CustomerService {
     @Inject
     KeycloakConfig config;
 
+    @Inject
+    HotAccountLedger hotAccountLedger;
+
+    @Inject
+    UserStatusService userStatusService;
+
+    @Inject
+    AvailableMarginService availableMarginService;
+
+    @Inject
+    PixDirectory pixDirectory;
+
+    @Inject
+    BankAccountService bankAccountService;
+
     public String getCurrentUsername() {
         return identity != null && !identity.isAnonymous()
                 ? identity.getPrincipal().getName()
@@ -59,31 +75,16 @@ public class CustomerService {
             throw new ConflictException("Já existe um cliente com este e-mail.");
         }
 
-        // Cria ou vincula Keycloak user
+        customer.setCreatedBy(getCurrentUsername());
+        customerRepository.persist(customer);
+
+        // Cria ou vincula o usuário no Keycloak depois do commit (keycloakId é preenchido quando aplicado)
         Map<String, Object> userData = new HashMap<>();
         userData.put("username", customer.getEmail());
         userData.put("email", customer.getEmail());
         userData.put("firstName", customer.getName());
         userData.put("lastName", customer.getCpf());
-        userData.put("password", "123456");
-
-        try {
-            Optional<Map<String, Object>> existingUser = keycloakService.getUserByUsername(customer.getEmail());
-            String keycloakId;
-
-            if (existingUser.isPresent()) {
-                keycloakId = (String) existingUser.get().get("id");
-            } else {
-                keycloakId = keycloakService.createUserAndReturnId(userData, "client");
-            }
-
-            customer.setKeycloakId(keycloakId);
-        } catch (Exception e) {
-            throw new BadRequestException("Erro ao criar/verificar usuário no Keycloak: " + e.getMessage());
-        }
-
-        customer.setCreatedBy(getCurrentUsername());
-        customerRepository.persist(customer);
+        keycloakOutbox.createUser(OutboxAggregateType.CUSTOMER, customer.getId(), userData, "client");
         return customer;
     }
 
@@ -103,12 +104,7 @@ public class CustomerService {
         PanacheQuery<Customer> query = customerRepository.findAll();
         long total = query.count();
 
-        List<CustomerResponseDTO> items = query
-                .page(Page.of(page, size))
-                .list()
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        List<CustomerResponseDTO> items = toDTOs(query.page(Page.of(page, size)).list());
 
         return new PagedResult<>(items, total, page, size);
     }
@@ -117,10 +113,7 @@ public class CustomerService {
         PanacheQuery<Customer> results = customerRepository.searchPaged(query, page, size);
         long total = results.count();
 
-        List<CustomerResponseDTO> items = results.list()
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        List<CustomerResponseDTO> items = toDTOs(results.list());
 
         return new PagedResult<>(items, total, page, size);
     }
@@ -138,6 +131,11 @@ public class CustomerService {
                     && customerRepository.find("email", dto.email).firstResultOptional().isPresent()) {
                 throw new ConflictException("Já existe um cliente com este e-mail.");
             }
+            if (!dto.name.equals(customer.getName()) && customer.getVirtualAccount() != null) {
+                // o titular aparece na consulta da chave Pix
+                pixDirectory.evictAccountAfterCommit(customer.getVirtualAccount().getId());
+                bankAccountService.invalidateRecipientAfterCommit(customer.getVirtualAccount());
+            }
             customer.setName(dto.name);
             customer.setCpf(dto.cpf);
             customer.setEmail(dto.email);
@@ -146,6 +144,7 @@ public class CustomerService {
             customer.setUpdatedBy(getCurrentUsername());
             customer.setOccupation(dto.occupation);
             customer.setSalary(dto.salary);
+            availableMarginService.invalidateAfterCommit(customer.getId());
             customer.setStreet(dto.street);
             customer.setStreetNumber(dto.streetNumber);
             customer.setCity(dto.city);
@@ -162,17 +161,13 @@ public class CustomerService {
             }
             customer.setCompany(company);
 
-            // Atualiza também no Keycloak
-            try {
-                Map<String, Object> userData = new HashMap<>();
-                userData.put("username", dto.email);
-                userData.put("email", dto.email);
-                userData.put("firstName", dto.name);
-                userData.put("lastName", dto.cpf);
-                keycloakService.updateUser(customer.getKeycloakId(), userData);
-            } catch (Exception e) {
-                throw new BadRequestException("Erro ao atualizar usuário no Keycloak: " + e.getMessage());
-            }
+            // Atualiza também no Keycloak (aplicado depois do commit)
+            Map<String, Object> userData = new HashMap<>();
+            userData.put("username", dto.email);
+            userData.put("email", dto.email);
+            userData.put("firstName", dto.name);
+            userData.put("lastName", dto.cpf);
+            keycloakOutbox.updateUser(OutboxAggregateType.CUSTOMER, customer.getId(), userData);
         } catch (Exception e) {
             throw new BadRequestException("Erro ao atualizar cliente: " + e.getMessage());
         }
@@ -185,12 +180,12 @@ public class CustomerService {
             return false;
 
         Customer customer = opt.get();
-
-        try {
-            keycloakService.deleteUser(customer.getKeycloakId());
-        } catch (Exception e) {
-            throw new BadRequestException("Erro ao deletar usuário no Keycloak: " + e.getMessage());
+        if (customer.getVirtualAccount() != null) {
+            pixDirectory.evictAccountAfterCommit(customer.getVirtualAccount().getId());
+            bankAccountService.invalidateRecipientAfterCommit(customer.getVirtualAccount());
         }
+        keycloakOutbox.deleteUser(OutboxAggregateType.CUSTOMER, customer.getId(), customer.getKeycloakId(),
+                customer.getEmail());
 
         return customerRepository.deleteById(id);
     }
@@ -223,15 +218,18 @@ public class CustomerService {
     }
 
     public CustomerResponseDTO toDTO(Customer customer) {
-        boolean enabled = true;
-        if (customer.getKeycloakId() != null) {
-            try {
-                enabled = keycloakService.isUserEnabled(customer.getKeycloakId());
-            } catch (Exception e) {
-                // logar erro se necessário
-            }
-        }
-        return toDTO(customer, enabled);
+        return toDTO(customer, userStatusService.isEnabled(customer.getKeycloakId()));
+    }
+
+    // status do Keycloak de toda a lista de uma vez (cache + consultas em paralelo), em vez de um por cliente
+    public List<CustomerResponseDTO> toDTOs(List<Customer> customers) {
+        Map<String, Boolean> status = userStatusService.statusOf(
+                customers.stream().map(Customer::getKeycloakId).toList());
+
+        return customers.stream()
+                .map(customer -> toDTO(customer, customer.getKeycloakId() == null
+                        || status.getOrDefault(customer.getKeycloakId(), true)))
+                .collect(Collectors.toList());
     }
 
     public CustomerResponseDTO toDTO(Customer customer, boolean enabled) {
@@ -262,7 +260,7 @@ public class CustomerService {
         if (customer.getVirtualAccount() != null) {
             dto.virtualAccountNumber = customer.getVirtualAccount().getAccountNumber();
             dto.virtualAgencyNumber = customer.getVirtualAccount().getAgencyNumber();
-            dto.virtualBalance = customer.getVirtualAccount().getBalance();
+            dto.virtualBalance = hotAccountLedger.balanceOf(customer.getVirtualAccount());
         } else {
             dto.virtualAccountNumber = null;
             dto.virtualAgencyNumber = null;
@@ -287,12 +285,7 @@ public class CustomerService {
                 .page(Page.of(page, size))
                 .list();
 
-        List<CustomerResponseDTO> items = customers.stream()
-                .map(customer -> {
-                    boolean enabled = keycloakService.isUserEnabled(customer.getKeycloakId());
-                    return toDTO(customer, enabled);
-                })
-                .collect(Collectors.toList());
+        List<CustomerResponseDTO> items = toDTOs(customers);
 
         return new PagedResult<>(items, total, page, size);
     }
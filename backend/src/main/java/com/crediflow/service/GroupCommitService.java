@@ -0,0 +1,278 @@
+package com.crediflow.service;
+
+import com.crediflow.exception.ApiException;
+import com.crediflow.exception.ConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Group commit das movimentações de dinheiro: operações que chegam dentro de
+ * {@code crediflow.group-commit.window} umas das outras dividem uma transação,
+ * então as linhas de {@code transactions} (e os saldos alterados) vão num único
+ * lote JDBC e o banco faz um fsync por grupo em vez de um por operação.
+ *
+ * Uma única thread junta as operações da fila (até {@code max-batch}), roda cada
+ * uma em ordem dentro da transação do grupo e só completa quem chamou depois do
+ * commit. Se uma operação falha, o grupo é desfeito: as anteriores são refeitas
+ * e confirmadas sem ela, quem falhou recebe a própria exceção e as seguintes
+ * formam o próximo grupo. Como as operações rodam na thread do grupo, não podem
+ * depender do contexto da requisição.
+ *
+ * O grupo segura os bloqueios de todas as operações até o commit, então o
+ * {@link BalanceMutationService} só bloqueia contas em ordem crescente de id
+ * dentro dele e sem esperar por outras transações. Uma operação que precisa de
+ * uma conta de id menor começa o próximo grupo; uma que encontra a conta em uso
+ * volta para a thread de quem chamou e roda sozinha, com a espera de bloqueio de
+ * sempre, sem parar as demais.
+ *
+ * Passam por aqui as movimentações do {@link IdempotencyService} e o pagamento
+ * de parcela com comprovante. O lote de {@code /transactions/batch} não: ele já
+ * grava todas as suas transferências numa transação e lotes JDBC, e um lote
+ * grande seguraria a thread do grupo.
+ */
+@ApplicationScoped
+public class GroupCommitService {
+
+    private static final Logger LOG = Logger.getLogger(GroupCommitService.class);
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    @Inject
+    BalanceMutationService balanceMutationService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "crediflow.group-commit.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "crediflow.group-commit.window", defaultValue = "2ms")
+    Duration window;
+
+    @ConfigProperty(name = "crediflow.group-commit.max-batch", defaultValue = "100")
+    int maxBatch;
+
+    @ConfigProperty(name = "crediflow.group-commit.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+
+    private BlockingQueue<Work<?>> queue;
+    private volatile boolean running = true;
+    private volatile Thread committer;
+
+    DistributionSummary batchSize;
+    Timer addedLatency;
+    Timer commitTime;
+    Counter reruns;
+    Counter splitByLockOrder;
+    Counter sentBackToCaller;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchSize = registry.summary("crediflow.group-commit.batch.size");
+        addedLatency = registry.timer("crediflow.group-commit.wait");
+        commitTime = registry.timer("crediflow.group-commit.commit");
+        reruns = registry.counter("crediflow.group-commit.reruns");
+        splitByLockOrder = registry.counter("crediflow.group-commit.left-group", "reason", "lock-order");
+        sentBackToCaller = registry.counter("crediflow.group-commit.left-group", "reason", "lock-wait");
+        registry.gauge("crediflow.group-commit.queued", Tags.empty(), queue, BlockingQueue::size);
+        if (enabled) {
+            committer = Thread.ofVirtual().name("group-commit").start(this::run);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        Thread current = committer;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Executa {@code work} numa transação e devolve o resultado depois do commit.
+     * Com o group commit ligado a transação é a do grupo; desligado (ou se já
+     * houver uma transação em curso) o comportamento é o de sempre.
+     */
+    public <T> T call(Supplier<T> work) {
+        if (synchronizationRegistry.getTransactionKey() != null) {
+            return work.get();
+        }
+        if (!enabled) {
+            return QuarkusTransaction.requiringNew().call(work::get);
+        }
+        Work<T> pending = new Work<>(work);
+        if (!queue.offer(pending)) {
+            throw new ApiException("Fila de transações cheia, tente novamente", Response.Status.SERVICE_UNAVAILABLE);
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BalanceMutationService.GroupLockUnavailable) {
+                // conta em uso: espera o bloqueio nesta thread, fora do grupo
+                return QuarkusTransaction.requiringNew().call(work::get);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Work<T> {
+        final Supplier<T> action;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Work(Supplier<T> action) {
+            this.action = action;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object value) {
+            result.complete((T) value);
+        }
+    }
+
+    private record Failure(int index, RuntimeException error) {
+    }
+
+    private void run() {
+        List<Work<?>> batch = new ArrayList<>(maxBatch);
+        long windowNanos = window.toNanos();
+        while (running) {
+            try {
+                Work<?> first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // a janela conta da chegada da primeira: é o máximo que ela espera pelas outras
+                long deadline = first.enqueuedAt + windowNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    Work<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                long now = System.nanoTime();
+                for (Work<?> work : batch) {
+                    addedLatency.record(now - work.enqueuedAt, TimeUnit.NANOSECONDS);
+                }
+                commitAll(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                // commitAll já completa cada operação; isto só protege a thread do grupo
+                LOG.errorf(e, "Erro inesperado no group commit");
+            } finally {
+                batch.forEach(work -> work.result.completeExceptionally(
+                        new ConflictException("Operação não processada, tente novamente")));
+                batch.clear();
+            }
+        }
+        Work<?> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new ApiException("Serviço encerrando",
+                    Response.Status.SERVICE_UNAVAILABLE));
+        }
+    }
+
+    // confirma as operações em ordem; a que falhar sai do grupo sem levar as outras
+    private void commitAll(List<Work<?>> works) {
+        if (works.isEmpty()) {
+            return;
+        }
+        Failure failure = attempt(works);
+        if (failure == null) {
+            return;
+        }
+        reruns.increment();
+        commitAll(works.subList(0, failure.index()));
+        if (failure.error() instanceof BalanceMutationService.GroupLockUnavailable unavailable
+                && unavailable.isOutOfOrder() && failure.index() > 0) {
+            // começando um grupo, a operação bloqueia em ordem desde a primeira conta
+            splitByLockOrder.increment();
+            commitAll(works.subList(failure.index(), works.size()));
+            return;
+        }
+        if (failure.error() instanceof BalanceMutationService.GroupLockUnavailable) {
+            sentBackToCaller.increment();
+        }
+        // só depois das anteriores: quem repete a operação (Idempotency-Key) já encontra o commit delas
+        works.get(failure.index()).result.completeExceptionally(failure.error());
+        commitAll(works.subList(failure.index() + 1, works.size()));
+    }
+
+    private Failure attempt(List<Work<?>> works) {
+        Object[] results = new Object[works.size()];
+        Failure[] failure = new Failure[1];
+        long start = System.nanoTime();
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                balanceMutationService.startGroupTransaction();
+                for (int i = 0; i < works.size(); i++) {
+                    try {
+                        results[i] = works.get(i).action.get();
+                    } catch (RuntimeException e) {
+                        failure[0] = new Failure(i, e);
+                        throw e;
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            if (failure[0] != null) {
+                return failure[0];
+            }
+            // o commit falhou sem dizer por causa de qual operação
+            if (works.size() == 1) {
+                works.get(0).result.completeExceptionally(e);
+            } else {
+                LOG.debugf("Grupo de %d operações refeito uma a uma: %s", works.size(), e.getMessage());
+                reruns.increment();
+                works.forEach(work -> commitAll(List.of(work)));
+            }
+            return null;
+        }
+        commitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(works.size());
+        for (int i = 0; i < works.size(); i++) {
+            works.get(i).complete(results[i]);
+        }
+        return null;
+    }
+}
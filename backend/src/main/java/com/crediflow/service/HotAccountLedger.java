@@ -0,0 +1,373 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.HotAccountCheckpoint;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.repository.AccountBalanceSnapshotRepository;
+import com.crediflow.repository.BankAccountRepository;
+import com.crediflow.repository.HotAccountCheckpointRepository;
+import com.crediflow.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Saldo em memória para contas "quentes" (empresas e contas de liberação que
+ * concentram depósitos e Pix).
+ *
+ * Para as contas configuradas em {@code crediflow.ledger.hot-accounts} o saldo
+ * vive aqui, em centavos: créditos entram num {@link LongAdder} sem lock depois
+ * do commit, débitos são reservados sob o lock da faixa (stripe) da conta e só
+ * saem do saldo confirmado no commit. As linhas de {@code transactions}
+ * continuam sendo gravadas na própria requisição; o saldo confirmado em
+ * {@code bank_accounts} e o fechamento em {@code account_balance_snapshots} são
+ * gravados em lote periodicamente. O fechamento vai para o dia do último
+ * movimento confirmado: quando o primeiro movimento de um dia chega, o saldo
+ * do dia anterior fica guardado para o próximo flush.
+ *
+ * Na subida o saldo é reconstruído a partir de {@code hot_account_checkpoints}:
+ * o saldo de um ponto no tempo mais as transações concluídas desde então. O
+ * flush avança o ponto até {@code crediflow.ledger.settle-margin} atrás (o
+ * timeout de transação), quando não há mais transação aberta que possa gravar
+ * uma linha anterior a ele.
+ */
+@ApplicationScoped
+public class HotAccountLedger {
+
+    private static final Logger LOG = Logger.getLogger(HotAccountLedger.class);
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    TransactionRepository transactionRepository;
+
+    @Inject
+    AccountBalanceSnapshotRepository snapshotRepository;
+
+    @Inject
+    HotAccountCheckpointRepository checkpointRepository;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "crediflow.ledger.hot-accounts")
+    Optional<List<Long>> hotAccountIds;
+
+    @ConfigProperty(name = "crediflow.ledger.stripes", defaultValue = "64")
+    int stripeCount;
+
+    @ConfigProperty(name = "crediflow.ledger.settle-margin", defaultValue = "60s")
+    Duration settleMargin;
+
+    // dá o dia de cada movimento; os testes trocam para simular a virada do dia
+    Clock clock = Clock.systemDefaultZone();
+
+    private final Map<Long, HotBalance> balances = new ConcurrentHashMap<>();
+    private ReentrantLock[] stripes;
+
+    Counter flushedRows;
+
+    @PostConstruct
+    void init() {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        flushedRows = registry.counter("crediflow.ledger.flushed.rows");
+        registry.gaugeMapSize("crediflow.ledger.hot.accounts", Tags.empty(), balances);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        hotAccountIds.ifPresent(ids -> QuarkusTransaction.requiringNew().run(() -> recover(ids)));
+    }
+
+    /**
+     * Carrega o saldo das contas quentes: o do checkpoint mais as transações
+     * concluídas depois dele, que são a fonte de verdade caso a aplicação tenha
+     * caído antes do flush. Uma conta sem checkpoint (que acabou de virar quente)
+     * parte do saldo gravado em {@code bank_accounts}.
+     */
+    void recover(List<Long> ids) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Long id : ids) {
+            BankAccount account = bankAccountRepository.findById(id);
+            if (account == null) {
+                LOG.warnf("Conta quente %d não existe, ignorando", id);
+                continue;
+            }
+
+            HotAccountCheckpoint checkpoint = checkpointRepository.findById(id);
+            BigDecimal balance;
+            if (checkpoint == null) {
+                balance = account.getBalance();
+                checkpoint = new HotAccountCheckpoint();
+                checkpoint.setId(id);
+                checkpoint.setBalance(balance);
+                checkpoint.setThrough(now);
+                checkpoint.setUpdatedAt(now);
+                checkpointRepository.persist(checkpoint);
+            } else {
+                balance = checkpoint.getBalance()
+                        .add(transactionRepository.netAmountBetween(id, checkpoint.getThrough(), null));
+            }
+
+            account.setBalance(balance);
+            account.setUpdatedAt(now);
+            balances.put(id, new HotBalance(toCents(balance)));
+        }
+        LOG.infof("Ledger de contas quentes carregado com %d contas", balances.size());
+    }
+
+    // soma ao checkpoint as transações que já não podem mais mudar
+    private void advanceCheckpoint(Long id, LocalDateTime now) {
+        HotAccountCheckpoint checkpoint = checkpointRepository.findById(id);
+        LocalDateTime through = now.minus(settleMargin);
+        if (checkpoint == null || !checkpoint.getThrough().isBefore(through)) {
+            return;
+        }
+        checkpoint.setBalance(checkpoint.getBalance()
+                .add(transactionRepository.netAmountBetween(id, checkpoint.getThrough(), through)));
+        checkpoint.setThrough(through);
+        checkpoint.setUpdatedAt(now);
+    }
+
+    public boolean isHot(Long accountId) {
+        return accountId != null && balances.containsKey(accountId);
+    }
+
+    /**
+     * Saldo atual da conta: o confirmado do ledger para contas quentes (sem os
+     * débitos reservados por transações abertas), o da entidade nas demais.
+     */
+    public BigDecimal balanceOf(BankAccount account) {
+        HotBalance hot = account != null ? balances.get(account.getId()) : null;
+        if (hot == null) {
+            return account != null ? account.getBalance() : null;
+        }
+        return fromCents(hot.committed());
+    }
+
+    public void debit(Long accountId, BigDecimal amount) {
+        HotBalance hot = balances.get(accountId);
+        long cents = toCents(amount);
+        ReentrantLock lock = stripeFor(accountId);
+
+        lock.lock();
+        try {
+            if (hot.available() < cents) {
+                throw new BadRequestException("Saldo insuficiente");
+            }
+            hot.reserved += cents;
+        } finally {
+            lock.unlock();
+        }
+
+        // a reserva nunca vai para o banco: no commit vira débito, no rollback é devolvida
+        afterCompletion(committed -> {
+            lock.lock();
+            try {
+                hot.reserved -= cents;
+                if (committed) {
+                    rollDay(hot);
+                    hot.settled -= cents;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (committed) {
+                hot.dirty.set(true);
+            }
+        });
+    }
+
+    public void credit(Long accountId, BigDecimal amount) {
+        HotBalance hot = balances.get(accountId);
+        long cents = toCents(amount);
+        // crédito só fica visível depois do commit, então nunca é preciso desfazê-lo
+        afterCompletion(committed -> {
+            if (!committed) {
+                return;
+            }
+            LocalDate today = LocalDate.now(clock);
+            if (today.equals(hot.day)) {
+                hot.credits.add(cents);
+            } else {
+                ReentrantLock lock = stripeFor(accountId);
+                lock.lock();
+                try {
+                    // outra thread pode ter virado o dia entre a leitura acima e o lock
+                    if (!today.equals(hot.day)) {
+                        rollDay(hot);
+                    }
+                    hot.credits.add(cents);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            hot.dirty.set(true);
+        });
+    }
+
+    // primeiro movimento do dia: guarda o fechamento do dia anterior; chamado sob o lock da faixa
+    private void rollDay(HotBalance hot) {
+        LocalDate today = LocalDate.now(clock);
+        if (hot.day != null && hot.day.isBefore(today)) {
+            hot.pendingClosings.put(hot.day, hot.committed());
+        }
+        if (hot.day == null || hot.day.isBefore(today)) {
+            hot.day = today;
+        }
+    }
+
+    @Scheduled(every = "${crediflow.ledger.flush-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP,
+            skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void flush() {
+        if (balances.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<LocalDate, Long>> closings = new TreeMap<>();
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                LocalDateTime now = LocalDateTime.now();
+                balances.forEach((id, hot) -> {
+                    if (!hot.dirty.getAndSet(false)) {
+                        return;
+                    }
+                    long committed;
+                    LocalDate day;
+                    Map<LocalDate, Long> days = new TreeMap<>();
+                    ReentrantLock lock = stripeFor(id);
+                    lock.lock();
+                    try {
+                        committed = hot.committed();
+                        day = hot.day;
+                        days.putAll(hot.pendingClosings);
+                        hot.pendingClosings.clear();
+                    } finally {
+                        lock.unlock();
+                    }
+                    closings.put(id, days);
+
+                    bankAccountRepository.update("balance = ?1, updatedAt = ?2 where id = ?3",
+                            fromCents(committed), now, id);
+                    days.forEach((closed, balance) -> snapshotRepository.setClosing(id, closed, fromCents(balance),
+                            now));
+                    if (day != null) {
+                        snapshotRepository.setClosing(id, day, fromCents(committed), now);
+                    }
+                    advanceCheckpoint(id, now);
+                });
+            });
+            flushedRows.increment(closings.size());
+        } catch (RuntimeException e) {
+            LOG.error("Falha ao gravar saldos das contas quentes, tentando novamente no próximo ciclo", e);
+            closings.forEach((id, days) -> {
+                HotBalance hot = balances.get(id);
+                ReentrantLock lock = stripeFor(id);
+                lock.lock();
+                try {
+                    days.forEach(hot.pendingClosings::putIfAbsent);
+                } finally {
+                    lock.unlock();
+                }
+                hot.dirty.set(true);
+            });
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        flush();
+    }
+
+    // sem transação o movimento já está confirmado
+    private void afterCompletion(Consumer<Boolean> action) {
+        if (synchronizationRegistry.getTransactionKey() == null) {
+            action.accept(true);
+            return;
+        }
+        synchronizationRegistry.registerInterposedSynchronization(
+                new AfterCompletion(status -> action.accept(status == Status.STATUS_COMMITTED)));
+    }
+
+    private ReentrantLock stripeFor(Long accountId) {
+        return stripes[Math.floorMod(accountId.hashCode(), stripes.length)];
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static final class HotBalance {
+        // settled, reserved, day e pendingClosings são escritos apenas sob o lock da faixa da conta
+        volatile long settled;
+        // débitos de transações ainda abertas
+        volatile long reserved;
+        final LongAdder credits = new LongAdder();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        // dia do último movimento confirmado e fechamentos de dias anteriores ainda não gravados
+        volatile LocalDate day;
+        final Map<LocalDate, Long> pendingClosings = new TreeMap<>();
+
+        HotBalance(long settled) {
+            this.settled = settled;
+        }
+
+        long committed() {
+            return settled + credits.sum();
+        }
+
+        long available() {
+            return committed() - reserved;
+        }
+    }
+
+    private record AfterCompletion(IntConsumer callback) implements Synchronization {
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            callback.accept(status);
+        }
+    }
+}
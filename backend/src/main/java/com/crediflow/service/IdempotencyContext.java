@@ -0,0 +1,21 @@
+package com.crediflow.service;
+
+import jakarta.enterprise.context.RequestScoped;
+
+/**
+ * Idempotency-Key da requisição corrente, preenchida pelo
+ * {@link com.crediflow.controller.IdempotencyFilter}.
+ */
+@RequestScoped
+public class IdempotencyContext {
+
+    private String key;
+    private boolean replayed;
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    // a resposta veio do registro de uma execução anterior
+    public boolean isReplayed() { return replayed; }
+    public void setReplayed(boolean replayed) { this.replayed = replayed; }
+}
@@ -0,0 +1,297 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.IdempotencyKey;
+import com.crediflow.exception.ConflictException;
+import com.crediflow.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import io.quarkus.cache.CompositeCacheKey;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import io.quarkus.security.identity.SecurityIdentity;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.PessimisticLockException;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.jboss.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Executa operações financeiras no máximo uma vez por Idempotency-Key.
+ *
+ * A chave é inserida em {@code idempotency_keys} no início da mesma transação
+ * da operação e recebe a resposta no fim, então ou as duas coisas são gravadas
+ * ou nenhuma. Uma repetição concorrente esbarra no índice único (esperando o
+ * commit da original) e devolve a resposta registrada sem tocar em saldo. As
+ * respostas confirmadas ficam também no cache {@value #CACHE_NAME}, que atende
+ * as repetições seguintes sem abrir transação. Os registros valem por
+ * {@code crediflow.idempotency.ttl} e são removidos de hora em hora.
+ *
+ * Com ou sem chave, a transação da operação é aberta pelo
+ * {@link GroupCommitService}, que pode confirmá-la junto com outras. Nesse caso
+ * a chave é procurada antes de entrar na fila, e uma chave já registrada ou em
+ * uso por outra transação tira a operação do grupo em vez de fazê-lo esperar.
+ */
+@ApplicationScoped
+public class IdempotencyService {
+
+    private static final Logger LOG = Logger.getLogger(IdempotencyService.class);
+
+    public static final String CACHE_NAME = "idempotency-responses";
+
+    @Inject
+    IdempotencyKeyRepository repository;
+
+    @Inject
+    IdempotencyContext context;
+
+    @Inject
+    SecurityIdentity identity;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    @CacheName(CACHE_NAME)
+    Cache cache;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    @Inject
+    GroupCommitService groupCommitService;
+
+    @Inject
+    BalanceMutationService balanceMutationService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "crediflow.idempotency.ttl", defaultValue = "24h")
+    Duration ttl;
+
+    Counter executed;
+    Counter replayedFromCache;
+    Counter replayedFromDatabase;
+
+    private record Stored(String requestHash, String responseBody, LocalDateTime expiresAt) {
+    }
+
+    // a chave já existe; a transação que tentou inseri-la foi desfeita
+    private static final class DuplicateKey extends RuntimeException {
+        DuplicateKey() {
+            super(null, null, false, false);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        executed = registry.counter("crediflow.idempotency.requests", "result", "executed");
+        replayedFromCache = registry.counter("crediflow.idempotency.requests", "result", "replayed-cache");
+        replayedFromDatabase = registry.counter("crediflow.idempotency.requests", "result", "replayed-db");
+    }
+
+    /**
+     * Se a requisição corrente trouxe Idempotency-Key.
+     */
+    public boolean hasKey() {
+        return context.getKey() != null;
+    }
+
+    /**
+     * Executa {@code action} (com a chave da requisição, se houver) ou devolve a
+     * resposta de uma execução anterior com a mesma chave. {@code endpoint} e
+     * {@code request} identificam a requisição: reaproveitar a chave com outros
+     * dados é um conflito.
+     */
+    public <T> T execute(String endpoint, Object request, Class<T> responseType, Supplier<T> action) {
+        String key = context.getKey();
+        if (key == null) {
+            return groupCommitService.call(action);
+        }
+
+        String principal = identity == null || identity.isAnonymous() ? "" : identity.getPrincipal().getName();
+        String requestHash = hash(endpoint, request);
+        CompositeCacheKey cacheKey = new CompositeCacheKey(principal, key);
+
+        CompletableFuture<Stored> cached = cache.as(CaffeineCache.class).getIfPresent(cacheKey);
+        if (cached != null && cached.join().expiresAt().isAfter(LocalDateTime.now())) {
+            replayedFromCache.increment();
+            return replay(cached.join(), requestHash, responseType);
+        }
+
+        // mais de uma tentativa: a chave pode estar num registro vencido ainda não removido
+        // ou numa execução concorrente que acabou desfeita
+        for (int attempt = 0; attempt < 3; attempt++) {
+            // com o group commit, uma chave já registrada nem entra na fila do grupo
+            IdempotencyKey existing = groupCommitService.isEnabled() ? findExisting(principal, key) : null;
+            if (existing == null) {
+                try {
+                    T result = groupCommitService
+                            .call(() -> executeOnce(principal, key, endpoint, requestHash, cacheKey, action));
+                    executed.increment();
+                    return result;
+                } catch (DuplicateKey e) {
+                    existing = findExisting(principal, key);
+                    if (existing == null) {
+                        // a original foi desfeita enquanto esta esperava
+                        continue;
+                    }
+                }
+            }
+            Stored stored = new Stored(existing.getRequestHash(), existing.getResponseBody(),
+                    existing.getExpiresAt());
+            if (stored.expiresAt().isBefore(LocalDateTime.now()) && attempt == 0) {
+                Long expiredId = existing.getId();
+                QuarkusTransaction.requiringNew().run(() -> repository.deleteById(expiredId));
+                continue;
+            }
+            if (stored.responseBody() == null) {
+                throw new ConflictException("Requisição com esta Idempotency-Key ainda em andamento");
+            }
+            remember(cacheKey, stored);
+            replayedFromDatabase.increment();
+            return replay(stored, requestHash, responseType);
+        }
+        throw new ConflictException("Não foi possível registrar a Idempotency-Key; tente novamente");
+    }
+
+    private IdempotencyKey findExisting(String principal, String key) {
+        return QuarkusTransaction.requiringNew().call(() -> repository.findByKey(principal, key));
+    }
+
+    private <T> T executeOnce(String principal, String key, String endpoint, String requestHash,
+            CompositeCacheKey cacheKey, Supplier<T> action) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyKey record = new IdempotencyKey();
+        record.setPrincipal(principal);
+        record.setIdempotencyKey(key);
+        record.setEndpoint(endpoint);
+        record.setRequestHash(requestHash);
+        record.setCreatedAt(now);
+        record.setExpiresAt(now.plus(ttl));
+        // no grupo, esperar pela chave de outra transação seguraria todas as operações
+        // do grupo: a chave já existente ou em uso tira a operação dele, e fora do grupo
+        // ela espera e termina como uma repetição comum
+        boolean group = balanceMutationService.inGroupTransaction();
+        try {
+            if (group && repository.lockByKeyNoWait(principal, key) != null) {
+                throw new BalanceMutationService.GroupLockUnavailable("Idempotency-Key já registrada");
+            }
+            repository.persist(record);
+            repository.flush();
+        } catch (PersistenceException e) {
+            boolean duplicate = isUniqueViolation(e);
+            if (group && (duplicate || isLockWait(e))) {
+                throw new BalanceMutationService.GroupLockUnavailable("Idempotency-Key em uso por outra transação");
+            }
+            if (duplicate) {
+                throw new DuplicateKey();
+            }
+            throw e;
+        }
+
+        // a operação entra nesta transação (os serviços usam REQUIRED)
+        T result = action.get();
+        record.setResponseBody(toJson(result));
+
+        Stored stored = new Stored(requestHash, record.getResponseBody(), record.getExpiresAt());
+        synchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    remember(cacheKey, stored);
+                }
+            }
+        });
+        return result;
+    }
+
+    private void remember(CompositeCacheKey cacheKey, Stored stored) {
+        cache.as(CaffeineCache.class).put(cacheKey, CompletableFuture.completedFuture(stored));
+    }
+
+    private <T> T replay(Stored stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new ConflictException("Idempotency-Key já usada com outra requisição");
+        }
+        context.setReplayed(true);
+        try {
+            return mapper.readValue(stored.responseBody(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Resposta registrada inválida para a Idempotency-Key", e);
+        }
+    }
+
+    private String hash(String endpoint, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(mapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isUniqueViolation(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLockWait(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof LockTimeoutException || t instanceof PessimisticLockException
+                    || t instanceof LockAcquisitionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Scheduled(every = "1h", delayed = "1h")
+    void purgeExpired() {
+        long removed = QuarkusTransaction.requiringNew().call(() -> repository.deleteExpired(LocalDateTime.now()));
+        if (removed > 0) {
+            LOG.infof("Idempotency-Keys vencidas removidas: %d", removed);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.OutboxEvent;
+import com.crediflow.enums.OutboxAggregateType;
+import com.crediflow.enums.OutboxStatus;
+import com.crediflow.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Aplica no Keycloak os eventos gravados pelo {@link KeycloakOutboxService}.
+ *
+ * Roda periodicamente e logo após cada commit que enfileira eventos. Cada
+ * lote é reservado no banco e os eventos são aplicados em paralelo, em
+ * threads virtuais (no máximo um evento por cliente/empresa por vez). Falhas
+ * voltam para a fila com espera exponencial até o limite de tentativas, depois
+ * ficam como FAILED. As operações são idempotentes (criação procura o username
+ * antes, exclusão de usuário já removido conta como sucesso), então um evento
+ * reaplicado depois de uma queda não duplica nada.
+ */
+@ApplicationScoped
+public class KeycloakOutboxDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(KeycloakOutboxDispatcher.class);
+
+    // senha inicial dos usuários criados pelo cadastro (não é gravada na outbox)
+    private static final String DEFAULT_PASSWORD = "123456";
+
+    @Inject
+    OutboxEventRepository outboxEventRepository;
+
+    @Inject
+    KeycloakAdminService keycloakAdminService;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "crediflow.outbox.batch-size", defaultValue = "50")
+    int batchSize;
+
+    @ConfigProperty(name = "crediflow.outbox.max-attempts", defaultValue = "10")
+    int maxAttempts;
+
+    @ConfigProperty(name = "crediflow.outbox.backoff-initial", defaultValue = "2s")
+    Duration backoffInitial;
+
+    @ConfigProperty(name = "crediflow.outbox.backoff-max", defaultValue = "5m")
+    Duration backoffMax;
+
+    // tempo que um evento fica reservado; se a instância cair, outra o reaplica depois disso
+    @ConfigProperty(name = "crediflow.outbox.lease", defaultValue = "60s")
+    Duration lease;
+
+    private ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean rerun = new AtomicBoolean();
+
+    Counter done;
+    Counter retried;
+    Counter failed;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        done = registry.counter("crediflow.outbox.events", "outcome", "done");
+        retried = registry.counter("crediflow.outbox.events", "outcome", "retry");
+        failed = registry.counter("crediflow.outbox.events", "outcome", "failed");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Agenda uma rodada sem esperar o próximo ciclo do scheduler.
+     */
+    public void wake() {
+        executor.execute(this::dispatch);
+    }
+
+    @Scheduled(every = "${crediflow.outbox.poll-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP,
+            skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void poll() {
+        dispatch();
+    }
+
+    /**
+     * Aplica os eventos vencidos até esvaziar a fila. Se já houver uma rodada
+     * em andamento, ela é avisada para dar mais uma volta.
+     */
+    public void dispatch() {
+        if (!running.compareAndSet(false, true)) {
+            rerun.set(true);
+            return;
+        }
+        try {
+            List<OutboxEvent> batch;
+            do {
+                rerun.set(false);
+                batch = QuarkusTransaction.requiringNew().call(this::claimBatch);
+                CompletableFuture.allOf(batch.stream()
+                        .map(event -> CompletableFuture.runAsync(() -> process(event), executor))
+                        .toArray(CompletableFuture[]::new))
+                        .join();
+            } while (batch.size() == batchSize || rerun.get());
+        } catch (RuntimeException e) {
+            LOG.error("Falha ao processar a outbox do Keycloak", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> claimed = new ArrayList<>();
+        for (OutboxEvent event : outboxEventRepository.findDispatchable(now, batchSize)) {
+            if (outboxEventRepository.claim(event.getId(), event.getAttempts(), now.plus(lease))) {
+                event.setAttempts(event.getAttempts() + 1);
+                claimed.add(event);
+            }
+        }
+        return claimed;
+    }
+
+    private void process(OutboxEvent event) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            String keycloakId = apply(event, readPayload(event));
+            QuarkusTransaction.requiringNew().run(() -> complete(event, keycloakId));
+            done.increment();
+        } catch (Exception e) {
+            LOG.warnf("Evento %d da outbox (%s %s %d) falhou na tentativa %d: %s", event.getId(),
+                    event.getOperation(), event.getAggregateType(), event.getAggregateId(), event.getAttempts(),
+                    e.getMessage());
+            QuarkusTransaction.requiringNew().run(() -> reschedule(event, e));
+        } finally {
+            sample.stop(registry.timer("crediflow.outbox.apply", "operation", event.getOperation().name()));
+        }
+    }
+
+    /**
+     * Executa a chamada ao Keycloak e devolve o id do usuário quando é uma criação.
+     */
+    private String apply(OutboxEvent event, Map<String, Object> payload) throws Exception {
+        Optional<Owner> owner = QuarkusTransaction.requiringNew()
+                .call(() -> findOwner(event.getAggregateType(), event.getAggregateId()));
+
+        switch (event.getOperation()) {
+            case CREATE_USER -> {
+                if (owner.isEmpty()) {
+                    return null; // entidade excluída antes da criação do usuário
+                }
+                String username = (String) payload.get("username");
+                Optional<Map<String, Object>> existing = keycloakAdminService.getUserByUsername(username);
+                if (existing.isPresent()) {
+                    return (String) existing.get().get("id");
+                }
+                Map<String, Object> userData = new HashMap<>(payload);
+                String role = (String) userData.remove("role");
+                userData.put("password", DEFAULT_PASSWORD);
+                return keycloakAdminService.createUserAndReturnId(userData, role);
+            }
+            case UPDATE_USER -> {
+                if (owner.isEmpty()) {
+                    return null; // a exclusão que vem em seguida cuida do usuário
+                }
+                if (owner.get().keycloakId() == null) {
+                    throw new IllegalStateException("Usuário ainda não provisionado no Keycloak");
+                }
+                keycloakAdminService.updateUser(owner.get().keycloakId(), payload);
+                return null;
+            }
+            case DELETE_USER -> {
+                String username = (String) payload.get("username");
+                String keycloakId = (String) payload.get("keycloakId");
+                if (keycloakId == null && username != null) {
+                    // a criação pode ter terminado depois que a entidade foi excluída
+                    keycloakId = keycloakAdminService.getUserByUsername(username)
+                            .map(user -> (String) user.get("id"))
+                            .orElse(null);
+                }
+                if (keycloakId == null) {
+                    return null;
+                }
+                try {
+                    keycloakAdminService.deleteUser(keycloakId);
+                } catch (RuntimeException e) {
+                    // já removido numa tentativa anterior
+                    if (username == null || keycloakAdminService.getUserByUsername(username).isPresent()) {
+                        throw e;
+                    }
+                }
+                return null;
+            }
+            default -> throw new IllegalStateException("Operação desconhecida: " + event.getOperation());
+        }
+    }
+
+    private Optional<Owner> findOwner(OutboxAggregateType type, Long id) {
+        List<String> keycloakIds = outboxEventRepository.getEntityManager()
+                .createQuery("select e.keycloakId from " + entityName(type) + " e where e.id = :id", String.class)
+                .setParameter("id", id)
+                .getResultList();
+        return keycloakIds.isEmpty() ? Optional.empty() : Optional.of(new Owner(keycloakIds.get(0)));
+    }
+
+    private void complete(OutboxEvent event, String keycloakId) {
+        if (keycloakId != null) {
+            outboxEventRepository.getEntityManager()
+                    .createQuery("update " + entityName(event.getAggregateType())
+                            + " e set e.keycloakId = :keycloakId where e.id = :id")
+                    .setParameter("keycloakId", keycloakId)
+                    .setParameter("id", event.getAggregateId())
+                    .executeUpdate();
+        }
+        outboxEventRepository.update("status = ?1, processedAt = ?2, lastError = null where id = ?3",
+                OutboxStatus.DONE, LocalDateTime.now(), event.getId());
+    }
+
+    private void reschedule(OutboxEvent event, Exception error) {
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+        if (message.length() > 1000) {
+            message = message.substring(0, 1000);
+        }
+
+        if (event.getAttempts() >= maxAttempts) {
+            failed.increment();
+            LOG.errorf("Evento %d da outbox desistido após %d tentativas", event.getId(), event.getAttempts());
+            outboxEventRepository.update("status = ?1, lastError = ?2 where id = ?3",
+                    OutboxStatus.FAILED, message, event.getId());
+            return;
+        }
+
+        retried.increment();
+        outboxEventRepository.update("nextAttemptAt = ?1, lastError = ?2 where id = ?3",
+                LocalDateTime.now().plus(backoff(event.getAttempts())), message, event.getId());
+    }
+
+    /**
+     * Espera exponencial (inicial × 2^(tentativas-1), até o máximo) com até 20%
+     * de variação, para as instâncias não repetirem todas ao mesmo tempo.
+     */
+    Duration backoff(int attempts) {
+        long initial = backoffInitial.toMillis();
+        long max = backoffMax.toMillis();
+        long delay = initial << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > max) {
+            delay = max;
+        }
+        long jitter = (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delay + jitter);
+    }
+
+    private Map<String, Object> readPayload(OutboxEvent event) throws Exception {
+        return mapper.readValue(event.getPayload(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    private static String entityName(OutboxAggregateType type) {
+        return switch (type) {
+            case CUSTOMER -> "Customer";
+            case COMPANY -> "Company";
+        };
+    }
+
+    private record Owner(String keycloakId) {
+    }
+}
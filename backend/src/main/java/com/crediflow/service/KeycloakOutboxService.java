@@ -0,0 +1,122 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.OutboxEvent;
+import com.crediflow.enums.OutboxAggregateType;
+import com.crediflow.enums.OutboxOperation;
+import com.crediflow.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.Transactional;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Enfileira alterações de usuários do Keycloak na tabela {@code outbox_events},
+ * dentro da transação de quem chama. Nada é enviado ao Keycloak aqui: o
+ * {@link KeycloakOutboxDispatcher} aplica os eventos depois do commit, então a
+ * transação do cadastro não fica aberta esperando o servidor de identidade.
+ */
+@ApplicationScoped
+public class KeycloakOutboxService {
+
+    private static final Object WAKE_KEY = KeycloakOutboxService.class.getName() + ".wake";
+
+    @Inject
+    OutboxEventRepository outboxEventRepository;
+
+    @Inject
+    KeycloakOutboxDispatcher dispatcher;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    @Inject
+    ObjectMapper mapper;
+
+    /**
+     * Cria (ou vincula, se o username já existir) o usuário da entidade; o id
+     * gerado no Keycloak é gravado nela quando o evento é aplicado.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void createUser(OutboxAggregateType type, Long aggregateId, Map<String, Object> userData, String role) {
+        Map<String, Object> payload = new HashMap<>(userData);
+        payload.put("role", role);
+        // só existe um usuário por entidade
+        enqueue(type, aggregateId, OutboxOperation.CREATE_USER, key(type, aggregateId, OutboxOperation.CREATE_USER),
+                payload);
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void updateUser(OutboxAggregateType type, Long aggregateId, Map<String, Object> userData) {
+        enqueue(type, aggregateId, OutboxOperation.UPDATE_USER,
+                key(type, aggregateId, OutboxOperation.UPDATE_USER) + ":" + UUID.randomUUID(), userData);
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void deleteUser(OutboxAggregateType type, Long aggregateId, String keycloakId, String username) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("keycloakId", keycloakId);
+        payload.put("username", username);
+        enqueue(type, aggregateId, OutboxOperation.DELETE_USER, key(type, aggregateId, OutboxOperation.DELETE_USER),
+                payload);
+    }
+
+    private void enqueue(OutboxAggregateType type, Long aggregateId, OutboxOperation operation, String idempotencyKey,
+            Map<String, Object> payload) {
+        if (outboxEventRepository.count("idempotencyKey", idempotencyKey) > 0) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType(type);
+        event.setAggregateId(aggregateId);
+        event.setOperation(operation);
+        event.setIdempotencyKey(idempotencyKey);
+        event.setPayload(toJson(payload));
+        event.setCreatedAt(now);
+        event.setNextAttemptAt(now);
+        outboxEventRepository.persist(event);
+
+        wakeDispatcherAfterCommit();
+    }
+
+    private void wakeDispatcherAfterCommit() {
+        if (synchronizationRegistry.getResource(WAKE_KEY) != null) {
+            return;
+        }
+        synchronizationRegistry.putResource(WAKE_KEY, Boolean.TRUE);
+        synchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    dispatcher.wake();
+                }
+            }
+        });
+    }
+
+    private String toJson(Map<String, Object> payload) {
+        try {
+            return mapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Dados do usuário inválidos para a outbox", e);
+        }
+    }
+
+    private static String key(OutboxAggregateType type, Long aggregateId, OutboxOperation operation) {
+        return type + ":" + aggregateId + ":" + operation;
+    }
+}
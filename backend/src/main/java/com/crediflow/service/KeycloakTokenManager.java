@@ -0,0 +1,234 @@
+package com.crediflow.service;
+
+import com.crediflow.config.KeycloakConfig;
+import com.crediflow.exception.ConflictException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token de administrador do Keycloak (client credentials) e o cliente HTTP
+ * compartilhado pelas chamadas à API de administração.
+ *
+ * O token fica em cache até pouco antes de expirar. Ao entrar na janela de
+ * renovação, quem pede o token ainda recebe o atual e uma renovação é
+ * disparada em segundo plano; se o token já expirou, a thread espera a
+ * renovação. Em ambos os casos só existe uma chamada ao endpoint de token por
+ * vez: as demais aguardam o mesmo resultado.
+ */
+@ApplicationScoped
+public class KeycloakTokenManager {
+
+    private static final Logger LOG = Logger.getLogger(KeycloakTokenManager.class);
+
+    @Inject
+    KeycloakConfig config;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    // antes de expirar, o token para de ser entregue com esta folga (evita expirar no meio da chamada)
+    @ConfigProperty(name = "crediflow.keycloak.token.min-validity", defaultValue = "10s")
+    Duration minValidity;
+
+    // a renovação em segundo plano começa com esta antecedência da expiração
+    @ConfigProperty(name = "crediflow.keycloak.token.refresh-ahead", defaultValue = "30s")
+    Duration refreshAhead;
+
+    @ConfigProperty(name = "crediflow.keycloak.http.connect-timeout", defaultValue = "5s")
+    Duration connectTimeout;
+
+    @ConfigProperty(name = "crediflow.keycloak.http.read-timeout", defaultValue = "10s")
+    Duration readTimeout;
+
+    private Client client;
+    private ExecutorService refresher;
+
+    private volatile CachedToken current;
+    private final AtomicReference<CompletableFuture<CachedToken>> inFlight = new AtomicReference<>();
+    private final AtomicBoolean backgroundScheduled = new AtomicBoolean();
+
+    Counter hits;
+    Counter misses;
+    Counter backgroundRefreshes;
+    Timer refreshSuccess;
+    Timer refreshFailure;
+
+    @PostConstruct
+    void init() {
+        client = ClientBuilder.newBuilder()
+                .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        refresher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "keycloak-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        hits = registry.counter("crediflow.keycloak.token.requests", "result", "hit");
+        misses = registry.counter("crediflow.keycloak.token.requests", "result", "miss");
+        backgroundRefreshes = registry.counter("crediflow.keycloak.token.background.refreshes");
+        refreshSuccess = registry.timer("crediflow.keycloak.token.refresh", "outcome", "success");
+        refreshFailure = registry.timer("crediflow.keycloak.token.refresh", "outcome", "failure");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+        client.close();
+    }
+
+    /**
+     * Cliente JAX-RS único (com pool de conexões) para a API do Keycloak.
+     * As respostas devem ser fechadas para devolver a conexão ao pool.
+     */
+    public Client client() {
+        return client;
+    }
+
+    public String token() {
+        CachedToken token = current;
+        long now = System.nanoTime();
+        if (token != null && now < token.usableUntil) {
+            hits.increment();
+            if (now >= token.refreshAt) {
+                refreshInBackground();
+            }
+            return token.value;
+        }
+
+        misses.increment();
+        try {
+            return refresh().join().value;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // só quem vira o flag agenda; os demais pedidos da janela seguem com o token atual
+    private void refreshInBackground() {
+        if (backgroundScheduled.compareAndSet(false, true)) {
+            backgroundRefreshes.increment();
+            refresher.execute(() -> {
+                try {
+                    refresh().exceptionally(e -> {
+                        LOG.warn("Falha ao renovar token do Keycloak em segundo plano", e);
+                        return null;
+                    });
+                } finally {
+                    backgroundScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Renovação com uma única chamada em andamento: quem chega enquanto ela
+     * acontece recebe o mesmo future, e quem chega logo depois encontra o token
+     * novo, fora da janela de renovação, sem chamar o endpoint de novo.
+     */
+    private CompletableFuture<CachedToken> refresh() {
+        while (true) {
+            CompletableFuture<CachedToken> pending = inFlight.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<CachedToken> created = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, created)) {
+                try {
+                    CachedToken token = current;
+                    if (token == null || System.nanoTime() >= token.refreshAt) {
+                        token = fetch();
+                    }
+                    current = token;
+                    created.complete(token);
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.set(null);
+                }
+                return created;
+            }
+        }
+    }
+
+    private CachedToken fetch() {
+        Timer.Sample sample = Timer.start(registry);
+        boolean success = false;
+        try {
+            var form = new Form()
+                    .param("client_id", config.clientId())
+                    .param("client_secret", config.clientSecret())
+                    .param("grant_type", "client_credentials");
+
+            long requestedAt = System.nanoTime();
+            try (Response response = client
+                    .target(config.serverUrl() + "/realms/" + config.realm() + "/protocol/openid-connect/token")
+                    .request(MediaType.APPLICATION_JSON_TYPE)
+                    .post(Entity.entity(form, MediaType.APPLICATION_FORM_URLENCODED_TYPE))) {
+
+                String responseBody = response.readEntity(String.class);
+                if (response.getStatus() != 200) {
+                    throw new ConflictException("Erro ao obter token de administrador: " + responseBody);
+                }
+
+                Map<?, ?> json = mapper.readValue(responseBody, Map.class);
+                long expiresIn = json.get("expires_in") instanceof Number n ? n.longValue() : 60;
+                success = true;
+                return CachedToken.of((String) json.get("access_token"), requestedAt, expiresIn, minValidity,
+                        refreshAhead);
+            } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+                throw new ConflictException("Resposta inválida do endpoint de token do Keycloak");
+            }
+        } finally {
+            sample.stop(success ? refreshSuccess : refreshFailure);
+        }
+    }
+
+    private record CachedToken(String value, long usableUntil, long refreshAt) {
+
+        /**
+         * Prazos contados a partir do envio da requisição, em nanoTime. Para
+         * tokens de vida curta as folgas são limitadas (renovação a partir da
+         * metade da validade, uso até três quartos), de modo que ainda sobra
+         * tempo para a renovação em segundo plano.
+         */
+        static CachedToken of(String value, long requestedAt, long expiresInSeconds, Duration minValidity,
+                Duration refreshAhead) {
+            long lifetime = TimeUnit.SECONDS.toNanos(expiresInSeconds);
+            long usable = lifetime - Math.min(minValidity.toNanos(), lifetime / 4);
+            long refresh = lifetime - Math.min(refreshAhead.toNanos(), lifetime / 2);
+            return new CachedToken(value, requestedAt + usable, requestedAt + Math.min(refresh, usable));
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.crediflow.enums.LoanProposalStatus;
 import com.crediflow.enums.TransactionStatus;
 import com.crediflow.enums.TransactionType;
 import com.crediflow.exception.BadRequestException;
+import com.crediflow.exception.NotFoundException;
 import com.crediflow.repository.BankAccountRepository;
 import com.crediflow.repository.CompanyRepository;
 import com.crediflow.repository.CustomerRepository;
@@ -18,8 +19,6 @@ import com.crediflow.repository.LoanInstallmentRepository;
 import com.crediflow.repository.LoanProposalRepository;
 import com.crediflow.repository.TransactionRepository;
 import com.crediflow.util.LoanSimulationUtil;
-import io.quarkus.hibernate.orm.panache.PanacheQuery;
-import io.quarkus.panache.common.Page;
 import io.quarkus.security.identity.SecurityIdentity;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -27,9 +26,8 @@ import jakarta.transaction.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -62,56 +60,70 @@ public class LoanProposalService {
     @Inject
     JsonWebToken jwt;
 
-    public List<LoanProposalResponseDTO> listAll() {
-        return proposalRepository.listAll()
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+    @Inject
+    BalanceMutationService balanceMutationService;
+
+    @Inject
+    AvailableMarginService availableMarginService;
+
+    public List<LoanProposalResponseDTO> listAll(boolean includeInstallments) {
+        return toListDTOs(proposalRepository.listAllForList(), includeInstallments);
     }
 
     public Optional<LoanProposal> getById(Long id) {
         return proposalRepository.findByIdOptional(id);
     }
 
-    public PagedResult<LoanProposalResponseDTO> findAllPaged(String search, int page, int size) {
-        String likeSearch = "%" + search.toLowerCase() + "%";
+    public PagedResult<LoanProposalResponseDTO> findAllPaged(String search, int page, int size,
+            boolean includeInstallments) {
+        List<LoanProposal> proposals = proposalRepository.searchForList(search, page, size);
+        return new PagedResult<>(toListDTOs(proposals, includeInstallments), proposalRepository.countSearch(search),
+                page, size);
+    }
 
-        PanacheQuery<LoanProposal> query = proposalRepository
-                .find("""
-                            LOWER(customer.name) LIKE ?1
-                            OR customer.cpf LIKE ?2
-                            OR customer.email LIKE ?3
-                            ORDER BY customer.id DESC
-                        """, likeSearch, search, search)
-                .page(Page.of(page, size));
+    public PagedResult<LoanProposalResponseDTO> findAllByLoggedCustomer(int page, int size,
+            boolean includeInstallments) {
+        Customer customer = getLoggedCustomer();
 
-        List<LoanProposalResponseDTO> items = query.list()
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        List<LoanProposal> proposals = proposalRepository.findByCustomerForList(customer.getId(), page, size);
+        long total = proposalRepository.count("customer.id", customer.getId());
+        return new PagedResult<>(toListDTOs(proposals, includeInstallments), total, page, size);
+    }
 
-        return new PagedResult<>(items, query.count(), page, size);
+    /**
+     * Proposta com o cronograma de parcelas; o cliente só enxerga as próprias.
+     */
+    public LoanProposalResponseDTO getDetails(Long id) {
+        LoanProposal proposal = getById(id)
+                .orElseThrow(() -> new NotFoundException("Proposta não encontrada"));
+        if (!securityIdentity.hasRole("admin") && !securityIdentity.hasRole("company")
+                && !proposal.getCustomer().getId().equals(getLoggedCustomer().getId())) {
+            throw new NotFoundException("Proposta não encontrada");
+        }
+        proposalRepository.fetchInstallments(List.of(proposal));
+        return toDTO(proposal);
     }
 
-    public PagedResult<LoanProposalResponseDTO> findAllByLoggedCustomer(int page, int size) {
+    private Customer getLoggedCustomer() {
         // Obtém o ID do usuário logado no token JWT (sub = ID do Keycloak)
         String keycloakId = jwt.getSubject();
 
-        // Busca o customer correspondente
-        Customer customer = customerRepository.find("keycloakId", keycloakId)
+        return customerRepository.find("keycloakId", keycloakId)
                 .firstResultOptional()
                 .orElseThrow(() -> new BadRequestException("Cliente não encontrado"));
+    }
 
-        PanacheQuery<LoanProposal> query = proposalRepository
-                .find("customer.id = ?1 ORDER BY createdAt DESC", customer.getId())
-                .page(Page.of(page, size));
-
-        List<LoanProposalResponseDTO> items = query.list()
-                .stream()
-                .map(this::toDTO)
+    /**
+     * Converte uma página já carregada com {@code *ForList}: cliente e empresa vêm
+     * na mesma consulta e as parcelas, quando pedidas, numa consulta só para a página.
+     */
+    private List<LoanProposalResponseDTO> toListDTOs(List<LoanProposal> proposals, boolean includeInstallments) {
+        if (includeInstallments) {
+            proposalRepository.fetchInstallments(proposals);
+        }
+        return proposals.stream()
+                .map(proposal -> toDTO(proposal, includeInstallments))
                 .toList();
-
-        return new PagedResult<>(items, query.count(), page, size);
     }
 
     @Transactional
@@ -138,9 +150,9 @@ public class LoanProposalService {
         return proposal;
     }
 
-    public LoanSimulationResultDTO simulateDetailed(LoanProposalRequestDTO dto) {
+    public LoanSimulationResultDTO simulateDetailed(LoanProposalRequestDTO dto, boolean includeSchedule) {
         validateDTO(dto);
-        return LoanSimulationUtil.simulate(dto);
+        return LoanSimulationUtil.simulate(dto, includeSchedule);
     }
 
     @Transactional
@@ -187,8 +199,8 @@ public class LoanProposalService {
         }
 
         // Deposita o valor na conta do cliente
-        clientAccount.setBalance(clientAccount.getBalance().add(depositAmount));
-        bankAccountRepository.persist(clientAccount);
+        clientAccount = balanceMutationService.lock(clientAccount.getId());
+        balanceMutationService.credit(clientAccount, depositAmount);
 
         // Registra transação
         Transaction tx = new Transaction();
@@ -218,6 +230,7 @@ public class LoanProposalService {
         proposal.setStatus(LoanProposalStatus.CANCELED);
         proposal.setUpdatedAt(LocalDateTime.now());
         proposal.setUpdatedBy(getCurrentUser());
+        availableMarginService.invalidateAfterCommit(proposal.getCustomer().getId());
 
         return proposal;
     }
@@ -267,6 +280,10 @@ public class LoanProposalService {
     }
 
     public LoanProposalResponseDTO toDTO(LoanProposal proposal) {
+        return toDTO(proposal, true);
+    }
+
+    public LoanProposalResponseDTO toDTO(LoanProposal proposal, boolean includeInstallments) {
         LoanProposalResponseDTO dto = new LoanProposalResponseDTO();
         dto.id = proposal.getId();
         dto.customerId = proposal.getCustomer().getId();
@@ -313,7 +330,7 @@ public class LoanProposalService {
         dto.interestComposition = proposal.getInterestComposition();
         dto.ccb = proposal.getCcb();
 
-        if (proposal.getInstallments() != null) {
+        if (includeInstallments && proposal.getInstallments() != null) {
             dto.installments = proposal.getInstallments().stream().map(installment -> {
                 LoanInstallmentDTO i = new LoanInstallmentDTO();
                 i.id = installment.getId();
@@ -394,30 +411,38 @@ public class LoanProposalService {
         result.proposal = proposal.getId().toString();
 
         if (result.installments != null) {
-            for (LoanInstallmentDTO i : result.installments) {
-                LoanInstallment entity = new LoanInstallment();
-                entity.setProposal(proposal);
-                entity.setNumber(i.number);
-                entity.setValue(i.value);
-                entity.setDueDate(i.dueDate);
-                entity.setIof(i.iof);
-                entity.setBalance(i.balance);
-                entity.setInterest(i.interest);
-                entity.setPrincipal(i.principal);
-                entity.setAdditionalValue(i.additionalValue);
-                entity.setPresentValue(i.presentValue);
-                entity.setStatus(i.status);
-                entity.setPeriod(i.period);
-                entity.setDaysElapsed(i.daysElapsed);
-                entity.setDaysLate(i.daysLate);
-                entity.setPaidValue(i.paidValue);
-                installmentRepository.persist(entity);
-            }
+            // ids vêm da sequência: as parcelas saem em lotes no flush, não um INSERT por vez
+            installmentRepository.persist(toInstallments(proposal, result.installments));
         }
+        availableMarginService.invalidateAfterCommit(customer.getId());
 
         return result;
     }
 
+    private static List<LoanInstallment> toInstallments(LoanProposal proposal, List<LoanInstallmentDTO> installments) {
+        List<LoanInstallment> entities = new ArrayList<>(installments.size());
+        for (LoanInstallmentDTO i : installments) {
+            LoanInstallment entity = new LoanInstallment();
+            entity.setProposal(proposal);
+            entity.setNumber(i.number);
+            entity.setValue(i.value);
+            entity.setDueDate(i.dueDate);
+            entity.setIof(i.iof);
+            entity.setBalance(i.balance);
+            entity.setInterest(i.interest);
+            entity.setPrincipal(i.principal);
+            entity.setAdditionalValue(i.additionalValue);
+            entity.setPresentValue(i.presentValue);
+            entity.setStatus(i.status);
+            entity.setPeriod(i.period);
+            entity.setDaysElapsed(i.daysElapsed);
+            entity.setDaysLate(i.daysLate);
+            entity.setPaidValue(i.paidValue);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
     @Transactional
     public LoanProposalResponseDTO updateProposal(Long id, LoanProposalRequestDTO dto) {
         validateDTO(dto);
@@ -432,6 +457,9 @@ public class LoanProposalService {
         Company company = companyRepository.findByIdOptional(dto.companyId)
                 .orElseThrow(() -> new BadRequestException("Empresa não encontrada"));
 
+        // as parcelas são refeitas e o cliente pode mudar: as duas margens mudam
+        availableMarginService.invalidateAfterCommit(proposal.getCustomer().getId(), customer.getId());
+
         // Atualiza dados básicos da proposta
         proposal.setCustomer(customer);
         proposal.setCompany(company);
@@ -455,25 +483,7 @@ public class LoanProposalService {
 
         // Adiciona novas parcelas
         if (result.installments != null) {
-            for (LoanInstallmentDTO i : result.installments) {
-                LoanInstallment entity = new LoanInstallment();
-                entity.setProposal(proposal);
-                entity.setNumber(i.number);
-                entity.setValue(i.value);
-                entity.setDueDate(i.dueDate);
-                entity.setIof(i.iof);
-                entity.setBalance(i.balance);
-                entity.setInterest(i.interest);
-                entity.setPrincipal(i.principal);
-                entity.setAdditionalValue(i.additionalValue);
-                entity.setPresentValue(i.presentValue);
-                entity.setStatus(i.status);
-                entity.setPeriod(i.period);
-                entity.setDaysElapsed(i.daysElapsed);
-                entity.setDaysLate(i.daysLate);
-                entity.setPaidValue(i.paidValue);
-                proposal.getInstallments().add(entity);
-            }
+            proposal.getInstallments().addAll(toInstallments(proposal, result.installments));
         }
 
         return toResponse(proposal, result);
@@ -579,16 +589,13 @@ public class LoanProposalService {
             throw new BadRequestException("Conta não pertence ao cliente da proposta");
         }
 
-        if (account.getBalance().compareTo(installment.getValue()) < 0) {
-            throw new BadRequestException("Saldo insuficiente");
-        }
-
-        account.setBalance(account.getBalance().subtract(installment.getValue()));
-        bankAccountRepository.persist(account);
+        account = balanceMutationService.lock(account.getId());
+        balanceMutationService.debit(account, installment.getValue());
 
         installment.setPaid(true);
         installment.setPaidValue(installment.getValue());
         installmentRepository.persist(installment);
+        availableMarginService.invalidateAfterCommit(proposal.getCustomer().getId());
 
         Transaction tx = new Transaction();
         tx.setFromAccount(account);
@@ -602,40 +609,11 @@ public class LoanProposalService {
     }
 
     public BigDecimal getAvailableMargin(Long customerId) {
-        // Busca o cliente
-        Customer customer = customerRepository.findByIdOptional(customerId)
-                .orElseThrow(() -> new BadRequestException("Cliente não encontrado"));
-
-        // Calcula a margem máxima permitida (40% do salário)
-        BigDecimal salary = customer.getSalary() != null ? customer.getSalary() : BigDecimal.ZERO;
-        BigDecimal maxMargin = salary.multiply(new BigDecimal("0.40"));
-
-        // Busca todas as parcelas não pagas de propostas ativas (excluindo CANCELED)
-        List<LoanInstallment> unpaidInstallments = installmentRepository.find(
-                "proposal.customer.id = ?1 AND paid = false AND proposal.status != ?2 ORDER BY number ASC",
-                customerId, LoanProposalStatus.CANCELED).list();
-
-        // Armazena a menor (mais próxima) parcela de cada proposta ativa
-        Map<Long, LoanInstallment> firstInstallmentPerProposal = new HashMap<>();
-
-        for (LoanInstallment installment : unpaidInstallments) {
-            Long proposalId = installment.getProposal().getId();
-            if (!firstInstallmentPerProposal.containsKey(proposalId)) {
-                firstInstallmentPerProposal.put(proposalId, installment);
-            }
-        }
-
-        // Soma o valor da menor parcela de cada proposta ativa
-        BigDecimal committedMonthly = firstInstallmentPerProposal.values().stream()
-                .map(LoanInstallment::getValue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Retorna a margem disponível
-        return maxMargin.subtract(committedMonthly).max(BigDecimal.ZERO);
+        return availableMarginService.get(customerId);
     }
 
     public void validateAvailableMargin(Long customerId, BigDecimal newInstallmentValue) {
-        BigDecimal available = getAvailableMargin(customerId);
+        BigDecimal available = availableMarginService.compute(customerId);
 
         if (newInstallmentValue.compareTo(available) > 0) {
             throw new BadRequestException("Parcela excede a margem consignável disponível. Restante: R$ " + available);
@@ -0,0 +1,164 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.LoanProposalRequestDTO;
+import com.crediflow.dto.LoanSimulationResultDTO;
+import com.crediflow.dto.SimulationGridCellDTO;
+import com.crediflow.dto.SimulationGridRequestDTO;
+import com.crediflow.dto.SimulationGridResultDTO;
+import com.crediflow.dto.SimulationGridRowDTO;
+import com.crediflow.enums.AmortizationType;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.util.LoanSimulationUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Simulação de uma grade taxa × prazo × valor em paralelo.
+ *
+ * As células são independentes e puramente de CPU, então rodam num
+ * {@link ForkJoinPool} próprio (para não disputar o pool comum nem as threads
+ * de I/O do servidor) e devolvem só os totais, exceto nas células pedidas em
+ * {@code scheduleFor}.
+ */
+@ApplicationScoped
+public class LoanSimulationGridService {
+
+    @ConfigProperty(name = "crediflow.simulation.grid.parallelism", defaultValue = "0")
+    int parallelism;
+
+    @ConfigProperty(name = "crediflow.simulation.grid.max-cells", defaultValue = "5000")
+    int maxCells;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void init() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public SimulationGridResultDTO simulate(SimulationGridRequestDTO dto) {
+        validate(dto);
+
+        Set<CellKey> scheduled = new HashSet<>();
+        if (dto.scheduleFor != null) {
+            for (SimulationGridCellDTO cell : dto.scheduleFor) {
+                if (cell != null && cell.rate != null && cell.term != null && cell.amount != null) {
+                    scheduled.add(CellKey.of(cell.rate, cell.term, cell.amount));
+                }
+            }
+        }
+
+        List<LoanProposalRequestDTO> cells = new ArrayList<>(dto.rates.size() * dto.terms.size() * dto.amounts.size());
+        for (BigDecimal rate : dto.rates) {
+            for (Integer term : dto.terms) {
+                for (BigDecimal amount : dto.amounts) {
+                    cells.add(request(dto, rate, term, amount));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        List<SimulationGridRowDTO> rows = pool.submit(() -> cells.parallelStream()
+                .map(cell -> simulateCell(cell, scheduled.contains(
+                        CellKey.of(cell.monthlyInterestRate, cell.termInMonths, cell.requestedAmount))))
+                .toList())
+                .join();
+
+        SimulationGridResultDTO result = new SimulationGridResultDTO();
+        result.cells = rows.size();
+        result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        result.rows = rows;
+        return result;
+    }
+
+    private SimulationGridRowDTO simulateCell(LoanProposalRequestDTO cell, boolean includeSchedule) {
+        LoanSimulationResultDTO simulation = LoanSimulationUtil.simulate(cell, includeSchedule);
+
+        SimulationGridRowDTO row = new SimulationGridRowDTO();
+        row.rate = cell.monthlyInterestRate;
+        row.term = cell.termInMonths;
+        row.amount = cell.requestedAmount;
+        row.financedAmount = simulation.financedAmount;
+        row.installmentValue = simulation.installmentValue;
+        row.totalPayment = simulation.totalPayment;
+        row.totalInterest = simulation.totalPayment.subtract(simulation.financedAmount);
+        row.effectiveMonthlyRate = simulation.effectiveMonthlyRate;
+        row.effectiveAnnualRate = simulation.effectiveAnnualRate;
+        row.installments = simulation.installments;
+        return row;
+    }
+
+    private void validate(SimulationGridRequestDTO dto) {
+        if (dto == null || isEmpty(dto.rates) || isEmpty(dto.terms) || isEmpty(dto.amounts)) {
+            throw new BadRequestException("Informe ao menos uma taxa, um prazo e um valor");
+        }
+        if (dto.firstInstallmentDate == null) {
+            throw new BadRequestException("Data da primeira parcela obrigatória");
+        }
+        if (!"VALOR_FINANCIADO".equalsIgnoreCase(dto.modoSimulacao) && !"VALOR_PARCELA".equalsIgnoreCase(dto.modoSimulacao)) {
+            throw new BadRequestException("Modo de simulação inválido. Use 'VALOR_FINANCIADO' ou 'VALOR_PARCELA'.");
+        }
+        if (AmortizationType.from(dto.amortizationType) == AmortizationType.SAC
+                && "VALOR_PARCELA".equalsIgnoreCase(dto.modoSimulacao)) {
+            throw new BadRequestException("No SAC as parcelas variam; use o modo 'VALOR_FINANCIADO'.");
+        }
+
+        long size = (long) dto.rates.size() * dto.terms.size() * dto.amounts.size();
+        if (size > maxCells) {
+            throw new BadRequestException("A grade pode ter no máximo " + maxCells + " combinações");
+        }
+
+        for (BigDecimal rate : dto.rates) {
+            if (rate == null || rate.signum() < 0) {
+                throw new BadRequestException("Taxa inválida: " + rate);
+            }
+        }
+        for (Integer term : dto.terms) {
+            if (term == null || term <= 0 || term > 96) {
+                throw new BadRequestException("O prazo deve ser entre 1 e 96 meses");
+            }
+        }
+        for (BigDecimal amount : dto.amounts) {
+            if (amount == null || amount.signum() <= 0) {
+                throw new BadRequestException("Valor inválido: " + amount);
+            }
+        }
+    }
+
+    private static LoanProposalRequestDTO request(SimulationGridRequestDTO dto, BigDecimal rate, Integer term,
+            BigDecimal amount) {
+        LoanProposalRequestDTO request = new LoanProposalRequestDTO();
+        request.monthlyInterestRate = rate;
+        request.termInMonths = term;
+        request.requestedAmount = amount;
+        request.modoSimulacao = dto.modoSimulacao;
+        request.amortizationType = dto.amortizationType;
+        request.firstInstallmentDate = dto.firstInstallmentDate;
+        return request;
+    }
+
+    private static boolean isEmpty(List<?> list) {
+        return list == null || list.isEmpty();
+    }
+
+    // taxas e valores comparados pelo valor numérico (0.02 e 0.020 são a mesma célula)
+    private record CellKey(BigDecimal rate, int term, BigDecimal amount) {
+        static CellKey of(BigDecimal rate, int term, BigDecimal amount) {
+            return new CellKey(rate.stripTrailingZeros(), term, amount.stripTrailingZeros());
+        }
+    }
+}
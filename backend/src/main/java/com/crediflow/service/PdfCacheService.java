@@ -0,0 +1,296 @@
+package com.crediflow.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+
+/**
+ * Cache em disco de PDFs que não mudam mais (comprovantes, CCBs assinadas ou pagas).
+ *
+ * A chave é um hash de tudo que determina o conteúdo do documento (id, status,
+ * data de atualização, versão do layout) e serve também de ETag. Na primeira
+ * requisição o PDF é gerado e gravado no arquivo ao mesmo tempo em que é
+ * enviado; nas seguintes o arquivo é lido por mapeamento em memória. O tamanho
+ * total é limitado por {@code crediflow.pdf-cache.max-size}, descartando os
+ * arquivos usados há mais tempo.
+ */
+@ApplicationScoped
+public class PdfCacheService {
+
+    private static final Logger LOG = Logger.getLogger(PdfCacheService.class);
+
+    private static final String EXTENSION = ".pdf";
+
+    @Inject
+    PdfStreamingService pdfStreamingService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "crediflow.pdf-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "crediflow.pdf-cache.dir")
+    Path dir;
+
+    @ConfigProperty(name = "crediflow.pdf-cache.max-size", defaultValue = "256M")
+    MemorySize maxSize;
+
+    // chave -> tamanho do arquivo, em ordem de acesso (o primeiro é o usado há mais tempo)
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    Counter hits;
+    Counter misses;
+    Counter evictions;
+
+    @PostConstruct
+    void init() {
+        hits = registry.counter("crediflow.pdf.cache.requests", "result", "hit");
+        misses = registry.counter("crediflow.pdf.cache.requests", "result", "miss");
+        evictions = registry.counter("crediflow.pdf.cache.evictions");
+        registry.gauge("crediflow.pdf.cache.size", this, cache -> cache.totalBytes());
+        if (enabled) {
+            load();
+        }
+    }
+
+    /**
+     * Chave do documento a partir das partes que determinam seu conteúdo.
+     */
+    public static String key(Object... parts) {
+        StringJoiner joined = new StringJoiner("|");
+        for (Object part : parts) {
+            joined.add(String.valueOf(part));
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(joined.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Devolve o PDF da chave a partir do disco ou, se ainda não estiver lá, o
+     * gerado por {@code generator}, que é gravado no cache enquanto é enviado.
+     */
+    public StreamingOutput serve(String document, String key, StreamingOutput generator) {
+        if (!enabled) {
+            return pdfStreamingService.stream(document, generator);
+        }
+        if (contains(key)) {
+            hits.increment();
+            return output -> {
+                try {
+                    copy(pathOf(key), output);
+                } catch (NoSuchFileException e) {
+                    // descartado entre a verificação e a leitura
+                    forget(key);
+                    writeThrough(key, pdfStreamingService.stream(document, generator), output);
+                }
+            };
+        }
+        misses.increment();
+        return output -> writeThrough(key, pdfStreamingService.stream(document, generator), output);
+    }
+
+    private void copy(Path file, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            WritableByteChannel target = Channels.newChannel(output);
+            while (mapped.hasRemaining()) {
+                target.write(mapped);
+            }
+        }
+        output.flush();
+    }
+
+    private void writeThrough(String key, StreamingOutput generator, OutputStream output) throws IOException {
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        TeeOutputStream tee;
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            tee = new TeeOutputStream(output, file);
+            generator.write(tee);
+            tee.flush();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        if (tee.copyFailed != null) {
+            // o cliente recebeu o PDF inteiro; só o cache fica sem ele
+            LOG.warnf("Não foi possível gravar o PDF %s no cache: %s", key, tee.copyFailed.getMessage());
+            Files.deleteIfExists(tmp);
+            return;
+        }
+        try {
+            Files.move(tmp, pathOf(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            store(key, tee.copied);
+        } catch (IOException e) {
+            LOG.warnf("Não foi possível gravar o PDF %s no cache: %s", key, e.getMessage());
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path pathOf(String key) {
+        return dir.resolve(key + EXTENSION);
+    }
+
+    private synchronized boolean contains(String key) {
+        // get também marca a entrada como usada agora
+        return entries.get(key) != null;
+    }
+
+    private synchronized void forget(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private synchronized void store(String key, long size) {
+        Long previous = entries.put(key, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxSize.asLongValue() && entries.size() > 1 && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(pathOf(entry.getKey()));
+            } catch (IOException e) {
+                LOG.warnf("Não foi possível remover %s do cache de PDFs: %s", entry.getKey(), e.getMessage());
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Reabre o cache deixado pela execução anterior, do arquivo mais antigo ao
+     * mais recente, e apaga gravações que ficaram pela metade.
+     */
+    private synchronized void load() {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(dir)) {
+                files = listing.toList();
+            }
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            files.stream()
+                    .filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(PdfCacheService::lastModified))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        long size = file.toFile().length();
+                        entries.put(name.substring(0, name.length() - EXTENSION.length()), size);
+                        totalBytes += size;
+                    });
+            evict();
+            LOG.infof("Cache de PDFs em %s com %d arquivos (%d bytes)", dir, entries.size(), totalBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível abrir o cache de PDFs em " + dir, e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        return file.toFile().lastModified();
+    }
+
+    /**
+     * Escreve na resposta e numa cópia; falha na cópia não interrompe a resposta.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final OutputStream copy;
+        long copied;
+        IOException copyFailed;
+
+        TeeOutputStream(OutputStream out, OutputStream copy) {
+            this.out = out;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copyFailed == null) {
+                try {
+                    copy.write(b);
+                    copied++;
+                } catch (IOException e) {
+                    copyFailed = e;
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copyFailed == null) {
+                try {
+                    copy.write(b, off, len);
+                    copied += len;
+                } catch (IOException e) {
+                    copyFailed = e;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            if (copyFailed == null) {
+                try {
+                    copy.flush();
+                } catch (IOException e) {
+                    copyFailed = e;
+                }
+            }
+        }
+    }
+}
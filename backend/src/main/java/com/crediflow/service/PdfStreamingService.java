@@ -0,0 +1,79 @@
+package com.crediflow.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.jboss.logging.Logger;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Entrega de PDFs direto na resposta HTTP.
+ *
+ * O gerador escreve no stream da resposta conforme as páginas são fechadas,
+ * sem montar o documento inteiro num byte[]. Por tipo de documento são
+ * registrados o tempo de geração ({@code crediflow.pdf.generation}, com o
+ * resultado) e o tamanho em bytes ({@code crediflow.pdf.size}).
+ */
+@ApplicationScoped
+public class PdfStreamingService {
+
+    private static final Logger LOG = Logger.getLogger(PdfStreamingService.class);
+
+    @Inject
+    MeterRegistry registry;
+
+    /**
+     * Embrulha {@code generator} para ser escrito pelo JAX-RS. Tudo que o
+     * gerador precisa deve estar carregado antes: a escrita acontece depois que
+     * o método do recurso retornou e a transação dele terminou.
+     */
+    public StreamingOutput stream(String document, StreamingOutput generator) {
+        return output -> {
+            CountingOutputStream counting = new CountingOutputStream(output);
+            Timer.Sample sample = Timer.start(registry);
+            String outcome = "success";
+            try {
+                generator.write(counting);
+                counting.flush();
+            } catch (IOException | RuntimeException e) {
+                // com o corpo já parcialmente enviado o cliente só vê a conexão encerrada
+                outcome = "failure";
+                LOG.warnf("Falha ao gerar PDF %s depois de %d bytes: %s", document, counting.count, e.getMessage());
+                throw e;
+            } finally {
+                sample.stop(registry.timer("crediflow.pdf.generation", "document", document, "outcome", outcome));
+                DistributionSummary.builder("crediflow.pdf.size")
+                        .baseUnit("bytes")
+                        .tag("document", document)
+                        .register(registry)
+                        .record(counting.count);
+            }
+        };
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
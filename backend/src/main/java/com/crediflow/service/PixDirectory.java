@@ -0,0 +1,263 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.PixKey;
+import com.crediflow.enums.PixKeyType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.Status;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diretório em memória das chaves Pix: chave -> conta, agência, número, titular e
+ * tipo da chave, o que a transferência e a consulta do destinatário precisam.
+ *
+ * Na subida as chaves são carregadas em lotes de
+ * {@code crediflow.pix-directory.warmup-batch-size}, numa thread virtual para não
+ * atrasar o start; até lá (ou para chaves criadas por outra instância) uma busca
+ * que não acha a chave consulta o banco e guarda o resultado. O
+ * {@link PixKeyService} aplica cadastro, alteração e exclusão de chaves depois do
+ * commit; mudanças de conta ou de titular descartam as chaves da conta, que são
+ * recarregadas na próxima busca.
+ *
+ * Mudanças feitas por outra instância só chegam aqui quando a entrada expira,
+ * depois de {@code crediflow.pix-directory.ttl}. Para mover dinheiro isso não
+ * basta: a transferência confirma com {@link #belongsTo}, já com a conta de
+ * destino bloqueada, que a chave ainda é dela.
+ */
+@ApplicationScoped
+public class PixDirectory {
+
+    private static final Logger LOG = Logger.getLogger(PixDirectory.class);
+
+    public record Entry(long accountId, String agencyNumber, String accountNumber, String holderName,
+            PixKeyType keyType) {
+    }
+
+    private static final String SELECT = """
+            select p.id, p.pixKey, p.keyType, a.id, a.agencyNumber, a.accountNumber, c.name
+            from PixKey p join p.bankAccount a left join a.customer c
+            """;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    TransactionSynchronizationRegistry synchronizationRegistry;
+
+    @ConfigProperty(name = "crediflow.pix-directory.warmup-batch-size", defaultValue = "1000")
+    int warmupBatchSize;
+
+    @ConfigProperty(name = "crediflow.pix-directory.ttl", defaultValue = "10m")
+    Duration ttl;
+
+    private record Cached(Entry entry, long expiresAt) {
+    }
+
+    private final Map<String, Cached> entries = new ConcurrentHashMap<>();
+
+    // incrementado a cada remoção: uma busca que leu o banco antes dela não mantém o que leu
+    private final AtomicLong removals = new AtomicLong();
+
+    // chaves removidas enquanto o aquecimento roda: um lote lido antes da remoção não pode trazê-las de volta
+    private volatile Set<String> removedDuringWarmup;
+
+    Counter hits;
+    Counter misses;
+
+    @PostConstruct
+    void init() {
+        hits = registry.counter("crediflow.pix.directory.lookups", "result", "hit");
+        misses = registry.counter("crediflow.pix.directory.lookups", "result", "miss");
+        registry.gaugeMapSize("crediflow.pix.directory.size", List.of(), entries);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        removedDuringWarmup = ConcurrentHashMap.newKeySet();
+        Thread.ofVirtual().name("pix-directory-warmup").start(this::warmUp);
+    }
+
+    /**
+     * Dados da chave, ou {@code null} se ela não existir.
+     */
+    public Entry find(String key) {
+        Cached cached = entries.get(key);
+        if (cached != null && System.nanoTime() - cached.expiresAt() < 0) {
+            hits.increment();
+            return cached.entry();
+        }
+        misses.increment();
+        // a consulta roda fora do mapa, sem travar as outras chaves do mesmo bin
+        long seen = removals.get();
+        Entry entry = load(key);
+        if (entry != null) {
+            Cached loaded = cache(entry);
+            // não sobrescreve o que foi publicado por um commit durante a consulta
+            entries.merge(key, loaded, (current, fresh) -> current == cached ? fresh : current);
+            // e uma remoção durante a consulta prevalece sobre o que foi lido
+            if (removals.get() != seen) {
+                entries.remove(key, loaded);
+            }
+        } else if (cached != null) {
+            entries.remove(key, cached);
+        }
+        return entry;
+    }
+
+    /**
+     * Se a chave aponta hoje, no banco, para a conta {@code accountId}.
+     */
+    public boolean belongsTo(String key, long accountId) {
+        return em.createQuery("select count(p) from PixKey p where p.pixKey = :key and p.bankAccount.id = :account",
+                Long.class)
+                .setParameter("key", key)
+                .setParameter("account", accountId)
+                .getSingleResult() > 0;
+    }
+
+    /**
+     * Descarta a entrada já, sem esperar commit: usado quando ela se mostrou
+     * desatualizada.
+     */
+    public void evict(String key) {
+        remove(key);
+    }
+
+    /**
+     * Publica a chave quando a transação corrente confirmar (ou já, se não houver
+     * transação). Os dados são lidos da entidade agora, ainda dentro da transação;
+     * {@code previousKey}, se diferente, deixa de existir.
+     */
+    public void putAfterCommit(String previousKey, PixKey pixKey) {
+        BankAccount account = pixKey.getBankAccount();
+        String key = pixKey.getKey();
+        Entry entry = new Entry(account.getId(), account.getAgencyNumber(), account.getAccountNumber(),
+                account.getCustomer() != null ? account.getCustomer().getName() : null, pixKey.getKeyType());
+        afterCommit(() -> {
+            if (previousKey != null && !previousKey.equals(key)) {
+                remove(previousKey);
+            }
+            entries.put(key, cache(entry));
+        });
+    }
+
+    public void removeAfterCommit(String key) {
+        afterCommit(() -> remove(key));
+    }
+
+    /**
+     * Descarta as chaves da conta depois do commit, para mudanças de agência,
+     * número, titular ou exclusão da conta.
+     */
+    public void evictAccountAfterCommit(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            // antes de percorrer: uma busca em andamento para uma chave da conta descarta o que leu
+            removals.incrementAndGet();
+            entries.forEach((key, cached) -> {
+                if (cached.entry().accountId() == accountId) {
+                    remove(key);
+                }
+            });
+        });
+    }
+
+    private void remove(String key) {
+        removals.incrementAndGet();
+        entries.remove(key);
+        Set<String> removed = removedDuringWarmup;
+        if (removed != null) {
+            removed.add(key);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (synchronizationRegistry.getTransactionKey() == null) {
+            action.run();
+            return;
+        }
+        synchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private Entry load(String key) {
+        List<Object[]> rows = em.createQuery(SELECT + " where p.pixKey = :key", Object[].class)
+                .setParameter("key", key)
+                .getResultList();
+        return rows.isEmpty() ? null : toEntry(rows.get(0));
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        long after = 0;
+        int loaded = 0;
+        try {
+            while (true) {
+                long from = after;
+                List<Object[]> batch = QuarkusTransaction.requiringNew().call(() -> em
+                        .createQuery(SELECT + " where p.id > :after order by p.id", Object[].class)
+                        .setParameter("after", from)
+                        .setMaxResults(warmupBatchSize)
+                        .getResultList());
+                Set<String> removed = removedDuringWarmup;
+                for (Object[] row : batch) {
+                    String key = (String) row[1];
+                    if (!removed.contains(key)) {
+                        entries.putIfAbsent(key, cache(toEntry(row)));
+                    }
+                }
+                loaded += batch.size();
+                if (batch.size() < warmupBatchSize) {
+                    break;
+                }
+                after = (Long) batch.get(batch.size() - 1)[0];
+            }
+            LOG.infof("Diretório Pix carregado: %d chaves em %d ms", loaded, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            // as buscas continuam indo ao banco para as chaves que faltaram
+            LOG.warnf(e, "Falha ao carregar o diretório Pix depois de %d chaves", loaded);
+        } finally {
+            removedDuringWarmup = null;
+        }
+    }
+
+    private Cached cache(Entry entry) {
+        return new Cached(entry, System.nanoTime() + ttl.toNanos());
+    }
+
+    private static Entry toEntry(Object[] row) {
+        return new Entry((Long) row[3], (String) row[4], (String) row[5], (String) row[6], (PixKeyType) row[2]);
+    }
+}
@@ -21,6 +21,12 @@ public class PixKeyService {
     @Inject
     BankAccountRepository bankAccountRepository;
 
+    @Inject
+    PixDirectory pixDirectory;
+
+    @Inject
+    BankAccountService bankAccountService;
+
     @Transactional  
     public PixKey registerPixKey(Long bankAccountId, String pixKey, PixKeyType keyType) {
         if (pixKeyRepository.findByKey(pixKey) != null) {
@@ -39,6 +45,8 @@ public class PixKeyService {
         pixKey_.setCreatedAt(LocalDateTime.now());
 
         pixKeyRepository.persist(pixKey_);
+        pixDirectory.putAfterCommit(null, pixKey_);
+        bankAccountService.invalidateRecipientAfterCommit(account);
         return pixKey_;
     }
    @Transactional 
@@ -67,10 +75,14 @@ public class PixKeyService {
             throw new IllegalArgumentException("Conta bancária não encontrada");
         }
 
+        String previousKey = existing.getKey();
+        bankAccountService.invalidateRecipientAfterCommit(existing.getBankAccount());
         existing.setKey(pixKey);
         existing.setKeyType(keyType);
         existing.setBankAccount(account);
         pixKeyRepository.persist(existing);
+        pixDirectory.putAfterCommit(previousKey, existing);
+        bankAccountService.invalidateRecipientAfterCommit(account);
 
         return existing;
     }
@@ -86,6 +98,8 @@ public class PixKeyService {
             throw new IllegalArgumentException("Chave Pix não encontrada");
         }
         pixKeyRepository.delete(pixKey);
+        pixDirectory.removeAfterCommit(pixKey.getKey());
+        bankAccountService.invalidateRecipientAfterCommit(pixKey.getBankAccount());
     }
 
     
@@ -0,0 +1,419 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.TransactionResponseDTO;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.Transaction;
+import com.crediflow.enums.TransactionStatus;
+import com.crediflow.enums.TransactionType;
+import com.crediflow.exception.ApiException;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.exception.ConflictException;
+import com.crediflow.repository.AccountBalanceSnapshotRepository;
+import com.crediflow.repository.BankAccountRepository;
+import com.crediflow.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transferências no modelo single-writer, alternativa ao bloqueio de linhas do
+ * {@link BalanceMutationService}.
+ *
+ * Cada conta de origem pertence a um dos {@code crediflow.transactions.single-writer.shards}
+ * shards (id módulo número de shards). O shard tem uma fila e uma única thread, que
+ * valida as transferências em ordem contra o saldo em memória das suas contas e
+ * grava o que aceitou em lotes de até {@code max-batch}: uma transação por lote,
+ * com UPDATEs atômicos por conta em ordem crescente de id (o débito só passa se
+ * {@code balance >= valor}), as linhas de {@code transactions} em lote JDBC e os
+ * fechamentos do dia. Quem chamou recebe a resposta depois do commit do lote.
+ *
+ * O saldo em memória é só uma antecipação: depósitos e pagamentos continuam
+ * pelo caminho com bloqueio, então diante de saldo insuficiente a conta é relida
+ * do banco, e um débito recusado pelo UPDATE condicional desfaz o lote, que é
+ * refeito uma transferência por vez. Contas quentes ficam com o
+ * {@link HotAccountLedger}.
+ */
+@ApplicationScoped
+public class SingleWriterTransferService {
+
+    private static final Logger LOG = Logger.getLogger(SingleWriterTransferService.class);
+
+    // tentativas de uma transferência isolada quando o saldo muda por fora entre a leitura e o UPDATE
+    private static final int DRIFT_RETRIES = 3;
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    TransactionRepository transactionRepository;
+
+    @Inject
+    AccountBalanceSnapshotRepository snapshotRepository;
+
+    @Inject
+    HotAccountLedger hotAccountLedger;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "crediflow.transactions.single-writer.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "crediflow.transactions.single-writer.shards", defaultValue = "8")
+    int shardCount;
+
+    @ConfigProperty(name = "crediflow.transactions.single-writer.max-batch", defaultValue = "200")
+    int maxBatch;
+
+    @ConfigProperty(name = "crediflow.transactions.single-writer.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+
+    private Shard[] shards;
+
+    DistributionSummary batchSize;
+    Timer queueWait;
+    Counter batchRetries;
+
+    @PostConstruct
+    void init() {
+        // desligado, nenhuma thread de shard é criada
+        shards = new Shard[enabled ? shardCount : 0];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+            Thread.ofVirtual().name("transfer-shard-" + i).start(shards[i]);
+        }
+        batchSize = registry.summary("crediflow.transactions.single-writer.batch.size");
+        queueWait = registry.timer("crediflow.transactions.single-writer.queue.wait");
+        batchRetries = registry.counter("crediflow.transactions.single-writer.batch.retries");
+        registry.gauge("crediflow.transactions.single-writer.queued", Tags.empty(), this,
+                service -> Arrays.stream(service.shards).mapToInt(shard -> shard.queue.size()).sum());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    /**
+     * Se a transferência deve ir para as filas: modo ligado e nenhuma das contas
+     * é quente.
+     */
+    public boolean accepts(Long fromId, Long toId) {
+        return enabled && !hotAccountLedger.isHot(fromId) && !hotAccountLedger.isHot(toId);
+    }
+
+    /**
+     * Enfileira a transferência no shard da conta de origem. O estágio completa
+     * depois do commit do lote, ou com a exceção que o caminho com bloqueio
+     * lançaria (saldo insuficiente, conta inválida). Só com o modo ligado.
+     */
+    public CompletionStage<TransactionResponseDTO> submit(Long fromId, Long toId, BigDecimal amount,
+            TransactionType type, String description) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new BadRequestException("O valor da transação deve ser positivo");
+        }
+        if (fromId == null || toId == null) {
+            throw new BadRequestException("Conta de origem ou destino inválida");
+        }
+        if (!enabled) {
+            throw new IllegalStateException("Modo single-writer desligado");
+        }
+        if (hotAccountLedger.isHot(fromId) || hotAccountLedger.isHot(toId)) {
+            throw new IllegalArgumentException("Contas quentes são movimentadas pelo HotAccountLedger");
+        }
+        Command command = new Command(fromId, toId, amount, type, description);
+        if (!shardOf(fromId).queue.offer(command)) {
+            throw new ApiException("Fila de transferências cheia, tente novamente",
+                    Response.Status.SERVICE_UNAVAILABLE);
+        }
+        return command.result;
+    }
+
+    /**
+     * {@link #submit} esperando o resultado, para os controllers (que rodam em
+     * threads virtuais).
+     */
+    public TransactionResponseDTO transfer(Long fromId, Long toId, BigDecimal amount, TransactionType type,
+            String description) {
+        try {
+            return submit(fromId, toId, amount, type, description).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Shard shardOf(Long accountId) {
+        return shards[Math.floorMod(accountId.hashCode(), shards.length)];
+    }
+
+    private static final class Command {
+        final Long fromId;
+        final Long toId;
+        final BigDecimal amount;
+        final TransactionType type;
+        final String description;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<TransactionResponseDTO> result = new CompletableFuture<>();
+
+        Command(Long fromId, Long toId, BigDecimal amount, TransactionType type, String description) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.amount = amount;
+            this.type = type;
+            this.description = description;
+        }
+    }
+
+    // o UPDATE condicional recusou o débito: o saldo em memória estava acima do real
+    private static final class BalanceDrift extends RuntimeException {
+        BalanceDrift(Long accountId) {
+            super("Saldo da conta " + accountId + " alterado por outra operação", null, false, false);
+        }
+    }
+
+    private final class Shard implements Runnable {
+
+        final int index;
+        final BlockingQueue<Command> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        // saldo das contas de origem deste shard; só a thread do shard lê e escreve
+        final Map<Long, BigDecimal> balances = new HashMap<>();
+
+        volatile boolean running = true;
+        volatile Thread thread;
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        void stop() {
+            running = false;
+            Thread current = thread;
+            if (current != null) {
+                current.interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            List<Command> batch = new ArrayList<>(maxBatch);
+            while (running) {
+                try {
+                    Command first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                    long now = System.nanoTime();
+                    for (Command command : batch) {
+                        queueWait.record(now - command.enqueuedAt, TimeUnit.NANOSECONDS);
+                    }
+                    process(batch);
+                } catch (InterruptedException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    // process já completa cada comando; isto só protege a thread do shard
+                    LOG.errorf(e, "Erro inesperado no shard de transferências %d", index);
+                } finally {
+                    batch.forEach(command -> command.result.completeExceptionally(
+                            new ConflictException("Transferência não processada, tente novamente")));
+                    batch.clear();
+                }
+            }
+            Command pending;
+            while ((pending = queue.poll()) != null) {
+                pending.result.completeExceptionally(new ApiException("Serviço encerrando",
+                        Response.Status.SERVICE_UNAVAILABLE));
+            }
+        }
+
+        private void process(List<Command> batch) {
+            try {
+                execute(batch);
+            } catch (RuntimeException e) {
+                // nada do lote foi gravado e o saldo em memória deixou de valer
+                balances.clear();
+                List<Command> pending = batch.stream().filter(command -> !command.result.isDone()).toList();
+                if (batch.size() > 1) {
+                    batchRetries.increment();
+                    LOG.debugf("Lote de %d transferências do shard %d refeito uma a uma: %s", batch.size(), index,
+                            e.getMessage());
+                    pending.forEach(this::processAlone);
+                } else {
+                    pending.forEach(command -> command.result.completeExceptionally(e));
+                }
+            }
+        }
+
+        private void processAlone(Command command) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    execute(List.of(command));
+                    return;
+                } catch (BalanceDrift e) {
+                    balances.clear();
+                    if (attempt >= DRIFT_RETRIES) {
+                        command.result.completeExceptionally(
+                                new ConflictException("Conta em uso por outra operação, tente novamente"));
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    balances.clear();
+                    command.result.completeExceptionally(e);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Valida o lote em memória e grava o que foi aceito numa transação. Os
+         * recusados (saldo, conta inexistente) completam já; os aceitos só depois
+         * do commit.
+         */
+        private void execute(List<Command> batch) {
+            loadMissing(batch);
+
+            Set<Long> reloaded = new HashSet<>();
+            Map<Long, BigDecimal> deltas = new TreeMap<>();
+            List<Command> accepted = new ArrayList<>(batch.size());
+            for (Command command : batch) {
+                if (command.result.isDone()) {
+                    continue;
+                }
+                BigDecimal balance = balances.get(command.fromId);
+                if (balance != null && balance.compareTo(command.amount) < 0 && reloaded.add(command.fromId)) {
+                    // créditos por outros caminhos não passam por aqui; confirma no banco antes de recusar
+                    balance = reload(command.fromId, deltas.getOrDefault(command.fromId, BigDecimal.ZERO));
+                }
+                if (balance == null) {
+                    command.result.completeExceptionally(
+                            new BadRequestException("Conta de origem ou destino inválida"));
+                    continue;
+                }
+                if (balance.compareTo(command.amount) < 0) {
+                    command.result.completeExceptionally(new BadRequestException("Saldo insuficiente"));
+                    continue;
+                }
+                balances.put(command.fromId, balance.subtract(command.amount));
+                balances.computeIfPresent(command.toId, (id, current) -> current.add(command.amount));
+                deltas.merge(command.fromId, command.amount.negate(), BigDecimal::add);
+                deltas.merge(command.toId, command.amount, BigDecimal::add);
+                accepted.add(command);
+            }
+            if (accepted.isEmpty()) {
+                return;
+            }
+
+            List<TransactionResponseDTO> responses = QuarkusTransaction.requiringNew()
+                    .call(() -> persist(accepted, deltas));
+            batchSize.record(accepted.size());
+            for (int i = 0; i < accepted.size(); i++) {
+                accepted.get(i).result.complete(responses.get(i));
+            }
+        }
+
+        private List<TransactionResponseDTO> persist(List<Command> accepted, Map<Long, BigDecimal> deltas) {
+            LocalDateTime now = LocalDateTime.now();
+            // em ordem crescente de id, como o BalanceMutationService: sem deadlock com outros shards
+            deltas.forEach((id, delta) -> {
+                int sign = delta.signum();
+                if (sign < 0 && !bankAccountRepository.debitIfCovered(id, delta.negate(), now)) {
+                    throw new BalanceDrift(id);
+                }
+                if (sign > 0 && !bankAccountRepository.credit(id, delta, now)) {
+                    throw new BadRequestException("Conta de origem ou destino inválida");
+                }
+            });
+
+            EntityManager em = transactionRepository.getEntityManager();
+            List<Transaction> transactions = new ArrayList<>(accepted.size());
+            for (Command command : accepted) {
+                Transaction tx = new Transaction();
+                tx.setFromAccount(em.getReference(BankAccount.class, command.fromId));
+                tx.setToAccount(em.getReference(BankAccount.class, command.toId));
+                tx.setAmount(command.amount);
+                tx.setType(command.type);
+                tx.setStatus(TransactionStatus.COMPLETED);
+                tx.setDescription(command.description);
+                tx.setCreatedAt(now);
+                em.persist(tx);
+                transactions.add(tx);
+            }
+            em.flush();
+
+            // com as linhas já bloqueadas pelos UPDATEs: o saldo lido é o final, que também corrige a memória
+            Map<Long, BigDecimal> finalBalances = bankAccountRepository.findBalances(deltas.keySet());
+            LocalDate today = now.toLocalDate();
+            deltas.forEach((id, delta) -> {
+                if (delta.signum() != 0) {
+                    snapshotRepository.addToDay(id, today, delta, finalBalances.get(id), now);
+                }
+                balances.computeIfPresent(id, (key, cached) -> finalBalances.get(id));
+            });
+
+            return transactions.stream().map(TransactionResponseDTO::fromEntity).toList();
+        }
+
+        private void loadMissing(List<Command> batch) {
+            Set<Long> missing = new HashSet<>();
+            for (Command command : batch) {
+                if (!balances.containsKey(command.fromId)) {
+                    missing.add(command.fromId);
+                }
+            }
+            if (!missing.isEmpty()) {
+                balances.putAll(QuarkusTransaction.requiringNew()
+                        .call(() -> bankAccountRepository.findBalances(missing)));
+            }
+        }
+
+        // saldo do banco menos o que este lote já debitou (ainda não gravado)
+        private BigDecimal reload(Long accountId, BigDecimal pendingDelta) {
+            BigDecimal stored = QuarkusTransaction.requiringNew()
+                    .call(() -> bankAccountRepository.findBalances(Set.of(accountId))).get(accountId);
+            if (stored == null) {
+                balances.remove(accountId);
+                return null;
+            }
+            BigDecimal current = stored.add(pendingDelta);
+            balances.put(accountId, current);
+            return current;
+        }
+    }
+}
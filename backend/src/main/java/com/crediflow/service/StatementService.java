@@ -0,0 +1,239 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.StatementLineDTO;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.HotAccountCheckpoint;
+import com.crediflow.enums.StatementFormat;
+import com.crediflow.enums.TransactionStatus;
+import com.crediflow.enums.TransactionType;
+import com.crediflow.exception.NotFoundException;
+import com.crediflow.repository.BankAccountRepository;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agroal.api.AgroalDataSource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Exportação do extrato completo de uma conta sem carregar o histórico em memória.
+ *
+ * As transações são lidas em ordem cronológica por uma sessão stateless
+ * (sem contexto de persistência) com um cursor somente-avanço, e cada linha é
+ * escrita na resposta assim que lida; o saldo acumulado é calculado linha a
+ * linha a partir do saldo de abertura.
+ *
+ * O saldo de partida, o líquido das transações e as linhas vêm da mesma
+ * sessão, numa única transação somente-leitura em REPEATABLE READ: uma
+ * transferência concluída durante a exportação não entra em uma leitura e
+ * fica de fora da outra. Por isso o saldo de partida sai do banco (o
+ * checkpoint, para uma conta quente) e não da memória do ledger.
+ */
+@ApplicationScoped
+public class StatementService {
+
+    private static final String CSV_HEADER = "id,createdAt,type,status,description,fromAccountId,toAccountId,amount,balance";
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    HotAccountLedger hotAccountLedger;
+
+    @Inject
+    EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ObjectMapper mapper;
+
+    // No MySQL, Integer.MIN_VALUE faz o driver entregar as linhas uma a uma em vez de bufferizar o resultado
+    @ConfigProperty(name = "crediflow.statement.fetch-size", defaultValue = "-2147483648")
+    int fetchSize;
+
+    /**
+     * Valida a conta e devolve o corpo da resposta; a leitura só acontece quando
+     * o JAX-RS escreve o corpo, depois que o status 200 já foi decidido.
+     */
+    public StreamingOutput export(Long accountId, StatementFormat format) {
+        BankAccount account = bankAccountRepository.findById(accountId);
+        if (account == null) {
+            throw new NotFoundException("Conta não encontrada");
+        }
+        boolean hot = hotAccountLedger.isHot(accountId);
+        return output -> write(accountId, hot, format, output);
+    }
+
+    /**
+     * A leitura usa uma transação JDBC da própria conexão, fora do JTA: o pool
+     * não deixa marcar como somente-leitura uma conexão alistada, e a exportação
+     * não deve depender do timeout das transações da aplicação. O pool devolve a
+     * conexão com os valores padrão.
+     */
+    void write(Long accountId, boolean hot, StatementFormat format, OutputStream output) throws IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            try {
+                read(connection, accountId, hot, format, output);
+            } finally {
+                // nada foi escrito; só encerra o snapshot
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Falha ao ler o extrato da conta " + accountId, e);
+        }
+    }
+
+    private void read(Connection connection, Long accountId, boolean hot, StatementFormat format,
+            OutputStream output) throws IOException {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        ObjectWriter jsonWriter = mapper.writerFor(StatementLineDTO.class);
+
+        try (StatelessSession session = sessionFactory.withStatelessOptions().connection(connection)
+                .openStatelessSession()) {
+            BigDecimal balance = openingBalance(session, accountId, hot);
+
+            if (format == StatementFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+
+            try (ScrollableResults<Object[]> rows = session.createSelectionQuery(
+                    "select t.id, t.createdAt, t.type, t.status, t.description, t.fromAccount.id, t.toAccount.id, t.amount "
+                            + "from Transaction t where t.fromAccount.id = :id or t.toAccount.id = :id "
+                            + "order by t.createdAt, t.id",
+                    Object[].class)
+                    .setParameter("id", accountId)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+
+                StatementLineDTO line = new StatementLineDTO();
+                while (rows.next()) {
+                    fill(line, rows.get(), accountId);
+                    if (TransactionStatus.COMPLETED.name().equals(line.status)) {
+                        balance = balance.add(line.amount);
+                    }
+                    line.balance = balance;
+
+                    if (format == StatementFormat.CSV) {
+                        writeCsv(writer, line);
+                    } else {
+                        writer.write(jsonWriter.writeValueAsString(line));
+                        writer.write('\n');
+                    }
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Saldo antes da primeira transação: o saldo gravado menos o líquido das
+     * transações que ele já inclui. Numa conta quente o saldo de
+     * {@code bank_accounts} só é atualizado no flush; o checkpoint inclui
+     * exatamente as transações anteriores ao seu {@code through}.
+     */
+    private BigDecimal openingBalance(StatelessSession session, Long accountId, boolean hot) {
+        if (hot) {
+            HotAccountCheckpoint checkpoint = session.get(HotAccountCheckpoint.class, accountId);
+            if (checkpoint != null) {
+                return checkpoint.getBalance().subtract(netAmount(session, accountId, checkpoint.getThrough()));
+            }
+        }
+        BigDecimal balance = session.createSelectionQuery("select a.balance from BankAccount a where a.id = :id",
+                BigDecimal.class)
+                .setParameter("id", accountId)
+                .getSingleResult();
+        return balance.subtract(netAmount(session, accountId, null));
+    }
+
+    /**
+     * Créditos menos débitos concluídos da conta com {@code createdAt} anterior
+     * a {@code before} (todos, se nulo).
+     */
+    private BigDecimal netAmount(StatelessSession session, Long accountId, LocalDateTime before) {
+        var query = session.createSelectionQuery(
+                "select coalesce(sum(case when t.toAccount.id = :id then t.amount else 0 end), 0) "
+                        + "- coalesce(sum(case when t.fromAccount.id = :id then t.amount else 0 end), 0) "
+                        + "from Transaction t where (t.fromAccount.id = :id or t.toAccount.id = :id) "
+                        + "and t.status = :status" + (before != null ? " and t.createdAt < :before" : ""),
+                BigDecimal.class)
+                .setParameter("id", accountId)
+                .setParameter("status", TransactionStatus.COMPLETED);
+        if (before != null) {
+            query.setParameter("before", before);
+        }
+        BigDecimal net = query.getSingleResult();
+        return net != null ? net : BigDecimal.ZERO;
+    }
+
+    private static void fill(StatementLineDTO line, Object[] row, Long accountId) {
+        line.id = (Long) row[0];
+        line.createdAt = (LocalDateTime) row[1];
+        line.type = row[2] != null ? ((TransactionType) row[2]).name() : null;
+        line.status = row[3] != null ? ((TransactionStatus) row[3]).name() : null;
+        line.description = (String) row[4];
+        line.fromAccountId = (Long) row[5];
+        line.toAccountId = (Long) row[6];
+
+        BigDecimal amount = (BigDecimal) row[7];
+        boolean credit = accountId.equals(line.toAccountId);
+        boolean debit = accountId.equals(line.fromAccountId);
+        // transferência para a própria conta não altera o saldo
+        line.amount = credit == debit ? BigDecimal.ZERO.setScale(amount.scale()) : credit ? amount : amount.negate();
+    }
+
+    private static void writeCsv(Writer writer, StatementLineDTO line) throws IOException {
+        writer.write(String.valueOf(line.id));
+        writer.write(',');
+        writer.write(line.createdAt != null ? line.createdAt.toString() : "");
+        writer.write(',');
+        writer.write(line.type != null ? line.type : "");
+        writer.write(',');
+        writer.write(line.status != null ? line.status : "");
+        writer.write(',');
+        writer.write(csvField(line.description));
+        writer.write(',');
+        writer.write(line.fromAccountId != null ? line.fromAccountId.toString() : "");
+        writer.write(',');
+        writer.write(line.toAccountId != null ? line.toAccountId.toString() : "");
+        writer.write(',');
+        writer.write(line.amount.toPlainString());
+        writer.write(',');
+        writer.write(line.balance.toPlainString());
+        writer.write('\n');
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
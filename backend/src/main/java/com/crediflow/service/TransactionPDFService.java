@@ -1,20 +1,40 @@
 package com.crediflow.service;
 
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 
 import com.crediflow.entity.Transaction;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
-import com.lowagie.text.pdf.draw.LineSeparator;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.StreamingOutput;
 
 @ApplicationScoped
 public class TransactionPDFService {
 
-    public byte[] generateReceipt(Transaction tx) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+    // entra na chave do cache de PDFs: incremente ao mudar o layout do comprovante
+    private static final int LAYOUT_VERSION = 1;
+
+    @Inject
+    PdfCacheService pdfCacheService;
+
+    public StreamingOutput generateReceipt(Transaction tx) {
+        return pdfCacheService.serve("receipt", cacheKey(tx), out -> write(tx, out));
+    }
+
+    /**
+     * Chave de cache (e ETag) do comprovante. Transações não são alteradas depois
+     * de gravadas, então todo comprovante pode ser reaproveitado.
+     */
+    public String cacheKey(Transaction tx) {
+        return PdfCacheService.key("receipt", LAYOUT_VERSION, tx.getId(), tx.getStatus(), tx.getCreatedAt());
+    }
+
+    public void write(Transaction tx, OutputStream out) {
+        try {
             Document doc = new Document(PageSize.A4);
-            PdfWriter.getInstance(doc, out);
+            PdfWriter writer = PdfWriter.getInstance(doc, out);
+            writer.setCloseStream(false);
             doc.open();
 
             Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 16);
@@ -33,10 +53,8 @@ public class TransactionPDFService {
             doc.add(new Paragraph("Descrição: " + tx.getDescription(), textFont));
 
             doc.close();
-            return out.toByteArray();
         } catch (Exception e) {
             throw new RuntimeException("Erro ao gerar comprovante", e);
         }
     }
 }
-
@@ -1,6 +1,10 @@
 package com.crediflow.service;
 
 import com.crediflow.entity.Transaction;
+import com.crediflow.dto.BatchTransferLegDTO;
+import com.crediflow.dto.BatchTransferLegResultDTO;
+import com.crediflow.dto.BatchTransferResultDTO;
+import com.crediflow.dto.CursorPagedResult;
 import com.crediflow.dto.PagedResult;
 import com.crediflow.dto.TransactionResponseDTO;
 import com.crediflow.entity.BankAccount;
@@ -8,20 +12,30 @@ import com.crediflow.entity.LoanInstallment;
 import com.crediflow.enums.TransactionStatus;
 import com.crediflow.enums.TransactionType;
 import com.crediflow.exception.BadRequestException;
+import com.crediflow.exception.ConflictException;
 import com.crediflow.repository.BankAccountRepository;
 import com.crediflow.repository.LoanInstallmentRepository;
 import com.crediflow.repository.TransactionRepository;
+import com.crediflow.util.TransactionCursor;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @ApplicationScoped
 public class TransactionService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     @Inject
     TransactionRepository transactionRepository;
 
@@ -34,25 +48,34 @@ public class TransactionService {
     @Inject
     LoanInstallmentRepository installmentRepository;
 
+    @Inject
+    BalanceMutationService balanceMutationService;
+
+    @Inject
+    AvailableMarginService availableMarginService;
+
+    @Inject
+    PixDirectory pixDirectory;
+
+    @ConfigProperty(name = "crediflow.transactions.batch.max-legs", defaultValue = "10000")
+    int batchMaxLegs;
+
     @Transactional
     public Transaction transfer(Long fromId, Long toId, BigDecimal amount, TransactionType type, String description) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new BadRequestException("O valor da transação deve ser positivo");
         }
 
-        BankAccount from = bankAccountRepository.findById(fromId);
-        BankAccount to = bankAccountRepository.findById(toId);
+        Map<Long, BankAccount> locked = balanceMutationService.lockAll(fromId, toId);
+        BankAccount from = locked.get(fromId);
+        BankAccount to = locked.get(toId);
 
         if (from == null || to == null) {
             throw new BadRequestException("Conta de origem ou destino inválida");
         }
 
-        if (from.getBalance().compareTo(amount) < 0) {
-            throw new BadRequestException("Saldo insuficiente");
-        }
-
-        from.setBalance(from.getBalance().subtract(amount));
-        to.setBalance(to.getBalance().add(amount));
+        balanceMutationService.debit(from, amount);
+        balanceMutationService.credit(to, amount);
 
         Transaction tx = new Transaction();
         tx.setFromAccount(from);
@@ -67,18 +90,131 @@ public class TransactionService {
         return tx;
     }
 
+    /**
+     * Executa várias transferências numa única transação: valida tudo numa
+     * passada, bloqueia cada conta envolvida uma única vez e grava as linhas
+     * de {@code transactions} em lotes JDBC. Transferências inválidas ou sem
+     * saldo são rejeitadas individualmente sem afetar as demais.
+     */
+    @Transactional
+    public BatchTransferResultDTO transferBatch(List<BatchTransferLegDTO> legs) {
+        if (legs == null || legs.isEmpty()) {
+            throw new BadRequestException("Nenhuma transferência informada");
+        }
+        if (legs.size() > batchMaxLegs) {
+            throw new BadRequestException("O lote pode ter no máximo " + batchMaxLegs + " transferências");
+        }
+
+        long start = System.nanoTime();
+        BatchTransferLegResultDTO[] results = new BatchTransferLegResultDTO[legs.size()];
+        BigDecimal[] amounts = new BigDecimal[legs.size()];
+        Set<Long> accountIds = new HashSet<>();
+
+        for (int i = 0; i < legs.size(); i++) {
+            BatchTransferLegDTO leg = legs.get(i);
+            if (leg == null || leg.fromAccountId == null || leg.toAccountId == null) {
+                results[i] = BatchTransferLegResultDTO.rejected(i, "Conta de origem ou destino inválida");
+                continue;
+            }
+            if (leg.fromAccountId.equals(leg.toAccountId)) {
+                results[i] = BatchTransferLegResultDTO.rejected(i, "Conta de origem e destino iguais");
+                continue;
+            }
+            try {
+                amounts[i] = new BigDecimal(leg.amount);
+            } catch (RuntimeException e) {
+                results[i] = BatchTransferLegResultDTO.rejected(i, "Valor inválido");
+                continue;
+            }
+            if (amounts[i].compareTo(BigDecimal.ZERO) <= 0) {
+                results[i] = BatchTransferLegResultDTO.rejected(i, "O valor da transação deve ser positivo");
+                continue;
+            }
+            accountIds.add(leg.fromAccountId);
+            accountIds.add(leg.toAccountId);
+        }
+
+        // travar uma conta inexistente marca a transação para rollback, o que desfaria o lote inteiro:
+        // as pernas com conta inexistente são rejeitadas antes
+        Set<Long> existing = accountIds.isEmpty() ? Set.of() : bankAccountRepository.findExistingIds(accountIds);
+        Set<Long> lockIds = new HashSet<>();
+        for (int i = 0; i < legs.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            BatchTransferLegDTO leg = legs.get(i);
+            if (!existing.contains(leg.fromAccountId) || !existing.contains(leg.toAccountId)) {
+                results[i] = BatchTransferLegResultDTO.rejected(i, "Conta de origem ou destino inválida");
+                continue;
+            }
+            lockIds.add(leg.fromAccountId);
+            lockIds.add(leg.toAccountId);
+        }
+
+        Map<Long, BankAccount> locked = balanceMutationService.lockAll(lockIds.toArray(Long[]::new));
+        if (locked.size() != lockIds.size()) {
+            // excluída entre a consulta e o bloqueio: a transação já não pode ser confirmada
+            throw new ConflictException("Conta excluída durante o lote, tente novamente");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int completed = 0;
+
+        for (int i = 0; i < legs.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            BatchTransferLegDTO leg = legs.get(i);
+            BankAccount from = locked.get(leg.fromAccountId);
+            BankAccount to = locked.get(leg.toAccountId);
+
+            try {
+                balanceMutationService.debit(from, amounts[i]);
+            } catch (BadRequestException e) {
+                results[i] = BatchTransferLegResultDTO.rejected(i, e.getMessage());
+                continue;
+            }
+            balanceMutationService.credit(to, amounts[i]);
+
+            Transaction tx = new Transaction();
+            tx.setFromAccount(from);
+            tx.setToAccount(to);
+            tx.setAmount(amounts[i]);
+            tx.setType(TransactionType.TRANSFER);
+            tx.setStatus(TransactionStatus.COMPLETED);
+            tx.setDescription(leg.description != null ? leg.description : "Transferência em lote");
+            tx.setCreatedAt(now);
+            transactionRepository.persist(tx);
+
+            results[i] = BatchTransferLegResultDTO.completed(i, tx.getId());
+            completed++;
+        }
+
+        transactionRepository.flush();
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+
+        BatchTransferResultDTO result = new BatchTransferResultDTO();
+        result.total = legs.size();
+        result.completed = completed;
+        result.rejected = legs.size() - completed;
+        result.elapsedMillis = Duration.ofNanos(elapsedNanos).toMillis();
+        result.rowsPerSecond = completed * 1_000_000_000.0 / elapsedNanos;
+        result.legs = List.of(results);
+        return result;
+    }
+
     @Transactional
     public Transaction deposit(Long toId, BigDecimal amount, String description) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new BadRequestException("O valor do depósito deve ser positivo");
         }
 
-        BankAccount to = bankAccountRepository.findById(toId);
+        BankAccount to = balanceMutationService.lock(toId);
         if (to == null) {
             throw new BadRequestException("Conta destino inválida");
         }
 
-        to.setBalance(to.getBalance().add(amount));
+        balanceMutationService.credit(to, amount);
 
         Transaction tx = new Transaction();
         tx.setFromAccount(null); // Externo
@@ -99,16 +235,12 @@ public class TransactionService {
             throw new BadRequestException("O valor do pagamento deve ser positivo");
         }
 
-        BankAccount from = bankAccountRepository.findById(fromId);
+        BankAccount from = balanceMutationService.lock(fromId);
         if (from == null) {
             throw new BadRequestException("Conta de origem inválida");
         }
 
-        if (from.getBalance().compareTo(amount) < 0) {
-            throw new BadRequestException("Saldo insuficiente");
-        }
-
-        from.setBalance(from.getBalance().subtract(amount));
+        balanceMutationService.debit(from, amount);
 
         Transaction tx = new Transaction();
         tx.setFromAccount(from);
@@ -146,8 +278,28 @@ public class TransactionService {
         return new PagedResult<>(dtos, paged.getTotal(), paged.getPage(), paged.getSize());
     }
 
+    public CursorPagedResult<TransactionResponseDTO> searchTransactionsByCursor(Long accountId, TransactionType type,
+            TransactionStatus status, String cursor, int size, boolean includeTotal) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new BadRequestException("O tamanho da página deve ser entre 1 e " + MAX_CURSOR_PAGE_SIZE);
+        }
+        TransactionCursor after = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+        List<Transaction> found = transactionRepository.searchAfter(accountId, type, status, after, size);
+
+        boolean hasMore = found.size() > size;
+        List<Transaction> page = hasMore ? found.subList(0, size) : found;
+        String nextCursor = hasMore ? TransactionCursor.of(page.get(page.size() - 1)).encode() : null;
+        Long total = includeTotal ? transactionRepository.countByAccount(accountId, type, status) : null;
+
+        List<TransactionResponseDTO> dtos = page.stream()
+                .map(TransactionResponseDTO::fromEntity)
+                .toList();
+
+        return new CursorPagedResult<>(dtos, nextCursor, total, size);
+    }
+
     @Transactional
-    public byte[] payInstallmentAndReturnReceipt(Long installmentId, Long bankAccountId) {
+    public StreamingOutput payInstallmentAndReturnReceipt(Long installmentId, Long bankAccountId) {
         // Lógica já validada
         LoanInstallment installment = installmentRepository.findByIdOptional(installmentId)
                 .orElseThrow(() -> new BadRequestException("Parcela não encontrada"));
@@ -156,19 +308,17 @@ public class TransactionService {
             throw new BadRequestException("Parcela já foi paga");
         }
 
-        BankAccount account = bankAccountRepository.findByIdOptional(bankAccountId)
-                .orElseThrow(() -> new BadRequestException("Conta bancária não encontrada"));
-
-        if (account.getBalance().compareTo(installment.getValue()) < 0) {
-            throw new BadRequestException("Saldo insuficiente");
+        BankAccount account = balanceMutationService.lock(bankAccountId);
+        if (account == null) {
+            throw new BadRequestException("Conta bancária não encontrada");
         }
 
-        account.setBalance(account.getBalance().subtract(installment.getValue()));
-        bankAccountRepository.persist(account);
+        balanceMutationService.debit(account, installment.getValue());
 
         installment.setPaidValue(installment.getValue());
         installment.setPaid(true);
         installmentRepository.persist(installment);
+        availableMarginService.invalidateAfterCommit(installment.getProposal().getCustomer().getId());
 
         Transaction tx = new Transaction();
         tx.setFromAccount(account);
@@ -191,20 +341,21 @@ public class TransactionService {
             throw new BadRequestException("Valor inválido");
         }
 
-        BankAccount from = bankAccountRepository.findById(fromId);
-        BankAccount to = bankAccountRepository.find("agencyNumber = ?1 and accountNumber = ?2", agency, account)
-                .firstResult();
-
-        if (from == null || to == null) {
+        BankAccount target = bankAccountRepository.findByAgencyAndAccount(agency, account);
+        if (target == null) {
             throw new BadRequestException("Conta origem ou destino inválida");
         }
 
-        if (from.getBalance().compareTo(amount) < 0) {
-            throw new BadRequestException("Saldo insuficiente");
+        Map<Long, BankAccount> locked = balanceMutationService.lockAll(fromId, target.getId());
+        BankAccount from = locked.get(fromId);
+        BankAccount to = locked.get(target.getId());
+
+        if (from == null || to == null) {
+            throw new BadRequestException("Conta origem ou destino inválida");
         }
 
-        from.setBalance(from.getBalance().subtract(amount));
-        to.setBalance(to.getBalance().add(amount));
+        balanceMutationService.debit(from, amount);
+        balanceMutationService.credit(to, amount);
 
         Transaction tx = new Transaction();
         tx.setFromAccount(from);
@@ -230,12 +381,20 @@ public class TransactionService {
 
     @Transactional
     public Transaction pixTransfer(Long fromId, String pixKey, BigDecimal amount, String description) {
-        BankAccount to = bankAccountRepository.findByPixKey(pixKey);
+        PixDirectory.Entry to = pixDirectory.find(pixKey);
         if (to == null)
             throw new BadRequestException("Chave Pix não encontrada");
 
-        return transfer(fromId, to.getId(), amount, TransactionType.PIX,
+        Transaction tx = transfer(fromId, to.accountId(), amount, TransactionType.PIX,
                 description != null ? description : "Transferência via Pix");
+
+        // o diretório pode estar atrasado em relação a outra instância: com a conta de
+        // destino já bloqueada, confirma que a chave ainda é dela, senão desfaz tudo
+        if (!pixDirectory.belongsTo(pixKey, to.accountId())) {
+            pixDirectory.evict(pixKey);
+            throw new ConflictException("A chave Pix mudou de conta, tente novamente");
+        }
+        return tx;
     }
 
 
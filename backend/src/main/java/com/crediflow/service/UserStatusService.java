@@ -0,0 +1,140 @@
+package com.crediflow.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Status (habilitado/desabilitado) dos usuários do Keycloak para as listagens.
+ *
+ * Os valores ficam no cache {@value #CACHE_NAME} (TTL e tamanho máximo em
+ * application.properties), que o {@link KeycloakAdminService} atualiza ou
+ * invalida quando o próprio sistema altera o usuário. A API de administração
+ * do Keycloak não busca vários usuários por id numa chamada só, então as
+ * ausências de uma página são consultadas em paralelo, em threads virtuais,
+ * com limite de chamadas simultâneas.
+ */
+@ApplicationScoped
+public class UserStatusService {
+
+    public static final String CACHE_NAME = "keycloak-user-status";
+
+    private static final Logger LOG = Logger.getLogger(UserStatusService.class);
+
+    @Inject
+    KeycloakAdminService keycloakAdminService;
+
+    @Inject
+    @CacheName(CACHE_NAME)
+    Cache cache;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "crediflow.keycloak.user-status.max-concurrency", defaultValue = "8")
+    int maxConcurrency;
+
+    private ExecutorService executor;
+    private Semaphore permits;
+
+    Counter lookups;
+    Counter lookupFailures;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        permits = new Semaphore(maxConcurrency);
+        lookups = registry.counter("crediflow.keycloak.user-status.lookups");
+        lookupFailures = registry.counter("crediflow.keycloak.user-status.lookup.failures");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Status de um usuário; {@code true} se não for possível consultar o Keycloak.
+     */
+    public boolean isEnabled(String keycloakId) {
+        if (keycloakId == null) {
+            return true;
+        }
+        return statusOf(Set.of(keycloakId)).getOrDefault(keycloakId, true);
+    }
+
+    /**
+     * Status de vários usuários. Ids cujo status não pôde ser obtido ficam de
+     * fora do mapa (e não são guardados no cache, para tentar de novo depois).
+     */
+    public Map<String, Boolean> statusOf(Collection<String> keycloakIds) {
+        Set<String> ids = keycloakIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<String, Boolean> result = new HashMap<>();
+        Map<String, CompletableFuture<Boolean>> pending = new HashMap<>();
+        CaffeineCache caffeine = cache.as(CaffeineCache.class);
+
+        for (String id : ids) {
+            CompletableFuture<Boolean> cached = caffeine.getIfPresent(id);
+            if (cached != null && cached.isDone() && !cached.isCompletedExceptionally()) {
+                result.put(id, cached.join());
+            } else {
+                pending.put(id, CompletableFuture.supplyAsync(() -> load(id), executor));
+            }
+        }
+
+        pending.forEach((id, future) -> {
+            try {
+                Boolean enabled = future.join();
+                result.put(id, enabled);
+            } catch (RuntimeException e) {
+                lookupFailures.increment();
+                LOG.warnf("Não foi possível consultar o status do usuário %s no Keycloak: %s", id,
+                        e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        });
+        return result;
+    }
+
+    /*
+     * cache.get reserva a entrada antes de consultar: outra página que peça o mesmo
+     * usuário espera a mesma consulta, e uma invalidação ou gravação do
+     * KeycloakAdminService feita durante a consulta não é sobrescrita pelo valor
+     * antigo. Se a consulta falhar, a entrada reservada é removida.
+     */
+    private boolean load(String id) {
+        return cache.get(id, this::lookup).await().indefinitely();
+    }
+
+    private boolean lookup(String id) {
+        permits.acquireUninterruptibly();
+        try {
+            lookups.increment();
+            return keycloakAdminService.isUserEnabled(id);
+        } finally {
+            permits.release();
+        }
+    }
+}
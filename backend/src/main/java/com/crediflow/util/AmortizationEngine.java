@@ -0,0 +1,314 @@
+package com.crediflow.util;
+
+import com.crediflow.dto.LoanInstallmentDTO;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cálculo de cronogramas PRICE e SAC em centavos ({@code long}).
+ *
+ * Os arredondamentos são os mesmos da implementação em BigDecimal (HALF_UP em
+ * cada passo), então os valores são idênticos centavo a centavo. O fator
+ * {@code i(1+i)^n / ((1+i)^n - 1)} da Tabela Price é guardado como razão exata
+ * de inteiros por (taxa, prazo); cada simulação faz apenas uma multiplicação e
+ * uma divisão sobre ele. Valores com mais de duas casas decimais, taxas
+ * negativas ou com escala muito grande e contas que estourariam um
+ * {@code long} seguem pelo caminho em BigDecimal.
+ */
+public final class AmortizationEngine {
+
+    private static final int MAX_CACHED_FACTORS = 4096;
+    private static final int MAX_RATE_SCALE = 9;
+
+    private static final Map<FactorKey, PriceFactor> FACTORS = new ConcurrentHashMap<>();
+
+    private AmortizationEngine() {
+    }
+
+    /**
+     * Resultado numérico de uma simulação. {@code installments} é nulo quando
+     * o cronograma não foi pedido.
+     */
+    public record Result(BigDecimal financedAmount, BigDecimal installmentValue, BigDecimal totalPayment,
+            List<LoanInstallmentDTO> installments) {
+    }
+
+    /**
+     * Tabela Price. Com {@code installmentGiven} o valor informado é a parcela e
+     * o resultado traz o valor financiado; senão é o valor financiado.
+     */
+    public static Result price(BigDecimal amount, boolean installmentGiven, BigDecimal rate, int months,
+            LocalDate firstDueDate, boolean includeSchedule) {
+        if (amount.scale() <= 2 && fitsCents(rate)) {
+            try {
+                return priceCents(amount, installmentGiven, rate, months, firstDueDate, includeSchedule);
+            } catch (ArithmeticException e) {
+                // valores grandes demais para centavos em long
+            }
+        }
+        return priceDecimal(amount, installmentGiven, rate, months, firstDueDate, includeSchedule);
+    }
+
+    /**
+     * SAC: amortização constante de {@code valor / n} e juros sobre o saldo devedor.
+     * A última parcela absorve a diferença de arredondamento da amortização.
+     */
+    public static Result sac(BigDecimal financed, BigDecimal rate, int months, LocalDate firstDueDate,
+            boolean includeSchedule) {
+        if (financed.scale() <= 2 && fitsCents(rate)) {
+            try {
+                return sacCents(financed, rate, months, firstDueDate, includeSchedule);
+            } catch (ArithmeticException e) {
+                // valores grandes demais para centavos em long
+            }
+        }
+        return sacDecimal(financed, rate, months, firstDueDate, includeSchedule);
+    }
+
+    private static Result priceCents(BigDecimal amount, boolean installmentGiven, BigDecimal rate, int months,
+            LocalDate firstDueDate, boolean includeSchedule) {
+        BigDecimal normalizedRate = normalize(rate);
+        long rateUnscaled = normalizedRate.unscaledValue().longValueExact();
+        long rateDivisor = BigInteger.TEN.pow(normalizedRate.scale()).longValueExact();
+        long amountCents = amount.movePointRight(2).longValueExact();
+
+        long financedCents;
+        long installmentCents;
+        if (rateUnscaled == 0) {
+            financedCents = installmentGiven ? Math.multiplyExact(amountCents, months) : amountCents;
+            installmentCents = installmentGiven ? amountCents : divideHalfUp(amountCents, months);
+        } else {
+            PriceFactor factor = factor(normalizedRate, months);
+            BigInteger value = BigInteger.valueOf(amountCents);
+            if (installmentGiven) {
+                installmentCents = amountCents;
+                financedCents = divideHalfUp(value.multiply(factor.denominator()), factor.numerator());
+            } else {
+                financedCents = amountCents;
+                installmentCents = divideHalfUp(value.multiply(factor.numerator()), factor.denominator());
+            }
+        }
+
+        BigDecimal installment = installmentGiven ? amount : BigDecimal.valueOf(installmentCents, 2);
+        List<LoanInstallmentDTO> schedule = null;
+        if (includeSchedule) {
+            schedule = new ArrayList<>(months);
+            long remaining = financedCents;
+            for (int i = 1; i <= months; i++) {
+                long interest = divideHalfUp(Math.multiplyExact(remaining, rateUnscaled), rateDivisor);
+                long principal = installmentCents - interest;
+                remaining -= principal;
+                schedule.add(installment(i, firstDueDate, installment, interest, principal, remaining));
+            }
+        }
+
+        return new Result(BigDecimal.valueOf(financedCents, 2), BigDecimal.valueOf(installmentCents, 2),
+                BigDecimal.valueOf(Math.multiplyExact(installmentCents, months), 2), schedule);
+    }
+
+    private static Result sacCents(BigDecimal financed, BigDecimal rate, int months, LocalDate firstDueDate,
+            boolean includeSchedule) {
+        BigDecimal normalizedRate = normalize(rate);
+        long rateUnscaled = normalizedRate.unscaledValue().longValueExact();
+        long rateDivisor = BigInteger.TEN.pow(normalizedRate.scale()).longValueExact();
+        long financedCents = financed.movePointRight(2).longValueExact();
+        long amortization = divideHalfUp(financedCents, months);
+
+        List<LoanInstallmentDTO> schedule = includeSchedule ? new ArrayList<>(months) : null;
+        long remaining = financedCents;
+        long firstInstallment = 0;
+        long total = 0;
+        for (int i = 1; i <= months; i++) {
+            long interest = divideHalfUp(Math.multiplyExact(remaining, rateUnscaled), rateDivisor);
+            long principal = i == months ? remaining : Math.min(amortization, remaining);
+            long value = principal + interest;
+            remaining -= principal;
+            total = Math.addExact(total, value);
+            if (i == 1) {
+                firstInstallment = value;
+            }
+            if (schedule != null) {
+                schedule.add(installment(i, firstDueDate, BigDecimal.valueOf(value, 2), interest, principal,
+                        remaining));
+            }
+        }
+
+        return new Result(BigDecimal.valueOf(financedCents, 2), BigDecimal.valueOf(firstInstallment, 2),
+                BigDecimal.valueOf(total, 2), schedule);
+    }
+
+    private static LoanInstallmentDTO installment(int number, LocalDate firstDueDate, BigDecimal value,
+            long interestCents, long principalCents, long remainingCents) {
+        LoanInstallmentDTO installment = new LoanInstallmentDTO();
+        installment.number = number;
+        installment.dueDate = firstDueDate.plusMonths(number - 1);
+        installment.value = value;
+        installment.interest = BigDecimal.valueOf(interestCents, 2);
+        installment.principal = BigDecimal.valueOf(principalCents, 2);
+        // mesmo comportamento de BigDecimal.max(ZERO): saldo negativo vira ZERO, sem casas decimais
+        installment.balance = remainingCents < 0 ? BigDecimal.ZERO : BigDecimal.valueOf(remainingCents, 2);
+        return installment;
+    }
+
+    /**
+     * Fator da Tabela Price como razão exata: parcela = valor * numerator / denominator.
+     * Com a taxa R / 10^s, A = (10^s + R)^n e B = 10^(s*n), o fator é
+     * R * A / (10^s * (A - B)).
+     */
+    static PriceFactor factor(BigDecimal normalizedRate, int months) {
+        FactorKey key = new FactorKey(normalizedRate.unscaledValue().longValueExact(), normalizedRate.scale(), months);
+        PriceFactor cached = FACTORS.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        BigInteger rate = normalizedRate.unscaledValue();
+        BigInteger tenToScale = BigInteger.TEN.pow(normalizedRate.scale());
+        BigInteger a = tenToScale.add(rate).pow(months);
+        BigInteger b = tenToScale.pow(months);
+        BigInteger numerator = rate.multiply(a);
+        BigInteger denominator = tenToScale.multiply(a.subtract(b));
+        BigInteger gcd = numerator.gcd(denominator);
+        PriceFactor factor = new PriceFactor(numerator.divide(gcd), denominator.divide(gcd));
+
+        if (FACTORS.size() >= MAX_CACHED_FACTORS) {
+            FACTORS.clear();
+        }
+        FACTORS.put(key, factor);
+        return factor;
+    }
+
+    private static boolean fitsCents(BigDecimal rate) {
+        if (rate.signum() < 0) {
+            return false;
+        }
+        BigDecimal normalized = normalize(rate);
+        return normalized.scale() <= MAX_RATE_SCALE && normalized.unscaledValue().bitLength() < Long.SIZE - 1;
+    }
+
+    private static BigDecimal normalize(BigDecimal rate) {
+        BigDecimal stripped = rate.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+
+    /**
+     * Divisão inteira com arredondamento HALF_UP simétrico, como o do BigDecimal.
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    static long divideHalfUp(BigInteger dividend, BigInteger divisor) {
+        BigInteger[] division = dividend.divideAndRemainder(divisor);
+        BigInteger quotient = division[0];
+        if (division[1].abs().shiftLeft(1).compareTo(divisor) >= 0) {
+            quotient = quotient.add(BigInteger.valueOf(dividend.signum()));
+        }
+        return quotient.longValueExact();
+    }
+
+    private static Result priceDecimal(BigDecimal amount, boolean installmentGiven, BigDecimal rate, int months,
+            LocalDate firstDueDate, boolean includeSchedule) {
+        BigDecimal amountFinanced;
+        BigDecimal monthlyInstallment;
+        if (installmentGiven) {
+            monthlyInstallment = amount;
+            amountFinanced = calculateAmountFinanced(monthlyInstallment, rate, months);
+        } else {
+            amountFinanced = amount;
+            monthlyInstallment = calculateInstallment(amountFinanced, rate, months);
+        }
+
+        BigDecimal totalPayment = monthlyInstallment.multiply(BigDecimal.valueOf(months)).setScale(2, RoundingMode.HALF_UP);
+
+        List<LoanInstallmentDTO> schedule = null;
+        if (includeSchedule) {
+            schedule = new ArrayList<>(months);
+            BigDecimal remaining = amountFinanced;
+            for (int i = 1; i <= months; i++) {
+                BigDecimal interest = remaining.multiply(rate).setScale(2, RoundingMode.HALF_UP);
+                BigDecimal principal = monthlyInstallment.subtract(interest).setScale(2, RoundingMode.HALF_UP);
+                remaining = remaining.subtract(principal).setScale(2, RoundingMode.HALF_UP);
+                schedule.add(installment(i, firstDueDate, monthlyInstallment, interest, principal, remaining));
+            }
+        }
+
+        return new Result(amountFinanced.setScale(2, RoundingMode.HALF_UP),
+                monthlyInstallment.setScale(2, RoundingMode.HALF_UP), totalPayment, schedule);
+    }
+
+    private static Result sacDecimal(BigDecimal financed, BigDecimal rate, int months, LocalDate firstDueDate,
+            boolean includeSchedule) {
+        BigDecimal amortization = financed.divide(BigDecimal.valueOf(months), 2, RoundingMode.HALF_UP);
+
+        List<LoanInstallmentDTO> schedule = includeSchedule ? new ArrayList<>(months) : null;
+        BigDecimal remaining = financed.setScale(2, RoundingMode.HALF_UP);
+        BigDecimal firstInstallment = BigDecimal.ZERO;
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 1; i <= months; i++) {
+            BigDecimal interest = remaining.multiply(rate).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal principal = i == months ? remaining : amortization.min(remaining);
+            BigDecimal value = principal.add(interest);
+            remaining = remaining.subtract(principal);
+            total = total.add(value);
+            if (i == 1) {
+                firstInstallment = value;
+            }
+            if (schedule != null) {
+                schedule.add(installment(i, firstDueDate, value, interest, principal, remaining));
+            }
+        }
+
+        return new Result(financed.setScale(2, RoundingMode.HALF_UP), firstInstallment, total, schedule);
+    }
+
+    private static LoanInstallmentDTO installment(int number, LocalDate firstDueDate, BigDecimal value,
+            BigDecimal interest, BigDecimal principal, BigDecimal remaining) {
+        LoanInstallmentDTO installment = new LoanInstallmentDTO();
+        installment.number = number;
+        installment.dueDate = firstDueDate.plusMonths(number - 1);
+        installment.value = value;
+        installment.interest = interest;
+        installment.principal = principal;
+        installment.balance = remaining.max(BigDecimal.ZERO);
+        return installment;
+    }
+
+    private static BigDecimal calculateInstallment(BigDecimal principal, BigDecimal rate, int months) {
+        if (rate.compareTo(BigDecimal.ZERO) == 0) {
+            return principal.divide(BigDecimal.valueOf(months), 2, RoundingMode.HALF_UP);
+        }
+        BigDecimal onePlusI = BigDecimal.ONE.add(rate);
+        BigDecimal numerator = rate.multiply(onePlusI.pow(months));
+        BigDecimal denominator = onePlusI.pow(months).subtract(BigDecimal.ONE);
+        return principal.multiply(numerator).divide(denominator, 2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal calculateAmountFinanced(BigDecimal installment, BigDecimal rate, int months) {
+        if (rate.compareTo(BigDecimal.ZERO) == 0) {
+            return installment.multiply(BigDecimal.valueOf(months)).setScale(2, RoundingMode.HALF_UP);
+        }
+        BigDecimal onePlusI = BigDecimal.ONE.add(rate);
+        BigDecimal numerator = onePlusI.pow(months).subtract(BigDecimal.ONE);
+        BigDecimal denominator = rate.multiply(onePlusI.pow(months));
+        return installment.multiply(numerator).divide(denominator, 2, RoundingMode.HALF_UP);
+    }
+
+    private record FactorKey(long rateUnscaled, int rateScale, int months) {
+    }
+
+    record PriceFactor(BigInteger numerator, BigInteger denominator) {
+    }
+}
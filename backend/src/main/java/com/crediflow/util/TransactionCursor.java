@@ -0,0 +1,35 @@
+package com.crediflow.util;
+
+import com.crediflow.entity.Transaction;
+import com.crediflow.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Cursor opaco da paginação por keyset de transações: posição (createdAt, id)
+ * do último item entregue, codificada em Base64 URL-safe.
+ */
+public record TransactionCursor(LocalDateTime createdAt, Long id) {
+
+    public static TransactionCursor of(Transaction tx) {
+        return new TransactionCursor(tx.getCreatedAt(), tx.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int comma = raw.lastIndexOf(',');
+            return new TransactionCursor(LocalDateTime.parse(raw.substring(0, comma)),
+                    Long.parseLong(raw.substring(comma + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Cursor inválido");
+        }
+    }
+}
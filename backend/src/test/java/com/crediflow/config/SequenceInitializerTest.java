@@ -0,0 +1,73 @@
+package com.crediflow.config;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sequência emulada por tabela, como no MySQL, ao lado de uma tabela que já
+ * tem ids até 120.
+ */
+@QuarkusTest
+class SequenceInitializerTest {
+
+    @Inject
+    SequenceInitializer initializer;
+
+    @Inject
+    EntityManager em;
+
+    @BeforeEach
+    void createTables() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            em.createNativeQuery("create table seq_test_rows (id bigint primary key)").executeUpdate();
+            em.createNativeQuery("insert into seq_test_rows (id) values (1), (57), (120)").executeUpdate();
+            em.createNativeQuery("create table seq_test_seq (next_val bigint)").executeUpdate();
+            em.createNativeQuery("insert into seq_test_seq (next_val) values (1)").executeUpdate();
+        });
+    }
+
+    @AfterEach
+    void dropTables() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            em.createNativeQuery("drop table seq_test_rows").executeUpdate();
+            em.createNativeQuery("drop table seq_test_seq").executeUpdate();
+        });
+    }
+
+    @Test
+    void sequenceIsMovedPastTheHighestIdPlusOneBlock() {
+        assertTrue(advance());
+        assertEquals(171, nextVal());
+
+        // na subida seguinte já está à frente
+        assertFalse(advance());
+        assertEquals(171, nextVal());
+    }
+
+    @Test
+    void sequenceAlreadyAheadIsLeftAsIs() {
+        QuarkusTransaction.requiringNew().run(() -> em
+                .createNativeQuery("update seq_test_seq set next_val = 5000").executeUpdate());
+
+        assertFalse(advance());
+        assertEquals(5000, nextVal());
+    }
+
+    private boolean advance() {
+        return QuarkusTransaction.requiringNew().call(() -> initializer.advance("seq_test_seq", "seq_test_rows"));
+    }
+
+    private long nextVal() {
+        return QuarkusTransaction.requiringNew().call(() -> ((Number) em
+                .createNativeQuery("select next_val from seq_test_seq").getSingleResult()).longValue());
+    }
+}
@@ -0,0 +1,173 @@
+package com.crediflow.controller;
+
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.enums.LoanProposalStatus;
+import com.crediflow.service.LoanFixtures;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import io.restassured.specification.RequestSpecification;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ciclo de vida dos jobs de CCB pela API: cada teste cria a própria empresa,
+ * com duas propostas aprovadas, e uma segunda empresa com uma proposta.
+ */
+@QuarkusTest
+class CCBJobControllerTest {
+
+    @Inject
+    LoanFixtures loans;
+
+    @Inject
+    EntityManager em;
+
+    String companyUser;
+    Long companyId;
+    Long otherCompanyId;
+    Long first;
+    Long second;
+    Long foreign;
+
+    @BeforeEach
+    void createProposals() {
+        companyUser = "company-" + UUID.randomUUID();
+        companyId = loans.createCompany(companyUser);
+        Long customerId = loans.createCustomer(companyId);
+        first = loans.createProposal(customerId, 3, LoanProposalStatus.APPROVED);
+        second = loans.createProposal(customerId, 3, LoanProposalStatus.APPROVED);
+
+        otherCompanyId = loans.createCompany(null);
+        foreign = loans.createProposal(loans.createCustomer(otherCompanyId), 3, LoanProposalStatus.APPROVED);
+    }
+
+    @Test
+    void jobRendersEveryProposalOfTheFilterIntoTheZip() throws IOException {
+        String id = start(as("admin-ccb-job", "admin"), Map.of("companyId", companyId));
+
+        JsonPath job = awaitFinished(as("admin-ccb-job", "admin"), id);
+        assertEquals("DONE", job.getString("status"));
+        assertEquals(2, job.getInt("total"));
+        assertEquals(2, job.getInt("completed"));
+        assertEquals(0, job.getInt("failed"));
+
+        Map<String, byte[]> zip = download(as("admin-ccb-job", "admin"), id);
+        assertEquals(Set.of("ccb_proposta_" + first + ".pdf", "ccb_proposta_" + second + ".pdf"), zip.keySet());
+        zip.values().forEach(pdf -> assertTrue(new String(pdf, 0, 5).startsWith("%PDF-")));
+        assertEquals(job.getLong("zipBytes"), as("admin-ccb-job", "admin")
+                .get("/ccb-jobs/" + id + "/download").then().extract().asByteArray().length);
+    }
+
+    @Test
+    void failingProposalIsRecordedWithoutStoppingTheJob() throws IOException {
+        // sem a data da primeira parcela a renderização falha
+        QuarkusTransaction.requiringNew().run(() -> em.find(LoanProposal.class, second).setFirstInstallmentDate(null));
+
+        String id = start(as("admin-ccb-job", "admin"), Map.of("companyId", companyId));
+
+        JsonPath job = awaitFinished(as("admin-ccb-job", "admin"), id);
+        assertEquals("DONE", job.getString("status"));
+        assertEquals(1, job.getInt("completed"));
+        assertEquals(1, job.getInt("failed"));
+        assertEquals(1, job.getList("errors").size());
+        assertTrue(job.getString("errors[0]").startsWith("proposta " + second + ":"));
+        assertEquals(Set.of("ccb_proposta_" + first + ".pdf"), download(as("admin-ccb-job", "admin"), id).keySet());
+    }
+
+    @Test
+    void companyOnlyExportsItsOwnProposals() throws IOException {
+        String id = start(as(companyUser, "company"), Map.of("companyId", otherCompanyId));
+
+        JsonPath job = awaitFinished(as(companyUser, "company"), id);
+        assertEquals(2, job.getInt("total"));
+        Set<String> entries = download(as(companyUser, "company"), id).keySet();
+        assertEquals(Set.of("ccb_proposta_" + first + ".pdf", "ccb_proposta_" + second + ".pdf"), entries);
+        assertFalse(entries.contains("ccb_proposta_" + foreign + ".pdf"));
+    }
+
+    @Test
+    void companyWithoutRegistrationIsRejected() {
+        as("company-" + UUID.randomUUID(), "company").contentType(ContentType.JSON).body(Map.of())
+                .post("/ccb-jobs")
+                .then().statusCode(400);
+    }
+
+    @Test
+    void onlyTheCreatorSeesTheJob() {
+        String id = start(as("admin-ccb-job", "admin"), Map.of("companyId", companyId));
+        awaitFinished(as("admin-ccb-job", "admin"), id);
+
+        as(companyUser, "company").get("/ccb-jobs/" + id).then().statusCode(404);
+        as(companyUser, "company").get("/ccb-jobs/" + id + "/download").then().statusCode(404);
+        as("other-admin", "admin").get("/ccb-jobs/" + id).then().statusCode(404);
+        given().get("/ccb-jobs/" + id).then().statusCode(401);
+        as("admin-ccb-job", "admin").get("/ccb-jobs/" + UUID.randomUUID()).then().statusCode(404);
+    }
+
+    @Test
+    void invalidPeriodIsRejected() {
+        as("admin-ccb-job", "admin").contentType(ContentType.JSON)
+                .body(Map.of("from", "2025-02-01", "to", "2025-01-01"))
+                .post("/ccb-jobs")
+                .then().statusCode(400);
+    }
+
+    private static RequestSpecification as(String user, String role) {
+        return given().header(HeaderAuthenticationMechanism.USER, user)
+                .header(HeaderAuthenticationMechanism.ROLES, role);
+    }
+
+    private static String start(RequestSpecification caller, Map<String, Object> filter) {
+        return caller.contentType(ContentType.JSON).body(filter)
+                .post("/ccb-jobs")
+                .then().statusCode(202)
+                .extract().jsonPath().getString("id");
+    }
+
+    private static JsonPath awaitFinished(RequestSpecification caller, String id) {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (true) {
+            JsonPath job = caller.get("/ccb-jobs/" + id).then().statusCode(200).extract().jsonPath();
+            if (!"RUNNING".equals(job.getString("status")) || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return job;
+            }
+        }
+    }
+
+    private static Map<String, byte[]> download(RequestSpecification caller, String id) throws IOException {
+        byte[] body = caller.get("/ccb-jobs/" + id + "/download")
+                .then().statusCode(200).contentType("application/zip")
+                .extract().asByteArray();
+        Map<String, byte[]> entries = new TreeMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(body))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
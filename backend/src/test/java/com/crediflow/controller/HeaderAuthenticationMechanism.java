@@ -0,0 +1,52 @@
+package com.crediflow.controller;
+
+import io.quarkus.oidc.AccessTokenCredential;
+import io.quarkus.oidc.runtime.OidcJwtCallerPrincipal;
+import io.quarkus.security.identity.IdentityProviderManager;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.security.runtime.QuarkusSecurityIdentity;
+import io.quarkus.vertx.http.runtime.security.ChallengeData;
+import io.quarkus.vertx.http.runtime.security.HttpAuthenticationMechanism;
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.jose4j.jwt.JwtClaims;
+
+import java.util.Arrays;
+
+/**
+ * Autenticação dos testes sem Keycloak: {@value #USER} vira o {@code sub} do
+ * token (o id do Keycloak que os serviços procuram) e {@value #ROLES} os papéis,
+ * separados por vírgula. Sem os cabeçalhos a requisição segue anônima.
+ */
+@ApplicationScoped
+public class HeaderAuthenticationMechanism implements HttpAuthenticationMechanism {
+
+    public static final String USER = "X-Test-User";
+    public static final String ROLES = "X-Test-Roles";
+
+    @Override
+    public Uni<SecurityIdentity> authenticate(RoutingContext context, IdentityProviderManager identityProviderManager) {
+        String user = context.request().getHeader(USER);
+        if (user == null) {
+            return Uni.createFrom().nullItem();
+        }
+        JwtClaims claims = new JwtClaims();
+        claims.setSubject(user);
+        claims.setClaim("preferred_username", user);
+        AccessTokenCredential credential = new AccessTokenCredential("test-" + user);
+        QuarkusSecurityIdentity.Builder identity = QuarkusSecurityIdentity.builder()
+                .setPrincipal(new OidcJwtCallerPrincipal(claims, credential))
+                .addCredential(credential);
+        String roles = context.request().getHeader(ROLES);
+        if (roles != null) {
+            Arrays.stream(roles.split(",")).map(String::trim).forEach(identity::addRole);
+        }
+        return Uni.createFrom().item(identity.build());
+    }
+
+    @Override
+    public Uni<ChallengeData> getChallenge(RoutingContext context) {
+        return Uni.createFrom().item(new ChallengeData(401, null, null));
+    }
+}
@@ -0,0 +1,96 @@
+package com.crediflow.controller;
+
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.enums.LoanProposalStatus;
+import com.crediflow.service.LoanFixtures;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * O PDF da CCB é escrito depois que o método do recurso retornou e a transação
+ * terminou: cronograma e chaves Pix (coleções lazy) precisam chegar inteiros.
+ */
+@QuarkusTest
+class LoanProposalCcbTest {
+
+    private static final int INSTALLMENTS = 96;
+
+    @Inject
+    LoanFixtures loans;
+
+    Long proposalId;
+
+    @BeforeEach
+    void createProposal() {
+        Long companyId = loans.createCompany(null);
+        Long customerId = loans.createCustomer(companyId);
+        proposalId = loans.createProposal(customerId, INSTALLMENTS, LoanProposalStatus.APPROVED);
+    }
+
+    @Test
+    void generateStreamsTheWholeScheduleAfterCommit() throws Exception {
+        String text = pdfText(get("/loan-proposals/" + proposalId + "/ccb-generate"));
+
+        LoanProposal proposal = loans.proposal(proposalId);
+        assertEquals(LoanProposalStatus.PENDING_SIGNATURE, proposal.getStatus());
+        assertTrue(text.contains("Nº " + proposal.getCcb()));
+        assertTrue(text.contains("10/01/2033"), "última parcela ausente do cronograma");
+        assertTrue(text.contains("Não Informada"), "chave Pix do cliente");
+    }
+
+    @Test
+    void signStreamsTheSignedDocumentAfterCommit() throws Exception {
+        get("/loan-proposals/" + proposalId + "/ccb-generate");
+
+        String text = pdfText(get("/loan-proposals/" + proposalId + "/ccb-sign"));
+
+        assertEquals(LoanProposalStatus.SIGNED, loans.proposal(proposalId).getStatus());
+        assertTrue(text.contains("Assinatura Digital"));
+        assertTrue(text.contains("10/01/2033"), "última parcela ausente do cronograma");
+    }
+
+    @Test
+    void signBeforeGenerateIsRejected() {
+        given().header(HeaderAuthenticationMechanism.USER, "admin-ccb")
+                .header(HeaderAuthenticationMechanism.ROLES, "admin")
+                .get("/loan-proposals/" + proposalId + "/ccb-sign")
+                .then().statusCode(400);
+    }
+
+    @Test
+    void anonymousCallerIsRejected() {
+        given().get("/loan-proposals/" + proposalId + "/ccb-generate").then().statusCode(401);
+    }
+
+    private static Response get(String path) {
+        Response response = given().header(HeaderAuthenticationMechanism.USER, "admin-ccb")
+                .header(HeaderAuthenticationMechanism.ROLES, "admin")
+                .get(path);
+        assertEquals(200, response.statusCode());
+        assertEquals("application/pdf", response.getContentType());
+        return response;
+    }
+
+    private static String pdfText(Response response) throws Exception {
+        PdfReader reader = new PdfReader(response.asByteArray());
+        try {
+            PdfTextExtractor extractor = new PdfTextExtractor(reader);
+            StringBuilder text = new StringBuilder();
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                text.append(extractor.getTextFromPage(page)).append('\n');
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
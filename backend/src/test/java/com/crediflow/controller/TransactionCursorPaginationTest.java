@@ -0,0 +1,135 @@
+package com.crediflow.controller;
+
+import com.crediflow.enums.TransactionType;
+import com.crediflow.repository.TransactionRepository;
+import com.crediflow.service.AccountFixtures;
+import com.crediflow.service.TransactionService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Paginação por keyset do extrato: cinco transações da conta, quatro delas no
+ * mesmo instante, para que a ordem dependa do id no desempate.
+ */
+@QuarkusTest
+class TransactionCursorPaginationTest {
+
+    private static final LocalDateTime TIE = LocalDateTime.of(2025, 5, 1, 10, 0);
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    TransactionRepository transactionRepository;
+
+    @Inject
+    AccountFixtures accounts;
+
+    Long account;
+    List<Long> expected;
+
+    @BeforeEach
+    void createTransactions() {
+        List<Long> ids = accounts.createAccounts("CURSOR", 2);
+        account = ids.get(0);
+        Long other = ids.get(1);
+
+        List<Long> tied = new ArrayList<>();
+        tied.add(transferAt(account, other, TIE));
+        tied.add(transferAt(other, account, TIE));
+        tied.add(transferAt(account, other, TIE));
+        tied.add(transferAt(other, account, TIE));
+        Long older = transferAt(account, other, TIE.minusDays(1));
+
+        // createdAt decrescente, id decrescente no empate
+        tied.sort(Comparator.reverseOrder());
+        expected = new ArrayList<>(tied);
+        expected.add(older);
+    }
+
+    @Test
+    void pagesWalkTheHistoryWithoutRepeatingOrSkippingTies() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        do {
+            JsonPath page = page(cursor, 2, false);
+            seen.addAll(page.getList("items.id", Long.class));
+            cursor = page.getString("nextCursor");
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void lastPageHasNoCursorEvenWhenItIsFull() {
+        JsonPath page = page("", 5, false);
+
+        assertEquals(expected, page.getList("items.id", Long.class));
+        assertNull(page.getString("nextCursor"));
+    }
+
+    @Test
+    void totalIsCountedOnlyWhenRequested() {
+        JsonPath first = page("", 2, true);
+        assertEquals(5, first.getLong("total"));
+        assertEquals(2, first.getInt("size"));
+        assertNotNull(first.getString("nextCursor"));
+
+        assertNull(page("", 2, false).get("total"));
+    }
+
+    @Test
+    void pageSizeAndCursorAreValidated() {
+        request("", 0).then().statusCode(400);
+        request("", -1).then().statusCode(400);
+        request("", 101).then().statusCode(400);
+        request("", 100).then().statusCode(200);
+        request("não-é-cursor", 10).then().statusCode(400);
+    }
+
+    private Long transferAt(Long from, Long to, LocalDateTime createdAt) {
+        Long id = transactionService.transfer(from, to, new BigDecimal("1.00"), TransactionType.TRANSFER, "cursor")
+                .getId();
+        QuarkusTransaction.requiringNew().run(() -> transactionRepository.update("createdAt = ?1 where id = ?2",
+                createdAt, id));
+        return id;
+    }
+
+    private JsonPath page(String cursor, int size, boolean includeTotal) {
+        return given().queryParam("includeTotal", includeTotal)
+                .get(url(cursor, size))
+                .then().statusCode(200)
+                .extract().jsonPath();
+    }
+
+    private Response request(String cursor, int size) {
+        return given().get(url(cursor, size));
+    }
+
+    // a primeira página vai com "cursor=" vazio
+    private String url(String cursor, int size) {
+        return "/transactions/by-account/" + account + "?size=" + size + "&cursor="
+                + URLEncoder.encode(cursor, StandardCharsets.UTF_8);
+    }
+}
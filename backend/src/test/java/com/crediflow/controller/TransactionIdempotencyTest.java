@@ -0,0 +1,102 @@
+package com.crediflow.controller;
+
+import com.crediflow.service.AccountFixtures;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+class TransactionIdempotencyTest {
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Test
+    void concurrentRetriesMoveMoneyOnce() throws Exception {
+        Long from = createAccount();
+        Long to = createAccount();
+        String key = UUID.randomUUID().toString();
+        Map<String, Object> body = transfer(from, to, "100.00");
+
+        List<Response> responses = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(pool.submit(() -> post(key, body)));
+            }
+            for (Future<Response> future : futures) {
+                responses.add(future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        // mais uma depois de tudo confirmado, atendida pelo cache
+        responses.add(post(key, body));
+
+        Long transactionId = responses.get(0).jsonPath().getLong("id");
+        long replayed = responses.stream().filter(r -> "true".equals(r.getHeader("Idempotent-Replayed"))).count();
+        for (Response response : responses) {
+            assertEquals(200, response.statusCode());
+            assertEquals(transactionId, response.jsonPath().getLong("id"));
+        }
+        assertEquals(responses.size() - 1, replayed);
+        assertEquals(0, new BigDecimal("900.00").compareTo(balance(from)));
+        assertEquals(0, new BigDecimal("1100.00").compareTo(balance(to)));
+    }
+
+    @Test
+    void keyReusedWithAnotherRequestIsRejected() {
+        Long from = createAccount();
+        Long to = createAccount();
+        String key = UUID.randomUUID().toString();
+
+        assertEquals(200, post(key, transfer(from, to, "10.00")).statusCode());
+        assertEquals(409, post(key, transfer(from, to, "20.00")).statusCode());
+        assertEquals(0, new BigDecimal("990.00").compareTo(balance(from)));
+    }
+
+    @Test
+    void requestsWithoutKeyAreNotDeduplicated() {
+        Long from = createAccount();
+        Long to = createAccount();
+        Map<String, Object> body = transfer(from, to, "10.00");
+
+        given().contentType(ContentType.JSON).body(body).post("/transactions/transfer").then().statusCode(200);
+        given().contentType(ContentType.JSON).body(body).post("/transactions/transfer").then().statusCode(200);
+        assertEquals(0, new BigDecimal("980.00").compareTo(balance(from)));
+    }
+
+    private static Response post(String key, Map<String, Object> body) {
+        return given().contentType(ContentType.JSON)
+                .header(IdempotencyFilter.HEADER, key)
+                .body(body)
+                .post("/transactions/transfer");
+    }
+
+    private static Map<String, Object> transfer(Long from, Long to, String amount) {
+        return Map.of("fromAccountId", from, "toAccountId", to, "amount", amount, "type", "TRANSFER");
+    }
+
+    private Long createAccount() {
+        return accounts.createAccount("IDEMP");
+    }
+
+    private BigDecimal balance(Long accountId) {
+        return accounts.balance(accountId);
+    }
+}
@@ -0,0 +1,72 @@
+package com.crediflow.controller;
+
+import com.crediflow.service.AccountFixtures;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class TransactionReceiptTest {
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Test
+    void receiptIsRevalidatedByETag() {
+        long id = transfer();
+
+        Response first = given().get("/transactions/receipt/" + id);
+        assertEquals(200, first.statusCode());
+        String etag = first.getHeader("ETag");
+        assertNotNull(etag);
+        assertRevalidate(first);
+        byte[] pdf = first.asByteArray();
+        assertTrue(new String(pdf, 0, 5).startsWith("%PDF-"));
+
+        Response notModified = given().header("If-None-Match", etag).get("/transactions/receipt/" + id);
+        assertEquals(304, notModified.statusCode());
+        assertEquals(etag, notModified.getHeader("ETag"));
+        assertRevalidate(notModified);
+        assertEquals(0, notModified.asByteArray().length);
+
+        // sem o ETag vem do cache em disco, igual ao gerado da primeira vez
+        Response again = given().header("If-None-Match", "\"outro\"").get("/transactions/receipt/" + id);
+        assertEquals(200, again.statusCode());
+        assertArrayEquals(pdf, again.asByteArray());
+    }
+
+    @Test
+    void unknownReceiptIsRejected() {
+        given().get("/transactions/receipt/-1").then().statusCode(400);
+    }
+
+    private static void assertRevalidate(Response response) {
+        Set<String> directives = Arrays.stream(response.getHeader("Cache-Control").split(","))
+                .map(String::trim)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("private", "no-cache"), directives);
+    }
+
+    private long transfer() {
+        Long from = accounts.createAccount("RCPT");
+        Long to = accounts.createAccount("RCPT");
+        return given().contentType(ContentType.JSON)
+                .body(Map.of("fromAccountId", from, "toAccountId", to, "amount", "10.00", "type", "TRANSFER"))
+                .post("/transactions/transfer")
+                .then().statusCode(200)
+                .extract().jsonPath().getLong("id");
+    }
+}
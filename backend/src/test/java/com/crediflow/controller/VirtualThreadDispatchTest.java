@@ -0,0 +1,90 @@
+package com.crediflow.controller;
+
+import com.crediflow.service.LoanFixtures;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Os recursos da aplicação rodam em threads virtuais. Um filtro de resposta,
+ * que roda na thread do método, informa num cabeçalho se ela era virtual; o
+ * recurso de teste sem a anotação mostra que o cabeçalho distingue as duas.
+ */
+@QuarkusTest
+class VirtualThreadDispatchTest {
+
+    static final String HEADER = "X-Test-Virtual-Thread";
+
+    @Inject
+    LoanFixtures loans;
+
+    @Test
+    void annotatedResourceRunsOnAVirtualThreadAndPlainOneDoesNot() {
+        assertEquals("true", given().get("/virtual-thread-test/virtual").then().statusCode(200).extract().asString());
+        assertEquals("false", given().get("/virtual-thread-test/worker").then().statusCode(200).extract().asString());
+
+        assertEquals("true", given().get("/virtual-thread-test/virtual").header(HEADER));
+        assertEquals("false", given().get("/virtual-thread-test/worker").header(HEADER));
+    }
+
+    @Test
+    void applicationResourcesRunOnVirtualThreads() {
+        Long customer = loans.createCustomer(loans.createCompany(null));
+        Response account = given().get("/bank-accounts/by-customer/" + customer);
+        assertVirtual(account, 200);
+
+        assertVirtual(given().get("/transactions/by-account/" + account.jsonPath().getLong("id") + "?size=1&cursor="),
+                200);
+        assertVirtual(given().header(HeaderAuthenticationMechanism.USER, "admin-vthread")
+                .header(HeaderAuthenticationMechanism.ROLES, "admin")
+                .get("/ccb-jobs/" + UUID.randomUUID()), 404);
+    }
+
+    private static void assertVirtual(Response response, int status) {
+        assertEquals(status, response.statusCode());
+        assertEquals("true", response.header(HEADER));
+    }
+
+    @Provider
+    public static class ThreadKindFilter implements ContainerResponseFilter {
+
+        @Override
+        public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+            response.getHeaders().putSingle(HEADER, String.valueOf(Thread.currentThread().isVirtual()));
+        }
+    }
+
+    // fora do openapi gravado em docs/ quando os testes rodam
+    @Path("/virtual-thread-test")
+    public static class ThreadKindResource {
+
+        @GET
+        @Path("/virtual")
+        @RunOnVirtualThread
+        @Operation(hidden = true)
+        public String virtual() {
+            return String.valueOf(Thread.currentThread().isVirtual());
+        }
+
+        @GET
+        @Path("/worker")
+        @Operation(hidden = true)
+        public String worker() {
+            return String.valueOf(Thread.currentThread().isVirtual());
+        }
+    }
+}
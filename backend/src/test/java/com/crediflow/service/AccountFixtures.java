@@ -0,0 +1,150 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.AccountBalanceSnapshot;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.exception.ConflictException;
+import com.crediflow.repository.AccountBalanceSnapshotRepository;
+import com.crediflow.repository.BankAccountRepository;
+import com.crediflow.repository.TransactionRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contas e cargas de transferência para os testes de movimentação: cada
+ * chamada roda na própria transação, fora da do teste.
+ */
+@ApplicationScoped
+public class AccountFixtures {
+
+    public static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    TransactionRepository transactionRepository;
+
+    @Inject
+    AccountBalanceSnapshotRepository snapshotRepository;
+
+    public interface TransferCall {
+        void call(Long from, Long to, BigDecimal amount);
+    }
+
+    /**
+     * Cria {@code count} contas com {@link #INITIAL_BALANCE}; o número da conta
+     * começa com {@code prefix}.
+     */
+    public List<Long> createAccounts(String prefix, int count) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            List<Long> created = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                BankAccount account = new BankAccount();
+                account.setAccountNumber(prefix + System.nanoTime() + i);
+                account.setBalance(INITIAL_BALANCE);
+                bankAccountRepository.persist(account);
+                created.add(account.getId());
+            }
+            return created;
+        });
+    }
+
+    public Long createAccount(String prefix) {
+        return createAccounts(prefix, 1).get(0);
+    }
+
+    public BigDecimal balance(Long id) {
+        return QuarkusTransaction.requiringNew().call(() -> bankAccountRepository.findById(id).getBalance());
+    }
+
+    /**
+     * Soma dos saldos, conferindo que nenhum ficou negativo.
+     */
+    public BigDecimal total(List<Long> ids) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            BigDecimal sum = BigDecimal.ZERO;
+            for (Long id : ids) {
+                BigDecimal balance = bankAccountRepository.findById(id).getBalance();
+                assertTrue(balance.signum() >= 0, "saldo negativo na conta " + id);
+                sum = sum.add(balance);
+            }
+            return sum;
+        });
+    }
+
+    /**
+     * Saldo inicial de todas as contas somado, o que nenhuma transferência entre
+     * elas altera.
+     */
+    public static BigDecimal initialTotal(List<Long> ids) {
+        return INITIAL_BALANCE.multiply(BigDecimal.valueOf(ids.size()));
+    }
+
+    /**
+     * Confere que o fechamento do dia de cada conta (quando existe) é o saldo atual.
+     */
+    public void assertClosingMatchesBalance(List<Long> ids) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (Long id : ids) {
+                BankAccount account = bankAccountRepository.findById(id);
+                AccountBalanceSnapshot today = snapshotRepository.findEarliestOnOrAfter(id, LocalDate.now());
+                if (today != null) {
+                    assertEquals(0, account.getBalance().compareTo(today.getClosingBalance()),
+                            "fechamento do dia divergente na conta " + id);
+                }
+            }
+        });
+    }
+
+    public long countTransactionsFrom(List<Long> ids) {
+        return QuarkusTransaction.requiringNew()
+                .call(() -> transactionRepository.count("fromAccount.id in ?1", ids));
+    }
+
+    /**
+     * {@code threads} threads fazem {@code perThread} transferências de valor
+     * aleatório entre contas aleatórias de {@code ids}. Recusas (saldo, conta em
+     * uso) são esperadas; devolve quantas foram concluídas.
+     */
+    public int randomTransfers(List<Long> ids, int threads, int perThread, TransferCall transfer)
+            throws InterruptedException {
+        AtomicInteger completed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    Long from = ids.get(random.nextInt(ids.size()));
+                    Long to = ids.get(random.nextInt(ids.size()));
+                    if (from.equals(to)) {
+                        continue;
+                    }
+                    try {
+                        transfer.call(from, to, BigDecimal.valueOf(random.nextInt(1, 30_000), 2));
+                        completed.incrementAndGet();
+                    } catch (BadRequestException | ConflictException e) {
+                        // recusada: saldo insuficiente ou conta em uso
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+        return completed.get();
+    }
+}
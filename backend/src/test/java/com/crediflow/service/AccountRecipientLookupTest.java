@@ -0,0 +1,157 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.AccountRecipientInfoDTO;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.Company;
+import com.crediflow.entity.Customer;
+import com.crediflow.entity.PixKey;
+import com.crediflow.enums.PixKeyType;
+import com.crediflow.exception.BadRequestException;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Busca do destinatário por agência e conta: uma projeção com o titular e a
+ * primeira chave Pix, guardada em cache mesmo quando a conta não existe.
+ */
+@QuarkusTest
+class AccountRecipientLookupTest {
+
+    @Inject
+    BankAccountService bankAccountService;
+
+    @Inject
+    PixKeyService pixKeyService;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Inject
+    LoanFixtures loans;
+
+    @Inject
+    EntityManager em;
+
+    @Test
+    void accountWithoutHolderOrKeysIsStillFound() {
+        String number = numberOf(accounts.createAccount("RCPT"));
+
+        AccountRecipientInfoDTO recipient = find(number);
+
+        assertEquals("0001", recipient.agencyNumber);
+        assertEquals(number, recipient.accountNumber);
+        assertNull(recipient.name);
+        assertNull(recipient.pixKey);
+        assertNull(recipient.pixKeyType);
+    }
+
+    @Test
+    void recipientShowsTheHolderAndTheFirstRegisteredKey() {
+        Long customerId = loans.createCustomer(loans.createCompany(null));
+        Customer customer = QuarkusTransaction.requiringNew().call(() -> em.find(Customer.class, customerId));
+        BankAccount account = customer.getVirtualAccount();
+        String first = "rcpt-" + UUID.randomUUID() + "@teste.com";
+        addKey(account.getId(), first, PixKeyType.EMAIL);
+        addKey(account.getId(), "rcpt-" + UUID.randomUUID(), PixKeyType.RANDOM);
+
+        AccountRecipientInfoDTO recipient = find(account.getAccountNumber());
+
+        assertEquals(customer.getName(), recipient.name);
+        assertEquals(first, recipient.pixKey);
+        assertEquals("EMAIL", recipient.pixKeyType);
+    }
+
+    @Test
+    void keyRegisteredThroughTheServiceRefreshesTheCachedRecipient() {
+        Long id = accounts.createAccount("RCPT");
+        String number = numberOf(id);
+        assertNull(find(number).pixKey);
+
+        String key = "rcpt-" + UUID.randomUUID() + "@teste.com";
+        pixKeyService.registerPixKey(id, key, PixKeyType.EMAIL);
+
+        assertEquals(key, find(number).pixKey);
+    }
+
+    @Test
+    void notFoundIsCachedUntilTheApplicationChangesTheAccount() {
+        Long id = accounts.createAccount("RCPT");
+        String number = "RCPT-NOVA-" + System.nanoTime();
+        assertThrows(BadRequestException.class, () -> find(number));
+
+        // gravada por fora da aplicação: o "não encontrada" segue no cache
+        QuarkusTransaction.requiringNew().run(() -> em.find(BankAccount.class, id).setAccountNumber(number));
+        assertThrows(BadRequestException.class, () -> find(number));
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            BankAccount changed = new BankAccount();
+            changed.setId(id);
+            changed.setAgencyNumber("0001");
+            changed.setAccountNumber(number);
+            bankAccountService.updateAccount(changed);
+        });
+
+        assertEquals(number, find(number).accountNumber);
+    }
+
+    @Test
+    void lookupDuringTheCreationDoesNotHideTheNewAccount() {
+        Long customerId = customerWithoutAccount();
+
+        String number = QuarkusTransaction.requiringNew().call(() -> {
+            String created = bankAccountService.createAccountForCustomer(customerId).getAccountNumber();
+            // outra requisição ainda não vê a conta e guarda "não encontrada"
+            CompletionException miss = assertThrows(CompletionException.class,
+                    () -> CompletableFuture.supplyAsync(() -> find(created)).join());
+            assertInstanceOf(BadRequestException.class, miss.getCause());
+            return created;
+        });
+
+        assertEquals(number, find(number).accountNumber);
+    }
+
+    private AccountRecipientInfoDTO find(String number) {
+        return QuarkusTransaction.requiringNew()
+                .call(() -> bankAccountService.findRecipientByAgencyAndAccount("0001", number));
+    }
+
+    private String numberOf(Long id) {
+        return QuarkusTransaction.requiringNew().call(() -> em.find(BankAccount.class, id).getAccountNumber());
+    }
+
+    private void addKey(Long accountId, String key, PixKeyType type) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            PixKey pixKey = new PixKey();
+            pixKey.setKey(key);
+            pixKey.setKeyType(type);
+            pixKey.setBankAccount(em.find(BankAccount.class, accountId));
+            em.persist(pixKey);
+        });
+    }
+
+    private Long customerWithoutAccount() {
+        Long companyId = loans.createCompany(null);
+        String marker = String.valueOf(System.nanoTime());
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Customer customer = new Customer();
+            customer.setName("Cliente " + marker);
+            customer.setCpf(marker.substring(marker.length() - 11));
+            customer.setEmail("rcpt" + marker + "@teste.com");
+            customer.setCompany(em.find(Company.class, companyId));
+            em.persist(customer);
+            return customer.getId();
+        });
+    }
+}
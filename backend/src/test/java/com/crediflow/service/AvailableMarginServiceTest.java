@@ -0,0 +1,192 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.CustomerRequestDTO;
+import com.crediflow.entity.Customer;
+import com.crediflow.enums.LoanProposalStatus;
+import com.crediflow.exception.BadRequestException;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Cliente com salário de 10.000,00, ou seja, margem bruta de 4.000,00. As
+ * parcelas mudam por fora do serviço quando o teste precisa mostrar que o valor
+ * veio do cache.
+ */
+@QuarkusTest
+class AvailableMarginServiceTest {
+
+    @Inject
+    AvailableMarginService marginService;
+
+    @Inject
+    LoanProposalService proposalService;
+
+    @Inject
+    CustomerService customerService;
+
+    @Inject
+    LoanFixtures loans;
+
+    @Inject
+    EntityManager em;
+
+    Long companyId;
+    Long customerId;
+
+    @BeforeEach
+    void createCustomer() {
+        companyId = loans.createCompany(null);
+        customerId = loans.createCustomer(companyId);
+    }
+
+    @Test
+    void committedIsTheLowestOpenInstallmentOfEachActiveProposal() {
+        Long active = loans.createProposal(customerId, 3, LoanProposalStatus.APPROVED);
+        setValues(active, "100.00", "200.00", "300.00");
+        markPaid(active, 1);
+
+        Long canceled = loans.createProposal(customerId, 3, LoanProposalStatus.CANCELED);
+        setValues(canceled, "900.00", "900.00", "900.00");
+
+        Long settled = loans.createProposal(customerId, 2, LoanProposalStatus.PAID);
+        markPaid(settled, 1);
+        markPaid(settled, 2);
+
+        // só a parcela 2 da proposta ativa
+        assertMargin("3800.00", compute());
+    }
+
+    @Test
+    void customerWithoutProposalsHasTheWholeMargin() {
+        assertMargin("4000.00", compute());
+    }
+
+    @Test
+    void paymentRefreshesTheCachedMargin() {
+        Long proposal = loans.createProposal(customerId, 3, LoanProposalStatus.APPROVED);
+        setValues(proposal, "350.00", "500.00", "500.00");
+        assertMargin("3650.00", margin());
+
+        // alteração por fora da aplicação: o cache segue com o valor antigo
+        setValues(proposal, "400.00", "500.00", "500.00");
+        assertMargin("3650.00", margin());
+
+        fund(customerId, "1000.00");
+        proposalService.payInstallment(proposal, 1, accountOf(customerId));
+
+        assertMargin("3500.00", margin());
+    }
+
+    @Test
+    void cancellationRefreshesTheCachedMargin() {
+        Long proposal = loans.createProposal(customerId, 3, LoanProposalStatus.APPROVED);
+        assertMargin("3650.00", margin());
+
+        proposalService.markAsCanceled(proposal);
+
+        assertMargin("4000.00", margin());
+    }
+
+    @Test
+    void salaryChangeRefreshesTheCachedMargin() {
+        loans.createProposal(customerId, 3, LoanProposalStatus.APPROVED);
+        assertMargin("3650.00", margin());
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            Customer customer = em.find(Customer.class, customerId);
+            customerService.updateEntity(customer, request(customer, new BigDecimal("20000.00")));
+        });
+
+        assertMargin("7650.00", compute());
+        assertMargin("7650.00", margin());
+    }
+
+    @Test
+    void rolledBackPaymentLeavesTheMarginAsItWas() {
+        Long proposal = loans.createProposal(customerId, 3, LoanProposalStatus.APPROVED);
+        assertMargin("3650.00", margin());
+
+        // sem saldo o débito falha e nada muda
+        Long account = accountOf(customerId);
+        assertThrows(BadRequestException.class, () -> proposalService.payInstallment(proposal, 1, account));
+
+        assertMargin("3650.00", margin());
+        assertMargin("3650.00", compute());
+    }
+
+    // cada leitura numa transação nova, como numa requisição: fora dela o teste inteiro compartilha a sessão
+    private BigDecimal margin() {
+        return QuarkusTransaction.requiringNew().call(() -> marginService.get(customerId));
+    }
+
+    private BigDecimal compute() {
+        return QuarkusTransaction.requiringNew().call(() -> marginService.compute(customerId));
+    }
+
+    private void setValues(Long proposalId, String... values) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int n = 1; n <= values.length; n++) {
+                em.createQuery("update LoanInstallment i set i.value = :value where i.proposal.id = :id and i.number = :n")
+                        .setParameter("value", new BigDecimal(values[n - 1]))
+                        .setParameter("id", proposalId)
+                        .setParameter("n", n)
+                        .executeUpdate();
+            }
+        });
+    }
+
+    private void markPaid(Long proposalId, int number) {
+        QuarkusTransaction.requiringNew().run(() -> em
+                .createQuery("update LoanInstallment i set i.paid = true, i.paidValue = i.value"
+                        + " where i.proposal.id = :id and i.number = :n")
+                .setParameter("id", proposalId)
+                .setParameter("n", number)
+                .executeUpdate());
+    }
+
+    private Long accountOf(Long customer) {
+        return QuarkusTransaction.requiringNew().call(() -> em.find(Customer.class, customer).getVirtualAccount().getId());
+    }
+
+    private void fund(Long customer, String balance) {
+        Long account = accountOf(customer);
+        QuarkusTransaction.requiringNew().run(() -> em
+                .createQuery("update BankAccount a set a.balance = :balance where a.id = :id")
+                .setParameter("balance", new BigDecimal(balance))
+                .setParameter("id", account)
+                .executeUpdate());
+    }
+
+    private static CustomerRequestDTO request(Customer customer, BigDecimal salary) {
+        CustomerRequestDTO dto = new CustomerRequestDTO();
+        dto.name = customer.getName();
+        dto.cpf = customer.getCpf();
+        dto.email = customer.getEmail();
+        dto.phone = "85999990000";
+        dto.birthDate = customer.getBirthDate();
+        dto.companyId = customer.getCompany().getId();
+        dto.occupation = "Servidor";
+        dto.street = customer.getStreet();
+        dto.streetNumber = customer.getStreetNumber();
+        dto.city = customer.getCity();
+        dto.neighborhood = customer.getNeighborhood();
+        dto.state = customer.getState();
+        dto.zipCode = customer.getZipCode();
+        dto.country = "Brasil";
+        dto.salary = salary;
+        return dto;
+    }
+
+    private static void assertMargin(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), "margem " + actual);
+    }
+}
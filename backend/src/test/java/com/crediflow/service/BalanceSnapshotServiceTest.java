@@ -0,0 +1,151 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.AccountBalanceSnapshot;
+import com.crediflow.enums.TransactionType;
+import com.crediflow.repository.AccountBalanceSnapshotRepository;
+import com.crediflow.repository.TransactionRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fechamentos e saldo em data de uma conta com movimento em dois dias do
+ * passado: 1000 de abertura, -100 no dia 1, +50 e -30 no dia 2.
+ */
+@QuarkusTest
+class BalanceSnapshotServiceTest {
+
+    private static final LocalDate DAY_1 = LocalDate.of(2025, 3, 1);
+    private static final LocalDate DAY_2 = DAY_1.plusDays(1);
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    TransactionRepository transactionRepository;
+
+    @Inject
+    AccountBalanceSnapshotRepository snapshotRepository;
+
+    @Inject
+    AccountFixtures accounts;
+
+    Long account;
+    Long other;
+
+    @BeforeEach
+    void createHistory() {
+        List<Long> ids = accounts.createAccounts("SNAP", 2);
+        account = ids.get(0);
+        other = ids.get(1);
+        transferAt(account, other, "100.00", DAY_1.atTime(10, 0));
+        transferAt(other, account, "50.00", DAY_2.atTime(9, 0));
+        transferAt(account, other, "30.00", DAY_2.atTime(15, 0));
+    }
+
+    @Test
+    void everyMovementIsAddedToTodaysClosing() {
+        // antes do backfill as transações (gravadas hoje) caem no fechamento de hoje
+        assertEquals(1, closings(account).size());
+        assertEquals(0, new BigDecimal("920.00").compareTo(closings(account).get(0).getClosingBalance()));
+        assertEquals(LocalDate.now(), closings(account).get(0).getSnapshotDate());
+    }
+
+    @Test
+    void backfillRebuildsOneClosingPerDayWithMovement() {
+        assertEquals(2, backfill(account));
+
+        List<AccountBalanceSnapshot> closings = closings(account);
+        assertEquals(2, closings.size());
+        assertEquals(DAY_1, closings.get(0).getSnapshotDate());
+        assertEquals(0, new BigDecimal("900.00").compareTo(closings.get(0).getClosingBalance()));
+        assertEquals(DAY_2, closings.get(1).getSnapshotDate());
+        assertEquals(0, new BigDecimal("920.00").compareTo(closings.get(1).getClosingBalance()));
+    }
+
+    @Test
+    void balanceAsOfStartsFromTheNearestClosing() {
+        backfill(account);
+
+        // antes do primeiro fechamento: volta a partir dele
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balanceAt(DAY_1.atTime(9, 0))));
+        assertEquals(0, new BigDecimal("900.00").compareTo(balanceOn(DAY_1)));
+        // fechamento anterior mais o movimento do dia até o instante
+        assertEquals(0, new BigDecimal("950.00").compareTo(balanceAt(DAY_2.atTime(12, 0))));
+        assertEquals(0, new BigDecimal("920.00").compareTo(balanceOn(DAY_2)));
+        assertEquals(0, new BigDecimal("920.00").compareTo(balanceAt(LocalDateTime.now().plusMinutes(1))));
+    }
+
+    @Test
+    void balanceAsOfWithoutClosingsUsesTheCurrentBalance() {
+        QuarkusTransaction.requiringNew().run(() -> snapshotRepository.deleteByAccount(account));
+
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balanceAt(DAY_1.atTime(9, 0))));
+        assertEquals(0, new BigDecimal("950.00").compareTo(balanceAt(DAY_2.atTime(12, 0))));
+    }
+
+    @Test
+    void balanceAsOfValidatesTheRequest() {
+        given().get("/bank-accounts/" + account + "/balance").then().statusCode(400);
+        given().queryParam("date", DAY_1.toString()).get("/bank-accounts/-1/balance").then().statusCode(404);
+    }
+
+    @Test
+    void backfillAllRunsInTheBackground() throws InterruptedException {
+        given().contentType(ContentType.JSON).post("/bank-accounts/balance-snapshots/backfill").then().statusCode(202);
+
+        long deadline = System.currentTimeMillis() + 60_000;
+        // as contas são processadas uma a uma: espera pelas duas
+        while ((closings(account).size() != 2 || closings(other).size() != 2)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(2, closings(account).size());
+        assertEquals(2, closings(other).size());
+        assertEquals(0, new BigDecimal("1100.00").compareTo(closings(other).get(0).getClosingBalance()));
+        assertTrue(closings(other).get(1).getSnapshotDate().isEqual(DAY_2));
+    }
+
+    private void transferAt(Long from, Long to, String amount, LocalDateTime createdAt) {
+        Long id = transactionService.transfer(from, to, new BigDecimal(amount), TransactionType.TRANSFER, "snapshot")
+                .getId();
+        QuarkusTransaction.requiringNew().run(() -> transactionRepository.update("createdAt = ?1 where id = ?2",
+                createdAt, id));
+    }
+
+    private int backfill(Long id) {
+        return given().contentType(ContentType.JSON).post("/bank-accounts/" + id + "/balance-snapshots/backfill")
+                .then().statusCode(200)
+                .extract().jsonPath().getInt("days");
+    }
+
+    private List<AccountBalanceSnapshot> closings(Long id) {
+        return QuarkusTransaction.requiringNew().call(() -> snapshotRepository
+                .find("account.id", Sort.by("snapshotDate"), id).list());
+    }
+
+    private BigDecimal balanceAt(LocalDateTime at) {
+        return given().queryParam("at", at.toString()).get("/bank-accounts/" + account + "/balance")
+                .then().statusCode(200)
+                .extract().jsonPath().getObject("balance", BigDecimal.class);
+    }
+
+    private BigDecimal balanceOn(LocalDate date) {
+        return given().queryParam("date", date.toString()).get("/bank-accounts/" + account + "/balance")
+                .then().statusCode(200)
+                .extract().jsonPath().getObject("balance", BigDecimal.class);
+    }
+}
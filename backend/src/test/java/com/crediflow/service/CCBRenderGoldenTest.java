@@ -0,0 +1,176 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.Company;
+import com.crediflow.entity.Customer;
+import com.crediflow.entity.LoanInstallment;
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.entity.PixKey;
+import com.crediflow.enums.CCBVariant;
+import com.crediflow.enums.LoanProposalStatus;
+import com.crediflow.enums.PixKeyType;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Garante que a CCB renderizada num único caminho por variante tem as mesmas
+ * páginas e o mesmo texto que as três cópias originais do documento.
+ *
+ * O arquivo {@code golden/ccb-text.sha256} guarda, por variante e número de
+ * parcelas, a quantidade de páginas e o SHA-256 do texto extraído de cada
+ * página. Foi gerado com a implementação original; para regerar, rode com
+ * {@code -Dgolden.update=true}.
+ */
+class CCBRenderGoldenTest {
+
+    private static final String GOLDEN = "golden/ccb-text.sha256";
+
+    private static final String CCB = "0123456789";
+
+    private static final List<Integer> INSTALLMENTS = List.of(1, 96);
+
+    private final CCBService ccbService = new CCBService();
+
+    @Test
+    void draftAndSignedMatchOriginalImplementation() throws Exception {
+        Map<String, String> actual = new LinkedHashMap<>();
+        for (CCBVariant variant : List.of(CCBVariant.DRAFT, CCBVariant.SIGNED)) {
+            for (int installments : INSTALLMENTS) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ccbService.render(proposal(installments), variant, out);
+                actual.put(variant.name().toLowerCase() + " " + installments, digest(out.toByteArray()));
+            }
+        }
+
+        if (Boolean.getBoolean("golden.update")) {
+            StringBuilder content = new StringBuilder();
+            actual.forEach((key, value) -> content.append(key).append(' ').append(value).append('\n'));
+            Files.writeString(Path.of("src/test/resources", GOLDEN), content);
+            return;
+        }
+
+        Map<String, String> expected = readGolden();
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((key, value) -> assertEquals(value, actual.get(key), "CCB divergente em " + key));
+    }
+
+    // "<páginas>:<sha256 do texto de todas as páginas>"
+    private static String digest(byte[] pdf) throws Exception {
+        PdfReader reader = new PdfReader(pdf);
+        try {
+            PdfTextExtractor extractor = new PdfTextExtractor(reader);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                digest.update(extractor.getTextFromPage(page).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\f');
+            }
+            return reader.getNumberOfPages() + ":" + HexFormat.of().formatHex(digest.digest());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static LoanProposal proposal(int installments) {
+        Company company = new Company();
+        company.setName("Prefeitura de Teste");
+
+        BankAccount account = new BankAccount();
+        account.setId(7L);
+        account.setAccountNumber("123456");
+        account.setAgencyNumber("0001");
+
+        PixKey pixKey = new PixKey();
+        pixKey.setId(3L);
+        pixKey.setKey("cliente@teste.com");
+        pixKey.setKeyType(PixKeyType.EMAIL);
+        pixKey.setBankAccount(account);
+        account.setPixKeys(new ArrayList<>(List.of(pixKey)));
+
+        Customer customer = new Customer();
+        customer.setId(5L);
+        customer.setName("Maria da Silva");
+        customer.setCpf("12345678909");
+        customer.setStreet("Rua das Flores");
+        customer.setStreetNumber(100);
+        customer.setNeighborhood("Centro");
+        customer.setCity("Fortaleza");
+        customer.setState("CE");
+        customer.setZipCode("60000000");
+        customer.setBirthDate(LocalDate.of(1985, 3, 20));
+        customer.setCompany(company);
+        customer.setVirtualAccount(account);
+
+        LoanProposal proposal = new LoanProposal();
+        proposal.setId(42L);
+        proposal.setCustomer(customer);
+        proposal.setCompany(company);
+        proposal.setCcb(CCB);
+        proposal.setStatus(LoanProposalStatus.PENDING_SIGNATURE);
+        proposal.setCreatedAt(LocalDateTime.of(2025, 1, 2, 10, 30));
+        proposal.setRequestedAmount(new BigDecimal("10000.00"));
+        proposal.setInstallmentValue(new BigDecimal("350.00"));
+        proposal.setTermInMonths(installments);
+        proposal.setMonthlyRate(new BigDecimal("0.0189"));
+        proposal.setFirstInstallmentDate(LocalDate.of(2025, 2, 10));
+        proposal.setIofTotal(new BigDecimal("123.45"));
+        proposal.setEffectiveMonthlyRate(new BigDecimal("0.0201"));
+        proposal.setEffectiveAnnualRate(new BigDecimal("0.2701"));
+        proposal.setContractedAnnualRate(new BigDecimal("0.2523"));
+        proposal.setProductType("Consignado");
+        proposal.setFund("Fundo Próprio");
+        proposal.setInstallmentType("PRICE");
+        proposal.setTotalPayment(new BigDecimal("350.00").multiply(BigDecimal.valueOf(installments)));
+        proposal.setDisbursementDate(LocalDate.of(2025, 1, 3));
+
+        List<LoanInstallment> schedule = new ArrayList<>();
+        BigDecimal principal = new BigDecimal("10000.00").divide(BigDecimal.valueOf(installments), 2,
+                RoundingMode.HALF_EVEN);
+        for (int n = 1; n <= installments; n++) {
+            LoanInstallment installment = new LoanInstallment();
+            installment.setProposal(proposal);
+            installment.setNumber(n);
+            installment.setDueDate(LocalDate.of(2025, 2, 10).plusMonths(n - 1));
+            installment.setValue(new BigDecimal("350.00"));
+            installment.setBalance(principal.multiply(BigDecimal.valueOf(installments - n)));
+            schedule.add(installment);
+        }
+        proposal.setInstallments(schedule);
+        return proposal;
+    }
+
+    private static Map<String, String> readGolden() throws IOException {
+        Map<String, String> golden = new LinkedHashMap<>();
+        try (InputStream in = CCBRenderGoldenTest.class.getClassLoader().getResourceAsStream(GOLDEN)) {
+            assertNotNull(in, "arquivo golden ausente: " + GOLDEN);
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int split = line.lastIndexOf(' ');
+                golden.put(line.substring(0, split), line.substring(split + 1));
+            }
+        }
+        return golden;
+    }
+}
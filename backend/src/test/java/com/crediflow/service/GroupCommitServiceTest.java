@@ -0,0 +1,314 @@
+package com.crediflow.service;
+
+import com.crediflow.controller.IdempotencyFilter;
+import com.crediflow.dto.TransactionResponseDTO;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.IdempotencyKey;
+import com.crediflow.enums.TransactionType;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.repository.BankAccountRepository;
+import com.crediflow.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Group commit ligado só nesta classe (os demais testes seguem o padrão, sem
+ * grupo): operações concorrentes dividem transações sem perder atualização de
+ * saldo, e a que falha sai do grupo sem desfazer as outras.
+ */
+@QuarkusTest
+@TestProfile(GroupCommitServiceTest.GroupCommitEnabled.class)
+class GroupCommitServiceTest {
+
+    public static class GroupCommitEnabled implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("crediflow.group-commit.enabled", "true");
+        }
+    }
+
+    private static final int ACCOUNTS = 6;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 40;
+
+    @Inject
+    GroupCommitService groupCommitService;
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Test
+    void concurrentTransfersShareCommits() throws Exception {
+        List<Long> ids = createAccounts();
+        long commitsBefore = commits();
+        int completed = accounts.randomTransfers(ids, THREADS, TRANSFERS_PER_THREAD, (from, to, amount) ->
+                groupCommitService.call(() -> TransactionResponseDTO.fromEntity(
+                        transactionService.transfer(from, to, amount, TransactionType.TRANSFER, "grupo"))));
+
+        long commits = commits() - commitsBefore;
+        assertTrue(commits < completed, commits + " commits para " + completed + " transferências");
+        assertEquals(completed, accounts.countTransactionsFrom(ids));
+        assertEquals(0, AccountFixtures.initialTotal(ids).compareTo(totalChecked(ids)));
+    }
+
+    @Test
+    void failedOperationLeavesTheRestOfTheGroup() throws Exception {
+        List<Long> ids = createAccounts();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(10);
+        for (int i = 0; i < 10; i++) {
+            BigDecimal amount = i == 5 ? new BigDecimal("5000.00") : BigDecimal.TEN;
+            results.add(pool.submit(() -> {
+                start.await();
+                return groupCommitService.call(() -> TransactionResponseDTO.fromEntity(
+                        transactionService.transfer(ids.get(0), ids.get(1), amount, TransactionType.TRANSFER,
+                                "grupo")));
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+
+        int failed = 0;
+        for (Future<?> result : results) {
+            try {
+                result.get(1, TimeUnit.MINUTES);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof BadRequestException);
+                failed++;
+            }
+        }
+        assertEquals(1, failed);
+        assertEquals(0, new BigDecimal("910.00").compareTo(balance(ids.get(0))));
+        assertEquals(0, new BigDecimal("1090.00").compareTo(balance(ids.get(1))));
+        assertEquals(9, accounts.countTransactionsFrom(ids));
+        assertEquals(0, AccountFixtures.initialTotal(ids).compareTo(totalChecked(ids)));
+
+        assertThrows(BadRequestException.class, () -> groupCommitService.call(() ->
+                transactionService.transfer(ids.get(0), -1L, BigDecimal.ONE, TransactionType.TRANSFER, "grupo")));
+    }
+
+    @Test
+    void operationNeedingALowerAccountStartsTheNextGroup() throws Exception {
+        List<Long> ids = createAccounts();
+        double splitsBefore = leftGroup("lock-order");
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+
+        // segura a thread do grupo para que as duas transferências caiam no mesmo lote, a de ids maiores primeiro
+        Future<?> blocker = pool.submit(() -> groupCommitService.call(() -> {
+            awaitQuietly(release);
+            return null;
+        }));
+        Thread.sleep(200);
+        Future<?> higher = pool.submit(() -> groupCommitService.call(() ->
+                transactionService.transfer(ids.get(4), ids.get(5), BigDecimal.TEN, TransactionType.TRANSFER, "grupo")));
+        Thread.sleep(200);
+        Future<?> lower = pool.submit(() -> groupCommitService.call(() ->
+                transactionService.transfer(ids.get(0), ids.get(1), BigDecimal.TEN, TransactionType.TRANSFER, "grupo")));
+        Thread.sleep(200);
+        release.countDown();
+        pool.shutdown();
+
+        blocker.get(1, TimeUnit.MINUTES);
+        higher.get(1, TimeUnit.MINUTES);
+        lower.get(1, TimeUnit.MINUTES);
+        assertEquals(splitsBefore + 1, leftGroup("lock-order"));
+        assertEquals(0, new BigDecimal("990.00").compareTo(balance(ids.get(0))));
+        assertEquals(0, new BigDecimal("990.00").compareTo(balance(ids.get(4))));
+    }
+
+    @Test
+    void accountLockedElsewhereDoesNotStallTheGroup() throws Exception {
+        List<Long> ids = createAccounts();
+        double sentBackBefore = leftGroup("lock-wait");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        Future<?> holder = pool.submit(() -> QuarkusTransaction.requiringNew().run(() -> {
+            bankAccountRepository.getEntityManager().find(BankAccount.class, ids.get(2),
+                    LockModeType.PESSIMISTIC_WRITE);
+            locked.countDown();
+            awaitQuietly(release);
+        }));
+        assertTrue(locked.await(1, TimeUnit.MINUTES));
+        Future<?> contended = pool.submit(() -> groupCommitService.call(() ->
+                transactionService.transfer(ids.get(2), ids.get(3), BigDecimal.TEN, TransactionType.TRANSFER, "grupo")));
+        Thread.sleep(300);
+
+        // a conta em uso volta para a thread de quem chamou (o H2 ignora o NOWAIT e espera o próprio
+        // timeout uma vez); o grupo segue com as outras enquanto o bloqueio continua de pé
+        groupCommitService.call(() ->
+                transactionService.transfer(ids.get(4), ids.get(5), BigDecimal.TEN, TransactionType.TRANSFER, "grupo"));
+        assertEquals(0, new BigDecimal("990.00").compareTo(balance(ids.get(4))));
+        assertEquals(sentBackBefore + 1, leftGroup("lock-wait"));
+
+        release.countDown();
+        pool.shutdown();
+        holder.get(1, TimeUnit.MINUTES);
+        contended.get(1, TimeUnit.MINUTES);
+        assertEquals(0, new BigDecimal("990.00").compareTo(balance(ids.get(2))));
+        assertEquals(0, new BigDecimal("1010.00").compareTo(balance(ids.get(3))));
+    }
+
+    @Test
+    void idempotentRetriesInTheSameGroupMoveMoneyOnce() throws Exception {
+        List<Long> ids = createAccounts();
+        String key = UUID.randomUUID().toString();
+        Map<String, Object> body = Map.of("fromAccountId", ids.get(0), "toAccountId", ids.get(1),
+                "amount", "100.00", "type", "TRANSFER");
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        for (int i = 0; i < 6; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return given().contentType(ContentType.JSON)
+                        .header(IdempotencyFilter.HEADER, key)
+                        .body(body)
+                        .post("/transactions/transfer")
+                        .then().statusCode(200)
+                        .extract().jsonPath().getLong("id");
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+
+        Long transactionId = results.get(0).get(1, TimeUnit.MINUTES);
+        for (Future<Long> result : results) {
+            assertEquals(transactionId, result.get(1, TimeUnit.MINUTES));
+        }
+        assertEquals(0, new BigDecimal("900.00").compareTo(balance(ids.get(0))));
+        assertEquals(1, accounts.countTransactionsFrom(ids));
+    }
+
+    @Test
+    void keyInFlightOutsideTheGroupDoesNotStallIt() throws Exception {
+        List<Long> ids = createAccounts();
+        String key = UUID.randomUUID().toString();
+        double sentBackBefore = leftGroup("lock-wait");
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        // a mesma chave numa transação fora do grupo (outra instância, ou a original devolvida a quem chamou),
+        // que acaba desfeita
+        Future<?> holder = pool.submit(() -> {
+            try {
+                QuarkusTransaction.requiringNew().run(() -> {
+                    IdempotencyKey record = new IdempotencyKey();
+                    record.setPrincipal("");
+                    record.setIdempotencyKey(key);
+                    record.setEndpoint("transfer");
+                    record.setRequestHash("em andamento");
+                    record.setCreatedAt(LocalDateTime.now());
+                    record.setExpiresAt(LocalDateTime.now().plusHours(1));
+                    idempotencyKeyRepository.persist(record);
+                    idempotencyKeyRepository.flush();
+                    inserted.countDown();
+                    awaitQuietly(release);
+                    throw new IllegalStateException("desfeita");
+                });
+            } catch (IllegalStateException e) {
+                // esperado
+            }
+        });
+        assertTrue(inserted.await(1, TimeUnit.MINUTES));
+        Future<Long> retried = pool.submit(() -> given().contentType(ContentType.JSON)
+                .header(IdempotencyFilter.HEADER, key)
+                .body(Map.of("fromAccountId", ids.get(0), "toAccountId", ids.get(1), "amount", "100.00",
+                        "type", "TRANSFER"))
+                .post("/transactions/transfer")
+                .then().statusCode(200)
+                .extract().jsonPath().getLong("id"));
+        Thread.sleep(300);
+
+        // a requisição com a chave em uso sai do grupo (o H2 espera o próprio timeout uma vez) e as
+        // outras seguem sendo confirmadas enquanto a chave continua presa
+        groupCommitService.call(() ->
+                transactionService.transfer(ids.get(4), ids.get(5), BigDecimal.TEN, TransactionType.TRANSFER, "grupo"));
+        assertEquals(0, new BigDecimal("990.00").compareTo(balance(ids.get(4))));
+        assertEquals(sentBackBefore + 1, leftGroup("lock-wait"));
+
+        release.countDown();
+        pool.shutdown();
+        holder.get(1, TimeUnit.MINUTES);
+        retried.get(1, TimeUnit.MINUTES);
+        assertEquals(0, new BigDecimal("900.00").compareTo(balance(ids.get(0))));
+        assertEquals(2, accounts.countTransactionsFrom(ids));
+    }
+
+    private double leftGroup(String reason) {
+        Counter counter = registry.find("crediflow.group-commit.left-group").tag("reason", reason).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long commits() {
+        // o bean (e o medidor) só é criado na primeira chamada
+        DistributionSummary summary = registry.find("crediflow.group-commit.batch.size").summary();
+        return summary != null ? summary.count() : 0;
+    }
+
+    private List<Long> createAccounts() {
+        return accounts.createAccounts("GC", ACCOUNTS);
+    }
+
+    private BigDecimal balance(Long id) {
+        return accounts.balance(id);
+    }
+
+    private BigDecimal totalChecked(List<Long> ids) {
+        accounts.assertClosingMatchesBalance(ids);
+        return accounts.total(ids);
+    }
+}
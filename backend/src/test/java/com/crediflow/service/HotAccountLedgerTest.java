@@ -0,0 +1,226 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.AccountBalanceSnapshot;
+import com.crediflow.entity.HotAccountCheckpoint;
+import com.crediflow.enums.TransactionType;
+import com.crediflow.repository.AccountBalanceSnapshotRepository;
+import com.crediflow.repository.BankAccountRepository;
+import com.crediflow.repository.HotAccountCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Contas viram quentes no meio do teste (chamando {@code recover}, como na
+ * subida) e o flush só roda quando o teste chama. Sem margem de assentamento,
+ * o checkpoint avança até o instante do flush. O relógio do ledger (o dia dos
+ * movimentos) é trocado para simular a virada do dia.
+ */
+@QuarkusTest
+@TestProfile(HotAccountLedgerTest.ManualFlush.class)
+class HotAccountLedgerTest {
+
+    public static class ManualFlush implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("crediflow.ledger.flush-interval", "1h",
+                    "crediflow.ledger.settle-margin", "0s");
+        }
+    }
+
+    @Inject
+    HotAccountLedger ledger;
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    BankAccountRepository bankAccountRepository;
+
+    @Inject
+    HotAccountCheckpointRepository checkpointRepository;
+
+    @Inject
+    AccountBalanceSnapshotRepository snapshotRepository;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Test
+    void recoveryKeepsTheOpeningBalance() {
+        List<Long> ids = accounts.createAccounts("HOT", 2);
+        transfer(ids.get(0), ids.get(1), "100.00");
+
+        recover(ids.get(0));
+
+        assertEquals(0, new BigDecimal("900.00").compareTo(ledgerBalance(ids.get(0))));
+        assertEquals(0, new BigDecimal("900.00").compareTo(accounts.balance(ids.get(0))));
+        assertEquals(0, new BigDecimal("900.00").compareTo(checkpoint(ids.get(0)).getBalance()));
+    }
+
+    @Test
+    void restartRebuildsFromTheCheckpointAndLaterTransactions() {
+        List<Long> ids = accounts.createAccounts("HOT", 2);
+        Long hot = ids.get(0);
+        recover(hot);
+        transfer(ids.get(1), hot, "50.00");
+        ledger.flush();
+        assertEquals(0, new BigDecimal("1050.00").compareTo(checkpoint(hot).getBalance()));
+
+        // confirmadas depois do último flush: só existem em transactions
+        transfer(hot, ids.get(1), "30.00");
+        transfer(ids.get(1), hot, "5.00");
+        assertEquals(0, new BigDecimal("1050.00").compareTo(accounts.balance(hot)));
+
+        recover(hot);
+
+        assertEquals(0, new BigDecimal("1025.00").compareTo(ledgerBalance(hot)));
+        assertEquals(0, new BigDecimal("1025.00").compareTo(accounts.balance(hot)));
+        assertEquals(0, AccountFixtures.initialTotal(ids).compareTo(accounts.total(ids)));
+    }
+
+    @Test
+    void flushWritesDirtyAccountsOnly() {
+        List<Long> ids = accounts.createAccounts("HOT", 2);
+        Long hot = ids.get(0);
+        recover(hot);
+        ledger.flush();
+        double flushedBefore = flushedRows();
+
+        transfer(ids.get(1), hot, "20.00");
+        transfer(hot, ids.get(1), "5.00");
+        assertEquals(0, new BigDecimal("1000.00").compareTo(accounts.balance(hot)));
+        ledger.flush();
+
+        assertEquals(flushedBefore + 1, flushedRows());
+        assertEquals(0, new BigDecimal("1015.00").compareTo(accounts.balance(hot)));
+        assertEquals(0, new BigDecimal("1015.00").compareTo(closing(hot, LocalDate.now()).getClosingBalance()));
+        assertEquals(0, new BigDecimal("1015.00").compareTo(checkpoint(hot).getBalance()));
+
+        ledger.flush();
+        assertEquals(flushedBefore + 1, flushedRows());
+    }
+
+    @Test
+    void flushWritesOnlyTheCommittedBalance() {
+        List<Long> ids = accounts.createAccounts("HOT", 2);
+        Long hot = ids.get(0);
+        recover(hot);
+
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                transfer(hot, ids.get(1), "100.00");
+                // outra transação grava os saldos enquanto esta segura a reserva
+                ledger.flush();
+                assertEquals(0, new BigDecimal("1000.00").compareTo(accounts.balance(hot)));
+                assertEquals(0, new BigDecimal("1000.00").compareTo(ledgerBalance(hot)));
+                throw new IllegalStateException("desfaz");
+            });
+        } catch (IllegalStateException expected) {
+            // a reserva é devolvida
+        }
+
+        transfer(hot, ids.get(1), "1000.00");
+        ledger.flush();
+        assertEquals(0, BigDecimal.ZERO.compareTo(accounts.balance(hot)));
+    }
+
+    @Test
+    void closingGoesToTheDayOfTheLastMovement() {
+        List<Long> ids = accounts.createAccounts("HOT", 2);
+        Long hot = ids.get(0);
+        recover(hot);
+        LocalDate day = LocalDate.of(2030, 3, 10);
+
+        at(day.atTime(23, 59));
+        transfer(ids.get(1), hot, "10.00");
+        // primeiro flush depois da meia-noite, sem movimento no dia novo
+        at(day.plusDays(1).atTime(0, 1));
+        ledger.flush();
+
+        assertEquals(0, new BigDecimal("1010.00").compareTo(closing(hot, day).getClosingBalance()));
+        assertNull(closing(hot, day.plusDays(1)));
+
+        transfer(ids.get(1), hot, "20.00");
+        ledger.flush();
+        assertEquals(0, new BigDecimal("1010.00").compareTo(closing(hot, day).getClosingBalance()));
+        assertEquals(0, new BigDecimal("1030.00").compareTo(closing(hot, day.plusDays(1)).getClosingBalance()));
+    }
+
+    @Test
+    void movementsOnBothSidesOfMidnightGetTheirOwnClosings() {
+        List<Long> ids = accounts.createAccounts("HOT", 2);
+        Long hot = ids.get(0);
+        recover(hot);
+        LocalDate day = LocalDate.of(2030, 4, 20);
+
+        at(day.atTime(23, 59));
+        transfer(ids.get(1), hot, "10.00");
+        transfer(hot, ids.get(1), "4.00");
+        at(day.plusDays(1).atTime(0, 1));
+        transfer(ids.get(1), hot, "20.00");
+        transfer(hot, ids.get(1), "1.00");
+        ledger.flush();
+
+        assertEquals(0, new BigDecimal("1006.00").compareTo(closing(hot, day).getClosingBalance()));
+        assertEquals(0, new BigDecimal("1025.00").compareTo(closing(hot, day.plusDays(1)).getClosingBalance()));
+        assertEquals(0, new BigDecimal("1025.00").compareTo(accounts.balance(hot)));
+    }
+
+    @AfterEach
+    void restoreClock() {
+        ClientProxy.unwrap(ledger).clock = Clock.systemDefaultZone();
+    }
+
+    private void at(LocalDateTime instant) {
+        ClientProxy.unwrap(ledger).clock = Clock.fixed(instant.atZone(ZoneId.systemDefault()).toInstant(),
+                ZoneId.systemDefault());
+    }
+
+    private void transfer(Long from, Long to, String amount) {
+        transactionService.transfer(from, to, new BigDecimal(amount), TransactionType.TRANSFER, "hot");
+    }
+
+    private void recover(Long id) {
+        QuarkusTransaction.requiringNew().run(() -> ledger.recover(List.of(id)));
+    }
+
+    private BigDecimal ledgerBalance(Long id) {
+        return QuarkusTransaction.requiringNew().call(() -> ledger.balanceOf(bankAccountRepository.findById(id)));
+    }
+
+    private HotAccountCheckpoint checkpoint(Long id) {
+        return QuarkusTransaction.requiringNew().call(() -> checkpointRepository.findById(id));
+    }
+
+    private AccountBalanceSnapshot closing(Long id, LocalDate day) {
+        return QuarkusTransaction.requiringNew().call(() -> snapshotRepository
+                .find("account.id = ?1 and snapshotDate = ?2", id, day).firstResult());
+    }
+
+    private double flushedRows() {
+        Counter counter = registry.find("crediflow.ledger.flushed.rows").counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
@@ -0,0 +1,152 @@
+package com.crediflow.service;
+
+import io.quarkus.test.Mock;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keycloak em memória para os testes: guarda os usuários num mapa e pode ser
+ * instruído a falhar as próximas chamadas.
+ */
+@Mock
+@ApplicationScoped
+public class KeycloakAdminServiceStub extends KeycloakAdminService {
+
+    private final Map<String, Map<String, Object>> users = new ConcurrentHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger statusLookups = new AtomicInteger();
+    private final AtomicInteger peakStatusLookups = new AtomicInteger();
+    private volatile long statusDelayMillis;
+
+    public void failNext(int calls) {
+        failures.set(calls);
+    }
+
+    /**
+     * Faz cada consulta de status demorar {@code millis}, para medir quantas
+     * correm ao mesmo tempo; zera o pico medido.
+     */
+    public void slowStatusLookups(long millis) {
+        statusDelayMillis = millis;
+        peakStatusLookups.set(0);
+    }
+
+    public int peakStatusLookups() {
+        return peakStatusLookups.get();
+    }
+
+    public Map<String, Map<String, Object>> users() {
+        return users;
+    }
+
+    @Override
+    public String getAdminToken() {
+        return "stub";
+    }
+
+    @Override
+    public List<Map<String, Object>> listUsers() {
+        maybeFail();
+        return new ArrayList<>(users.values());
+    }
+
+    @Override
+    public List<Map<String, Object>> listUsersByRole(String roleName) {
+        return users.values().stream().filter(user -> roleName.equals(user.get("role"))).toList();
+    }
+
+    @Override
+    public void createUser(Map<String, Object> userData, String roleName) {
+        createUserAndReturnId(userData, roleName);
+    }
+
+    @Override
+    public String createUserAndReturnId(Map<String, Object> userData, String roleName) {
+        maybeFail();
+        if (getUserByUsername((String) userData.get("username")).isPresent()) {
+            throw new RuntimeException("Erro ao criar usuário: usuário já existe");
+        }
+        String id = UUID.randomUUID().toString();
+        Map<String, Object> user = new HashMap<>(userData);
+        user.remove("password");
+        user.put("id", id);
+        user.put("enabled", true);
+        user.put("role", roleName);
+        users.put(id, user);
+        return id;
+    }
+
+    @Override
+    public void updateUser(String userId, Map<String, Object> userData) {
+        maybeFail();
+        Map<String, Object> user = require(userId);
+        user.putAll(userData);
+        user.put("enabled", true);
+    }
+
+    @Override
+    public void deleteUser(String userId) {
+        maybeFail();
+        if (users.remove(userId) == null) {
+            throw new RuntimeException("Erro ao deletar usuário: 404");
+        }
+    }
+
+    @Override
+    public Map<String, Object> getUserById(String userId) {
+        maybeFail();
+        return require(userId);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getUserByUsername(String username) {
+        maybeFail();
+        return users.values().stream().filter(user -> username.equals(user.get("username"))).findFirst();
+    }
+
+    @Override
+    public boolean isUserEnabled(String userId) {
+        peakStatusLookups.accumulateAndGet(statusLookups.incrementAndGet(), Math::max);
+        try {
+            // lê antes de esperar, como uma resposta que demora a chegar
+            boolean enabled = Boolean.TRUE.equals(getUserById(userId).get("enabled"));
+            if (statusDelayMillis > 0) {
+                Thread.sleep(statusDelayMillis);
+            }
+            return enabled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            statusLookups.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void setUserEnabled(String userId, boolean enabled) {
+        maybeFail();
+        require(userId).put("enabled", enabled);
+    }
+
+    private Map<String, Object> require(String userId) {
+        Map<String, Object> user = users.get(userId);
+        if (user == null) {
+            throw new RuntimeException("Erro ao buscar usuário: 404");
+        }
+        return user;
+    }
+
+    private void maybeFail() {
+        if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            throw new RuntimeException("Keycloak indisponível (stub)");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.CustomerRequestDTO;
+import com.crediflow.entity.Company;
+import com.crediflow.entity.Customer;
+import com.crediflow.entity.OutboxEvent;
+import com.crediflow.enums.OutboxAggregateType;
+import com.crediflow.enums.OutboxStatus;
+import com.crediflow.repository.CompanyRepository;
+import com.crediflow.repository.CustomerRepository;
+import com.crediflow.repository.OutboxEventRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class KeycloakOutboxDispatcherTest {
+
+    @Inject
+    CompanyService companyService;
+
+    @Inject
+    CustomerService customerService;
+
+    @Inject
+    CompanyRepository companyRepository;
+
+    @Inject
+    CustomerRepository customerRepository;
+
+    @Inject
+    OutboxEventRepository outboxEventRepository;
+
+    @Inject
+    KeycloakOutboxDispatcher dispatcher;
+
+    @Inject
+    KeycloakAdminServiceStub keycloak;
+
+    @Test
+    void appliesUserChangesAfterCommitAndRetriesFailures() throws Exception {
+        String suffix = suffix();
+        Long companyId = createCompany(suffix);
+        Long customerId = createCustomer(companyId, suffix);
+
+        awaitDispatched(OutboxAggregateType.CUSTOMER, customerId);
+        awaitDispatched(OutboxAggregateType.COMPANY, companyId);
+        String customerKeycloakId = QuarkusTransaction.requiringNew()
+                .call(() -> customerRepository.findById(customerId).getKeycloakId());
+        assertNotNull(customerKeycloakId);
+        assertEquals("client", keycloak.users().get(customerKeycloakId).get("role"));
+        assertNotNull(QuarkusTransaction.requiringNew().call(() -> companyRepository.findById(companyId).getKeycloakId()));
+
+        // primeira tentativa falha e o evento volta para a fila com espera
+        keycloak.failNext(1);
+        QuarkusTransaction.requiringNew().run(() -> {
+            Customer customer = customerRepository.findById(customerId);
+            CustomerRequestDTO dto = new CustomerRequestDTO();
+            dto.name = customer.getName();
+            dto.cpf = customer.getCpf();
+            dto.email = "novo" + suffix + "@outbox.test";
+            dto.companyId = companyId;
+            customerService.updateEntity(customer, dto);
+        });
+        OutboxEvent update = awaitLast(OutboxAggregateType.CUSTOMER, customerId,
+                event -> event.getAttempts() == 1 && event.getLastError() != null);
+        assertEquals(OutboxStatus.PENDING, update.getStatus());
+        assertTrue(update.getNextAttemptAt().isAfter(LocalDateTime.now()));
+
+        QuarkusTransaction.requiringNew().run(() -> outboxEventRepository.update(
+                "nextAttemptAt = ?1 where id = ?2", LocalDateTime.now().minusSeconds(1), update.getId()));
+        awaitDispatched(OutboxAggregateType.CUSTOMER, customerId);
+        assertEquals("novo" + suffix + "@outbox.test", keycloak.users().get(customerKeycloakId).get("email"));
+
+        QuarkusTransaction.requiringNew().run(() -> customerService.delete(customerId));
+        awaitDispatched(OutboxAggregateType.CUSTOMER, customerId);
+        assertFalse(keycloak.users().containsKey(customerKeycloakId));
+    }
+
+    @Test
+    void failedCreationIsRetriedAndStoresTheKeycloakId() throws Exception {
+        String suffix = suffix();
+        Long companyId = createCompany(suffix);
+        awaitDispatched(OutboxAggregateType.COMPANY, companyId);
+
+        keycloak.failNext(1);
+        Long customerId = createCustomer(companyId, suffix);
+        OutboxEvent create = awaitLast(OutboxAggregateType.CUSTOMER, customerId,
+                event -> event.getAttempts() == 1 && event.getLastError() != null);
+        assertEquals(OutboxStatus.PENDING, create.getStatus());
+        assertNull(QuarkusTransaction.requiringNew().call(() -> customerRepository.findById(customerId).getKeycloakId()));
+
+        QuarkusTransaction.requiringNew().run(() -> outboxEventRepository.update(
+                "nextAttemptAt = ?1 where id = ?2", LocalDateTime.now().minusSeconds(1), create.getId()));
+        awaitDispatched(OutboxAggregateType.CUSTOMER, customerId);
+
+        String keycloakId = QuarkusTransaction.requiringNew()
+                .call(() -> customerRepository.findById(customerId).getKeycloakId());
+        assertNotNull(keycloakId);
+        assertEquals("cliente" + suffix + "@outbox.test", keycloak.users().get(keycloakId).get("email"));
+    }
+
+    private static String suffix() {
+        return String.valueOf(System.nanoTime() % 100_000_000);
+    }
+
+    private Long createCompany(String suffix) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Company company = new Company();
+            company.setName("Empresa Outbox");
+            company.setCnpj("000000" + String.format("%08d", Long.parseLong(suffix)));
+            company.setResponsibleName("Responsável");
+            company.setEmail("empresa" + suffix + "@outbox.test");
+            company.setPhone("85999990000");
+            company.setConvenioType("private");
+            return companyService.create(company).getId();
+        });
+    }
+
+    private Long createCustomer(Long companyId, String suffix) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Customer customer = new Customer();
+            customer.setName("Cliente Outbox");
+            customer.setCpf("cpf" + suffix);
+            customer.setEmail("cliente" + suffix + "@outbox.test");
+            customer.setCompany(companyRepository.findById(companyId));
+            return customerService.create(customer).getId();
+        });
+    }
+
+    private void awaitDispatched(OutboxAggregateType type, Long id) throws InterruptedException {
+        awaitLast(type, id, event -> event.getStatus() == OutboxStatus.DONE);
+    }
+
+    private OutboxEvent awaitLast(OutboxAggregateType type, Long id, Predicate<OutboxEvent> condition)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            dispatcher.dispatch();
+            List<OutboxEvent> events = QuarkusTransaction.requiringNew().call(() -> outboxEventRepository
+                    .list("aggregateType = ?1 and aggregateId = ?2 order by id", type, id));
+            OutboxEvent last = events.get(events.size() - 1);
+            if (condition.test(last)) {
+                return last;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("evento " + last.getOperation() + " não chegou ao estado esperado: "
+                        + last.getStatus() + " / " + last.getLastError());
+            }
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.crediflow.service;
+
+import com.crediflow.config.KeycloakConfig;
+import com.crediflow.exception.ConflictException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Gerenciador de token fora do Quarkus contra um endpoint de token falso. Os
+ * tokens valem 2s: com as folgas limitadas pela validade, são entregues até
+ * 1,5s e renovados em segundo plano a partir de 1s.
+ */
+class KeycloakTokenManagerTest {
+
+    private static final int EXPIRES_IN = 2;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile int status = 200;
+
+    private KeycloakTokenManager manager;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/test/protocol/openid-connect/token", this::token);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        manager = new KeycloakTokenManager();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        manager.config = new KeycloakConfig() {
+            @Override
+            public String serverUrl() {
+                return url;
+            }
+
+            @Override
+            public String realm() {
+                return "test";
+            }
+
+            @Override
+            public String clientId() {
+                return "crediflow";
+            }
+
+            @Override
+            public String clientSecret() {
+                return "secret";
+            }
+        };
+        manager.mapper = new ObjectMapper();
+        manager.registry = new SimpleMeterRegistry();
+        manager.minValidity = Duration.ofSeconds(10);
+        manager.refreshAhead = Duration.ofSeconds(30);
+        manager.connectTimeout = Duration.ofSeconds(5);
+        manager.readTimeout = Duration.ofSeconds(10);
+        manager.init();
+    }
+
+    @AfterEach
+    void stop() {
+        gate.countDown();
+        manager.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void tokenIsReusedBeforeTheRefreshWindow() {
+        assertEquals("token-1", manager.token());
+        assertEquals("token-1", manager.token());
+
+        assertEquals(1, requests.get());
+        assertEquals(1, manager.hits.count());
+        assertEquals(1, manager.misses.count());
+    }
+
+    @Test
+    void refreshWindowServesTheCurrentTokenAndRefreshesOnce() throws Exception {
+        manager.token();
+        // os prazos contam do envio da primeira requisição, um pouco antes deste ponto
+        Thread.sleep(1_100);
+
+        gate = new CountDownLatch(1);
+        // todos chegam com a renovação em segundo plano presa no endpoint
+        assertEquals(List.of("token-1"), concurrently(32).stream().distinct().toList());
+        gate.countDown();
+
+        awaitToken("token-2");
+        Thread.sleep(200);
+        assertEquals(2, requests.get());
+        assertEquals(1, manager.backgroundRefreshes.count());
+    }
+
+    @Test
+    void expiredTokenBlocksAndConcurrentCallersShareOneRequest() throws Exception {
+        manager.token();
+        Thread.sleep(1_600);
+
+        gate = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            results.add(callers.submit(manager::token));
+        }
+        Thread.sleep(200);
+        gate.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("token-2", result.get(10, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+        assertEquals(2, requests.get());
+        assertEquals("token-2", manager.token());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void failedRequestIsRetriedByTheNextCaller() {
+        status = 500;
+        assertThrows(ConflictException.class, manager::token);
+
+        status = 200;
+        assertEquals("token-2", manager.token());
+        assertEquals(2, requests.get());
+    }
+
+    private void token(HttpExchange exchange) throws IOException {
+        int n = requests.incrementAndGet();
+        try {
+            gate.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = (status == 200
+                ? "{\"access_token\":\"token-" + n + "\",\"expires_in\":" + EXPIRES_IN + "}"
+                : "{\"error\":\"unavailable\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private List<String> concurrently(int callers) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            CountDownLatch ready = new CountDownLatch(1);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    ready.await();
+                    return manager.token();
+                }));
+            }
+            ready.countDown();
+            List<String> tokens = new ArrayList<>();
+            for (Future<String> result : results) {
+                tokens.add(result.get(10, TimeUnit.SECONDS));
+            }
+            return tokens;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void awaitToken(String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!expected.equals(manager.token()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, manager.token());
+    }
+}
@@ -0,0 +1,138 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.Company;
+import com.crediflow.entity.Customer;
+import com.crediflow.entity.LoanInstallment;
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.enums.LoanProposalStatus;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Empresas, clientes e propostas completas (com tudo que a CCB mostra) para os
+ * testes; cada chamada roda na própria transação e devolve o id criado.
+ */
+@ApplicationScoped
+public class LoanFixtures {
+
+    public static final BigDecimal INSTALLMENT_VALUE = new BigDecimal("350.00");
+
+    private static final AtomicLong SEQUENCE = new AtomicLong(System.nanoTime() % 1_000_000_000L);
+
+    @Inject
+    EntityManager em;
+
+    public Long createCompany(String keycloakId) {
+        String marker = unique();
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Company company = new Company();
+            company.setKeycloakId(keycloakId);
+            company.setName("Empresa " + marker);
+            company.setCnpj(String.format("%014d", Long.parseLong(marker)));
+            company.setResponsibleName("Responsável");
+            company.setEmail("empresa" + marker + "@teste.com");
+            company.setPhone("8530000000");
+            company.setConvenioType("public");
+            em.persist(company);
+            return company.getId();
+        });
+    }
+
+    /**
+     * Cliente da empresa com conta virtual e salário de {@code salary}.
+     */
+    public Long createCustomer(Long companyId, String keycloakId, BigDecimal salary) {
+        String marker = unique();
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Customer customer = new Customer();
+            customer.setName("Cliente " + marker);
+            customer.setCpf(String.format("%011d", Long.parseLong(marker) % 100_000_000_000L));
+            customer.setEmail("cliente" + marker + "@teste.com");
+            customer.setKeycloakId(keycloakId);
+            customer.setBirthDate(LocalDate.of(1985, 3, 20));
+            customer.setStreet("Rua das Flores");
+            customer.setStreetNumber(100);
+            customer.setNeighborhood("Centro");
+            customer.setCity("Fortaleza");
+            customer.setState("CE");
+            customer.setZipCode("60000000");
+            customer.setSalary(salary);
+            customer.setCompany(em.find(Company.class, companyId));
+            em.persist(customer);
+
+            BankAccount account = new BankAccount();
+            account.setAccountNumber("LF" + marker);
+            account.setCustomer(customer);
+            em.persist(account);
+            customer.setVirtualAccount(account);
+            return customer.getId();
+        });
+    }
+
+    public Long createCustomer(Long companyId) {
+        return createCustomer(companyId, null, new BigDecimal("10000.00"));
+    }
+
+    /**
+     * Proposta do cliente no status dado, com {@code installments} parcelas
+     * pendentes de {@link #INSTALLMENT_VALUE}.
+     */
+    public Long createProposal(Long customerId, int installments, LoanProposalStatus status) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Customer customer = em.find(Customer.class, customerId);
+            LoanProposal proposal = new LoanProposal();
+            proposal.setCustomer(customer);
+            proposal.setCompany(customer.getCompany());
+            proposal.setStatus(status);
+            proposal.setConvenioType("Prefeitura");
+            proposal.setRequestedAmount(new BigDecimal("10000.00"));
+            proposal.setAvailableLimit(new BigDecimal("50000.00"));
+            proposal.setInstallmentValue(INSTALLMENT_VALUE);
+            proposal.setTermInMonths(installments);
+            proposal.setNumberOfInstallments(installments);
+            proposal.setMonthlyRate(new BigDecimal("0.0189"));
+            proposal.setFirstInstallmentDate(LocalDate.of(2025, 2, 10));
+            proposal.setIofTotal(new BigDecimal("123.45"));
+            proposal.setEffectiveMonthlyRate(new BigDecimal("0.0201"));
+            proposal.setEffectiveAnnualRate(new BigDecimal("0.2701"));
+            proposal.setContractedAnnualRate(new BigDecimal("0.2523"));
+            proposal.setProductType("Consignado");
+            proposal.setFund("Fundo Próprio");
+            proposal.setInstallmentType("PRICE");
+            proposal.setTotalPayment(INSTALLMENT_VALUE.multiply(BigDecimal.valueOf(installments)));
+            proposal.setDisbursementDate(LocalDate.of(2025, 1, 3));
+
+            List<LoanInstallment> schedule = new ArrayList<>();
+            for (int n = 1; n <= installments; n++) {
+                LoanInstallment installment = new LoanInstallment();
+                installment.setProposal(proposal);
+                installment.setNumber(n);
+                installment.setDueDate(LocalDate.of(2025, 2, 10).plusMonths(n - 1));
+                installment.setValue(INSTALLMENT_VALUE);
+                installment.setBalance(INSTALLMENT_VALUE.multiply(BigDecimal.valueOf(installments - n)));
+                installment.setStatus("PENDENTE");
+                schedule.add(installment);
+            }
+            proposal.setInstallments(schedule);
+            em.persist(proposal);
+            return proposal.getId();
+        });
+    }
+
+    public LoanProposal proposal(Long id) {
+        return QuarkusTransaction.requiringNew().call(() -> em.find(LoanProposal.class, id));
+    }
+
+    private static String unique() {
+        return String.valueOf(SEQUENCE.incrementAndGet());
+    }
+}
@@ -0,0 +1,124 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.LoanProposalRequestDTO;
+import com.crediflow.dto.LoanSimulationResultDTO;
+import com.crediflow.entity.LoanInstallment;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduler;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Criação de proposta com simulação: as parcelas têm ids da sequência e saem
+ * em lotes JDBC, então o número de comandos não acompanha o prazo.
+ */
+@QuarkusTest
+class LoanProposalCreateQueryTest {
+
+    @Inject
+    LoanProposalService proposalService;
+
+    @Inject
+    LoanFixtures loans;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    Scheduler scheduler;
+
+    Long companyId;
+    Long customerId;
+
+    @BeforeEach
+    void createCustomer() {
+        // as estatísticas são globais: os jobs agendados não podem consultar durante a medição
+        scheduler.pause();
+        companyId = loans.createCompany(null);
+        customerId = loans.createCustomer(companyId);
+        // aquece os blocos da sequência para a medição não depender da ordem dos testes
+        statementsFor(96);
+    }
+
+    @AfterEach
+    void resumeScheduler() {
+        scheduler.resume();
+    }
+
+    @Test
+    void longScheduleDoesNotCostOneInsertPerInstallment() {
+        long statements = statementsFor(96);
+
+        // cliente, empresa, proposta e as parcelas em lotes (uns 5, com a sequência); antes eram 98
+        assertTrue(statements <= 6, "comandos na criação: " + statements);
+    }
+
+    @Test
+    void statementsBarelyGrowWithTheTerm() {
+        long small = statementsFor(12);
+        long large = statementsFor(96);
+
+        // no máximo mais um lote e mais um bloco da sequência
+        assertTrue(large <= small + 2, "12 meses: " + small + ", 96 meses: " + large);
+    }
+
+    @Test
+    void everyInstallmentIsStoredInOrder() {
+        LoanSimulationResultDTO result = proposalService.createWithSimulation(request(96));
+        Long proposalId = Long.valueOf(result.proposal);
+
+        List<LoanInstallment> installments = QuarkusTransaction.requiringNew().call(() -> em
+                .createQuery("from LoanInstallment i where i.proposal.id = :id order by i.number",
+                        LoanInstallment.class)
+                .setParameter("id", proposalId)
+                .getResultList());
+
+        assertEquals(96, installments.size());
+        for (int n = 0; n < installments.size(); n++) {
+            assertEquals(n + 1, installments.get(n).getNumber());
+            assertEquals(0, result.installments.get(n).value.compareTo(installments.get(n).getValue()));
+        }
+    }
+
+    private long statementsFor(int term) {
+        Statistics statistics = sessionFactory.getStatistics();
+        LoanProposalRequestDTO dto = request(term);
+        return QuarkusTransaction.requiringNew().call(() -> {
+            statistics.clear();
+            proposalService.createWithSimulation(dto);
+            // inclui os lotes enviados no flush
+            em.flush();
+            return statistics.getPrepareStatementCount();
+        });
+    }
+
+    private LoanProposalRequestDTO request(int term) {
+        LoanProposalRequestDTO dto = new LoanProposalRequestDTO();
+        dto.customerId = customerId;
+        dto.companyId = companyId;
+        dto.requestedAmount = new BigDecimal("20000.00");
+        dto.availableLimit = new BigDecimal("50000.00");
+        dto.termInMonths = term;
+        dto.convenioType = "Prefeitura";
+        dto.monthlyInterestRate = new BigDecimal("0.0189");
+        dto.firstInstallmentDate = LocalDate.of(2025, 3, 10);
+        dto.modoSimulacao = "VALOR_FINANCIADO";
+        return dto;
+    }
+}
@@ -0,0 +1,163 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.LoanProposalResponseDTO;
+import com.crediflow.dto.PagedResult;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.Company;
+import com.crediflow.entity.Customer;
+import com.crediflow.entity.LoanInstallment;
+import com.crediflow.entity.LoanProposal;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduler;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@QuarkusTest
+class LoanProposalListQueryTest {
+
+    private static final int CUSTOMERS = 6;
+    private static final int PROPOSALS_PER_CUSTOMER = 4;
+    private static final int INSTALLMENTS = 12;
+
+    @Inject
+    LoanProposalService proposalService;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    Scheduler scheduler;
+
+    String marker;
+
+    @BeforeEach
+    void createProposals() {
+        // as estatísticas são globais: os jobs agendados não podem consultar durante a medição
+        scheduler.pause();
+        marker = "lista" + System.nanoTime();
+        QuarkusTransaction.requiringNew().run(() -> {
+            Company company = new Company();
+            company.setName("Empresa " + marker);
+            company.setCnpj(String.format("%014d", System.nanoTime() % 100_000_000_000_000L));
+            company.setResponsibleName("Responsável");
+            company.setEmail(marker + "@empresa.com");
+            company.setPhone("8530000000");
+            company.setConvenioType("public");
+            em.persist(company);
+
+            for (int c = 0; c < CUSTOMERS; c++) {
+                Customer customer = new Customer();
+                customer.setName(marker + " cliente " + c);
+                customer.setCpf(marker + c);
+                customer.setEmail(marker + c + "@cliente.com");
+                customer.setCompany(company);
+                em.persist(customer);
+
+                BankAccount account = new BankAccount();
+                account.setAccountNumber(marker + c);
+                account.setCustomer(customer);
+                em.persist(account);
+                customer.setVirtualAccount(account);
+
+                for (int p = 0; p < PROPOSALS_PER_CUSTOMER; p++) {
+                    em.persist(proposal(customer, company));
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void resumeScheduler() {
+        scheduler.resume();
+    }
+
+    @Test
+    void pageCostsTheSameNumberOfQueriesWhateverItsSize() {
+        long small = queriesFor(5, false);
+        long large = queriesFor(20, false);
+
+        // página + contagem
+        assertEquals(2, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void installmentsCostOneQueryPerPage() {
+        long small = queriesFor(5, true);
+        long large = queriesFor(20, true);
+
+        assertEquals(3, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void listOmitsInstallmentsUnlessRequested() {
+        PagedResult<LoanProposalResponseDTO> summary = QuarkusTransaction.requiringNew()
+                .call(() -> proposalService.findAllPaged(marker, 0, 5, false));
+        PagedResult<LoanProposalResponseDTO> full = QuarkusTransaction.requiringNew()
+                .call(() -> proposalService.findAllPaged(marker, 0, 5, true));
+
+        assertEquals(CUSTOMERS * PROPOSALS_PER_CUSTOMER, summary.getTotal());
+        summary.getItems().forEach(dto -> assertNull(dto.installments));
+        full.getItems().forEach(dto -> assertEquals(INSTALLMENTS, dto.installments.size()));
+        full.getItems().forEach(dto -> assertEquals(1, dto.installments.get(0).number));
+    }
+
+    private long queriesFor(int size, boolean includeInstallments) {
+        Statistics statistics = sessionFactory.getStatistics();
+        return QuarkusTransaction.requiringNew().call(() -> {
+            statistics.clear();
+            PagedResult<LoanProposalResponseDTO> result = proposalService.findAllPaged(marker, 0, size,
+                    includeInstallments);
+            assertEquals(size, result.getItems().size());
+            // lê tudo que a serialização leria
+            result.getItems().forEach(dto -> {
+                if (dto.installments != null) {
+                    dto.installments.size();
+                }
+            });
+            return statistics.getPrepareStatementCount();
+        });
+    }
+
+    private static LoanProposal proposal(Customer customer, Company company) {
+        LoanProposal proposal = new LoanProposal();
+        proposal.setCustomer(customer);
+        proposal.setCompany(company);
+        proposal.setRequestedAmount(new BigDecimal("10000.00"));
+        proposal.setAvailableLimit(new BigDecimal("50000.00"));
+        proposal.setTermInMonths(INSTALLMENTS);
+        proposal.setConvenioType("Prefeitura");
+
+        List<LoanInstallment> installments = new ArrayList<>();
+        // gravadas fora de ordem: a listagem devolve pelo número
+        for (int n = INSTALLMENTS; n >= 1; n--) {
+            LoanInstallment installment = new LoanInstallment();
+            installment.setProposal(proposal);
+            installment.setNumber(n);
+            installment.setValue(new BigDecimal("950.00"));
+            installment.setDueDate(LocalDate.of(2025, 1, 10).plusMonths(n));
+            installment.setStatus("PENDENTE");
+            installments.add(installment);
+        }
+        proposal.setInstallments(installments);
+        return proposal;
+    }
+}
@@ -0,0 +1,174 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.LoanInstallmentDTO;
+import com.crediflow.dto.LoanProposalRequestDTO;
+import com.crediflow.dto.LoanSimulationResultDTO;
+import com.crediflow.dto.SimulationGridCellDTO;
+import com.crediflow.dto.SimulationGridRequestDTO;
+import com.crediflow.dto.SimulationGridResultDTO;
+import com.crediflow.dto.SimulationGridRowDTO;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.util.LoanSimulationUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Grade fora do Quarkus, num pool de 4 threads: cada linha tem de ser igual à
+ * simulação avulsa da mesma célula, na ordem taxa, prazo, valor.
+ */
+class LoanSimulationGridServiceTest {
+
+    private static final LocalDate FIRST_INSTALLMENT = LocalDate.of(2025, 3, 10);
+
+    private LoanSimulationGridService service;
+
+    @BeforeEach
+    void start() {
+        service = new LoanSimulationGridService();
+        service.parallelism = 4;
+        service.maxCells = 5000;
+        service.init();
+    }
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+    }
+
+    @Test
+    void priceGridMatchesSingleSimulations() {
+        assertMatchesSingleSimulations(grid("VALOR_FINANCIADO", "PRICE",
+                List.of("0", "0.0149", "0.0189", "0.035"), List.of(1, 12, 48, 96), List.of("1000", "25000.50")));
+        assertMatchesSingleSimulations(grid("VALOR_PARCELA", "PRICE",
+                List.of("0.0099", "0.025"), List.of(6, 84), List.of("350", "1999.99")));
+    }
+
+    @Test
+    void sacGridMatchesSingleSimulations() {
+        assertMatchesSingleSimulations(grid("VALOR_FINANCIADO", "SAC",
+                List.of("0.0149", "0.05"), List.of(3, 60), List.of("5000", "120000")));
+    }
+
+    @Test
+    void onlyRequestedCellsCarryTheSchedule() {
+        SimulationGridRequestDTO dto = grid("VALOR_FINANCIADO", "PRICE",
+                List.of("0.02", "0.03"), List.of(12, 24), List.of("10000"));
+        // mesma célula escrita com outra escala
+        dto.scheduleFor = List.of(cell("0.020", 24, "10000.00"));
+
+        SimulationGridResultDTO result = service.simulate(dto);
+
+        for (SimulationGridRowDTO row : result.rows) {
+            boolean requested = row.rate.compareTo(new BigDecimal("0.02")) == 0 && row.term == 24;
+            if (!requested) {
+                assertNull(row.installments);
+                continue;
+            }
+            List<LoanInstallmentDTO> expected = LoanSimulationUtil.simulate(single(dto, row), true).installments;
+            assertNotNull(row.installments);
+            assertEquals(expected.size(), row.installments.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).number, row.installments.get(i).number);
+                assertEquals(expected.get(i).dueDate, row.installments.get(i).dueDate);
+                assertEquals(expected.get(i).value, row.installments.get(i).value);
+                assertEquals(expected.get(i).balance, row.installments.get(i).balance);
+            }
+        }
+    }
+
+    @Test
+    void gridAboveTheLimitIsRejected() {
+        service.maxCells = 8;
+
+        // 2 × 2 × 2 = 8: no limite
+        assertEquals(8, service.simulate(grid("VALOR_FINANCIADO", "PRICE",
+                List.of("0.01", "0.02"), List.of(12, 24), List.of("1000", "2000"))).cells);
+
+        BadRequestException error = assertThrows(BadRequestException.class, () -> service.simulate(grid(
+                "VALOR_FINANCIADO", "PRICE", List.of("0.01", "0.02", "0.03"), List.of(12, 24), List.of("1000", "2000"))));
+        assertEquals("A grade pode ter no máximo 8 combinações", error.getMessage());
+    }
+
+    @Test
+    void invalidGridsAreRejected() {
+        assertThrows(BadRequestException.class, () -> service.simulate(grid("VALOR_FINANCIADO", "PRICE",
+                List.of(), List.of(12), List.of("1000"))));
+        assertThrows(BadRequestException.class, () -> service.simulate(grid("VALOR_FINANCIADO", "PRICE",
+                List.of("0.01"), List.of(97), List.of("1000"))));
+        assertThrows(BadRequestException.class, () -> service.simulate(grid("VALOR_FINANCIADO", "PRICE",
+                List.of("-0.01"), List.of(12), List.of("1000"))));
+        assertThrows(BadRequestException.class, () -> service.simulate(grid("VALOR_FINANCIADO", "PRICE",
+                List.of("0.01"), List.of(12), List.of("0"))));
+        // no SAC as parcelas variam, então não há valor de parcela a partir do qual simular
+        assertThrows(BadRequestException.class, () -> service.simulate(grid("VALOR_PARCELA", "SAC",
+                List.of("0.01"), List.of(12), List.of("500"))));
+    }
+
+    private void assertMatchesSingleSimulations(SimulationGridRequestDTO dto) {
+        SimulationGridResultDTO result = service.simulate(dto);
+
+        assertEquals(dto.rates.size() * dto.terms.size() * dto.amounts.size(), result.cells);
+        int i = 0;
+        for (BigDecimal rate : dto.rates) {
+            for (Integer term : dto.terms) {
+                for (BigDecimal amount : dto.amounts) {
+                    SimulationGridRowDTO row = result.rows.get(i++);
+                    assertEquals(rate, row.rate);
+                    assertEquals(term, row.term);
+                    assertEquals(amount, row.amount);
+
+                    LoanSimulationResultDTO expected = LoanSimulationUtil.simulate(single(dto, row), false);
+                    String cell = rate + " × " + term + " × " + amount;
+                    assertEquals(expected.financedAmount, row.financedAmount, cell);
+                    assertEquals(expected.installmentValue, row.installmentValue, cell);
+                    assertEquals(expected.totalPayment, row.totalPayment, cell);
+                    assertEquals(expected.totalPayment.subtract(expected.financedAmount), row.totalInterest, cell);
+                    assertEquals(expected.effectiveMonthlyRate, row.effectiveMonthlyRate, cell);
+                    assertEquals(expected.effectiveAnnualRate, row.effectiveAnnualRate, cell);
+                    assertNull(row.installments, cell);
+                }
+            }
+        }
+    }
+
+    private static SimulationGridRequestDTO grid(String mode, String amortization, List<String> rates,
+            List<Integer> terms, List<String> amounts) {
+        SimulationGridRequestDTO dto = new SimulationGridRequestDTO();
+        dto.modoSimulacao = mode;
+        dto.amortizationType = amortization;
+        dto.rates = rates.stream().map(BigDecimal::new).toList();
+        dto.terms = terms;
+        dto.amounts = amounts.stream().map(BigDecimal::new).toList();
+        dto.firstInstallmentDate = FIRST_INSTALLMENT;
+        return dto;
+    }
+
+    private static LoanProposalRequestDTO single(SimulationGridRequestDTO grid, SimulationGridRowDTO row) {
+        LoanProposalRequestDTO dto = new LoanProposalRequestDTO();
+        dto.monthlyInterestRate = row.rate;
+        dto.termInMonths = row.term;
+        dto.requestedAmount = row.amount;
+        dto.modoSimulacao = grid.modoSimulacao;
+        dto.amortizationType = grid.amortizationType;
+        dto.firstInstallmentDate = grid.firstInstallmentDate;
+        return dto;
+    }
+
+    private static SimulationGridCellDTO cell(String rate, int term, String amount) {
+        SimulationGridCellDTO cell = new SimulationGridCellDTO();
+        cell.rate = new BigDecimal(rate);
+        cell.term = term;
+        cell.amount = new BigDecimal(amount);
+        return cell;
+    }
+}
@@ -0,0 +1,163 @@
+package com.crediflow.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache em disco fora do Quarkus, num diretório temporário: cada instância faz
+ * o papel de uma execução da aplicação.
+ */
+class PdfCacheServiceTest {
+
+    private static final int DOCUMENT_SIZE = 100;
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger generated = new AtomicInteger();
+
+    @Test
+    void missGeneratesAndStoresThenHitReadsFromDisk() throws IOException {
+        PdfCacheService cache = open(10 * DOCUMENT_SIZE);
+
+        byte[] first = serve(cache, "a");
+        byte[] second = serve(cache, "a");
+
+        assertEquals(1, generated.get());
+        assertArrayEquals(document("a"), first);
+        assertArrayEquals(first, second);
+        assertEquals(1, cache.misses.count());
+        assertEquals(1, cache.hits.count());
+        assertTrue(Files.exists(dir.resolve("a.pdf")));
+    }
+
+    @Test
+    void generatorFailureLeavesNothingInTheCache() throws IOException {
+        PdfCacheService cache = open(10 * DOCUMENT_SIZE);
+        StreamingOutput failing = output -> {
+            output.write(new byte[10]);
+            throw new IOException("falha no meio");
+        };
+
+        try {
+            cache.serve("test", "a", failing).write(new ByteArrayOutputStream());
+        } catch (IOException expected) {
+            // o cliente vê a conexão encerrada
+        }
+
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+        serve(cache, "a");
+        assertEquals(1, generated.get());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedBeyondMaxSize() throws IOException {
+        PdfCacheService cache = open(2 * DOCUMENT_SIZE);
+
+        serve(cache, "a");
+        serve(cache, "b");
+        serve(cache, "a");
+        serve(cache, "c");
+
+        assertEquals(1, cache.evictions.count());
+        assertFalse(Files.exists(dir.resolve("b.pdf")));
+        assertTrue(Files.exists(dir.resolve("a.pdf")));
+        assertTrue(Files.exists(dir.resolve("c.pdf")));
+
+        serve(cache, "b");
+        assertEquals(4, generated.get());
+    }
+
+    @Test
+    void reopensTheFilesLeftByThePreviousRun() throws IOException {
+        PdfCacheService previous = open(10 * DOCUMENT_SIZE);
+        serve(previous, "a");
+        serve(previous, "b");
+        Files.setLastModifiedTime(dir.resolve("a.pdf"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(dir.resolve("b.pdf"), FileTime.fromMillis(2_000));
+        Files.write(dir.resolve("c12345.tmp"), new byte[DOCUMENT_SIZE / 2]);
+
+        generated.set(0);
+        PdfCacheService restarted = open(10 * DOCUMENT_SIZE);
+
+        assertArrayEquals(document("a"), serve(restarted, "a"));
+        assertArrayEquals(document("b"), serve(restarted, "b"));
+        assertEquals(0, generated.get());
+        assertFalse(Files.exists(dir.resolve("c12345.tmp")), "gravação pela metade deveria ser apagada");
+    }
+
+    @Test
+    void reopeningAboveMaxSizeDropsTheOldestFiles() throws IOException {
+        PdfCacheService previous = open(10 * DOCUMENT_SIZE);
+        serve(previous, "a");
+        serve(previous, "b");
+        serve(previous, "c");
+        Files.setLastModifiedTime(dir.resolve("a.pdf"), FileTime.fromMillis(3_000));
+        Files.setLastModifiedTime(dir.resolve("b.pdf"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(dir.resolve("c.pdf"), FileTime.fromMillis(2_000));
+
+        PdfCacheService restarted = open(2 * DOCUMENT_SIZE);
+
+        assertFalse(Files.exists(dir.resolve("b.pdf")));
+        assertTrue(Files.exists(dir.resolve("a.pdf")));
+        assertTrue(Files.exists(dir.resolve("c.pdf")));
+        assertEquals(1, restarted.evictions.count());
+    }
+
+    @Test
+    void keyChangesWithAnyPart() {
+        assertEquals(PdfCacheService.key("receipt", 1, 10L), PdfCacheService.key("receipt", 1, 10L));
+        assertFalse(PdfCacheService.key("receipt", 1, 10L).equals(PdfCacheService.key("receipt", 2, 10L)));
+        assertEquals(32, PdfCacheService.key("ccb", 7L).length());
+    }
+
+    private PdfCacheService open(long maxBytes) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfStreamingService streaming = new PdfStreamingService();
+        streaming.registry = registry;
+
+        PdfCacheService cache = new PdfCacheService();
+        cache.pdfStreamingService = streaming;
+        cache.registry = registry;
+        cache.enabled = true;
+        cache.dir = dir;
+        cache.maxSize = new MemorySize(BigInteger.valueOf(maxBytes));
+        cache.init();
+        return cache;
+    }
+
+    private byte[] serve(PdfCacheService cache, String key) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        cache.serve("test", key, out -> {
+            generated.incrementAndGet();
+            out.write(document(key));
+        }).write(output);
+        return output.toByteArray();
+    }
+
+    // conteúdo distinto por chave, sempre com o mesmo tamanho
+    private static byte[] document(String key) {
+        byte[] content = new byte[DOCUMENT_SIZE];
+        Arrays.fill(content, (byte) key.charAt(0));
+        return content;
+    }
+}
@@ -0,0 +1,178 @@
+package com.crediflow.service;
+
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.PixKey;
+import com.crediflow.enums.PixKeyType;
+import com.crediflow.exception.BadRequestException;
+import com.crediflow.exception.ConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * As chaves são gravadas e alteradas direto no banco, como faria outra
+ * instância da aplicação: o diretório só as vê pela busca, pela expiração ou
+ * pela confirmação que a transferência faz no banco.
+ */
+@QuarkusTest
+class PixDirectoryTest {
+
+    @Inject
+    PixDirectory directory;
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    PixKeyService pixKeyService;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    MeterRegistry registry;
+
+    Long first;
+    Long second;
+    String key;
+
+    @BeforeEach
+    void createKey() {
+        List<Long> ids = accounts.createAccounts("PIXDIR", 2);
+        first = ids.get(0);
+        second = ids.get(1);
+        key = "pix-" + UUID.randomUUID() + "@teste.com";
+        QuarkusTransaction.requiringNew().run(() -> {
+            PixKey pixKey = new PixKey();
+            pixKey.setKey(key);
+            pixKey.setKeyType(PixKeyType.EMAIL);
+            pixKey.setBankAccount(em.find(BankAccount.class, first));
+            em.persist(pixKey);
+        });
+    }
+
+    @AfterEach
+    void restoreTtl() {
+        ClientProxy.unwrap(directory).ttl = Duration.ofMinutes(10);
+    }
+
+    @Test
+    void missIsLoadedOnceAndThenServedFromMemory() {
+        double misses = lookups("miss");
+        double hits = lookups("hit");
+
+        assertEquals(first, find(key).accountId());
+        assertEquals(first, find(key).accountId());
+
+        assertEquals(misses + 1, lookups("miss"));
+        assertEquals(hits + 1, lookups("hit"));
+        assertEquals(PixKeyType.EMAIL, find(key).keyType());
+    }
+
+    @Test
+    void unknownKeyIsNotCached() {
+        String unknown = "pix-" + UUID.randomUUID();
+        double misses = lookups("miss");
+
+        assertNull(find(unknown));
+        assertNull(find(unknown));
+
+        assertEquals(misses + 2, lookups("miss"));
+    }
+
+    @Test
+    void changeMadeElsewhereIsSeenAfterTheTtl() throws InterruptedException {
+        ClientProxy.unwrap(directory).ttl = Duration.ofMillis(300);
+        assertEquals(first, find(key).accountId());
+
+        moveKeyTo(second);
+        assertEquals(first, find(key).accountId());
+
+        Thread.sleep(400);
+        assertEquals(second, find(key).accountId());
+    }
+
+    @Test
+    void pixTransferToAStaleEntryIsRefusedAndTheEntryDropped() {
+        Long payer = accounts.createAccount("PIXDIR");
+        assertEquals(first, find(key).accountId());
+        moveKeyTo(second);
+
+        assertThrows(ConflictException.class,
+                () -> transactionService.pixTransfer(payer, key, new BigDecimal("10.00"), null));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(accounts.balance(payer)));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(accounts.balance(first)));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(accounts.balance(second)));
+
+        // a entrada velha saiu: a nova tentativa já credita a conta para a qual a chave aponta
+        transactionService.pixTransfer(payer, key, new BigDecimal("10.00"), null);
+        assertEquals(0, new BigDecimal("1000.00").compareTo(accounts.balance(first)));
+        assertEquals(0, new BigDecimal("1010.00").compareTo(accounts.balance(second)));
+        assertEquals(second, find(key).accountId());
+    }
+
+    @Test
+    void pixTransferToAKeyDeletedElsewhereIsRefused() {
+        Long payer = accounts.createAccount("PIXDIR");
+        assertEquals(first, find(key).accountId());
+        QuarkusTransaction.requiringNew().run(() -> em.createQuery("delete from PixKey p where p.pixKey = :key")
+                .setParameter("key", key)
+                .executeUpdate());
+
+        assertThrows(ConflictException.class,
+                () -> transactionService.pixTransfer(payer, key, new BigDecimal("10.00"), null));
+        BadRequestException missing = assertThrows(BadRequestException.class,
+                () -> transactionService.pixTransfer(payer, key, new BigDecimal("10.00"), null));
+        assertEquals("Chave Pix não encontrada", missing.getMessage());
+        assertEquals(0, new BigDecimal("1000.00").compareTo(accounts.balance(first)));
+    }
+
+    @Test
+    void keyDeletedThroughTheServiceLeavesTheDirectory() {
+        assertEquals(first, find(key).accountId());
+        Long id = QuarkusTransaction.requiringNew().call(() -> em
+                .createQuery("select p.id from PixKey p where p.pixKey = :key", Long.class)
+                .setParameter("key", key)
+                .getSingleResult());
+
+        pixKeyService.deletePixKey(id);
+
+        assertNull(find(key));
+    }
+
+    private PixDirectory.Entry find(String pixKey) {
+        return QuarkusTransaction.requiringNew().call(() -> directory.find(pixKey));
+    }
+
+    private void moveKeyTo(Long accountId) {
+        QuarkusTransaction.requiringNew().run(() -> em
+                .createQuery("update PixKey p set p.bankAccount.id = :account where p.pixKey = :key")
+                .setParameter("account", accountId)
+                .setParameter("key", key)
+                .executeUpdate());
+    }
+
+    private double lookups(String result) {
+        Counter counter = registry.find("crediflow.pix.directory.lookups").tag("result", result).counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
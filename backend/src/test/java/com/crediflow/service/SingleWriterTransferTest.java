@@ -0,0 +1,113 @@
+package com.crediflow.service;
+
+import com.crediflow.enums.TransactionType;
+import com.crediflow.exception.BadRequestException;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Modelo single-writer no H2 em modo MySQL: consistência com o caminho com
+ * bloqueio rodando ao mesmo tempo. A comparação de vazão fica no LoadTest do
+ * módulo benchmarks.
+ */
+@QuarkusTest
+@TestProfile(SingleWriterTransferTest.SingleWriterEnabled.class)
+class SingleWriterTransferTest {
+
+    public static class SingleWriterEnabled implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("crediflow.transactions.single-writer.enabled", "true");
+        }
+    }
+
+    private static final int ACCOUNTS = 6;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 60;
+
+    @Inject
+    SingleWriterTransferService singleWriterTransferService;
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Test
+    void transfersStayConsistentWithPaymentsOnTheLockingPath() throws Exception {
+        List<Long> ids = accounts.createAccounts("SW", ACCOUNTS);
+        AtomicLong paidCents = new AtomicLong();
+
+        int completed = run(ids, (from, to, amount) -> {
+            if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                // débito por fora das filas: o saldo em memória do shard fica acima do real
+                transactionService.pay(from, amount, "pagamento", TransactionType.PAYMENT);
+                paidCents.addAndGet(amount.unscaledValue().longValueExact());
+            } else {
+                singleWriterTransferService.transfer(from, to, amount, TransactionType.TRANSFER, "single-writer");
+            }
+        });
+        assertTrue(completed > 0);
+
+        BigDecimal expected = AccountFixtures.initialTotal(ids)
+                .subtract(BigDecimal.valueOf(paidCents.get(), 2));
+        assertEquals(0, expected.compareTo(totalChecked(ids)));
+    }
+
+    @Test
+    void rejectsWhatTheLockingPathRejects() {
+        List<Long> ids = accounts.createAccounts("SW", ACCOUNTS);
+
+        assertThrows(BadRequestException.class, () -> singleWriterTransferService.transfer(ids.get(0), ids.get(1),
+                new BigDecimal("1000.01"), TransactionType.TRANSFER, "sem saldo"));
+        assertThrows(BadRequestException.class, () -> singleWriterTransferService.transfer(ids.get(0), -1L,
+                BigDecimal.TEN, TransactionType.TRANSFER, "destino inexistente"));
+        assertThrows(BadRequestException.class, () -> singleWriterTransferService.transfer(-1L, ids.get(0),
+                BigDecimal.TEN, TransactionType.TRANSFER, "origem inexistente"));
+
+        // uma transferência inválida no meio do lote não derruba as outras
+        List<CompletableFuture<?>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Long to = i == 10 ? -1L : ids.get(1);
+            results.add(singleWriterTransferService.submit(ids.get(0), to, BigDecimal.TEN, TransactionType.TRANSFER,
+                    "lote").toCompletableFuture());
+        }
+        long failed = results.stream().filter(result -> {
+            try {
+                result.join();
+                return false;
+            } catch (CompletionException e) {
+                return true;
+            }
+        }).count();
+        assertEquals(1, failed);
+        assertEquals(0, new BigDecimal("810.00").compareTo(accounts.balance(ids.get(0))));
+        assertEquals(0, AccountFixtures.initialTotal(ids).compareTo(totalChecked(ids)));
+    }
+
+    private int run(List<Long> ids, AccountFixtures.TransferCall transfer) throws InterruptedException {
+        return accounts.randomTransfers(ids, THREADS, TRANSFERS_PER_THREAD, transfer);
+    }
+
+    private BigDecimal totalChecked(List<Long> ids) {
+        accounts.assertClosingMatchesBalance(ids);
+        return accounts.total(ids);
+    }
+}
@@ -0,0 +1,93 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.StatementLineDTO;
+import com.crediflow.enums.StatementFormat;
+import com.crediflow.enums.TransactionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * O extrato parte do saldo gravado no banco e termina no saldo atual da
+ * conta, inclusive numa conta quente cujo {@code bank_accounts} ainda não
+ * recebeu o flush.
+ */
+@QuarkusTest
+@TestProfile(HotAccountLedgerTest.ManualFlush.class)
+class StatementServiceTest {
+
+    @Inject
+    StatementService statementService;
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    HotAccountLedger ledger;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Test
+    void statementEndsAtTheCurrentBalance() throws IOException {
+        List<Long> ids = accounts.createAccounts("STMT", 2);
+        transfer(ids.get(0), ids.get(1), "100.00");
+        transfer(ids.get(1), ids.get(0), "40.00");
+
+        List<StatementLineDTO> lines = statement(ids.get(0));
+
+        assertEquals(2, lines.size());
+        assertEquals(0, new BigDecimal("900.00").compareTo(lines.get(0).balance));
+        assertEquals(0, new BigDecimal("940.00").compareTo(lines.get(1).balance));
+        assertEquals(0, accounts.balance(ids.get(0)).compareTo(lines.get(1).balance));
+    }
+
+    @Test
+    void hotAccountStartsFromItsCheckpoint() throws IOException {
+        List<Long> ids = accounts.createAccounts("STMT", 2);
+        Long hot = ids.get(0);
+        transfer(hot, ids.get(1), "100.00");
+        QuarkusTransaction.requiringNew().run(() -> ledger.recover(List.of(hot)));
+        ledger.flush();
+
+        // depois do checkpoint: só no ledger e em transactions, bank_accounts segue em 900
+        transfer(ids.get(1), hot, "25.00");
+        transfer(hot, ids.get(1), "5.00");
+        assertEquals(0, new BigDecimal("900.00").compareTo(accounts.balance(hot)));
+
+        List<StatementLineDTO> lines = statement(hot);
+
+        assertEquals(3, lines.size());
+        assertEquals(0, new BigDecimal("900.00").compareTo(lines.get(0).balance));
+        assertEquals(0, new BigDecimal("920.00").compareTo(lines.get(2).balance));
+    }
+
+    private void transfer(Long from, Long to, String amount) {
+        transactionService.transfer(from, to, new BigDecimal(amount), TransactionType.TRANSFER, "extrato");
+    }
+
+    private List<StatementLineDTO> statement(Long id) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statementService.export(id, StatementFormat.JSONL).write(out);
+        List<StatementLineDTO> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(mapper.readValue(line, StatementLineDTO.class));
+        }
+        return lines;
+    }
+}
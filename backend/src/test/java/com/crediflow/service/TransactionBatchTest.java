@@ -0,0 +1,154 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.BatchTransferLegDTO;
+import com.crediflow.dto.BatchTransferResultDTO;
+import com.crediflow.repository.TransactionRepository;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lote de transferências: cada perna é aceita ou rejeitada por conta própria,
+ * e as linhas de {@code transactions} saem em lotes JDBC.
+ */
+@QuarkusTest
+class TransactionBatchTest {
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    TransactionRepository transactionRepository;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @AfterEach
+    void restoreLimit() {
+        ClientProxy.unwrap(transactionService).batchMaxLegs = 10000;
+    }
+
+    @Test
+    void invalidLegsAreRejectedWithoutStoppingTheOthers() {
+        List<Long> ids = accounts.createAccounts("BATCH", 2);
+        Long a = ids.get(0);
+        Long b = ids.get(1);
+
+        JsonPath result = post(List.of(
+                leg(a, b, "600.00"),
+                leg(a, b, "600.00"),
+                leg(b, a, "100.00"),
+                leg(a, a, "1.00"),
+                leg(a, null, "1.00"),
+                leg(a, b, "abc"),
+                leg(a, b, "-5.00"),
+                leg(a, -1L, "1.00")))
+                .then().statusCode(200)
+                .extract().jsonPath();
+
+        assertEquals(8, result.getInt("total"));
+        assertEquals(2, result.getInt("completed"));
+        assertEquals(6, result.getInt("rejected"));
+        assertEquals(List.of("COMPLETED", "REJECTED", "COMPLETED", "REJECTED", "REJECTED", "REJECTED", "REJECTED",
+                "REJECTED"), result.getList("legs.status"));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7), result.getList("legs.index"));
+        assertEquals("Saldo insuficiente", result.getString("legs[1].error"));
+        assertEquals("Conta de origem e destino iguais", result.getString("legs[3].error"));
+        assertEquals("Conta de origem ou destino inválida", result.getString("legs[4].error"));
+        assertEquals("Valor inválido", result.getString("legs[5].error"));
+        assertEquals("O valor da transação deve ser positivo", result.getString("legs[6].error"));
+        assertEquals("Conta de origem ou destino inválida", result.getString("legs[7].error"));
+        assertNull(result.get("legs[1].transactionId"));
+
+        Long first = result.getLong("legs[0].transactionId");
+        Long third = result.getLong("legs[2].transactionId");
+        assertEquals(a, transactionService.getById(first).getFromAccount().getId());
+        assertEquals(b, transactionService.getById(third).getFromAccount().getId());
+        assertEquals(0, new BigDecimal("500.00").compareTo(accounts.balance(a)));
+        assertEquals(0, new BigDecimal("1500.00").compareTo(accounts.balance(b)));
+        assertEquals(2, accounts.countTransactionsFrom(ids));
+    }
+
+    @Test
+    void emptyBatchAndBatchAboveTheLimitAreRejected() {
+        List<Long> ids = accounts.createAccounts("BATCH", 2);
+        ClientProxy.unwrap(transactionService).batchMaxLegs = 3;
+
+        post(List.of()).then().statusCode(400);
+        List<Map<String, Object>> legs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            legs.add(leg(ids.get(0), ids.get(1), "1.00"));
+        }
+        post(legs).then().statusCode(400);
+        post(legs.subList(0, 3)).then().statusCode(200);
+
+        assertEquals(3, accounts.countTransactionsFrom(ids));
+    }
+
+    @Test
+    void insertsAreSentInJdbcBatches() {
+        List<Long> ids = accounts.createAccounts("BATCH", 2);
+        long small = statementsFor(ids, 10);
+        long large = statementsFor(ids, 200);
+
+        // sem lote seriam ao menos 200 INSERTs; com lotes de 50 o custo quase não cresce
+        assertTrue(large < small + 20, "statements: " + small + " para 10, " + large + " para 200");
+        assertEquals(210, accounts.countTransactionsFrom(ids));
+    }
+
+    private long statementsFor(List<Long> ids, int count) {
+        List<BatchTransferLegDTO> legs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BatchTransferLegDTO leg = new BatchTransferLegDTO();
+            leg.fromAccountId = ids.get(i % 2);
+            leg.toAccountId = ids.get((i + 1) % 2);
+            leg.amount = "1.00";
+            legs.add(leg);
+        }
+        Statistics statistics = sessionFactory.getStatistics();
+        return QuarkusTransaction.requiringNew().call(() -> {
+            statistics.clear();
+            BatchTransferResultDTO result = transactionService.transferBatch(legs);
+            assertEquals(count, result.completed);
+            result.legs.forEach(leg -> assertNotNull(leg.transactionId));
+            return statistics.getPrepareStatementCount();
+        });
+    }
+
+    private static Map<String, Object> leg(Long from, Long to, String amount) {
+        Map<String, Object> leg = new HashMap<>();
+        leg.put("fromAccountId", from);
+        leg.put("toAccountId", to);
+        leg.put("amount", amount);
+        return leg;
+    }
+
+    private static Response post(List<Map<String, Object>> legs) {
+        return given().contentType(ContentType.JSON)
+                .body(Map.of("legs", legs))
+                .post("/transactions/batch");
+    }
+}
@@ -0,0 +1,39 @@
+package com.crediflow.service;
+
+import com.crediflow.enums.TransactionType;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class TransactionServiceStressTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 150;
+
+    @Inject
+    TransactionService transactionService;
+
+    @Inject
+    AccountFixtures accounts;
+
+    @Test
+    void concurrentTransfersBetweenHotAccountsConserveTotalBalance() throws Exception {
+        List<Long> ids = accounts.createAccounts("STRESS", ACCOUNTS);
+
+        int completed = accounts.randomTransfers(ids, THREADS, TRANSFERS_PER_THREAD, (from, to, amount) ->
+                transactionService.transfer(from, to, amount, TransactionType.TRANSFER, "stress"));
+        assertTrue(completed > 0);
+
+        BigDecimal total = accounts.total(ids);
+        BigDecimal expected = AccountFixtures.initialTotal(ids);
+        assertEquals(0, expected.compareTo(total), "saldo total esperado " + expected + ", obtido " + total);
+    }
+}
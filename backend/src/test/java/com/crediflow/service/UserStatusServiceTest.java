@@ -0,0 +1,201 @@
+package com.crediflow.service;
+
+import com.crediflow.dto.CustomerResponseDTO;
+import com.crediflow.entity.Customer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Status dos usuários contra o Keycloak em memória
+ * ({@link KeycloakAdminServiceStub}); cada teste cria os próprios usuários,
+ * então o cache compartilhado começa sem eles.
+ */
+@QuarkusTest
+class UserStatusServiceTest {
+
+    @Inject
+    UserStatusService userStatusService;
+
+    @Inject
+    CustomerService customerService;
+
+    @Inject
+    KeycloakAdminServiceStub keycloak;
+
+    @Inject
+    LoanFixtures loans;
+
+    @Inject
+    @CacheName(UserStatusService.CACHE_NAME)
+    Cache cache;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    MeterRegistry registry;
+
+    @AfterEach
+    void restoreStub() {
+        keycloak.slowStatusLookups(0);
+        keycloak.failNext(0);
+    }
+
+    @Test
+    void pageIsLookedUpOnceAndThenServedFromTheCache() {
+        List<String> ids = users(6);
+        keycloak.setUserEnabled(ids.get(2), false);
+        double lookups = count("crediflow.keycloak.user-status.lookups");
+
+        List<String> page = new ArrayList<>(ids);
+        // repetidos e nulos não viram consultas
+        page.add(ids.get(0));
+        page.add(null);
+        Map<String, Boolean> status = userStatusService.statusOf(page);
+
+        assertEquals(6, status.size());
+        assertFalse(status.get(ids.get(2)));
+        assertTrue(status.get(ids.get(0)));
+        assertEquals(lookups + 6, count("crediflow.keycloak.user-status.lookups"));
+
+        assertEquals(status, userStatusService.statusOf(ids));
+        assertFalse(userStatusService.isEnabled(ids.get(2)));
+        assertEquals(lookups + 6, count("crediflow.keycloak.user-status.lookups"));
+    }
+
+    @Test
+    void lookupsRunInParallelUpToTheLimit() {
+        List<String> ids = users(24);
+        keycloak.slowStatusLookups(100);
+
+        long start = System.nanoTime();
+        assertEquals(24, userStatusService.statusOf(ids).size());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // max-concurrency = 8: três levas de 100 ms, e não 24 consultas em fila
+        assertEquals(8, keycloak.peakStatusLookups());
+        assertTrue(elapsedMillis < 24 * 100 / 2, "statusOf levou " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void failedLookupIsLeftOutAndRetriedLater() {
+        List<String> ids = users(1);
+        keycloak.setUserEnabled(ids.get(0), false);
+        double failures = count("crediflow.keycloak.user-status.lookup.failures");
+
+        keycloak.failNext(2);
+        assertTrue(userStatusService.statusOf(ids).isEmpty());
+        // sem resposta do Keycloak o usuário não aparece como bloqueado
+        assertTrue(userStatusService.isEnabled(ids.get(0)));
+        assertEquals(failures + 2, count("crediflow.keycloak.user-status.lookup.failures"));
+
+        // a falha não ficou no cache
+        assertFalse(userStatusService.isEnabled(ids.get(0)));
+    }
+
+    @Test
+    void concurrentPagesShareOneLookup() {
+        List<String> ids = users(1);
+        keycloak.slowStatusLookups(200);
+        double lookups = count("crediflow.keycloak.user-status.lookups");
+
+        CompletableFuture<Map<String, Boolean>> first = CompletableFuture.supplyAsync(() -> userStatusService.statusOf(ids));
+        CompletableFuture<Map<String, Boolean>> second = CompletableFuture.supplyAsync(() -> userStatusService.statusOf(ids));
+
+        assertEquals(Map.of(ids.get(0), true), first.join());
+        assertEquals(Map.of(ids.get(0), true), second.join());
+        assertEquals(lookups + 1, count("crediflow.keycloak.user-status.lookups"));
+    }
+
+    @Test
+    void invalidationDuringALookupIsNotOverwritten() throws InterruptedException {
+        List<String> ids = users(1);
+        keycloak.slowStatusLookups(300);
+
+        CompletableFuture<Map<String, Boolean>> page = CompletableFuture.supplyAsync(() -> userStatusService.statusOf(ids));
+        while (keycloak.peakStatusLookups() == 0) {
+            Thread.sleep(10);
+        }
+        // o que o KeycloakAdminService faz ao alterar o usuário com a consulta ainda em andamento
+        keycloak.setUserEnabled(ids.get(0), false);
+        cache.invalidate(ids.get(0)).await().indefinitely();
+
+        // a página já tinha começado e mostra o status anterior, mas não o deixa no cache
+        assertTrue(page.join().get(ids.get(0)));
+        keycloak.slowStatusLookups(0);
+        assertFalse(userStatusService.isEnabled(ids.get(0)));
+    }
+
+    @Test
+    void customerListUsesOneBatchedLookup() {
+        List<String> ids = users(3);
+        keycloak.setUserEnabled(ids.get(1), false);
+        Long companyId = loans.createCompany("empresa-" + UUID.randomUUID());
+        List<Long> customerIds = new ArrayList<>();
+        for (String id : ids) {
+            customerIds.add(loans.createCustomer(companyId, id, new BigDecimal("5000.00")));
+        }
+        // cliente sem usuário no Keycloak
+        customerIds.add(loans.createCustomer(companyId));
+        double lookups = count("crediflow.keycloak.user-status.lookups");
+
+        Map<Long, Boolean> enabled = enabledByCustomer(customerIds);
+
+        assertEquals(Map.of(customerIds.get(0), true, customerIds.get(1), false, customerIds.get(2), true,
+                customerIds.get(3), true), enabled);
+        assertEquals(lookups + 3, count("crediflow.keycloak.user-status.lookups"));
+
+        enabledByCustomer(customerIds);
+        assertEquals(lookups + 3, count("crediflow.keycloak.user-status.lookups"));
+    }
+
+    private Map<Long, Boolean> enabledByCustomer(List<Long> customerIds) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            List<Customer> customers = em
+                    .createQuery("from Customer c where c.id in :ids order by c.id", Customer.class)
+                    .setParameter("ids", customerIds)
+                    .getResultList();
+            Map<Long, Boolean> enabled = new HashMap<>();
+            for (CustomerResponseDTO dto : customerService.toDTOs(customers)) {
+                enabled.put(dto.id, dto.enabled);
+            }
+            return enabled;
+        });
+    }
+
+    private List<String> users(int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            String username = "status-" + UUID.randomUUID();
+            ids[i] = keycloak.createUserAndReturnId(Map.of("username", username, "email", username + "@teste.com"),
+                    "client");
+        }
+        return Arrays.asList(ids);
+    }
+
+    private double count(String name) {
+        Counter counter = registry.find(name).counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
@@ -0,0 +1,65 @@
+package com.crediflow.util;
+
+import com.crediflow.dto.LoanInstallmentDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AmortizationEngineTest {
+
+    private static final LocalDate FIRST_DUE = LocalDate.of(2025, 1, 31);
+
+    @Test
+    void sacAmortizesExactlyTheFinancedAmount() {
+        for (int months = 1; months <= 96; months++) {
+            AmortizationEngine.Result result = AmortizationEngine.sac(new BigDecimal("10000.01"),
+                    new BigDecimal("0.0189"), months, FIRST_DUE, true);
+
+            BigDecimal principal = BigDecimal.ZERO;
+            BigDecimal total = BigDecimal.ZERO;
+            for (LoanInstallmentDTO installment : result.installments()) {
+                principal = principal.add(installment.principal);
+                total = total.add(installment.value);
+            }
+            LoanInstallmentDTO last = result.installments().get(months - 1);
+
+            assertEquals(new BigDecimal("10000.01"), principal);
+            assertEquals(result.totalPayment(), total);
+            assertEquals(result.installments().get(0).value, result.installmentValue());
+            assertEquals(0, last.balance.signum());
+        }
+    }
+
+    @Test
+    void summaryMatchesFullScheduleWithoutBuildingIt() {
+        AmortizationEngine.Result full = AmortizationEngine.price(new BigDecimal("1234.56"), false,
+                new BigDecimal("0.025"), 48, FIRST_DUE, true);
+        AmortizationEngine.Result summary = AmortizationEngine.price(new BigDecimal("1234.56"), false,
+                new BigDecimal("0.025"), 48, FIRST_DUE, false);
+
+        assertNull(summary.installments());
+        assertEquals(full.installmentValue(), summary.installmentValue());
+        assertEquals(full.totalPayment(), summary.totalPayment());
+        assertEquals(full.financedAmount(), summary.financedAmount());
+    }
+
+    @Test
+    void centsPathMatchesDecimalPathWhenValuesExceedTwoDecimals() {
+        // 1000.010 (três casas) segue pelo caminho em BigDecimal; 1000.01 pelo de centavos
+        AmortizationEngine.Result decimal = AmortizationEngine.price(new BigDecimal("1000.010"), false,
+                new BigDecimal("0.0149"), 36, FIRST_DUE, true);
+        AmortizationEngine.Result cents = AmortizationEngine.price(new BigDecimal("1000.01"), false,
+                new BigDecimal("0.0149"), 36, FIRST_DUE, true);
+
+        assertEquals(decimal.installmentValue(), cents.installmentValue());
+        assertEquals(decimal.totalPayment(), cents.totalPayment());
+        for (int i = 0; i < 36; i++) {
+            assertEquals(decimal.installments().get(i).interest, cents.installments().get(i).interest);
+            assertEquals(decimal.installments().get(i).balance, cents.installments().get(i).balance);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.crediflow.util;
+
+import com.crediflow.dto.LoanProposalRequestDTO;
+import com.crediflow.dto.LoanSimulationResultDTO;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Garante que a simulação PRICE produz exatamente o mesmo JSON que a
+ * implementação original em BigDecimal, para todos os prazos de 1 a 96 meses.
+ *
+ * O arquivo {@code golden/loan-simulation-price.sha256} guarda, por modo e
+ * prazo, o SHA-256 do JSON de todas as combinações de taxa e valor abaixo. Foi
+ * gerado com a implementação original; para regerar, rode com
+ * {@code -Dgolden.update=true}.
+ */
+class LoanSimulationGoldenTest {
+
+    private static final String GOLDEN = "golden/loan-simulation-price.sha256";
+
+    private static final List<String> RATES = List.of(
+            "0", "0.0099", "0.0149", "0.0189", "0.025", "0.035", "0.05", "0.01234", "0.1");
+
+    private static final Map<String, List<String>> AMOUNTS = Map.of(
+            "VALOR_FINANCIADO", List.of("1000", "1234.56", "50000.01", "250000.00", "0.01", "1000.005"),
+            "VALOR_PARCELA", List.of("100", "333.33", "1999.99", "0.01", "99.999"));
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .build();
+
+    @Test
+    void priceScheduleMatchesOriginalImplementationForAllTerms() throws Exception {
+        Map<String, String> actual = digests();
+
+        if (Boolean.getBoolean("golden.update")) {
+            StringBuilder content = new StringBuilder();
+            actual.forEach((key, hash) -> content.append(key).append(' ').append(hash).append('\n'));
+            Files.writeString(Path.of("src/test/resources", GOLDEN), content);
+            return;
+        }
+
+        Map<String, String> expected = readGolden();
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((key, hash) -> assertEquals(hash, actual.get(key), "simulação divergente em " + key));
+    }
+
+    private static Map<String, String> digests() throws Exception {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String mode : List.of("VALOR_FINANCIADO", "VALOR_PARCELA")) {
+            for (int term = 1; term <= 96; term++) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (String rate : RATES) {
+                    for (String amount : AMOUNTS.get(mode)) {
+                        LoanSimulationResultDTO simulation = LoanSimulationUtil.simulate(
+                                request(mode, term, rate, amount));
+                        simulation.disbursementDate = null; // depende do dia da execução
+                        digest.update(MAPPER.writeValueAsBytes(simulation));
+                        digest.update((byte) '\n');
+                    }
+                }
+                result.put(mode + " " + term, HexFormat.of().formatHex(digest.digest()));
+            }
+        }
+        return result;
+    }
+
+    private static LoanProposalRequestDTO request(String mode, int term, String rate, String amount) {
+        LoanProposalRequestDTO dto = new LoanProposalRequestDTO();
+        dto.modoSimulacao = mode;
+        dto.termInMonths = term;
+        dto.monthlyInterestRate = new BigDecimal(rate);
+        dto.requestedAmount = new BigDecimal(amount);
+        dto.firstInstallmentDate = LocalDate.of(2025, 1, 31);
+        return dto;
+    }
+
+    private static Map<String, String> readGolden() throws IOException {
+        Map<String, String> golden = new LinkedHashMap<>();
+        try (InputStream in = LoanSimulationGoldenTest.class.getClassLoader().getResourceAsStream(GOLDEN)) {
+            assertNotNull(in, "arquivo golden ausente: " + GOLDEN);
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int split = line.lastIndexOf(' ');
+                golden.put(line.substring(0, split), line.substring(split + 1));
+            }
+        }
+        return golden;
+    }
+}
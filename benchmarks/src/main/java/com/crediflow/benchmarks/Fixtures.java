@@ -0,0 +1,154 @@
+package com.crediflow.benchmarks;
+
+import com.crediflow.dto.LoanInstallmentDTO;
+import com.crediflow.dto.LoanProposalRequestDTO;
+import com.crediflow.dto.LoanSimulationResultDTO;
+import com.crediflow.entity.BankAccount;
+import com.crediflow.entity.Company;
+import com.crediflow.entity.Customer;
+import com.crediflow.entity.LoanInstallment;
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.entity.PixKey;
+import com.crediflow.entity.Transaction;
+import com.crediflow.enums.LoanProposalStatus;
+import com.crediflow.enums.PixKeyType;
+import com.crediflow.enums.TransactionStatus;
+import com.crediflow.enums.TransactionType;
+import com.crediflow.util.LoanSimulationUtil;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Objetos montados em memória, no formato que o Hibernate entregaria, para
+ * os benchmarks rodarem sem banco.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static LoanProposalRequestDTO simulationRequest(String mode, int term) {
+        LoanProposalRequestDTO dto = new LoanProposalRequestDTO();
+        dto.customerId = 1L;
+        dto.companyId = 1L;
+        dto.modoSimulacao = mode;
+        dto.termInMonths = term;
+        dto.requestedAmount = "VALOR_PARCELA".equals(mode) ? new BigDecimal("450.00") : new BigDecimal("15000.00");
+        dto.availableLimit = new BigDecimal("100000.00");
+        dto.monthlyInterestRate = new BigDecimal("0.0189");
+        dto.convenioType = "Prefeitura";
+        dto.firstInstallmentDate = LocalDate.of(2025, 2, 10);
+        return dto;
+    }
+
+    static LoanProposal proposal(int installments) {
+        BankAccount account = new BankAccount();
+        account.setId(10L);
+        account.setAccountNumber("00012345");
+        account.setAgencyNumber("0001");
+        account.setBalance(new BigDecimal("1500.00"));
+
+        PixKey pixKey = new PixKey();
+        pixKey.setId(100L);
+        pixKey.setKey("12345678901");
+        pixKey.setKeyType(PixKeyType.CPF);
+        account.setPixKeys(new ArrayList<>(List.of(pixKey)));
+
+        Company company = new Company();
+        company.setName("Prefeitura Municipal de Exemplo");
+
+        Customer customer = new Customer();
+        customer.setId(3L);
+        customer.setName("Maria da Silva");
+        customer.setCpf("12345678901");
+        customer.setEmail("maria@example.com");
+        customer.setPhone("85999990000");
+        customer.setBirthDate(LocalDate.of(1985, 6, 15));
+        customer.setOccupation("Professora");
+        customer.setSalary(new BigDecimal("5200.00"));
+        customer.setCountry("Brasil");
+        customer.setStreet("Rua das Flores");
+        customer.setStreetNumber(123);
+        customer.setNeighborhood("Centro");
+        customer.setCity("Fortaleza");
+        customer.setState("CE");
+        customer.setZipCode("60000000");
+        customer.setCompany(company);
+        customer.setVirtualAccount(account);
+        account.setCustomer(customer);
+
+        LoanSimulationResultDTO simulation = LoanSimulationUtil.simulate(simulationRequest("VALOR_FINANCIADO",
+                installments));
+
+        LoanProposal proposal = new LoanProposal();
+        proposal.setId(42L);
+        proposal.setCustomer(customer);
+        proposal.setCompany(company);
+        proposal.setStatus(LoanProposalStatus.SIMULATED);
+        proposal.setRequestedAmount(new BigDecimal("15000.00"));
+        proposal.setAvailableLimit(new BigDecimal("100000.00"));
+        proposal.setTermInMonths(installments);
+        proposal.setConvenioType("Prefeitura");
+        proposal.setInstallmentValue(simulation.installmentValue);
+        proposal.setTotalPayment(simulation.totalPayment);
+        proposal.setFinancedAmount(simulation.financedAmount);
+        proposal.setMonthlyRate(simulation.monthlyRate);
+        proposal.setFirstInstallmentDate(simulation.firstInstallmentDate);
+        proposal.setLastInstallmentDate(simulation.lastInstallmentDate);
+        proposal.setNumberOfInstallments(installments);
+        proposal.setIofTotal(simulation.iofTotal);
+        proposal.setEffectiveMonthlyRate(simulation.effectiveMonthlyRate);
+        proposal.setEffectiveAnnualRate(simulation.effectiveAnnualRate);
+        proposal.setContractedAnnualRate(simulation.contractedAnnualRate);
+        proposal.setProductType(simulation.productType);
+        proposal.setFund(simulation.fund);
+        proposal.setInstallmentType(simulation.installmentType);
+        proposal.setAmortizationType(simulation.amortizationType);
+        proposal.setInterestComposition(simulation.interestComposition);
+        proposal.setDisbursementValue(simulation.disbursementValue);
+        proposal.setDisbursementDate(LocalDate.of(2025, 1, 10));
+        proposal.setCcb("CCB-BENCH-0001");
+        proposal.setCreatedAt(LocalDateTime.of(2025, 1, 10, 9, 30));
+        proposal.setUpdatedAt(LocalDateTime.of(2025, 1, 10, 9, 30));
+
+        List<LoanInstallment> entities = new ArrayList<>(installments);
+        long id = 1000;
+        for (LoanInstallmentDTO dto : simulation.installments) {
+            LoanInstallment installment = new LoanInstallment();
+            installment.setId(id++);
+            installment.setProposal(proposal);
+            installment.setNumber(dto.number);
+            installment.setValue(dto.value);
+            installment.setDueDate(dto.dueDate);
+            installment.setInterest(dto.interest);
+            installment.setPrincipal(dto.principal);
+            installment.setBalance(dto.balance);
+            installment.setStatus("PENDENTE");
+            entities.add(installment);
+        }
+        proposal.setInstallments(entities);
+        return proposal;
+    }
+
+    static Transaction transaction() {
+        BankAccount from = new BankAccount();
+        from.setId(1L);
+        BankAccount to = new BankAccount();
+        to.setId(2L);
+
+        Transaction tx = new Transaction();
+        tx.setId(987654L);
+        tx.setFromAccount(from);
+        tx.setToAccount(to);
+        tx.setAmount(new BigDecimal("1234.56"));
+        tx.setType(TransactionType.PIX);
+        tx.setStatus(TransactionStatus.COMPLETED);
+        tx.setDescription("Pagamento de teste");
+        tx.setCreatedAt(LocalDateTime.of(2025, 1, 10, 9, 30));
+        return tx;
+    }
+}
@@ -0,0 +1,207 @@
+package com.crediflow.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de carga em malha fechada contra um backend já rodando: {@code concurrency}
+ * clientes fazem requisições sem pausa durante {@code duration} (depois de um
+ * aquecimento que não entra na conta) e no fim são impressos vazão, erros e
+ * percentis de latência.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.crediflow.benchmarks.LoadTest \
+ *     --url http://localhost:8082/bank-accounts/1/balance --concurrency 200 --duration 30s --label virtual
+ * </pre>
+ *
+ * Vários {@code --url} são usados em rodízio. {@code --token} envia um Bearer
+ * token; {@code --method} e {@code --body} permitem POST/PUT com JSON. Com vários
+ * {@code --body} cada URL é chamada com cada corpo, também em rodízio.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        List<HttpRequest> requests = options.requests();
+
+        System.out.printf("%s: %d clientes, aquecimento %ds, medição %ds, %s%n", options.label, options.concurrency,
+                options.warmup.toSeconds(), options.duration.toSeconds(), options.urls);
+        run(client, requests, options.concurrency, options.warmup, null);
+
+        Recorder recorder = new Recorder();
+        long elapsed = run(client, requests, options.concurrency, options.duration, recorder);
+        recorder.print(options.label, elapsed);
+    }
+
+    /**
+     * Dispara os clientes por {@code duration} e devolve o tempo real medido em nanos.
+     */
+    private static long run(HttpClient client, List<HttpRequest> requests, int concurrency, Duration duration,
+            Recorder recorder) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        AtomicInteger next = new AtomicInteger();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                clients.execute(() -> {
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = requests.get(Math.floorMod(next.getAndIncrement(), requests.size()));
+                        long sent = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        if (recorder != null) {
+                            recorder.record(System.nanoTime() - sent, status);
+                        }
+                    }
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static final class Recorder {
+        private final List<long[]> chunks = new ArrayList<>();
+        private final ThreadLocal<long[]> current = new ThreadLocal<>();
+        private final ThreadLocal<int[]> position = ThreadLocal.withInitial(() -> new int[1]);
+        private final AtomicLong errors = new AtomicLong();
+        private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+        void record(long nanos, int status) {
+            statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+            if (status < 200 || status >= 400) {
+                errors.incrementAndGet();
+            }
+            long[] chunk = current.get();
+            int[] pos = position.get();
+            if (chunk == null || pos[0] == chunk.length) {
+                chunk = new long[8192];
+                pos[0] = 0;
+                current.set(chunk);
+                synchronized (chunks) {
+                    chunks.add(chunk);
+                }
+            }
+            chunk[pos[0]++] = nanos;
+        }
+
+        void print(String label, long elapsedNanos) {
+            long[] all;
+            synchronized (chunks) {
+                all = chunks.stream().flatMapToLong(Arrays::stream).filter(n -> n > 0).sorted().toArray();
+            }
+            double seconds = elapsedNanos / 1e9;
+            Map<Integer, Long> byStatus = new LinkedHashMap<>();
+            statuses.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> byStatus.put(e.getKey(), e.getValue().get()));
+
+            System.out.printf("%s: %d requisições em %.1fs = %.1f req/s, erros %d, status %s%n", label, all.length,
+                    seconds, all.length / seconds, errors.get(), byStatus);
+            System.out.printf("%s: latência ms p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", label,
+                    percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9),
+                    all.length > 0 ? all[all.length - 1] / 1e6 : 0);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+
+    private static final class Options {
+        final List<String> urls = new ArrayList<>();
+        int concurrency = 100;
+        Duration duration = Duration.ofSeconds(30);
+        Duration warmup = Duration.ofSeconds(10);
+        String label = "carga";
+        String token;
+        String method = "GET";
+        final List<String> bodies = new ArrayList<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--url" -> options.urls.add(value);
+                    case "--concurrency" -> options.concurrency = Integer.parseInt(value);
+                    case "--duration" -> options.duration = seconds(value);
+                    case "--warmup" -> options.warmup = seconds(value);
+                    case "--label" -> options.label = value;
+                    case "--token" -> options.token = value;
+                    case "--method" -> options.method = value.toUpperCase();
+                    case "--body" -> options.bodies.add(value);
+                    default -> throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+                }
+                i++;
+            }
+            if (options.urls.isEmpty()) {
+                throw new IllegalArgumentException("Informe ao menos um --url");
+            }
+            return options;
+        }
+
+        private static Duration seconds(String value) {
+            return Duration.ofSeconds(Long.parseLong(value.endsWith("s") ? value.substring(0, value.length() - 1)
+                    : value));
+        }
+
+        List<HttpRequest> requests() {
+            List<HttpRequest> requests = new ArrayList<>();
+            for (String url : urls) {
+                if (bodies.isEmpty()) {
+                    requests.add(request(url, null));
+                }
+                for (String body : bodies) {
+                    requests.add(request(url, body));
+                }
+            }
+            return requests;
+        }
+
+        HttpRequest request(String url, String body) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Accept", "application/json");
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            if (body != null) {
+                builder.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofString(body));
+            } else {
+                builder.method(method, HttpRequest.BodyPublishers.noBody());
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.crediflow.benchmarks;
+
+import com.crediflow.dto.LoanProposalResponseDTO;
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.service.LoanProposalService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code LoanProposalService.toDTO}: conversão da proposta e das parcelas para a resposta da API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanProposalMappingBenchmark {
+
+    @Param({ "12", "48", "96" })
+    int installments;
+
+    // toDTO não usa nenhuma dependência injetada
+    LoanProposalService service;
+    LoanProposal proposal;
+
+    @Setup
+    public void setup() {
+        service = new LoanProposalService();
+        proposal = Fixtures.proposal(installments);
+    }
+
+    @Benchmark
+    public LoanProposalResponseDTO toDTO() {
+        return service.toDTO(proposal);
+    }
+}
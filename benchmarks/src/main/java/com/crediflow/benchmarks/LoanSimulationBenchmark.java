@@ -0,0 +1,53 @@
+package com.crediflow.benchmarks;
+
+import com.crediflow.dto.LoanProposalRequestDTO;
+import com.crediflow.dto.LoanSimulationResultDTO;
+import com.crediflow.util.LoanSimulationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code LoanSimulationUtil.simulate} com cronograma completo e só com os totais.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanSimulationBenchmark {
+
+    @Param({ "12", "48", "96" })
+    int term;
+
+    @Param({ "VALOR_FINANCIADO", "VALOR_PARCELA" })
+    String mode;
+
+    LoanProposalRequestDTO request;
+
+    @Setup
+    public void setup() {
+        request = Fixtures.simulationRequest(mode, term);
+    }
+
+    @Benchmark
+    public LoanSimulationResultDTO fullSchedule() {
+        return LoanSimulationUtil.simulate(request, true);
+    }
+
+    @Benchmark
+    public LoanSimulationResultDTO summaryOnly() {
+        return LoanSimulationUtil.simulate(request, false);
+    }
+}
@@ -0,0 +1,73 @@
+package com.crediflow.benchmarks;
+
+import com.crediflow.entity.LoanProposal;
+import com.crediflow.entity.Transaction;
+import com.crediflow.enums.CCBVariant;
+import com.crediflow.service.CCBService;
+import com.crediflow.service.TransactionPDFService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geração dos PDFs da CCB (rascunho, assinada e detalhes) e do comprovante de transação.
+ * Os PDFs são escritos num stream descartável, como na resposta HTTP, que
+ * recebe os bytes sem acumular o documento.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfBenchmark {
+
+    private static final OutputStream OUT = OutputStream.nullOutputStream();
+
+    @Param({ "12", "48", "96" })
+    int installments;
+
+    CCBService ccbService;
+    TransactionPDFService transactionPDFService;
+    LoanProposal proposal;
+    Transaction transaction;
+
+    @Setup
+    public void setup() {
+        ccbService = new CCBService();
+        transactionPDFService = new TransactionPDFService();
+        proposal = Fixtures.proposal(installments);
+        transaction = Fixtures.transaction();
+    }
+
+    @Benchmark
+    public void ccbDraft() {
+        ccbService.render(proposal, CCBVariant.DRAFT, OUT);
+    }
+
+    @Benchmark
+    public void ccbSigned() {
+        ccbService.render(proposal, CCBVariant.SIGNED, OUT);
+    }
+
+    @Benchmark
+    public void ccbDetails() {
+        ccbService.render(proposal, CCBVariant.DETAILS, OUT);
+    }
+
+    @Benchmark
+    public void transactionReceipt() {
+        transactionPDFService.write(transaction, OUT);
+    }
+}
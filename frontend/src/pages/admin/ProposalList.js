@@ -77,6 +77,18 @@ const ProposalList = () => {
 
 
 
+  // a listagem vem sem o cronograma; as parcelas são buscadas ao abrir os detalhes
+  const openDetails = async (proposal) => {
+    setSelectedProposal(proposal);
+    setModalOpen(true);
+    try {
+      const details = await api.get(`/loan-proposals/${proposal.id}`);
+      setSelectedProposal((prev) => (prev?.id === details.id ? { ...prev, ...details } : prev));
+    } catch (error) {
+      showSnackbar("Erro ao carregar parcelas: " + error.message, "error");
+    }
+  };
+
   const gerarOuAssinarCCB = async (id, tipo) => {
     try {
       const response = await axios.get(
@@ -226,7 +238,7 @@ const ProposalList = () => {
                       Valor: <strong>R$ {proposal.financedAmount?.toFixed(2)}</strong>
                     </Typography>
                     <Typography variant="body2" sx={{ mt: 1 }}>
-                      Parcelas: {proposal.installments?.length || 0}
+                      Parcelas: {proposal.numberOfInstallments || 0}
                     </Typography>
                     <Chip
                       label={status.label}
@@ -280,10 +292,7 @@ const ProposalList = () => {
                     <Button
                       variant="outlined"
                       size="small"
-                      onClick={() => {
-                        setSelectedProposal(proposal);
-                        setModalOpen(true);
-                      }}
+                      onClick={() => openDetails(proposal)}
                     >
                       Ver Detalhes
                     </Button>
@@ -322,10 +331,7 @@ const ProposalList = () => {
             onPageChange={(newPage) => setPage(newPage)}
             rowsPerPageOptions={[10]}
             disableSelectionOnClick
-            onRowClick={(params) => {
-              setSelectedProposal(params.row);
-              setModalOpen(true);
-            }}
+            onRowClick={(params) => openDetails(params.row)}
           />
         </Box>
       )}
@@ -345,7 +351,7 @@ const ProposalList = () => {
                 <strong>Valor Solicitado:</strong> R$ {selectedProposal.financedAmount?.toFixed(2)}
               </Typography>
               <Typography variant="subtitle1" gutterBottom>
-                <strong>Parcelas:</strong> {selectedProposal.installments?.length || 0}
+                <strong>Parcelas:</strong> {selectedProposal.numberOfInstallments || 0}
               </Typography>
               <Typography variant="subtitle1" gutterBottom>
                 <strong>Status:</strong>{" "}
@@ -101,37 +101,41 @@ const BankTransfer = () => {
         })
       } else {
         const description = gerarDescricaoAutomatica("deposit", form, null)
-        setPendingTransaction({ amount: parsedAmount, description })
-        return handleSubmit(parsedAmount, description)
+        const idempotencyKey = crypto.randomUUID()
+        setPendingTransaction({ amount: parsedAmount, description, idempotencyKey })
+        return handleSubmit(parsedAmount, description, idempotencyKey)
       }
 
       const description = gerarDescricaoAutomatica(method, form, res)
       setRecipientData(res)
-      setPendingTransaction({ amount: parsedAmount, description })
+      // a mesma chave acompanha as novas tentativas desta confirmação
+      setPendingTransaction({ amount: parsedAmount, description, idempotencyKey: crypto.randomUUID() })
       setConfirmOpen(true)
     } catch {
       setError("Destinatário não encontrado.")
     }
   }
 
-  const handleSubmit = async (amountOverride, descriptionOverride) => {
+  const handleSubmit = async (amountOverride, descriptionOverride, idempotencyKeyOverride) => {
     try {
       const amount = amountOverride || parseFloat(form.amount)
       const description = descriptionOverride || pendingTransaction?.description
+      const idempotencyKey = idempotencyKeyOverride || pendingTransaction?.idempotencyKey
+      const options = idempotencyKey ? { headers: { "Idempotency-Key": idempotencyKey } } : {}
       let res
 
       if (method === "account") {
         res = await api.post("/transactions/transfer/agency", {
           amount, description, fromAccountId: bankAccount?.id, agencyNumber: form.agencyNumber, accountNumber: form.accountNumber,
-        })
+        }, options)
       } else if (method === "pix") {
         res = await api.post("/transactions/pix", {
           amount, description, fromAccountId: bankAccount?.id, pixKey: form.pixKey,
-        })
+        }, options)
       } else if (method === "deposit") {
         res = await api.post("/transactions/deposit/agency", {
           amount, description, agencyNumber: userInfo?.virtualAgencyNumber, accountNumber: userInfo?.virtualAccountNumber,
-        })
+        }, options)
       }
 
       setSuccess(true)
@@ -255,7 +259,7 @@ const BankTransfer = () => {
           <Button onClick={() => setConfirmOpen(false)} color="inherit">Cancelar</Button>
           <Button onClick={() => {
             setConfirmOpen(false)
-            handleSubmit(pendingTransaction.amount, pendingTransaction.description)
+            handleSubmit(pendingTransaction.amount, pendingTransaction.description, pendingTransaction.idempotencyKey)
           }} variant="contained" color="primary">
             Confirmar
           </Button>
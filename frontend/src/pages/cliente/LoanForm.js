@@ -67,7 +67,7 @@ const LoanForm = () => {
     }
 
     try {
-      const response = await api.post("/loan-proposals/simulate", payload)
+      const response = await api.post("/loan-proposals/simulate?summary=true", payload)
 
       if (margin !== null && response.installmentValue > margin) {
         showSnackbar(
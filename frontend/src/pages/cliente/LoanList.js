@@ -95,6 +95,18 @@ const LoanList = ({ refresh }) => {
     fetchProposals()
   }, [auth.userInfo, page, rowsPerPage, refresh])
 
+  // a listagem vem sem o cronograma; as parcelas são buscadas ao abrir os detalhes
+  const openDetails = async (proposal) => {
+    setSelectedProposal(proposal)
+    setModalOpen(true)
+    try {
+      const details = await api.get(`/loan-proposals/${proposal.id}`)
+      setSelectedProposal((prev) => (prev?.id === details.id ? { ...prev, ...details } : prev))
+    } catch (error) {
+      showSnackbar("Erro ao carregar parcelas: " + error.message, "error")
+    }
+  }
+
   const handleRequestPay = (installment) => {
     setPayingInstallment(installment)
     setConfirmOpen(true)
@@ -226,7 +238,7 @@ const LoanList = ({ refresh }) => {
                   <strong>Valor:</strong> R$ {proposal.financedAmount?.toFixed(2)}
                 </Typography>
                 <Typography variant="body2">
-                  <strong>Parcelas:</strong> {proposal.installments?.length || 0}
+                  <strong>Parcelas:</strong> {proposal.numberOfInstallments || 0}
                 </Typography>
                 <Typography variant="body2">
                   <strong>Status:</strong>{" "}
@@ -239,10 +251,7 @@ const LoanList = ({ refresh }) => {
                 </Typography>
                 <Divider sx={{ my: 2 }} />
                 <Box sx={{ display: "flex", justifyContent: "flex-end" }}>
-                  <Button variant="outlined" onClick={() => {
-                    setSelectedProposal(proposal)
-                    setModalOpen(true)
-                  }}>
+                  <Button variant="outlined" onClick={() => openDetails(proposal)}>
                     Ver Detalhes
                   </Button>
                 </Box>
@@ -260,10 +269,7 @@ const LoanList = ({ refresh }) => {
               pageSize={10}
               rowsPerPageOptions={[10]}
               disableSelectionOnClick
-              onRowClick={(params) => {
-                setSelectedProposal(params.row)
-                setModalOpen(true)
-              }}
+              onRowClick={(params) => openDetails(params.row)}
             />
           </Box>
         )}
@@ -301,7 +307,7 @@ const LoanList = ({ refresh }) => {
                 <strong>Valor Solicitado:</strong> R$ {selectedProposal.financedAmount?.toFixed(2)}
               </Typography>
               <Typography variant="subtitle1" gutterBottom>
-                <strong>Parcelas:</strong> {selectedProposal.installments?.length || 0}
+                <strong>Parcelas:</strong> {selectedProposal.numberOfInstallments || 0}
               </Typography>
               <Typography variant="subtitle1" gutterBottom>
                 <strong>Status:</strong> {statusMap[selectedProposal.status]?.label || selectedProposal.status}